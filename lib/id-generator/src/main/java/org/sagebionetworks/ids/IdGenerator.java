@@ -16,7 +16,8 @@ public interface IdGenerator {
 	
 	/**
 	 * Ensure that the given ID is reserved.  If the ID is not already reserved then, 
-	 * this method will reserve it and all values below it.
+	 * this method will reserve it and all values below it.  If the ID might still be
+	 * issued from a block leased by another instance, this waits for that lease to end.
 	 * @param idToLock
 	 */
 	public void reserveId(Long idToLock);
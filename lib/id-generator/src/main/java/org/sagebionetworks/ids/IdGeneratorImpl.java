@@ -6,46 +6,70 @@ import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.StackConfiguration;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * This class creates domain unique ids using a MySql sequence via AUTO_INCREMENT of a primary key.
  * For a full explanation of how this works @See http://dev.mysql.com/doc/refman/5.1/en/information-functions.html#function_last-insert-id.
+ *
+ * Rather than going to the database for each new ID, each instance leases a block of consecutive IDs
+ * with a single multi-row insert and then hands them out from memory without locking. The size of the
+ * block is set with StackConfiguration.getIdGeneratorBlockSize(). IDs are unique across all instances,
+ * but they are only increasing within a single instance.
+ *
+ * A block is only used until its lease time ends. An ID restored from a backup might be part of a block
+ * leased by another instance, so reserving it waits until that lease has ended and the ID can no
+ * longer be issued.
  * @author jmhill
  *
  */
-@Transactional(readOnly = false)
 public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 	
+	static private Log log = LogFactory.getLog(IdGeneratorImpl.class);
+
 	// The table name
 	public static String TABLE_DOMAIN_ID = "DOMAIN_IDS";
 	// The file that defines the table
 	public static String SCHEMA_FILE = "domain-id-schema.sql";
 	// Insert a single row into the database
 	public static final String INSERT_SQL = "INSERT INTO "+TABLE_DOMAIN_ID+" (CREATED_ON) VALUES (?)";
-	
+
 	// This version sets the value to insert.  This is used to reserve the ID and all values less than the ID.
 	public static final String INSERT_SQL_INCREMENT = "INSERT INTO "+TABLE_DOMAIN_ID+" (ID, CREATED_ON) VALUES (?, ?)";
 	// Get the current max.
 	public static final String MAX_ID = "SELECT MAX(ID) FROM "+TABLE_DOMAIN_ID;
+	// Get the time an ID was leased or reserved.
+	public static final String CREATED_ON_SQL = "SELECT CREATED_ON FROM "+TABLE_DOMAIN_ID+" WHERE ID = ?";
 
 	// Fetch the newly created id.
 	public static final String GET_ID_SQL = "SELECT LAST_INSERT_ID()";
 	// Determine if the table exists
 	public static final String TABLE_EXISTS_SQL_PERFIX = "SELECT TABLE_NAME FROM Information_schema.tables WHERE table_name = '"+TABLE_DOMAIN_ID+"' AND table_schema = '";
-	
+	// Determine how AUTO_INCREMENT values are assigned to the rows of a multi-row insert.
+	public static final String AUTO_INC_LOCK_MODE_SQL = "SELECT @@innodb_autoinc_lock_mode";
+	// In this lock mode the rows of a multi-row insert are not guaranteed to get consecutive values.
+	public static final int AUTO_INC_LOCK_MODE_INTERLEAVED = 2;
+
 	@Autowired
 	JdbcTemplate idGeneratorJdbcTemplate;
 	@Autowired
@@ -53,38 +77,263 @@ public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 	@Autowired
 	DataSourceTransactionManager idGeneratorTransactionManager;
 
+	// Each lease and reservation occurs in its own transaction.
+	private TransactionTemplate transactionTemplate;
+	// The number of IDs leased with each trip to the database.
+	private int blockSize = 1;
+	// The number of ms IDs can be issued from a block after it is leased.
+	private long leaseTimeMS = 30*1000;
+	// The block that IDs are currently issued from.
+	private AtomicReference<IdBlock> currentBlock = new AtomicReference<IdBlock>(IdBlock.createEmpty());
+	// The blocks leased and IDs reserved by this instance that another instance might still wait on.
+	private LinkedList<IdBlock> recentBlocks = new LinkedList<IdBlock>();
+
 	/**
-	 * This call occurs in its own transaction.
+	 * A block of consecutive IDs that have already been reserved in the database by this instance.
+	 */
+	static class IdBlock {
+
+		private long first;
+		private AtomicLong next;
+		private long last;
+		private long expiresOn;
+
+		IdBlock(long first, long last, long expiresOn){
+			this.first = first;
+			this.next = new AtomicLong(first);
+			this.last = last;
+			this.expiresOn = expiresOn;
+		}
+
+		/**
+		 * A block with no IDs.
+		 * @return
+		 */
+		static IdBlock createEmpty(){
+			return new IdBlock(1, 0, Long.MAX_VALUE);
+		}
+
+		/**
+		 * Issue the next ID of this block.
+		 * @return null if this block is used up or its lease has ended.
+		 */
+		Long next(){
+			long id = next.getAndIncrement();
+			if(id > last) return null;
+			// Once the lease ends another instance may restore the rest of these IDs.
+			if(System.currentTimeMillis() >= expiresOn) return null;
+			return id;
+		}
+
+		/**
+		 * Was the given ID leased with this block?
+		 * @param id
+		 * @return
+		 */
+		boolean contains(long id){
+			return id >= first && id <= last;
+		}
+
+		/**
+		 * Make sure this block will not issue the given ID or any ID below it.
+		 * @param id
+		 */
+		void advancePast(long id){
+			while(true){
+				long current = next.get();
+				if(current > id) return;
+				if(next.compareAndSet(current, id+1)) return;
+			}
+		}
+
+		long getLast(){
+			return last;
+		}
+
+		long getExpiresOn(){
+			return expiresOn;
+		}
+	}
+
+	/**
+	 * Injected.
+	 * @param blockSize The number of IDs to lease with each trip to the database.
+	 */
+	public void setBlockSize(int blockSize) {
+		if(blockSize < 1) throw new IllegalArgumentException("The ID block size must be at least one");
+		this.blockSize = blockSize;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Injected.
+	 * @param leaseTimeMS The number of ms IDs can be issued from a block after it is leased.
+	 */
+	public void setLeaseTimeMS(long leaseTimeMS) {
+		if(leaseTimeMS < 1) throw new IllegalArgumentException("The ID lease time must be at least one ms");
+		this.leaseTimeMS = leaseTimeMS;
+	}
+
+	public long getLeaseTimeMS() {
+		return leaseTimeMS;
+	}
+
+	/**
+	 * IDs are issued from the current block without locking. Only when the block
+	 * is used up will a new block be leased in its own transaction.
 	 */
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	@Override
 	public Long generateNewId() {
-		// Create a new time
-		final long now = System.currentTimeMillis();
-		idGeneratorJdbcTemplate.update(INSERT_SQL, new PreparedStatementSetter(){
+		while(true){
+			IdBlock block = currentBlock.get();
+			Long id = block.next();
+			if(id != null) return id;
+			// This block is used up.
+			replaceBlock(block);
+		}
+	}
+
+	/**
+	 * Lease a new block unless another thread has already replaced the passed block.
+	 * @param usedUp
+	 */
+	private synchronized void replaceBlock(IdBlock usedUp){
+		if(currentBlock.get() != usedUp) return;
+		IdBlock block = leaseBlock(blockSize);
+		currentBlock.set(block);
+		addRecentBlock(block);
+	}
+
+	/**
+	 * Reserve a block of consecutive IDs with a single insert.
+	 * @param size
+	 * @return
+	 */
+	private IdBlock leaseBlock(final int size){
+		return transactionTemplate.execute(new TransactionCallback<IdBlock>() {
 			@Override
-			public void setValues(PreparedStatement ps) throws SQLException {
-				ps.setLong(1, now);
-				
-			}});
-		// Get the ID we just created.
-		return idGeneratorJdbcTemplate.queryForLong(GET_ID_SQL);
+			public IdBlock doInTransaction(TransactionStatus status) {
+				// Create a new time
+				final long now = System.currentTimeMillis();
+				idGeneratorJdbcTemplate.update(createInsertBlockSql(size), new PreparedStatementSetter(){
+					@Override
+					public void setValues(PreparedStatement ps) throws SQLException {
+						for(int i=1; i<=size; i++){
+							ps.setLong(i, now);
+						}
+					}});
+				// For a multi-row insert this is the ID of the first row.
+				long first = idGeneratorJdbcTemplate.queryForLong(GET_ID_SQL);
+				return new IdBlock(first, first+size-1, now+leaseTimeMS);
+			}
+		});
 	}
-	
-	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+
 	@Override
 	public void reserveId(final Long idToLock) {
 		if(idToLock == null) throw new IllegalArgumentException("ID to reserve cannot be null");
-		// First check if this value is greater than the last value
-		Long max = idGeneratorJdbcTemplate.queryForLong(MAX_ID);
-		if(idToLock > max){
-			final long now = System.currentTimeMillis();
-			idGeneratorJdbcTemplate.update(INSERT_SQL_INCREMENT, new PreparedStatementSetter(){
-				@Override
-				public void setValues(PreparedStatement ps) throws SQLException {
-					ps.setLong(1, idToLock);
-					ps.setLong(2, now);
-				}});
+		IdBlock block = currentBlock.get();
+		if(block.contains(idToLock)){
+			// This instance holds the lease on this ID so there is no need to go to the database.
+			block.advancePast(idToLock);
+			return;
+		}
+		Long leasedOn = reserveIdInDatabase(idToLock);
+		if(leasedOn != null){
+			// This is done without the lock so IDs can still be issued while waiting.
+			waitForLeaseToEnd(idToLock, leasedOn);
+		}
+	}
+
+	/**
+	 * Reserve an ID that is not part of the current block.
+	 * @param idToLock
+	 * @return The time the ID was leased if another instance might still issue it, else null.
+	 */
+	private synchronized Long reserveIdInDatabase(final Long idToLock){
+		// The block might have been replaced while waiting for the lock.
+		IdBlock block = currentBlock.get();
+		if(block.contains(idToLock)){
+			block.advancePast(idToLock);
+			return null;
+		}
+		// The IDs of this instance's earlier blocks were either issued or dropped by this instance.
+		if(wasRecentlyLeased(idToLock)) return null;
+		final long now = System.currentTimeMillis();
+		boolean inserted = transactionTemplate.execute(new TransactionCallback<Boolean>() {
+			@Override
+			public Boolean doInTransaction(TransactionStatus status) {
+				// First check if this value is greater than the last value
+				Long max = idGeneratorJdbcTemplate.queryForLong(MAX_ID);
+				if(idToLock <= max) return false;
+				idGeneratorJdbcTemplate.update(INSERT_SQL_INCREMENT, new PreparedStatementSetter(){
+					@Override
+					public void setValues(PreparedStatement ps) throws SQLException {
+						ps.setLong(1, idToLock);
+						ps.setLong(2, now);
+					}});
+				return true;
+			}
+		});
+		if(inserted){
+			// The rest of the current block is below the reserved ID so it is dropped.
+			currentBlock.set(IdBlock.createEmpty());
+			// Reserving this ID again from this instance does not need to wait on its row.
+			addRecentBlock(new IdBlock(idToLock, idToLock, now+leaseTimeMS));
+			return null;
+		}
+		// This ID has a row only if it was leased with a block or reserved.
+		List<Long> leasedOn = idGeneratorJdbcTemplate.queryForList(CREATED_ON_SQL, Long.class, idToLock);
+		if(leasedOn.isEmpty()) return null;
+		return leasedOn.get(0);
+	}
+
+	/**
+	 * Remember a block until no other instance would wait on its lease.
+	 * @param block
+	 */
+	private void addRecentBlock(IdBlock block){
+		long now = System.currentTimeMillis();
+		Iterator<IdBlock> it = recentBlocks.iterator();
+		while(it.hasNext()){
+			if(it.next().getExpiresOn()+leaseTimeMS < now){
+				it.remove();
+			}
+		}
+		recentBlocks.add(block);
+	}
+
+	/**
+	 * Was the given ID part of a block this instance leased recently enough
+	 * that another instance might wait on it?
+	 * @param id
+	 * @return
+	 */
+	private boolean wasRecentlyLeased(long id){
+		for(IdBlock block: recentBlocks){
+			if(block.contains(id)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Wait until no instance can issue IDs from a block leased at the given time.
+	 * The lease time is allowed again for differences between the clocks of the instances.
+	 * @param id
+	 * @param leasedOn
+	 */
+	private void waitForLeaseToEnd(Long id, long leasedOn){
+		long waitMS = leasedOn + 2*leaseTimeMS - System.currentTimeMillis();
+		if(waitMS <= 0) return;
+		log.info("Waiting "+waitMS+" ms for the lease on ID: "+id+" to end");
+		try {
+			Thread.sleep(waitMS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the lease on ID: "+id+" to end", e);
 		}
 	}
 
@@ -113,6 +362,31 @@ public class IdGeneratorImpl implements IdGenerator, InitializingBean{
 				throw new RuntimeException("Failed to create the domain table: "+TABLE_DOMAIN_ID+" using connection: "+connectionString);
 			}
 		}
+		// A block can only be leased with a single insert if its rows are assigned consecutive values.
+		if(blockSize > 1){
+			int lockMode = idGeneratorJdbcTemplate.queryForInt(AUTO_INC_LOCK_MODE_SQL);
+			if(lockMode == AUTO_INC_LOCK_MODE_INTERLEAVED){
+				log.warn("The ID database uses innodb_autoinc_lock_mode="+lockMode+" so IDs will be leased one at a time instead of in blocks of "+blockSize);
+				blockSize = 1;
+			}
+		}
+		transactionTemplate = new TransactionTemplate(idGeneratorTransactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	/**
+	 * Build the SQL to insert a block of rows with a single statement.
+	 * @param size
+	 * @return
+	 */
+	public static String createInsertBlockSql(int size){
+		if(size < 1) throw new IllegalArgumentException("The ID block size must be at least one");
+		if(size == 1) return INSERT_SQL;
+		StringBuilder builder = new StringBuilder(INSERT_SQL);
+		for(int i=1; i<size; i++){
+			builder.append(", (?)");
+		}
+		return builder.toString();
 	}
 	
 	/**
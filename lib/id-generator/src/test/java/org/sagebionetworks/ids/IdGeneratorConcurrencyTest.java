@@ -8,7 +8,10 @@ import java.util.Set;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.sagebionetworks.StackConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -21,38 +24,83 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = { "classpath:id-generator.spb.xml" })
 public class IdGeneratorConcurrencyTest {
-	
+
 	@Autowired
 	IdGenerator idGenerator;
-	
+	@Autowired
+	JdbcTemplate idGeneratorJdbcTemplate;
+	@Autowired
+	StackConfiguration stackConfiguration;
+	@Autowired
+	DataSourceTransactionManager idGeneratorTransactionManager;
+
 	// The number of ms to allow this test to run before failing.
 	private int TIME_OUT = 1000*10; // ten seconds
 	private int numberOfThreads = 8;
 	private volatile boolean[] finished = new boolean[numberOfThreads];
-	
+
 	@Test
 	public void testConcurrentThreads() throws InterruptedException{
+		runConcurrentThreads(new IdGenerator[]{idGenerator}, 100, true);
+	}
+
+	/**
+	 * Threads sharing two generators with small blocks must never get the same ID,
+	 * even as the blocks are used up and replaced.
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentThreadsAcrossBlocks() throws Exception{
+		runConcurrentThreads(new IdGenerator[]{createGenerator(10), createGenerator(10)}, 200, false);
+	}
+
+	/**
+	 * Create a generator with its own block of IDs.
+	 * @param blockSize
+	 * @return
+	 * @throws Exception
+	 */
+	private IdGeneratorImpl createGenerator(int blockSize) throws Exception{
+		IdGeneratorImpl generator = new IdGeneratorImpl();
+		generator.idGeneratorJdbcTemplate = idGeneratorJdbcTemplate;
+		generator.stackConfiguration = stackConfiguration;
+		generator.idGeneratorTransactionManager = idGeneratorTransactionManager;
+		generator.setBlockSize(blockSize);
+		generator.afterPropertiesSet();
+		return generator;
+	}
+
+	/**
+	 * Generate IDs from each thread and make sure they are all unique.
+	 * @param generators The threads are spread over these generators.
+	 * @param numberIds The number of IDs each thread will generate.
+	 * @param yield Should each thread yield between IDs?
+	 * @throws InterruptedException
+	 */
+	private void runConcurrentThreads(final IdGenerator[] generators, final int numberIds, final boolean yield) throws InterruptedException{
 		// All threads will store the returned ids here.
 		final Set<Long> sharedIdSet = Collections.synchronizedSet(new HashSet<Long>());
-		final int numberIds = 100;
 		// Setup each thread
 		Thread[] threads = new Thread[numberOfThreads];
 		for(int i=0; i< numberOfThreads; i++){
 			// Threads start off as not finished
 			finished[i] = false;
 			final int index = i;
+			final IdGenerator generator = generators[i % generators.length];
 			threads[i] = new Thread(new Runnable() {
 				@Override
 				public void run() {
-					// Generate 100 ids, yielding between each
+					// Generate the ids, yielding between each
 					for(int j=0; j<numberIds; j++){
-						Long id = idGenerator.generateNewId();
+						Long id = generator.generateNewId();
 						if(j % 25 == 0){
-							System.out.println("Thread.id="+Thread.currentThread().getId()+" generated id: "+id);							
+							System.out.println("Thread.id="+Thread.currentThread().getId()+" generated id: "+id);
 						}
 						assertTrue("Duplicate ID found!", sharedIdSet.add(id));
 						// Make sure other threads can go
-						Thread.yield();
+						if(yield){
+							Thread.yield();
+						}
 					}
 					// This thread is done
 					System.out.println("Thread.id="+Thread.currentThread().getId()+" finished");
@@ -61,11 +109,11 @@ public class IdGeneratorConcurrencyTest {
 			});
 		}
 		// start them up
+		long start = System.currentTimeMillis();
 		for(int i=0; i< numberOfThreads; i++){
 			threads[i].start();
 		}
 		// Wait for all thread to finish
-		long start = System.currentTimeMillis();
 		for(int i=0; i< numberOfThreads; i++){
 			// Wait for each thread
 			while(!finished[i]){
@@ -73,7 +121,7 @@ public class IdGeneratorConcurrencyTest {
 				if(current - start > TIME_OUT){
 					fail("Timout waiting for the threads to finish");
 				}
-				Thread.sleep(100);
+				Thread.sleep(10);
 			}
 		}
 		// Make sure we have the expected number of IDs
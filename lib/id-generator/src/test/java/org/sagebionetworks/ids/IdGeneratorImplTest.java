@@ -8,7 +8,10 @@ import java.util.Set;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.sagebionetworks.StackConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -18,6 +21,28 @@ public class IdGeneratorImplTest {
 	
 	@Autowired
 	IdGenerator idGenerator;
+	@Autowired
+	JdbcTemplate idGeneratorJdbcTemplate;
+	@Autowired
+	StackConfiguration stackConfiguration;
+	@Autowired
+	DataSourceTransactionManager idGeneratorTransactionManager;
+	
+	/**
+	 * Create a generator with its own block of IDs.
+	 * @param blockSize
+	 * @return
+	 * @throws Exception
+	 */
+	private IdGeneratorImpl createGenerator(int blockSize) throws Exception{
+		IdGeneratorImpl generator = new IdGeneratorImpl();
+		generator.idGeneratorJdbcTemplate = idGeneratorJdbcTemplate;
+		generator.stackConfiguration = stackConfiguration;
+		generator.idGeneratorTransactionManager = idGeneratorTransactionManager;
+		generator.setBlockSize(blockSize);
+		generator.afterPropertiesSet();
+		return generator;
+	}
 	
 	@Test
 	public void testGetSchema(){
@@ -75,5 +100,78 @@ public class IdGeneratorImplTest {
 		Long next = idGenerator.generateNewId();
 		assertEquals(next.longValue(), id.longValue()+1);
 	}
+	
+	@Test
+	public void testCreateInsertBlockSql(){
+		assertEquals(IdGeneratorImpl.INSERT_SQL, IdGeneratorImpl.createInsertBlockSql(1));
+		assertEquals(IdGeneratorImpl.INSERT_SQL+", (?), (?)", IdGeneratorImpl.createInsertBlockSql(3));
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testBlockSizeTooSmall(){
+		new IdGeneratorImpl().setBlockSize(0);
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testLeaseTimeTooSmall(){
+		new IdGeneratorImpl().setLeaseTimeMS(0);
+	}
+	
+	@Test
+	public void testBlockLeasing() throws Exception{
+		IdGeneratorImpl generator = createGenerator(10);
+		// The IDs of a single block are consecutive.
+		Long first = generator.generateNewId();
+		for(int i=1; i<10; i++){
+			assertEquals(first.longValue()+i, generator.generateNewId().longValue());
+		}
+		// The next ID comes from a new block
+		Long next = generator.generateNewId();
+		assertTrue(next > first+9);
+		// The whole block was reserved in the database so no other generator can issue its IDs.
+		IdGeneratorImpl other = createGenerator(1);
+		assertTrue(other.generateNewId() > next);
+	}
+	
+	@Test
+	public void testReserveIdInBlock() throws Exception{
+		IdGeneratorImpl generator = createGenerator(10);
+		Long id = generator.generateNewId();
+		// This ID is already reserved by the block so it is simply skipped.
+		Long reserved = id+5;
+		generator.reserveId(reserved);
+		Long next = generator.generateNewId();
+		assertEquals(reserved.longValue()+1, next.longValue());
+	}
+	
+	@Test
+	public void testReserveIdBeyondBlock() throws Exception{
+		IdGeneratorImpl generator = createGenerator(10);
+		Long id = generator.generateNewId();
+		// This is beyond the block so the rest of the block is dropped.
+		Long reserved = id+20;
+		generator.reserveId(reserved);
+		Long next = generator.generateNewId();
+		assertEquals(reserved.longValue()+1, next.longValue());
+	}
+	
+	@Test
+	public void testReserveIdLeasedByOtherGenerator() throws Exception{
+		IdGeneratorImpl one = createGenerator(10);
+		IdGeneratorImpl two = createGenerator(10);
+		one.setLeaseTimeMS(500);
+		two.setLeaseTimeMS(500);
+		Long first = one.generateNewId();
+		// The second block is above the first so the restored ID is below it.
+		assertTrue(two.generateNewId() > first+9);
+		// This ID is leased by the first generator but has not been issued yet.
+		Long restored = first+5;
+		two.reserveId(restored);
+		// The first generator must never issue the restored ID.
+		for(int i=0; i<20; i++){
+			Long next = one.generateNewId();
+			assertFalse("The restored ID was issued again", restored.equals(next));
+		}
+	}
 
 }
@@ -1,20 +1,30 @@
 package org.sagebionetworks.repo.model.dbo.dao;
 
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_ACL_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_BENEFACTOR_VISIBILITY_GROUP_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ETAG;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_GROUP_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_OWNER;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_TYPE_ELEMENT;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_RESOURCE_ACCESS_TYPE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_ACCESS_CONTROL_LIST;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_BENEFACTOR_VISIBILITY;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_NODE;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_RESOURCE_ACCESS;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_RESOURCE_ACCESS_TYPE;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.AccessControlList;
 import org.sagebionetworks.repo.model.DatastoreException;
@@ -25,6 +35,7 @@ import org.sagebionetworks.repo.model.dbo.persistence.DBOResourceAccess;
 import org.sagebionetworks.repo.model.dbo.persistence.DBOResourceAccessType;
 import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.sagebionetworks.repo.web.NotFoundException;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -33,7 +44,9 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Transactional(readOnly = true)
-public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao {
+public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao, InitializingBean {
+	
+	static private Log log = LogFactory.getLog(DBOAccessControlListDaoImpl.class);
 	
 	private static final String SELECT_ACCESS_TYPES_FOR_RESOURCE = "SELECT "+COL_RESOURCE_ACCESS_TYPE_ELEMENT+" FROM "+TABLE_RESOURCE_ACCESS_TYPE+" WHERE "+COL_RESOURCE_ACCESS_TYPE_ID+" = ?";
 
@@ -43,6 +56,19 @@ public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao {
 
 	private static final String SELECT_ALL_RESOURCE_ACCESS = "SELECT * FROM "+TABLE_RESOURCE_ACCESS+" WHERE "+COL_RESOURCE_ACCESS_OWNER+" = ?";
 
+	private static final String DELETE_BENEFACTOR_VISIBILITY_SQL = "DELETE FROM "+TABLE_BENEFACTOR_VISIBILITY+" WHERE "+COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID+" = ?";
+
+	private static final String INSERT_BENEFACTOR_VISIBILITY_SQL = "INSERT IGNORE INTO "+TABLE_BENEFACTOR_VISIBILITY+" ("+COL_BENEFACTOR_VISIBILITY_GROUP_ID+", "+COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID+") VALUES (?, ?)";
+
+	private static final String COUNT_BENEFACTOR_VISIBILITY_SQL = "SELECT COUNT(*) FROM "+TABLE_BENEFACTOR_VISIBILITY;
+
+	/**
+	 * Rebuilds the visibility of every benefactor from the ACL tables.
+	 */
+	private static final String POPULATE_ALL_BENEFACTOR_VISIBILITY_SQL = "INSERT IGNORE INTO "+TABLE_BENEFACTOR_VISIBILITY+" ("+COL_BENEFACTOR_VISIBILITY_GROUP_ID+", "+COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID+")"+
+			" SELECT DISTINCT ra."+COL_RESOURCE_ACCESS_GROUP_ID+", acl."+COL_ACL_ID+" FROM "+TABLE_ACCESS_CONTROL_LIST+" acl, "+TABLE_RESOURCE_ACCESS+" ra, "+TABLE_RESOURCE_ACCESS_TYPE+" at"+
+			" WHERE ra."+COL_RESOURCE_ACCESS_OWNER+" = acl."+COL_ACL_ID+" AND at."+COL_RESOURCE_ACCESS_TYPE_ID+" = ra."+COL_RESOURCE_ACCESS_ID+" AND at."+COL_RESOURCE_ACCESS_TYPE_ELEMENT+" = '"+ACCESS_TYPE.READ.name()+"'";
+
 	/**
 	 * Keep a copy of the row mapper.
 	 */
@@ -54,6 +80,19 @@ public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao {
 	@Autowired
 	DBOBasicDao dboBasicDao;
 
+	/**
+	 * The benefactor visibility table is derived from the ACL tables, so when it is
+	 * empty (such as the first start after it was added) it is built from them.
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		long count = simpleJdbcTemplate.queryForLong(COUNT_BENEFACTOR_VISIBILITY_SQL);
+		if(count == 0){
+			int rows = simpleJdbcTemplate.update(POPULATE_ALL_BENEFACTOR_VISIBILITY_SQL);
+			log.info("Populated "+rows+" benefactor visibility rows from the ACL tables");
+		}
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public AccessControlList createACL(AccessControlList acl) throws DatastoreException, NotFoundException {
@@ -63,6 +102,7 @@ public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao {
 		// Create a new ACL 
 		dboBasicDao.createNew(dbo);
 		populateResourceAccess(acl);
+		populateBenefactorVisibility(acl);
 		acl.setEtag(getETag(acl.getId()));
 		return acl;
 	}
@@ -97,6 +137,26 @@ public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao {
 	}
 
 
+	/**
+	 * Replace the groups that can read this ACL's benefactor.
+	 * @param acl
+	 * @throws DatastoreException
+	 */
+	private void populateBenefactorVisibility(AccessControlList acl) throws DatastoreException {
+		Long benefactor = KeyFactory.stringToKey(acl.getId());
+		simpleJdbcTemplate.update(DELETE_BENEFACTOR_VISIBILITY_SQL, benefactor);
+		List<Object[]> batch = new ArrayList<Object[]>();
+		for(ResourceAccess ra: acl.getResourceAccess()){
+			if(ra.getAccessType() != null && ra.getAccessType().contains(ACCESS_TYPE.READ)){
+				batch.add(new Object[]{ra.getPrincipalId(), benefactor});
+			}
+		}
+		if(!batch.isEmpty()){
+			simpleJdbcTemplate.batchUpdate(INSERT_BENEFACTOR_VISIBILITY_SQL, batch);
+		}
+	}
+
+
 	@Transactional(readOnly = true)
 	@Override
 	public AccessControlList getACL(Long owner) throws DatastoreException, NotFoundException {
@@ -146,13 +206,14 @@ public class DBOAccessControlListDaoImpl implements DBOAccessControlListDao {
 		simpleJdbcTemplate.update(DELETE_RESOURCE_ACCESS_SQL, owner);
 		// Now recreate it from the passed data.
 		populateResourceAccess(acl);
+		populateBenefactorVisibility(acl);
 		return null;
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public boolean delete(Long owner) throws DatastoreException {
-		// TODO Auto-generated method stub
+		// The benefactor visibility rows are removed by the cascade.
 		MapSqlParameterSource params = new MapSqlParameterSource();
 		params.addValue("id", owner);
 		return dboBasicDao.deleteObjectById(DBOAccessControlList.class, params);
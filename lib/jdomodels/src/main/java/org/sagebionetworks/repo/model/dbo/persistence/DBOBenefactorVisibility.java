@@ -0,0 +1,109 @@
+package org.sagebionetworks.repo.model.dbo.persistence;
+
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_BENEFACTOR_VISIBILITY_GROUP_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.DDL_FILE_BENEFACTOR_VISIBILITY;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_BENEFACTOR_VISIBILITY;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.sagebionetworks.repo.model.dbo.DatabaseObject;
+import org.sagebionetworks.repo.model.dbo.FieldColumn;
+import org.sagebionetworks.repo.model.dbo.TableMapping;
+
+/**
+ * A group that can read all nodes that inherit their permissions from a
+ * benefactor. This table is maintained by the ACL DAO and is used to filter
+ * query results by authorization.
+ *
+ */
+public class DBOBenefactorVisibility implements DatabaseObject<DBOBenefactorVisibility> {
+
+	private static FieldColumn[] FIELDS = new FieldColumn[] {
+		new FieldColumn("groupId", COL_BENEFACTOR_VISIBILITY_GROUP_ID, true),
+		new FieldColumn("benefactorId", COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID, true),
+		};
+
+	@Override
+	public TableMapping<DBOBenefactorVisibility> getTableMapping() {
+		return new TableMapping<DBOBenefactorVisibility>(){
+			@Override
+			public DBOBenefactorVisibility mapRow(ResultSet rs, int rowNum) throws SQLException {
+				DBOBenefactorVisibility vis = new DBOBenefactorVisibility();
+				vis.setGroupId(rs.getLong(COL_BENEFACTOR_VISIBILITY_GROUP_ID));
+				vis.setBenefactorId(rs.getLong(COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID));
+				return vis;
+			}
+
+			@Override
+			public String getTableName() {
+				return TABLE_BENEFACTOR_VISIBILITY;
+			}
+
+			@Override
+			public String getDDLFileName() {
+				return DDL_FILE_BENEFACTOR_VISIBILITY;
+			}
+
+			@Override
+			public FieldColumn[] getFieldColumns() {
+				return FIELDS;
+			}
+
+			@Override
+			public Class<? extends DBOBenefactorVisibility> getDBOClass() {
+				return DBOBenefactorVisibility.class;
+			}};
+	}
+
+	private Long groupId;
+	private Long benefactorId;
+
+	public Long getGroupId() {
+		return groupId;
+	}
+	public void setGroupId(Long groupId) {
+		this.groupId = groupId;
+	}
+	public Long getBenefactorId() {
+		return benefactorId;
+	}
+	public void setBenefactorId(Long benefactorId) {
+		this.benefactorId = benefactorId;
+	}
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((benefactorId == null) ? 0 : benefactorId.hashCode());
+		result = prime * result + ((groupId == null) ? 0 : groupId.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DBOBenefactorVisibility other = (DBOBenefactorVisibility) obj;
+		if (benefactorId == null) {
+			if (other.benefactorId != null)
+				return false;
+		} else if (!benefactorId.equals(other.benefactorId))
+			return false;
+		if (groupId == null) {
+			if (other.groupId != null)
+				return false;
+		} else if (!groupId.equals(other.groupId))
+			return false;
+		return true;
+	}
+	@Override
+	public String toString() {
+		return "DBOBenefactorVisibility [groupId=" + groupId + ", benefactorId=" + benefactorId + "]";
+	}
+
+}
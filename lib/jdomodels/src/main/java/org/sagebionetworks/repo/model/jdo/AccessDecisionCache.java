@@ -0,0 +1,224 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.model.ACCESS_TYPE;
+import org.sagebionetworks.repo.model.UserGroup;
+import org.sagebionetworks.repo.model.util.ExpiringCache;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A bounded cache of the access types that a set of groups has on a resource.
+ * 
+ * Each decision is stored as a bit mask of ACCESS_TYPE ordinals. Decisions for
+ * a resource are invalidated whenever its ACL changes or it moves to a new
+ * benefactor. Since other repository instances cannot invalidate this cache,
+ * the decisions for a resource also expire a short time after the first of
+ * them is added.
+ */
+public class AccessDecisionCache {
+
+	/**
+	 * The decisions for each resource, keyed by group key.
+	 */
+	private ExpiringCache<Long, ConcurrentMap<String, Long>> decisions;
+
+	/**
+	 * Configured from the stack configuration.
+	 */
+	public AccessDecisionCache() {
+		this(StackConfiguration.getAccessDecisionCacheTimeToLiveMS(), StackConfiguration.getAccessDecisionCacheMaxSize());
+	}
+
+	/**
+	 * @param timeToLiveMS
+	 *            How long the decisions for a resource can be used after the
+	 *            first of them is added.
+	 * @param maxSize
+	 *            The maximum number of resources held by this cache.
+	 */
+	public AccessDecisionCache(long timeToLiveMS, int maxSize) {
+		if (timeToLiveMS < 0) throw new IllegalArgumentException("Time to live cannot be negative");
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		this.decisions = new ExpiringCache<Long, ConcurrentMap<String, Long>>(timeToLiveMS, maxSize);
+	}
+
+	/**
+	 * Create a key for a set of groups that does not depend on their order.
+	 * 
+	 * @param groups
+	 * @return
+	 */
+	public static String createGroupKey(Collection<UserGroup> groups) {
+		if (groups == null) throw new IllegalArgumentException("Groups cannot be null");
+		List<String> ids = new ArrayList<String>(groups.size());
+		for (UserGroup group : groups) {
+			if (group == null) throw new IllegalArgumentException("UserGroup was null");
+			if (group.getId() == null) throw new IllegalArgumentException("UserGroup.id cannot be null");
+			ids.add(group.getId());
+		}
+		Collections.sort(ids);
+		return ids.toString();
+	}
+
+	/**
+	 * Convert a set of access types to a bit mask.
+	 * 
+	 * @param types
+	 * @return
+	 */
+	public static long toMask(Collection<ACCESS_TYPE> types) {
+		long mask = 0;
+		for (ACCESS_TYPE type : types) {
+			mask |= 1L << type.ordinal();
+		}
+		return mask;
+	}
+
+	/**
+	 * Convert a bit mask to a set of access types.
+	 * 
+	 * @param mask
+	 * @return
+	 */
+	public static Set<ACCESS_TYPE> fromMask(long mask) {
+		Set<ACCESS_TYPE> types = EnumSet.noneOf(ACCESS_TYPE.class);
+		for (ACCESS_TYPE type : ACCESS_TYPE.values()) {
+			if ((mask & (1L << type.ordinal())) != 0) {
+				types.add(type);
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * The current generation. This must be read before loading a decision
+	 * that will be passed to {@link #put(Long, String, long, long)}.
+	 * 
+	 * @return
+	 */
+	public long getGeneration() {
+		return decisions.getGeneration();
+	}
+
+	/**
+	 * Get the decision for a resource and group key.
+	 * 
+	 * @param resourceId
+	 * @param groupKey
+	 * @return The bit mask of access types, or null if there is no decision.
+	 */
+	public Long get(Long resourceId, String groupKey) {
+		if (resourceId == null) throw new IllegalArgumentException("Resource ID cannot be null");
+		if (groupKey == null) throw new IllegalArgumentException("Group key cannot be null");
+		ConcurrentMap<String, Long> forResource = decisions.peek(resourceId);
+		Long mask = forResource == null ? null : forResource.get(groupKey);
+		decisions.recordLookup(mask != null);
+		return mask;
+	}
+
+	/**
+	 * Add a decision to the cache. The decision is dropped if the cache was
+	 * invalidated since the passed generation was read. When the cache is
+	 * full it is simply cleared.
+	 * 
+	 * @param resourceId
+	 * @param groupKey
+	 * @param mask
+	 * @param generationAtLoad
+	 */
+	public void put(Long resourceId, String groupKey, long mask, long generationAtLoad) {
+		if (resourceId == null) throw new IllegalArgumentException("Resource ID cannot be null");
+		if (groupKey == null) throw new IllegalArgumentException("Group key cannot be null");
+		ConcurrentMap<String, Long> forResource = decisions.putIfAbsent(resourceId, new ConcurrentHashMap<String, Long>(), generationAtLoad);
+		if (forResource == null || decisions.getGeneration() != generationAtLoad) return;
+		forResource.put(groupKey, mask);
+	}
+
+	/**
+	 * Remove all decisions for a resource. When called within a transaction
+	 * the decisions are removed again after it completes, so a decision read
+	 * before the transaction committed cannot remain in the cache.
+	 * 
+	 * @param resourceId
+	 */
+	public void invalidate(final Long resourceId) {
+		if (resourceId == null) throw new IllegalArgumentException("Resource ID cannot be null");
+		decisions.remove(resourceId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					decisions.remove(resourceId);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Remove all decisions for many resources. Like
+	 * {@link #invalidate(Long)} the decisions are removed again after the
+	 * current transaction completes.
+	 * 
+	 * @param resourceIds
+	 */
+	public void invalidate(final Collection<Long> resourceIds) {
+		if (resourceIds == null) throw new IllegalArgumentException("Resource IDs cannot be null");
+		for (Long resourceId : resourceIds) {
+			decisions.remove(resourceId);
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					for (Long resourceId : resourceIds) {
+						decisions.remove(resourceId);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * The number of resources with decisions currently in the cache.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return decisions.size();
+	}
+
+	/**
+	 * The number of lookups that found a decision.
+	 * 
+	 * @return
+	 */
+	public long getHitCount() {
+		return decisions.getHitCount();
+	}
+
+	/**
+	 * The number of lookups that did not find a decision.
+	 * 
+	 * @return
+	 */
+	public long getMissCount() {
+		return decisions.getMissCount();
+	}
+
+	/**
+	 * Remove all decisions.
+	 */
+	public void clear() {
+		decisions.clear();
+	}
+}
@@ -5,16 +5,15 @@ import org.sagebionetworks.repo.model.query.jdo.SqlConstants;
 public class AuthorizationSqlUtil {
 	
 	/*
-	 * select acl.id from jdoaccesscontrollist acl, jdoresourceaccess ra, access_type at
-	 * where
-	 * ra.oid_id=acl.id and ra.groupId in :groups and at.oid_id=ra.id and at.type=:type
+	 * select distinct bv.BENEFACTOR_ID as OWNER_ID_COLUMN from BENEFACTOR_VISIBILITY bv
+	 * where bv.GROUP_ID in (:g0, :g1, ...)
+	 * 
+	 * The BENEFACTOR_VISIBILITY table holds the groups that have READ access to each
+	 * benefactor, so this is a single index range scan on its primary key.
 	 */
 	private static final String AUTHORIZATION_SQL_1 = 
-		"select distinct acl."+SqlConstants.ACL_OWNER_ID_COLUMN+" from "+SqlConstants.TABLE_ACCESS_CONTROL_LIST+" acl, "+
-		SqlConstants.TABLE_RESOURCE_ACCESS+" ra, "+
-		SqlConstants.TABLE_RESOURCE_ACCESS_TYPE+" at where ra."+
-		SqlConstants.COL_RESOURCE_ACCESS_OWNER+
-		"=acl."+SqlConstants.COL_ACL_ID+" and (ra."+SqlConstants.COL_RESOURCE_ACCESS_GROUP_ID+
+		"select distinct bv."+SqlConstants.COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID+" as "+SqlConstants.ACL_OWNER_ID_COLUMN+
+		" from "+SqlConstants.TABLE_BENEFACTOR_VISIBILITY+" bv where bv."+SqlConstants.COL_BENEFACTOR_VISIBILITY_GROUP_ID+
 		" in (";
 
 	/**
@@ -23,14 +22,14 @@ public class AuthorizationSqlUtil {
 	public static final String ACCESS_TYPE_BIND_VAR = "type";
 	public static final String NODE_ID_BIND_VAR = "nodeId";
 	
-	private static final String AUTHORIZATION_SQL_2 = 
-		"))"+
-		" and at."+SqlConstants.COL_RESOURCE_ACCESS_TYPE_ID+"=ra."+SqlConstants.COL_NODE_ID+
-		" and at."+SqlConstants.COL_RESOURCE_ACCESS_TYPE_ELEMENT+"=:"+ACCESS_TYPE_BIND_VAR;
+	private static final String AUTHORIZATION_SQL_2 = ")";
 	
 	private static final String CAN_ACCESS_SQL_1 ="select count(n."+SqlConstants.COL_NODE_ID+")  from "+SqlConstants.TABLE_ACCESS_CONTROL_LIST+" acl, "+SqlConstants.TABLE_RESOURCE_ACCESS+" ra, "+SqlConstants.TABLE_RESOURCE_ACCESS_TYPE+" at, "+SqlConstants.TABLE_NODE+" n where ra."+SqlConstants.COL_RESOURCE_ACCESS_OWNER+"=acl."+SqlConstants.COL_ACL_ID+" and (ra."+SqlConstants.COL_RESOURCE_ACCESS_GROUP_ID+" in (";
 	private static final String CAN_ACCESS_SQL_2 =")) and at."+SqlConstants.COL_RESOURCE_ACCESS_TYPE_ID+"=ra."+SqlConstants.COL_RESOURCE_ACCESS_ID+" and at."+SqlConstants.COL_RESOURCE_ACCESS_TYPE_ELEMENT+"=:"+ACCESS_TYPE_BIND_VAR+" AND acl."+SqlConstants.ACL_OWNER_ID_COLUMN+" = n."+SqlConstants.COL_NODE_BENEFACTOR_ID+" and n."+SqlConstants.COL_NODE_ID+" =:"+NODE_ID_BIND_VAR;
 
+	private static final String ACCESS_TYPES_SQL_1 ="select distinct at."+SqlConstants.COL_RESOURCE_ACCESS_TYPE_ELEMENT+" from "+SqlConstants.TABLE_ACCESS_CONTROL_LIST+" acl, "+SqlConstants.TABLE_RESOURCE_ACCESS+" ra, "+SqlConstants.TABLE_RESOURCE_ACCESS_TYPE+" at, "+SqlConstants.TABLE_NODE+" n where ra."+SqlConstants.COL_RESOURCE_ACCESS_OWNER+"=acl."+SqlConstants.COL_ACL_ID+" and (ra."+SqlConstants.COL_RESOURCE_ACCESS_GROUP_ID+" in (";
+	private static final String ACCESS_TYPES_SQL_2 =")) and at."+SqlConstants.COL_RESOURCE_ACCESS_TYPE_ID+"=ra."+SqlConstants.COL_RESOURCE_ACCESS_ID+" AND acl."+SqlConstants.ACL_OWNER_ID_COLUMN+" = n."+SqlConstants.COL_NODE_BENEFACTOR_ID+" and n."+SqlConstants.COL_NODE_ID+" =:"+NODE_ID_BIND_VAR;
+
 	/**
 	 * The bind variable prefix used for group ID for the authorization SQL.
 	 */
@@ -38,8 +37,7 @@ public class AuthorizationSqlUtil {
 
 
 	/**
-	 * @return the SQL to find the root-accessible nodes that a specified user-group list can access
-	 * using a specified access type
+	 * @return the SQL to find the benefactors that a specified user-group list can READ
 	 * 
 	 * Can't bind a collection to a variable in the string, so we have to create n bind variables 
 	 * for a collection of length n.  :^(
@@ -73,4 +71,21 @@ public class AuthorizationSqlUtil {
 		return sb.toString();
 	}
 
+	/**
+	 * Create the SQL to find all of the access types that a list of groups has on a node.
+	 * @param numberUserGroups
+	 * @return
+	 */
+	public static String authorizationAccessTypesSQL(int numberUserGroups){
+		StringBuilder sb = new StringBuilder(ACCESS_TYPES_SQL_1);
+		for (int i=0; i<numberUserGroups; i++) {
+			if (i>0) sb.append(",");
+			sb.append(":");
+			sb.append(BIND_VAR_PREFIX);
+			sb.append(i);
+		}
+		sb.append(ACCESS_TYPES_SQL_2);
+		return sb.toString();
+	}
+
 }
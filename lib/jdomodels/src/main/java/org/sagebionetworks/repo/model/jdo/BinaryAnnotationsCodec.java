@@ -0,0 +1,559 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.sagebionetworks.repo.model.Annotations;
+import org.sagebionetworks.repo.model.NamedAnnotations;
+import org.sagebionetworks.repo.model.Reference;
+
+/**
+ * A compact, versioned binary encoding for the annotation and reference blobs
+ * stored with each revision.
+ * <p>
+ * Every blob starts with a four byte header: two magic bytes, a format version
+ * and a flags byte. When {@link #FLAG_DEFLATED} is set the header is followed
+ * by the uncompressed length and the raw deflate stream of the payload.
+ * <p>
+ * The payload is a record type tag followed by the record. Within an
+ * {@link Annotations} record each value type (string, double, long, date,
+ * blob) is written as a type tag, a key count and then for each key the key
+ * name and a length-prefixed block of values, so a reader can skip any key it
+ * does not care about without decoding its values.
+ * <p>
+ * Instances hold no mutable state and can be shared by all threads. The
+ * deflater and inflater are reused per thread.
+ */
+public class BinaryAnnotationsCodec {
+
+	/**
+	 * The first two bytes of every blob written by this codec. Legacy XStream
+	 * blobs always start with the GZIP magic (0x1f 0x8b) so they can never be
+	 * confused with this format.
+	 */
+	public static final byte MAGIC_ONE = (byte) 'S';
+	public static final byte MAGIC_TWO = (byte) 'B';
+	/**
+	 * The current format version.
+	 */
+	public static final byte VERSION_ONE = 1;
+	/**
+	 * Set when the payload is deflate compressed.
+	 */
+	public static final byte FLAG_DEFLATED = 0x01;
+
+	public static final int HEADER_SIZE = 4;
+
+	/**
+	 * Record type tags.
+	 */
+	public static final byte RECORD_NAMED_ANNOTATIONS = 1;
+	public static final byte RECORD_REFERENCES = 2;
+
+	/**
+	 * Value type tags.
+	 */
+	public static final byte TYPE_STRING = 1;
+	public static final byte TYPE_DOUBLE = 2;
+	public static final byte TYPE_LONG = 3;
+	public static final byte TYPE_DATE = 4;
+	public static final byte TYPE_BLOB = 5;
+
+	/**
+	 * Payloads smaller than this are not worth compressing.
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+
+	private static final String UTF_8 = "UTF-8";
+	private static final int NULL_LENGTH = -1;
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.BEST_SPEED, true);
+		}
+	};
+
+	private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater(true);
+		}
+	};
+
+	private int compressionThreshold;
+
+	/**
+	 * Create a codec using the default compression threshold.
+	 */
+	public BinaryAnnotationsCodec() {
+		this(DEFAULT_COMPRESSION_THRESHOLD);
+	}
+
+	/**
+	 * @param compressionThreshold
+	 *            Payloads of at least this many bytes will be compressed. Use
+	 *            Integer.MAX_VALUE to never compress.
+	 */
+	public BinaryAnnotationsCodec(int compressionThreshold) {
+		if (compressionThreshold < 0) throw new IllegalArgumentException("Compression threshold cannot be negative");
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * Does the passed blob start with this codec's header?
+	 *
+	 * @param blob
+	 * @return
+	 */
+	public static boolean isBinaryFormat(byte[] blob) {
+		return blob != null && blob.length >= HEADER_SIZE && blob[0] == MAGIC_ONE && blob[1] == MAGIC_TWO;
+	}
+
+	/**
+	 * Encode the passed annotations.
+	 *
+	 * @param named
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] encodeAnnotations(NamedAnnotations named) throws IOException {
+		if (named == null) throw new IllegalArgumentException("NamedAnnotations cannot be null");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(RECORD_NAMED_ANNOTATIONS);
+		writeString(out, named.getId());
+		writeString(out, named.getEtag());
+		writeDate(out, named.getCreationDate());
+		Map<String, Annotations> map = named.getMap();
+		out.writeInt(map.size());
+		for (Map.Entry<String, Annotations> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeAnnotations(out, entry.getValue());
+		}
+		out.flush();
+		return wrap(bytes.toByteArray());
+	}
+
+	/**
+	 * Decode annotations written by {@link #encodeAnnotations(NamedAnnotations)}.
+	 *
+	 * @param blob
+	 * @return
+	 * @throws IOException
+	 */
+	public NamedAnnotations decodeAnnotations(byte[] blob) throws IOException {
+		return decodeAnnotations(blob, null, true);
+	}
+
+	/**
+	 * Decode annotations written by {@link #encodeAnnotations(NamedAnnotations)},
+	 * keeping only the passed keys. The values of all other keys are skipped
+	 * without being decoded.
+	 *
+	 * @param blob
+	 * @param keysToKeep
+	 *            When null all keys are kept.
+	 * @param includeBlobs
+	 *            When false, blob values are skipped regardless of keysToKeep.
+	 * @return
+	 * @throws IOException
+	 */
+	public NamedAnnotations decodeAnnotations(byte[] blob, Set<String> keysToKeep, boolean includeBlobs) throws IOException {
+		DataInputStream in = openPayload(blob, RECORD_NAMED_ANNOTATIONS);
+		NamedAnnotations named = new NamedAnnotations();
+		named.setId(readString(in));
+		named.setEtag(readString(in));
+		named.setCreationDate(readDate(in));
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			String name = readString(in);
+			named.put(name, readAnnotations(in, keysToKeep, includeBlobs));
+		}
+		return named;
+	}
+
+	/**
+	 * Encode the passed references.
+	 *
+	 * @param references
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] encodeReferences(Map<String, Set<Reference>> references) throws IOException {
+		if (references == null) throw new IllegalArgumentException("References cannot be null");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(RECORD_REFERENCES);
+		out.writeInt(references.size());
+		for (Map.Entry<String, Set<Reference>> entry : references.entrySet()) {
+			writeString(out, entry.getKey());
+			Set<Reference> set = entry.getValue();
+			if (set == null) {
+				out.writeInt(NULL_LENGTH);
+				continue;
+			}
+			out.writeInt(set.size());
+			for (Reference ref : set) {
+				if (ref == null) {
+					out.writeBoolean(false);
+					continue;
+				}
+				out.writeBoolean(true);
+				writeString(out, ref.getTargetId());
+				writeLong(out, ref.getTargetVersionNumber());
+			}
+		}
+		out.flush();
+		return wrap(bytes.toByteArray());
+	}
+
+	/**
+	 * Decode references written by {@link #encodeReferences(Map)}.
+	 *
+	 * @param blob
+	 * @return
+	 * @throws IOException
+	 */
+	public Map<String, Set<Reference>> decodeReferences(byte[] blob) throws IOException {
+		DataInputStream in = openPayload(blob, RECORD_REFERENCES);
+		int count = in.readInt();
+		Map<String, Set<Reference>> references = new HashMap<String, Set<Reference>>();
+		for (int i = 0; i < count; i++) {
+			String key = readString(in);
+			int size = in.readInt();
+			if (size == NULL_LENGTH) {
+				references.put(key, null);
+				continue;
+			}
+			Set<Reference> set = new HashSet<Reference>();
+			for (int j = 0; j < size; j++) {
+				if (!in.readBoolean()) {
+					set.add(null);
+					continue;
+				}
+				Reference ref = new Reference();
+				ref.setTargetId(readString(in));
+				ref.setTargetVersionNumber(readLong(in));
+				set.add(ref);
+			}
+			references.put(key, set);
+		}
+		return references;
+	}
+
+	/**
+	 * Write a single Annotations object.
+	 */
+	private void writeAnnotations(DataOutputStream out, Annotations annos) throws IOException {
+		writeString(out, annos.getId());
+		writeString(out, annos.getUri());
+		writeString(out, annos.getEtag());
+		writeDate(out, annos.getCreationDate());
+		writeValues(out, TYPE_STRING, annos.getStringAnnotations());
+		writeValues(out, TYPE_DOUBLE, annos.getDoubleAnnotations());
+		writeValues(out, TYPE_LONG, annos.getLongAnnotations());
+		writeValues(out, TYPE_DATE, annos.getDateAnnotations());
+		writeValues(out, TYPE_BLOB, annos.getBlobAnnotations());
+	}
+
+	/**
+	 * Write one type section: the type tag, the key count, then each key
+	 * followed by its length-prefixed value block.
+	 */
+	private <T> void writeValues(DataOutputStream out, byte type, Map<String, List<T>> map) throws IOException {
+		out.writeByte(type);
+		if (map == null) {
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(map.size());
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		DataOutputStream blockOut = new DataOutputStream(block);
+		for (Map.Entry<String, List<T>> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			block.reset();
+			List<T> list = entry.getValue();
+			if (list == null) {
+				blockOut.writeInt(NULL_LENGTH);
+			} else {
+				blockOut.writeInt(list.size());
+				for (T value : list) {
+					writeValue(blockOut, type, value);
+				}
+			}
+			blockOut.flush();
+			out.writeInt(block.size());
+			block.writeTo(out);
+		}
+	}
+
+	private void writeValue(DataOutputStream out, byte type, Object value) throws IOException {
+		switch (type) {
+		case TYPE_STRING:
+			writeString(out, (String) value);
+			break;
+		case TYPE_DOUBLE:
+			if (value == null) {
+				out.writeBoolean(false);
+			} else {
+				out.writeBoolean(true);
+				out.writeDouble((Double) value);
+			}
+			break;
+		case TYPE_LONG:
+			writeLong(out, (Long) value);
+			break;
+		case TYPE_DATE:
+			writeDate(out, (Date) value);
+			break;
+		case TYPE_BLOB:
+			writeBytes(out, (byte[]) value);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type: " + type);
+		}
+	}
+
+	/**
+	 * Read a single Annotations object.
+	 */
+	private Annotations readAnnotations(DataInputStream in, Set<String> keysToKeep, boolean includeBlobs) throws IOException {
+		Annotations annos = new Annotations();
+		annos.setId(readString(in));
+		annos.setUri(readString(in));
+		annos.setEtag(readString(in));
+		annos.setCreationDate(readDate(in));
+		readValues(in, TYPE_STRING, annos.getStringAnnotations(), keysToKeep, false);
+		readValues(in, TYPE_DOUBLE, annos.getDoubleAnnotations(), keysToKeep, false);
+		readValues(in, TYPE_LONG, annos.getLongAnnotations(), keysToKeep, false);
+		readValues(in, TYPE_DATE, annos.getDateAnnotations(), keysToKeep, false);
+		readValues(in, TYPE_BLOB, annos.getBlobAnnotations(), keysToKeep, !includeBlobs);
+		return annos;
+	}
+
+	/**
+	 * Read one type section. Values are only decoded for the keys that are kept.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void readValues(DataInputStream in, byte expectedType, Map<String, List<T>> map, Set<String> keysToKeep, boolean skipAll) throws IOException {
+		byte type = in.readByte();
+		if (type != expectedType) throw new IOException("Corrupt annotations blob. Expected type: " + expectedType + " but found: " + type);
+		int keyCount = in.readInt();
+		for (int i = 0; i < keyCount; i++) {
+			String key = readString(in);
+			int blockLength = in.readInt();
+			if (skipAll || (keysToKeep != null && !keysToKeep.contains(key))) {
+				skipFully(in, blockLength);
+				continue;
+			}
+			int size = in.readInt();
+			if (size == NULL_LENGTH) {
+				map.put(key, null);
+				continue;
+			}
+			List<T> list = new ArrayList<T>(size);
+			for (int j = 0; j < size; j++) {
+				list.add((T) readValue(in, type));
+			}
+			map.put(key, list);
+		}
+	}
+
+	private Object readValue(DataInputStream in, byte type) throws IOException {
+		switch (type) {
+		case TYPE_STRING:
+			return readString(in);
+		case TYPE_DOUBLE:
+			return in.readBoolean() ? new Double(in.readDouble()) : null;
+		case TYPE_LONG:
+			return readLong(in);
+		case TYPE_DATE:
+			return readDate(in);
+		case TYPE_BLOB:
+			return readBytes(in);
+		default:
+			throw new IOException("Unknown type: " + type);
+		}
+	}
+
+	/**
+	 * Add the header and compress the payload if it is large enough.
+	 */
+	private byte[] wrap(byte[] payload) throws IOException {
+		if (payload.length >= compressionThreshold) {
+			byte[] compressed = deflate(payload);
+			// Only keep the compressed form if it is actually smaller.
+			if (compressed.length + 4 < payload.length) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + 4 + compressed.length);
+				DataOutputStream out = new DataOutputStream(bytes);
+				writeHeader(out, FLAG_DEFLATED);
+				out.writeInt(payload.length);
+				out.write(compressed);
+				out.flush();
+				return bytes.toByteArray();
+			}
+		}
+		byte[] result = new byte[HEADER_SIZE + payload.length];
+		result[0] = MAGIC_ONE;
+		result[1] = MAGIC_TWO;
+		result[2] = VERSION_ONE;
+		result[3] = 0;
+		System.arraycopy(payload, 0, result, HEADER_SIZE, payload.length);
+		return result;
+	}
+
+	private static void writeHeader(DataOutputStream out, byte flags) throws IOException {
+		out.writeByte(MAGIC_ONE);
+		out.writeByte(MAGIC_TWO);
+		out.writeByte(VERSION_ONE);
+		out.writeByte(flags);
+	}
+
+	/**
+	 * Validate the header, inflate if needed and check the record type.
+	 */
+	private DataInputStream openPayload(byte[] blob, byte expectedRecord) throws IOException {
+		if (!isBinaryFormat(blob)) throw new IOException("Not a binary annotations blob");
+		byte version = blob[2];
+		if (version != VERSION_ONE) throw new IOException("Unsupported annotations blob version: " + version);
+		byte flags = blob[3];
+		byte[] payload;
+		int offset;
+		int length;
+		if ((flags & FLAG_DEFLATED) != 0) {
+			int uncompressedLength = ((blob[4] & 0xff) << 24) | ((blob[5] & 0xff) << 16) | ((blob[6] & 0xff) << 8) | (blob[7] & 0xff);
+			payload = inflate(blob, HEADER_SIZE + 4, blob.length - HEADER_SIZE - 4, uncompressedLength);
+			offset = 0;
+			length = payload.length;
+		} else {
+			payload = blob;
+			offset = HEADER_SIZE;
+			length = blob.length - HEADER_SIZE;
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+		byte record = in.readByte();
+		if (record != expectedRecord) throw new IOException("Expected record type: " + expectedRecord + " but found: " + record);
+		return in;
+	}
+
+	private static byte[] deflate(byte[] payload) {
+		Deflater deflater = DEFLATER.get();
+		deflater.reset();
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.reset();
+		}
+	}
+
+	private static byte[] inflate(byte[] blob, int offset, int length, int uncompressedLength) throws IOException {
+		Inflater inflater = INFLATER.get();
+		inflater.reset();
+		try {
+			inflater.setInput(blob, offset, length);
+			byte[] result = new byte[uncompressedLength];
+			int total = 0;
+			while (total < uncompressedLength) {
+				int count = inflater.inflate(result, total, uncompressedLength - total);
+				if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				total += count;
+			}
+			if (total != uncompressedLength) throw new IOException("Corrupt annotations blob. Expected " + uncompressedLength + " bytes but inflated " + total);
+			return result;
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt annotations blob: " + e.getMessage());
+		} finally {
+			inflater.reset();
+		}
+	}
+
+	private static void skipFully(DataInputStream in, int count) throws IOException {
+		int remaining = count;
+		while (remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if (skipped <= 0) throw new IOException("Unexpected end of annotations blob");
+			remaining -= skipped;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		writeBytes(out, value.getBytes(UTF_8));
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = readBytes(in);
+		if (bytes == null) return null;
+		return new String(bytes, UTF_8);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		if (value == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == NULL_LENGTH) return null;
+		if (length < 0) throw new IOException("Corrupt annotations blob. Negative length: " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeLong(DataOutputStream out, Long value) throws IOException {
+		if (value == null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		out.writeLong(value);
+	}
+
+	private static Long readLong(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) return null;
+		return new Long(in.readLong());
+	}
+
+	private static void writeDate(DataOutputStream out, Date value) throws IOException {
+		writeLong(out, value == null ? null : new Long(value.getTime()));
+	}
+
+	private static Date readDate(DataInputStream in) throws IOException {
+		Long time = readLong(in);
+		if (time == null) return null;
+		return new Date(time);
+	}
+}
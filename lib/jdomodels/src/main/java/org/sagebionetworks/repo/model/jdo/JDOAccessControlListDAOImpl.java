@@ -1,8 +1,11 @@
 package org.sagebionetworks.repo.model.jdo;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.AccessControlList;
@@ -15,6 +18,7 @@ import org.sagebionetworks.repo.model.dbo.dao.DBOAccessControlListDao;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +33,9 @@ public class JDOAccessControlListDAOImpl implements AccessControlListDAO {
 	// This is better suited for simple JDBC query.
 	@Autowired
 	private SimpleJdbcTemplate simpleJdbcTemplate;
+	
+	@Autowired
+	private AccessDecisionCache accessDecisionCache;
 
 	/**
 	 * Find the access control list for the given resource
@@ -47,24 +54,45 @@ public class JDOAccessControlListDAOImpl implements AccessControlListDAO {
 	public boolean canAccess(Collection<UserGroup> groups, 
 			String resourceId, 
 			ACCESS_TYPE accessType) throws DatastoreException {
+		return getAccessTypes(groups, resourceId).contains(accessType);
+	}
 
+	/**
+	 * @return all of the access types that some group in 'groups' has on 'resourceId'.
+	 * Decisions are cached until the ACL or benefactor of the resource changes.
+	 */
+	@Transactional(readOnly = true)
+	@Override
+	public Set<ACCESS_TYPE> getAccessTypes(Collection<UserGroup> groups, String resourceId) throws DatastoreException {
+		Long nodeId = KeyFactory.stringToKey(resourceId);
+		String groupKey = AccessDecisionCache.createGroupKey(groups);
+		Long mask = accessDecisionCache.get(nodeId, groupKey);
+		if(mask != null){
+			return AccessDecisionCache.fromMask(mask);
+		}
+		// Must be read before the query.
+		long generation = accessDecisionCache.getGeneration();
 		// Build up the parameters
 		Map<String,Object> parameters = new HashMap<String,Object>();
 		int i=0;
 		for (UserGroup gId : groups) {
 			parameters.put(AuthorizationSqlUtil.BIND_VAR_PREFIX+(i++), gId.getId());
 		}
-		// Bind the type
-		parameters.put(AuthorizationSqlUtil.ACCESS_TYPE_BIND_VAR, accessType.name());
 		// Bind the node id
-		parameters.put(AuthorizationSqlUtil.NODE_ID_BIND_VAR, KeyFactory.stringToKey(resourceId));
-		String sql = AuthorizationSqlUtil.authorizationCanAccessSQL(groups.size());
+		parameters.put(AuthorizationSqlUtil.NODE_ID_BIND_VAR, nodeId);
+		String sql = AuthorizationSqlUtil.authorizationAccessTypesSQL(groups.size());
+		List<String> typeNames;
 		try{
-			Long count = simpleJdbcTemplate.queryForLong(sql, parameters);
-			return count.longValue() > 0;
+			typeNames = simpleJdbcTemplate.query(sql, new SingleColumnRowMapper<String>(String.class), parameters);
 		}catch (DataAccessException e){
 			throw new DatastoreException(e);
 		}
+		Set<ACCESS_TYPE> types = EnumSet.noneOf(ACCESS_TYPE.class);
+		for(String name: typeNames){
+			types.add(ACCESS_TYPE.valueOf(name));
+		}
+		accessDecisionCache.put(nodeId, groupKey, AccessDecisionCache.toMask(types), generation);
+		return types;
 	}
 
 
@@ -84,6 +112,7 @@ public class JDOAccessControlListDAOImpl implements AccessControlListDAO {
 	public String create(AccessControlList dto) throws DatastoreException,InvalidModelException, NotFoundException {
 		// Create a jdo
 		dto = dboAccessControlListDao.createACL(dto);
+		accessDecisionCache.invalidate(KeyFactory.stringToKey(dto.getId()));
 		return dto.getId();
 	}
 
@@ -99,12 +128,14 @@ public class JDOAccessControlListDAOImpl implements AccessControlListDAO {
 			InvalidModelException, NotFoundException,
 			ConflictingUpdateException {
 		dboAccessControlListDao.update(dto);
+		accessDecisionCache.invalidate(KeyFactory.stringToKey(dto.getId()));
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public void delete(String id) throws DatastoreException, NotFoundException {
 		dboAccessControlListDao.delete(KeyFactory.stringToKey(id));
+		accessDecisionCache.invalidate(KeyFactory.stringToKey(id));
 	}
 
 }
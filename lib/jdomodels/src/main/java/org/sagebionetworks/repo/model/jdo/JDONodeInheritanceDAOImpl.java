@@ -2,13 +2,19 @@ package org.sagebionetworks.repo.model.jdo;
 
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_BENEFACTOR_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_ID;
+import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.COL_NODE_PARENT_ID;
 import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_NODE;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.NodeInheritanceDAO;
@@ -28,10 +34,22 @@ public class JDONodeInheritanceDAOImpl implements NodeInheritanceDAO {
 	
 	private static final String SELECT_BENEFICIARIES = "SELECT "+COL_NODE_ID+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_BENEFACTOR_ID+" = ?";
 	private static final String SELECT_BENEFACTOR = "SELECT "+COL_NODE_BENEFACTOR_ID+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" = ?";
+	private static final String BIND_BENEFICIARY_IDS = "beneficiaryIds";
+	private static final String SELECT_BENEFACTORS = "SELECT "+COL_NODE_ID+", "+COL_NODE_BENEFACTOR_ID+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" IN (:"+BIND_BENEFICIARY_IDS+")";
+	private static final String BIND_PARENT_IDS = "parentIds";
+	private static final String BIND_BENEFACTOR_ID = "benefactorId";
+	private static final String SELECT_CHILDREN_WITH_BENEFACTOR = "SELECT "+COL_NODE_ID+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_PARENT_ID+" IN (:"+BIND_PARENT_IDS+") AND "+COL_NODE_BENEFACTOR_ID+" = :"+BIND_BENEFACTOR_ID;
+	private static final String UPDATE_BENEFACTORS = "UPDATE "+TABLE_NODE+" SET "+COL_NODE_BENEFACTOR_ID+" = :"+BIND_BENEFACTOR_ID+" WHERE "+COL_NODE_ID+" IN (:"+BIND_BENEFICIARY_IDS+")";
+	/**
+	 * The maximum number of ids bound to a single IN clause.
+	 */
+	public static final int MAX_IDS_PER_STATEMENT = 1000;
 	@Autowired
 	DBOBasicDao dboBasicDao;
 	@Autowired
 	private SimpleJdbcTemplate simpleJdbcTemplate;
+	@Autowired
+	private AccessDecisionCache accessDecisionCache;
 	
 	/**
 	 * Try to get a node, and throw a NotFoundException if it fails.
@@ -69,6 +87,34 @@ public class JDONodeInheritanceDAOImpl implements NodeInheritanceDAO {
 		}
 	}
 
+	@Transactional(readOnly = true)
+	@Override
+	public Map<String, String> getBenefactors(Collection<String> beneficiaryIds) throws NotFoundException, DatastoreException {
+		if(beneficiaryIds == null) throw new IllegalArgumentException("Beneficiary ids cannot be null");
+		Map<String, String> results = new HashMap<String, String>();
+		if(beneficiaryIds.isEmpty()) return results;
+		Set<Long> keys = new HashSet<Long>();
+		for(String id: beneficiaryIds){
+			keys.add(KeyFactory.stringToKey(id));
+		}
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(BIND_BENEFICIARY_IDS, keys);
+		final Map<Long, String> benefactors = new HashMap<Long, String>();
+		simpleJdbcTemplate.query(SELECT_BENEFACTORS, new RowMapper<Object>(){
+			@Override
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				benefactors.put(rs.getLong(COL_NODE_ID), KeyFactory.keyToString(rs.getLong(COL_NODE_BENEFACTOR_ID)));
+				return null;
+			}}, params);
+		// The results are keyed by the ids exactly as they were passed.
+		for(String id: beneficiaryIds){
+			String benefactor = benefactors.get(KeyFactory.stringToKey(id));
+			if(benefactor == null) throw new NotFoundException("Entity id: "+id+" not found");
+			results.put(id, benefactor);
+		}
+		return results;
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public void addBeneficiary(String beneficiaryId, String toBenefactorId) throws NotFoundException, DatastoreException {
@@ -76,6 +122,70 @@ public class JDONodeInheritanceDAOImpl implements NodeInheritanceDAO {
 		DBONode beneficiary = getNodeById(KeyFactory.stringToKey(beneficiaryId));
 		beneficiary.setBenefactorId(benefactor.getId());
 		dboBasicDao.update(beneficiary);
+		// Access decisions for this node were made using its old benefactor.
+		accessDecisionCache.invalidate(beneficiary.getId());
+	}
+
+	@Transactional(readOnly = true)
+	@Override
+	public Set<String> getChildrenWithBenefactor(Collection<String> parentIds, String benefactorId) throws DatastoreException {
+		if(parentIds == null) throw new IllegalArgumentException("Parent ids cannot be null");
+		if(benefactorId == null) throw new IllegalArgumentException("Benefactor id cannot be null");
+		Set<String> results = new HashSet<String>();
+		List<Long> keys = new ArrayList<Long>(parentIds.size());
+		for(String id: parentIds){
+			keys.add(KeyFactory.stringToKey(id));
+		}
+		Long benefactorKey = KeyFactory.stringToKey(benefactorId);
+		for(List<Long> chunk: createChunks(keys)){
+			MapSqlParameterSource params = new MapSqlParameterSource();
+			params.addValue(BIND_PARENT_IDS, chunk);
+			params.addValue(BIND_BENEFACTOR_ID, benefactorKey);
+			results.addAll(simpleJdbcTemplate.query(SELECT_CHILDREN_WITH_BENEFACTOR, new RowMapper<String>(){
+				@Override
+				public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+					return KeyFactory.keyToString(rs.getLong(COL_NODE_ID));
+				}}, params));
+		}
+		return results;
+	}
+
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void addBeneficiaries(Collection<String> beneficiaryIds, String toBenefactorId) throws NotFoundException, DatastoreException {
+		if(beneficiaryIds == null) throw new IllegalArgumentException("Beneficiary ids cannot be null");
+		DBONode benefactor = getNodeById(KeyFactory.stringToKey(toBenefactorId));
+		// We sort the ids to prevent deadlock on concurrent updates
+		TreeSet<Long> sorted = new TreeSet<Long>();
+		for(String id: beneficiaryIds){
+			sorted.add(KeyFactory.stringToKey(id));
+		}
+		for(List<Long> chunk: createChunks(sorted)){
+			MapSqlParameterSource params = new MapSqlParameterSource();
+			params.addValue(BIND_BENEFICIARY_IDS, chunk);
+			params.addValue(BIND_BENEFACTOR_ID, benefactor.getId());
+			simpleJdbcTemplate.update(UPDATE_BENEFACTORS, params);
+		}
+		// Access decisions for these nodes were made using their old benefactor.
+		accessDecisionCache.invalidate(sorted);
+	}
+
+	/**
+	 * Split the ids into chunks that are small enough to bind to a single statement.
+	 * @param ids
+	 * @return
+	 */
+	private static List<List<Long>> createChunks(Collection<Long> ids){
+		List<List<Long>> chunks = new ArrayList<List<Long>>();
+		List<Long> chunk = null;
+		for(Long id: ids){
+			if(chunk == null || chunk.size() >= MAX_IDS_PER_STATEMENT){
+				chunk = new ArrayList<Long>(MAX_IDS_PER_STATEMENT);
+				chunks.add(chunk);
+			}
+			chunk.add(id);
+		}
+		return chunks;
 	}
 
 }
@@ -98,13 +98,30 @@ public class JDOSecondaryPropertyUtils {
 	}
 	
 	/**
-	 * Convert the passed annotations to a compressed (zip) byte array
+	 * XStream instances are thread safe once configured so a single instance is shared.
+	 */
+	private static final XStream XSTREAM = createXStream();
+	
+	/**
+	 * Used for all annotation and reference blobs.
+	 */
+	private static final BinaryAnnotationsCodec CODEC = new BinaryAnnotationsCodec();
+	
+	/**
+	 * The first two bytes of any GZIP stream.
+	 */
+	private static final int GZIP_MAGIC_ONE = 0x1f;
+	private static final int GZIP_MAGIC_TWO = 0x8b;
+	
+	/**
+	 * Convert the passed annotations to a compressed byte array
 	 * @param dto
 	 * @return compressed annotations
 	 * @throws IOException 
 	 */
 	public static byte[] compressAnnotations(NamedAnnotations dto) throws IOException{
-		return compressObject(dto);
+		if(dto == null) return null;
+		return CODEC.encodeAnnotations(dto);
 	}
 	
 	public static byte[] compressObject(Object dto) throws IOException{
@@ -113,8 +130,7 @@ public class JDOSecondaryPropertyUtils {
 		BufferedOutputStream buff = new BufferedOutputStream(out);
 		GZIPOutputStream zipper = new GZIPOutputStream(buff);
 		try{
-			XStream xstream = createXStream();
-			xstream.toXML(dto, zipper);
+			XSTREAM.toXML(dto, zipper);
 			zipper.flush();
 			zipper.close();
 			return out.toByteArray();
@@ -125,48 +141,25 @@ public class JDOSecondaryPropertyUtils {
 	}
 	
 	/**
-	 * Convert the passed references to a compressed (zip) byte array
+	 * Convert the passed references to a compressed byte array
 	 * @param dto
 	 * @return the compressed references
 	 * @throws IOException 
 	 */
 	public static byte[] compressReferences(Map<String, Set<Reference>> dto) throws IOException{
 		if(dto == null) return null;
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		BufferedOutputStream buff = new BufferedOutputStream(out);
-		GZIPOutputStream zipper = new GZIPOutputStream(buff);
-		try{
-			XStream xstream = createXStream();
-			xstream.toXML(dto, zipper);
-			zipper.flush();
-			zipper.close();
-			return out.toByteArray();
-		}finally{
-			zipper.flush();
-			zipper.close();
-		}
+		return CODEC.encodeReferences(dto);
 	}
 
 	public static String toXml(NamedAnnotations dto) throws IOException{
 		StringWriter writer = new StringWriter();
-		try{
-			XStream xstream = createXStream();
-			xstream.toXML(dto, writer);
-			return writer.toString();
-		}finally{
-			
-		}
+		XSTREAM.toXML(dto, writer);
+		return writer.toString();
 	}
 	
-	@SuppressWarnings("unchecked")
 	public static NamedAnnotations fromXml(String xml) throws IOException{
 		StringReader reader = new StringReader(xml);
-		try{
-			XStream xstream = createXStream();
-			return (NamedAnnotations) xstream.fromXML(reader);
-		}finally{
-			
-		}
+		return (NamedAnnotations) XSTREAM.fromXML(reader);
 	}
 
 	public static XStream createXStream() {
@@ -177,27 +170,55 @@ public class JDOSecondaryPropertyUtils {
 	}
 	
 	/**
-	 * Read the compressed (zip) byte array into the Annotations.
+	 * Is the passed blob in the legacy GZIP+XStream format?
+	 * @param bytes
+	 * @return
+	 */
+	public static boolean isLegacyFormat(byte[] bytes){
+		return bytes != null && bytes.length >= 2 && (bytes[0] & 0xff) == GZIP_MAGIC_ONE && (bytes[1] & 0xff) == GZIP_MAGIC_TWO;
+	}
+	
+	/**
+	 * Read the compressed byte array into the Annotations.
+	 * Both the binary format and the legacy GZIP+XStream format can be read.
 	 * @param zippedByes
 	 * @return the resurrected Annotations
 	 * @throws IOException 
 	 */
-	@SuppressWarnings("unchecked")
 	public static NamedAnnotations decompressedAnnotations(byte[] zippedByes) throws IOException{
+		if(zippedByes == null) return new NamedAnnotations();
+		if(BinaryAnnotationsCodec.isBinaryFormat(zippedByes)){
+			return CODEC.decodeAnnotations(zippedByes);
+		}
 		Object o = decompressedObject(zippedByes);
 		if (o==null) return new NamedAnnotations();
 		return (NamedAnnotations)o;
 	}
-		
+
+	/**
+	 * Read only the selected keys from the compressed byte array.
+	 * The values of all other keys are skipped without being decoded. Legacy
+	 * GZIP+XStream blobs cannot be partially read so they are fully decoded.
+	 * @param zippedByes
+	 * @param keysToKeep When null all keys are read.
+	 * @param includeBlobs When false blob annotations are not read.
+	 * @return
+	 * @throws IOException
+	 */
+	public static NamedAnnotations decompressedAnnotations(byte[] zippedByes, Set<String> keysToKeep, boolean includeBlobs) throws IOException{
+		if(zippedByes == null) return new NamedAnnotations();
+		if(BinaryAnnotationsCodec.isBinaryFormat(zippedByes)){
+			return CODEC.decodeAnnotations(zippedByes, keysToKeep, includeBlobs);
+		}
+		return decompressedAnnotations(zippedByes);
+	}
+
 	public static Object decompressedObject(byte[] zippedByes) throws IOException{
 		if(zippedByes != null){
 			ByteArrayInputStream in = new ByteArrayInputStream(zippedByes);
 			GZIPInputStream unZipper = new GZIPInputStream(in);
 			try{
-				XStream xstream = createXStream();
-				if(zippedByes != null){
-					return xstream.fromXML(unZipper);
-				}
+				return XSTREAM.fromXML(unZipper);
 			}finally{
 				unZipper.close();
 			}			
@@ -206,7 +227,8 @@ public class JDOSecondaryPropertyUtils {
 	}
 
 	/**
-	 * Read the compressed (zip) byte array into the References.
+	 * Read the compressed byte array into the References.
+	 * Both the binary format and the legacy GZIP+XStream format can be read.
 	 * @param zippedByes
 	 * @return the resurrected References
 	 * @throws IOException 
@@ -214,16 +236,10 @@ public class JDOSecondaryPropertyUtils {
 	@SuppressWarnings("unchecked")
 	public static Map<String, Set<Reference>> decompressedReferences(byte[] zippedByes) throws IOException{
 		if(zippedByes != null){
-			ByteArrayInputStream in = new ByteArrayInputStream(zippedByes);
-			GZIPInputStream unZipper = new GZIPInputStream(in);
-			try{
-				XStream xstream = createXStream();
-				if(zippedByes != null){
-					return (Map<String, Set<Reference>>) xstream.fromXML(unZipper);
-				}
-			}finally{
-				unZipper.close();
-			}			
+			if(BinaryAnnotationsCodec.isBinaryFormat(zippedByes)){
+				return CODEC.decodeReferences(zippedByes);
+			}
+			return (Map<String, Set<Reference>>) decompressedObject(zippedByes);
 		}
 		// Return an empty map.
 		return new HashMap<String, Set<Reference>>();
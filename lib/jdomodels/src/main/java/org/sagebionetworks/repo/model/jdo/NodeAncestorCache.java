@@ -0,0 +1,129 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.model.jdo.NodeDAOImpl.ParentTypeName;
+import org.sagebionetworks.repo.model.util.ExpiringCache;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A bounded cache of the parent, type and name of each node, used to build
+ * entity paths without a query per ancestor.
+ * 
+ * A node is invalidated whenever it is renamed, moved or deleted. Since other
+ * repository instances cannot invalidate this cache, each entry also expires
+ * after a short time.
+ */
+public class NodeAncestorCache {
+
+	private ExpiringCache<Long, ParentTypeName> entries;
+
+	/**
+	 * Configured from the stack configuration.
+	 */
+	public NodeAncestorCache() {
+		this(StackConfiguration.getNodeAncestorCacheTimeToLiveMS(), StackConfiguration.getNodeAncestorCacheMaxSize());
+	}
+
+	/**
+	 * @param timeToLiveMS
+	 *            How long an entry can be used after it is added.
+	 * @param maxSize
+	 *            The maximum number of nodes held by this cache.
+	 */
+	public NodeAncestorCache(long timeToLiveMS, int maxSize) {
+		if (timeToLiveMS < 0) throw new IllegalArgumentException("Time to live cannot be negative");
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		this.entries = new ExpiringCache<Long, ParentTypeName>(timeToLiveMS, maxSize);
+	}
+
+	/**
+	 * The current generation. This must be read before loading the nodes
+	 * that will be passed to {@link #put(Long, ParentTypeName, long)}.
+	 * 
+	 * @return
+	 */
+	public long getGeneration() {
+		return entries.getGeneration();
+	}
+
+	/**
+	 * Get the parent, type and name of a node.
+	 * 
+	 * @param nodeId
+	 * @return null if the node is not in the cache.
+	 */
+	public ParentTypeName get(Long nodeId) {
+		if (nodeId == null) throw new IllegalArgumentException("Node ID cannot be null");
+		return entries.get(nodeId);
+	}
+
+	/**
+	 * Add a node to the cache. The node is dropped if the cache was
+	 * invalidated since the passed generation was read. When the cache is
+	 * full it is simply cleared.
+	 * 
+	 * @param nodeId
+	 * @param ptn
+	 * @param generationAtLoad
+	 */
+	public void put(Long nodeId, ParentTypeName ptn, long generationAtLoad) {
+		if (nodeId == null) throw new IllegalArgumentException("Node ID cannot be null");
+		if (ptn == null) throw new IllegalArgumentException("ParentTypeName cannot be null");
+		entries.put(nodeId, ptn, generationAtLoad);
+	}
+
+	/**
+	 * Remove a node. When called within a transaction the node is removed
+	 * again after it completes, so a value read before the transaction
+	 * committed cannot remain in the cache.
+	 * 
+	 * @param nodeId
+	 */
+	public void invalidate(final Long nodeId) {
+		if (nodeId == null) throw new IllegalArgumentException("Node ID cannot be null");
+		entries.remove(nodeId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					entries.remove(nodeId);
+				}
+			});
+		}
+	}
+
+	/**
+	 * The number of nodes currently in the cache.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The number of lookups that found a node.
+	 * 
+	 * @return
+	 */
+	public long getHitCount() {
+		return entries.getHitCount();
+	}
+
+	/**
+	 * The number of lookups that did not find a node.
+	 * 
+	 * @return
+	 */
+	public long getMissCount() {
+		return entries.getMissCount();
+	}
+
+	/**
+	 * Remove all nodes.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+}
@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,18 +41,27 @@ import org.sagebionetworks.repo.model.InvalidModelException;
 import org.sagebionetworks.repo.model.NameConflictException;
 import org.sagebionetworks.repo.model.NamedAnnotations;
 import org.sagebionetworks.repo.model.Node;
+import org.sagebionetworks.repo.model.NodeBackup;
 import org.sagebionetworks.repo.model.NodeBackupDAO;
 import org.sagebionetworks.repo.model.NodeConstants;
 import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.NodeEtag;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
 import org.sagebionetworks.repo.model.Reference;
 import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
+import org.sagebionetworks.repo.model.dbo.dao.AnnotationUtils;
 import org.sagebionetworks.repo.model.dbo.dao.DBOAnnotationsDao;
 import org.sagebionetworks.repo.model.dbo.dao.DBOReferenceDao;
+import org.sagebionetworks.repo.model.dbo.dao.ReferenceUtil;
+import org.sagebionetworks.repo.model.dbo.persistence.DBODateAnnotation;
+import org.sagebionetworks.repo.model.dbo.persistence.DBODoubleAnnotation;
+import org.sagebionetworks.repo.model.dbo.persistence.DBOLongAnnotation;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONode;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONodeType;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONodeTypeAlias;
+import org.sagebionetworks.repo.model.dbo.persistence.DBOReference;
 import org.sagebionetworks.repo.model.dbo.persistence.DBORevision;
+import org.sagebionetworks.repo.model.dbo.persistence.DBOStringAnnotation;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -75,6 +86,7 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 	private static final String GET_CURRENT_REV_NUMBER_SQL = "SELECT "+COL_CURRENT_REV+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" = ?";
 	private static final String UPDATE_ETAG_SQL = "UPDATE "+TABLE_NODE+" SET "+COL_NODE_ETAG+" = ? WHERE "+COL_NODE_ID+" = ?";
 	private static final String SQL_COUNT_NODES = "SELECT COUNT("+COL_NODE_ID+") FROM "+TABLE_NODE;
+	private static final String SQL_SELECT_ALL_ETAGS = "SELECT "+COL_NODE_ID+", "+COL_NODE_ETAG+", "+COL_NODE_PARENT_ID+" FROM "+TABLE_NODE+" ORDER BY "+COL_NODE_ID;
 	private static final String SQL_SELECT_PARENT_TYPE_NAME = "SELECT "+COL_NODE_PARENT_ID+", "+COL_NODE_TYPE+", "+COL_NODE_NAME+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" = ?";
 	private static final String SQL_GET_ALL_CHILDREN_IDS = "SELECT "+COL_NODE_ID+" FROM "+TABLE_NODE+" WHERE "+COL_NODE_PARENT_ID+" = ? ORDER BY "+COL_NODE_ID;
 	private static final String SQL_COUNT_STRING_ANNOTATIONS_FOR_NODE = "SELECT COUNT("+ANNOTATION_OWNER_ID_COLUMN+") FROM "+TABLE_STRING_ANNOTATIONS+" WHERE "+ANNOTATION_OWNER_ID_COLUMN+" = ? AND "+ANNOTATION_ATTRIBUTE_COLUMN+" = ?";
@@ -92,11 +104,29 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 	DBOBasicDao dboBasicDao;
 	@Autowired
 	DBOAnnotationsDao dboAnnotationsDao;
+	@Autowired
+	NodeAncestorCache nodeAncestorCache;
+	@Autowired
+	AccessDecisionCache accessDecisionCache;
 	
 	private static String BIND_ID_KEY = "bindId";
 	private static String SQL_ETAG_WITHOUT_LOCK = "SELECT "+COL_NODE_ETAG+" FROM "+TABLE_NODE+" WHERE ID = ?";
 	private static String SQL_ETAG_FOR_UPDATE = SQL_ETAG_WITHOUT_LOCK+" FOR UPDATE";
 	
+	private static final String BIND_ID_LIST = "bindIds";
+	private static final String SQL_SELECT_NODES = "SELECT * FROM "+TABLE_NODE+" WHERE "+COL_NODE_ID+" IN (:"+BIND_ID_LIST+")";
+	private static final String SQL_SELECT_CURRENT_REVISIONS = "SELECT R.* FROM "+TABLE_REVISION+" R, "+TABLE_NODE+" N WHERE N."+COL_NODE_ID+" IN (:"+BIND_ID_LIST+")"
+			+" AND R."+COL_REVISION_OWNER_NODE+" = N."+COL_NODE_ID+" AND R."+COL_REVISION_NUMBER+" = N."+COL_CURRENT_REV;
+	private static final RowMapper<DBONode> NODE_ROW_MAPPER = new DBONode().getTableMapping();
+	private static final RowMapper<DBORevision> REVISION_ROW_MAPPER = new DBORevision().getTableMapping();
+	
+	/**
+	 * The number of ancestors read by each pass of the path query.
+	 */
+	private static final int ANCESTOR_LEVELS_PER_QUERY = 8;
+	private static final String SQL_SELECT_PARENT_TYPE_NAMES = createAncestorsSql(1);
+	private static final String SQL_SELECT_ANCESTORS = createAncestorsSql(ANCESTOR_LEVELS_PER_QUERY);
+	
 	private static String SQL_GET_ALL_VERSION_NUMBERS = "SELECT "+COL_REVISION_NUMBER+" FROM "+TABLE_REVISION+" WHERE "+COL_REVISION_OWNER_NODE +" = ? ORDER BY "+COL_REVISION_NUMBER+" DESC";
 	
 	// Used to determine if a node id already exists
@@ -207,6 +237,133 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 		if(!startingId.equals(KeyFactory.stringToKey(id))) throw new DatastoreException("Creating a node from a backup changed the ID.");
 	}
 
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	@Override
+	public void createNewNodesFromBackup(List<NodeBackup> backups, List<NodeRevisionBackup> revisions) throws DatastoreException, InvalidModelException {
+		if(backups == null) throw new IllegalArgumentException("Backups cannot be null");
+		if(revisions == null) throw new IllegalArgumentException("Revisions cannot be null");
+		if(backups.isEmpty()) return;
+		List<DBONode> nodes = new ArrayList<DBONode>(backups.size());
+		// The current revision of each node, built from the node itself until a backup revision replaces it.
+		Map<Long, DBORevision> currentRevisions = new HashMap<Long, DBORevision>();
+		Map<Long, DBORevision> nodeRevisions = new HashMap<Long, DBORevision>();
+		Map<Long, Map<String, Set<Reference>>> nodeReferences = new HashMap<Long, Map<String, Set<Reference>>>();
+		List<Long> ids = new ArrayList<Long>(backups.size());
+		for(NodeBackup backup: backups){
+			Node dto = backup.getNode();
+			if(dto == null) throw new IllegalArgumentException("NodeBackup.node cannot be null");
+			if(dto.getETag() == null) throw new IllegalArgumentException("The backup node must have an etag");
+			if(dto.getId() == null) throw new IllegalArgumentException("The backup node must have an id");
+			if(dto.getNodeType() == null) throw new IllegalArgumentException("Node type cannot be null");
+			if(backup.getBenefactor() == null) throw new IllegalArgumentException("NodeBackup.benefactor cannot be null");
+			DBORevision rev = new DBORevision();
+			// Set the default label
+			if(dto.getVersionLabel() == null){
+				rev.setLabel(NodeConstants.DEFAULT_VERSION_LABEL);
+			}
+			if(dto.getVersionNumber() == null || dto.getVersionNumber().longValue() < 1){
+				rev.setRevisionNumber(NodeConstants.DEFAULT_VERSION_NUMBER);
+			}else{
+				rev.setRevisionNumber(dto.getVersionNumber());
+			}
+			DBONode node = new DBONode();
+			node.setCurrentRevNumber(rev.getRevisionNumber());
+			JDONodeUtils.updateFromDto(dto, node, rev);
+			node.setNodeType(EntityType.valueOf(dto.getNodeType()).getId());
+			// We want to force the use of the current eTag. See PLFM-845
+			node.seteTag(KeyFactory.stringToKey(dto.getETag()));
+			// The parent is either already in the database or earlier in this batch,
+			// and the benefactor is taken from the backup rather than the parent.
+			if(dto.getParentId() != null){
+				node.setParentId(KeyFactory.stringToKey(dto.getParentId()));
+			}
+			node.setBenefactorId(KeyFactory.stringToKey(backup.getBenefactor()));
+			rev.setOwner(node.getId());
+			if(nodeRevisions.put(node.getId(), rev) != null) throw new IllegalArgumentException("The id: "+node.getId()+" appears more than once in the batch");
+			currentRevisions.put(node.getId(), rev);
+			if(dto.getReferences() != null){
+				nodeReferences.put(node.getId(), dto.getReferences());
+			}
+			ids.add(node.getId());
+			nodes.add(node);
+		}
+		// Build the revisions and the annotations of the current revisions.
+		List<DBORevision> revisionBatch = new ArrayList<DBORevision>(revisions.size() + nodes.size());
+		List<DBOStringAnnotation> stringBatch = new ArrayList<DBOStringAnnotation>();
+		List<DBOLongAnnotation> longBatch = new ArrayList<DBOLongAnnotation>();
+		List<DBODoubleAnnotation> doubleBatch = new ArrayList<DBODoubleAnnotation>();
+		List<DBODateAnnotation> dateBatch = new ArrayList<DBODateAnnotation>();
+		for(NodeRevisionBackup rev: revisions){
+			validateNodeRevision(rev);
+			DBORevision dboRev = new DBORevision();
+			JDORevisionUtils.updateJdoFromDto(rev, dboRev);
+			DBORevision current = currentRevisions.get(dboRev.getOwner());
+			if(current == null) throw new IllegalArgumentException("The revision: "+rev.getRevisionNumber()+" belongs to node: "+rev.getNodeId()+" which is not in the batch");
+			revisionBatch.add(dboRev);
+			if(current.getRevisionNumber().equals(dboRev.getRevisionNumber())){
+				currentRevisions.put(dboRev.getOwner(), dboRev);
+				try {
+					if(dboRev.getReferences() != null){
+						Map<String, Set<Reference>> newRef = JDOSecondaryPropertyUtils.decompressedReferences(dboRev.getReferences());
+						if(newRef != null){
+							nodeReferences.put(dboRev.getOwner(), newRef);
+						}
+					}
+					NamedAnnotations nammedAnnos = JDOSecondaryPropertyUtils.decompressedAnnotations(dboRev.getAnnotations());
+					Annotations forDb = prepareAnnotationsForDBReplacement(nammedAnnos, KeyFactory.keyToString(dboRev.getOwner()));
+					stringBatch.addAll(AnnotationUtils.createStringAnnotations(dboRev.getOwner(), forDb.getStringAnnotations()));
+					longBatch.addAll(AnnotationUtils.createLongAnnotations(dboRev.getOwner(), forDb.getLongAnnotations()));
+					doubleBatch.addAll(AnnotationUtils.createDoubleAnnotations(dboRev.getOwner(), forDb.getDoubleAnnotations()));
+					dateBatch.addAll(AnnotationUtils.createDateAnnotations(dboRev.getOwner(), forDb.getDateAnnotations()));
+				} catch (IOException e) {
+					throw new DatastoreException(e);
+				}
+			}
+		}
+		// Nodes without a backup of their current revision get the revision built from the node.
+		for(DBONode node: nodes){
+			DBORevision rev = nodeRevisions.get(node.getId());
+			if(currentRevisions.get(node.getId()) == rev){
+				revisionBatch.add(rev);
+			}
+		}
+		List<DBOReference> referenceBatch = new ArrayList<DBOReference>();
+		for(Map.Entry<Long, Map<String, Set<Reference>>> entry: nodeReferences.entrySet()){
+			referenceBatch.addAll(ReferenceUtil.createDBOReferences(entry.getKey(), entry.getValue()));
+		}
+		// Make sure the ID generator has reserved all of these IDs. Any of them could be
+		// in a block leased by another instance, so each is reserved, starting with the max.
+		Collections.sort(ids, Collections.reverseOrder());
+		for(Long id: ids){
+			idGenerator.reserveId(id);
+		}
+		// The nodes are inserted in order, so each parent row exists before its children.
+		try{
+			dboBasicDao.createBatch(nodes);
+		}catch(IllegalArgumentException e){
+			checkBatchExceptionDetails(nodes, e);
+		}
+		dboBasicDao.createBatch(revisionBatch);
+		if(!referenceBatch.isEmpty()){
+			dboBasicDao.createBatch(referenceBatch);
+		}
+		if(!stringBatch.isEmpty()){
+			dboBasicDao.createBatch(stringBatch);
+		}
+		if(!longBatch.isEmpty()){
+			dboBasicDao.createBatch(longBatch);
+		}
+		if(!doubleBatch.isEmpty()){
+			dboBasicDao.createBatch(doubleBatch);
+		}
+		if(!dateBatch.isEmpty()){
+			dboBasicDao.createBatch(dateBatch);
+		}
+		// The benefactors were set by the insert rather than by the inheritance DAO,
+		// so any decisions cached for these ids must be removed here.
+		accessDecisionCache.invalidate(ids);
+	}
+
 	/**
 	 * Determine which constraint was violated and throw a more meaningful exception.
 	 * @param dto
@@ -217,6 +374,24 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 		if(e.getMessage().indexOf(CONSTRAINT_UNIQUE_CHILD_NAME) > 0) throw new NameConflictException("An entity with the name: "+name+" already exists with a parentId: "+parentId);
 		throw e;
 	}
+
+	/**
+	 * Determine which constraint a batch insert of nodes violated and throw a more meaningful exception.
+	 * The database reports the duplicate entry as the parent id and name, which identifies the node.
+	 * @param nodes
+	 * @param e
+	 */
+	private void checkBatchExceptionDetails(List<DBONode> nodes, IllegalArgumentException e) {
+		if(e.getMessage().indexOf(CONSTRAINT_UNIQUE_CHILD_NAME) > 0){
+			for(DBONode node: nodes){
+				if(node.getParentId() != null && e.getMessage().indexOf("'"+node.getParentId()+"-"+node.getName()+"'") > 0){
+					checkExceptionDetails(node.getName(), KeyFactory.keyToString(node.getParentId()), e);
+				}
+			}
+			throw new NameConflictException("An entity in the batch has the same name as another entity with the same parentId");
+		}
+		throw e;
+	}
 	
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
@@ -259,6 +434,71 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 		return JDONodeUtils.copyFromJDO(jdo, rev);
 	}
 	
+	@Transactional(readOnly = true)
+	@Override
+	public List<Node> getNodes(List<String> ids) throws NotFoundException, DatastoreException {
+		List<DBONode> nodes = getNodesById(ids);
+		Map<Long, DBORevision> revisions = getCurrentRevisions(nodes);
+		List<Node> results = new ArrayList<Node>(nodes.size());
+		for(DBONode jdo: nodes){
+			results.add(JDONodeUtils.copyFromJDO(jdo, revisions.get(jdo.getId())));
+		}
+		return results;
+	}
+	
+	/**
+	 * Load many nodes with a single query.
+	 * @param ids
+	 * @return the nodes in the same order as the passed ids.
+	 * @throws NotFoundException if any of the nodes does not exist.
+	 */
+	private List<DBONode> getNodesById(List<String> ids) throws NotFoundException, DatastoreException {
+		if(ids == null) throw new IllegalArgumentException("Ids cannot be null");
+		List<DBONode> results = new ArrayList<DBONode>(ids.size());
+		if(ids.isEmpty()) return results;
+		List<Long> keys = new ArrayList<Long>(ids.size());
+		for(String id: ids){
+			if(id == null) throw new IllegalArgumentException("Id cannot be null");
+			keys.add(KeyFactory.stringToKey(id));
+		}
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(BIND_ID_LIST, keys);
+		Map<Long, DBONode> byId = new HashMap<Long, DBONode>();
+		for(DBONode jdo: simpleJdbcTemplate.query(SQL_SELECT_NODES, NODE_ROW_MAPPER, params)){
+			byId.put(jdo.getId(), jdo);
+		}
+		for(Long key: keys){
+			DBONode jdo = byId.get(key);
+			if(jdo == null) throw new NotFoundException("Cannot find a node with id: "+KeyFactory.keyToString(key));
+			results.add(jdo);
+		}
+		return results;
+	}
+	
+	/**
+	 * Load the current revision of each passed node with a single query.
+	 * @param nodes
+	 * @return the current revisions keyed by the node id.
+	 * @throws NotFoundException if the current revision of any node does not exist.
+	 */
+	private Map<Long, DBORevision> getCurrentRevisions(List<DBONode> nodes) throws NotFoundException {
+		Map<Long, DBORevision> results = new HashMap<Long, DBORevision>();
+		if(nodes.isEmpty()) return results;
+		Set<Long> keys = new HashSet<Long>();
+		for(DBONode jdo: nodes){
+			keys.add(jdo.getId());
+		}
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(BIND_ID_LIST, keys);
+		for(DBORevision rev: simpleJdbcTemplate.query(SQL_SELECT_CURRENT_REVISIONS, REVISION_ROW_MAPPER, params)){
+			results.put(rev.getOwner(), rev);
+		}
+		for(Long key: keys){
+			if(!results.containsKey(key)) throw new NotFoundException("Cannot find the current revision of node: "+KeyFactory.keyToString(key));
+		}
+		return results;
+	}
+	
 	@Override
 	public Node getNodeForVersion(String id, Long versionNumber) throws NotFoundException, DatastoreException {
 		if(id == null) throw new IllegalArgumentException("Id cannot be null");
@@ -273,7 +513,9 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 	@Override
 	public boolean delete(String id) throws NotFoundException, DatastoreException {
 		if(id == null) throw new IllegalArgumentException("NodeId cannot be null");
-		MapSqlParameterSource prams = getNodeParameters(KeyFactory.stringToKey(id));
+		Long nodeId = KeyFactory.stringToKey(id);
+		MapSqlParameterSource prams = getNodeParameters(nodeId);
+		nodeAncestorCache.invalidate(nodeId);
 		return dboBasicDao.deleteObjectById(DBONode.class, prams);
 	}
 	
@@ -384,6 +626,18 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 		DBORevision rev = getCurrentRevision(jdo);
 		return getAnnotations(jdo, rev);
 	}
+	
+	@Transactional(readOnly = true)
+	@Override
+	public List<NamedAnnotations> getAnnotations(List<String> ids) throws NotFoundException, DatastoreException {
+		List<DBONode> nodes = getNodesById(ids);
+		Map<Long, DBORevision> revisions = getCurrentRevisions(nodes);
+		List<NamedAnnotations> results = new ArrayList<NamedAnnotations>(nodes.size());
+		for(DBONode jdo: nodes){
+			results.add(getAnnotations(jdo, revisions.get(jdo.getId())));
+		}
+		return results;
+	}
 
 	/**
 	 * Helper method to create the annotations from a given a given revision.
@@ -512,6 +766,8 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 			// Check to see if this is a duplicate name exception.
 			checkExceptionDetails(updatedNode.getName(), updatedNode.getParentId(), e);
 		}
+		// The name or parent might have changed.
+		nodeAncestorCache.invalidate(nodeId);
 		
 		dboBasicDao.update(revToUpdate);
 		// But we also need to create any new references or delete removed references, as applicable
@@ -534,6 +790,7 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 			// Check to see if this is a duplicate name exception.
 			checkExceptionDetails(toReplace.getName(), toReplace.getParentId(), e);
 		}
+		nodeAncestorCache.invalidate(nodeId);
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -736,29 +993,130 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 	@Transactional(readOnly = true)
 	@Override
 	public List<EntityHeader> getEntityPath(String nodeId) throws DatastoreException, NotFoundException {
-		// Call the recursive method
-		List<EntityHeader> results = new ArrayList<EntityHeader>();
-		appendPath(results, KeyFactory.stringToKey(nodeId));
+		if(nodeId == null) throw new IllegalArgumentException("NodeId cannot be null");
+		return getEntityPaths(Collections.singletonList(nodeId)).get(nodeId);
+	}
+	
+	@Transactional(readOnly = true)
+	@Override
+	public Map<String, List<EntityHeader>> getEntityPaths(Collection<String> nodeIds) throws DatastoreException, NotFoundException {
+		if(nodeIds == null) throw new IllegalArgumentException("NodeIds cannot be null");
+		Map<String, List<EntityHeader>> results = new HashMap<String, List<EntityHeader>>();
+		if(nodeIds.isEmpty()) return results;
+		// Must be read before any node is loaded.
+		long generation = nodeAncestorCache.getGeneration();
+		Map<String, Long> keys = new HashMap<String, Long>();
+		for(String nodeId: nodeIds){
+			keys.put(nodeId, KeyFactory.stringToKey(nodeId));
+		}
+		// The requested nodes are always read from the database so a deleted node is never served from the cache.
+		Map<Long, ParentTypeName> known = new HashMap<Long, ParentTypeName>();
+		Set<Long> toFetch = new HashSet<Long>(keys.values());
+		int levels = 1;
+		while(!toFetch.isEmpty()){
+			fetchAncestors(levels, toFetch, known, generation);
+			for(Long id: toFetch){
+				if(!known.containsKey(id)) throw new NotFoundException("Cannot find a node with id: "+KeyFactory.keyToString(id));
+			}
+			// Any ancestor that is not cached is read along with several of its own ancestors.
+			levels = ANCESTOR_LEVELS_PER_QUERY;
+			toFetch = new HashSet<Long>();
+			for(Long id: keys.values()){
+				Long missing = findFirstUnknownAncestor(id, known);
+				if(missing != null){
+					toFetch.add(missing);
+				}
+			}
+		}
+		// Build each path from the root down.
+		for(Map.Entry<String, Long> entry: keys.entrySet()){
+			List<EntityHeader> path = new ArrayList<EntityHeader>();
+			Long id = entry.getValue();
+			while(id != null){
+				ParentTypeName ptn = known.get(id);
+				path.add(0, createHeaderFromParentTypeName(KeyFactory.keyToString(id), ptn));
+				id = ptn.getParentId();
+			}
+			results.put(entry.getKey(), path);
+		}
 		return results;
 	}
 	
 	/**
-	 * A recursive method to build up the full path of of an entity.
-	 * @param results
+	 * Walk up the known ancestors of a node, adding any cached ancestors to the known map.
 	 * @param nodeId
-	 * @throws NotFoundException 
-	 * @throws DatastoreException 
+	 * @param known
+	 * @return The first ancestor that is neither known nor cached, or null if the path is complete.
+	 */
+	private Long findFirstUnknownAncestor(Long nodeId, Map<Long, ParentTypeName> known){
+		Long id = nodeId;
+		while(id != null){
+			ParentTypeName ptn = known.get(id);
+			if(ptn == null){
+				ptn = nodeAncestorCache.get(id);
+				if(ptn == null) return id;
+				known.put(id, ptn);
+			}
+			id = ptn.getParentId();
+		}
+		return null;
+	}
+	
+	/**
+	 * Read the passed nodes and their ancestors, adding every node read to both the known map and the cache.
+	 * @param levels Either one to read only the passed nodes, or ANCESTOR_LEVELS_PER_QUERY.
+	 * @param nodeIds
+	 * @param known
+	 * @param generation
+	 */
+	private void fetchAncestors(final int levels, Set<Long> nodeIds, final Map<Long, ParentTypeName> known, final long generation){
+		String sql = levels == 1 ? SQL_SELECT_PARENT_TYPE_NAMES : SQL_SELECT_ANCESTORS;
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		params.addValue(BIND_ID_LIST, nodeIds);
+		simpleJdbcTemplate.query(sql, new RowMapper<Object>() {
+			@Override
+			public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+				for(int i=0; i<levels; i++){
+					long id = rs.getLong(COL_NODE_ID+i);
+					if(rs.wasNull()) break;
+					ParentTypeName ptn = new ParentTypeName();
+					ptn.setName(rs.getString(COL_NODE_NAME+i));
+					ptn.setType(rs.getShort(COL_NODE_TYPE+i));
+					long parentId = rs.getLong(COL_NODE_PARENT_ID+i);
+					ptn.setParentId(rs.wasNull() ? null : parentId);
+					known.put(id, ptn);
+					nodeAncestorCache.put(id, ptn, generation);
+				}
+				return null;
+			}
+		}, params);
+	}
+	
+	/**
+	 * Build a query that reads the parent, type and name of each node along
+	 * with those of its ancestors, up to the given number of levels.
+	 * @param levels
+	 * @return
 	 */
-	private void appendPath(List<EntityHeader> results, Long nodeId) throws NotFoundException, DatastoreException{
-		// First Build the entity header for this node
-		ParentTypeName ptn = getParentTypeName(nodeId);
-		EntityHeader header = createHeaderFromParentTypeName(KeyFactory.keyToString(nodeId), ptn);
-		// Add at the front
-		results.add(0, header);
-		if(ptn.getParentId() != null){
-			// Recurse
-			appendPath(results, ptn.getParentId());
+	static String createAncestorsSql(int levels){
+		if(levels < 1) throw new IllegalArgumentException("Levels must be at least one");
+		StringBuilder sql = new StringBuilder();
+		sql.append("SELECT ");
+		for(int i=0; i<levels; i++){
+			if(i > 0) sql.append(", ");
+			String alias = "n"+i;
+			sql.append(alias).append(".").append(COL_NODE_ID).append(" AS ").append(COL_NODE_ID+i);
+			sql.append(", ").append(alias).append(".").append(COL_NODE_PARENT_ID).append(" AS ").append(COL_NODE_PARENT_ID+i);
+			sql.append(", ").append(alias).append(".").append(COL_NODE_TYPE).append(" AS ").append(COL_NODE_TYPE+i);
+			sql.append(", ").append(alias).append(".").append(COL_NODE_NAME).append(" AS ").append(COL_NODE_NAME+i);
+		}
+		sql.append(" FROM ").append(TABLE_NODE).append(" n0");
+		for(int i=1; i<levels; i++){
+			sql.append(" LEFT JOIN ").append(TABLE_NODE).append(" n").append(i);
+			sql.append(" ON n").append(i).append(".").append(COL_NODE_ID).append(" = n").append(i-1).append(".").append(COL_NODE_PARENT_ID);
 		}
+		sql.append(" WHERE n0.").append(COL_NODE_ID).append(" IN (:").append(BIND_ID_LIST).append(")");
+		return sql.toString();
 	}
 
 	@Transactional(readOnly = true)
@@ -884,6 +1242,22 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 	public long getTotalNodeCount() {
 		return simpleJdbcTemplate.queryForLong(SQL_COUNT_NODES, new HashMap<String, String>());
 	}
+
+	@Transactional(readOnly = true)
+	@Override
+	public List<NodeEtag> getAllNodeEtags() throws DatastoreException {
+		return simpleJdbcTemplate.query(SQL_SELECT_ALL_ETAGS, new RowMapper<NodeEtag>() {
+			@Override
+			public NodeEtag mapRow(ResultSet rs, int rowNum) throws SQLException {
+				String id = KeyFactory.keyToString(rs.getLong(COL_NODE_ID));
+				String etag = Long.toString(rs.getLong(COL_NODE_ETAG));
+				long parentId = rs.getLong(COL_NODE_PARENT_ID);
+				// Only the root has no parent.
+				String parent = rs.wasNull() ? null : KeyFactory.keyToString(parentId);
+				return new NodeEtag(id, etag, parent);
+			}
+		});
+	}
 	
 	/**
 	 * Is the passed revision valid?
@@ -961,6 +1335,7 @@ public class NodeDAOImpl implements NodeDAO, NodeBackupDAO, InitializingBean {
 		//make the update 
 		node.setParentId(newParentNode.getId());
 		dboBasicDao.update(node);
+		nodeAncestorCache.invalidate(node.getId());
 		return true;
 	}
 	
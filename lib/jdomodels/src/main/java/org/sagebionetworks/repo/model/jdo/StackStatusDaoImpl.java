@@ -8,7 +8,15 @@ import static org.sagebionetworks.repo.model.query.jdo.SqlConstants.TABLE_STACK_
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.sagebionetworks.StackConfiguration;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.StackStatusDao;
 import org.sagebionetworks.repo.model.dbo.DBOBasicDao;
@@ -16,6 +24,7 @@ import org.sagebionetworks.repo.model.dbo.persistence.DBOStackStatus;
 import org.sagebionetworks.repo.model.status.StackStatus;
 import org.sagebionetworks.repo.model.status.StatusEnum;
 import org.sagebionetworks.repo.web.NotFoundException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.RowMapper;
@@ -23,8 +32,12 @@ import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-public class StackStatusDaoImpl implements StackStatusDao, InitializingBean {
+public class StackStatusDaoImpl implements StackStatusDao, InitializingBean, DisposableBean {
+	
+	static private Log log = LogFactory.getLog(StackStatusDaoImpl.class);
 	
 	public static final String SQL_GET_STATUS = "SELECT "+COL_STACK_STATUS_STATUS+" FROM "+TABLE_STACK_STATUS+" WHERE "+COL_NODE_ID+" = "+DBOStackStatus.STATUS_ID;
 	
@@ -36,6 +49,46 @@ public class StackStatusDaoImpl implements StackStatusDao, InitializingBean {
 	// This is better suited for simple JDBC query.
 	@Autowired
 	private SimpleJdbcTemplate simpleJdbcTempalte;
+	
+	/**
+	 * A status read from the database and the time it was read.
+	 */
+	private static class Snapshot {
+		StackStatus status;
+		long loadedOn;
+		
+		Snapshot(StackStatus status, long loadedOn){
+			this.status = status;
+			this.loadedOn = loadedOn;
+		}
+	}
+	
+	/**
+	 * Shared by every instance in this JVM, so an update made through any instance is seen by all of them.
+	 */
+	private static AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+	
+	private long refreshIntervalMS;
+	private long maxStalenessMS;
+	private ScheduledExecutorService refresher;
+	
+	/**
+	 * Configured from the stack configuration.
+	 */
+	public StackStatusDaoImpl(){
+		this(StackConfiguration.getStackStatusRefreshIntervalMS(), StackConfiguration.getStackStatusMaxStalenessMS());
+	}
+	
+	/**
+	 * @param refreshIntervalMS How often the snapshot is reloaded from the database.
+	 * @param maxStalenessMS The oldest a snapshot can be before a request must reload it.
+	 */
+	public StackStatusDaoImpl(long refreshIntervalMS, long maxStalenessMS){
+		if(refreshIntervalMS < 1) throw new IllegalArgumentException("The refresh interval must be at least one ms");
+		if(maxStalenessMS < refreshIntervalMS) throw new IllegalArgumentException("The max staleness cannot be less than the refresh interval");
+		this.refreshIntervalMS = refreshIntervalMS;
+		this.maxStalenessMS = maxStalenessMS;
+	}
 
 
 	/**
@@ -54,6 +107,7 @@ public class StackStatusDaoImpl implements StackStatusDao, InitializingBean {
 			jdo.setCurrentMessage(dto.getCurrentMessage());
 			jdo.setPendingMessage(dto.getPendingMaintenanceMessage());
 			dboBasicDao.update(jdo);
+			pushSnapshot(copy(dto));
 		}catch(NotFoundException e){
 			throw new RuntimeException("Failed to get the current status!!!!",e);
 		} catch (DatastoreException e) {
@@ -78,6 +132,77 @@ public class StackStatusDaoImpl implements StackStatusDao, InitializingBean {
 			status.setCurrentMessage(DBOStackStatus.DEFAULT_MESSAGE);
 			dboBasicDao.createNew(status);
 		}
+		// Keep the snapshot fresh so requests do not need to wait for the database.
+		refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "stack-status-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		refresher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try{
+					refreshSnapshot();
+				}catch(Exception e){
+					// The next request will reload the status if the snapshot gets too old.
+					log.warn("Failed to refresh the stack status", e);
+				}
+			}
+		}, 0, refreshIntervalMS, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if(refresher != null){
+			refresher.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Replace the snapshot with an updated status once the update commits.
+	 * @param status
+	 */
+	private void pushSnapshot(final StackStatus status){
+		if(TransactionSynchronizationManager.isSynchronizationActive()){
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					snapshot.set(new Snapshot(status, System.currentTimeMillis()));
+				}
+			});
+		}else{
+			snapshot.set(new Snapshot(status, System.currentTimeMillis()));
+		}
+	}
+	
+	/**
+	 * Reload the snapshot from the database. The loaded status is dropped if an update
+	 * replaced the snapshot while it was being read.
+	 * @return The current snapshot.
+	 */
+	private Snapshot refreshSnapshot(){
+		Snapshot before = snapshot.get();
+		Snapshot loaded = new Snapshot(getFullCurrentStatus(), System.currentTimeMillis());
+		if(snapshot.compareAndSet(before, loaded)){
+			return loaded;
+		}
+		return snapshot.get();
+	}
+	
+	/**
+	 * Copy a status so the snapshot cannot be changed by callers.
+	 * @param status
+	 * @return
+	 */
+	private static StackStatus copy(StackStatus status){
+		StackStatus copy = new StackStatus();
+		copy.setStatus(status.getStatus());
+		copy.setCurrentMessage(status.getCurrentMessage());
+		copy.setPendingMaintenanceMessage(status.getPendingMaintenanceMessage());
+		return copy;
 	}
 	
 	/**
@@ -113,6 +238,16 @@ public class StackStatusDaoImpl implements StackStatusDao, InitializingBean {
 		return simpleJdbcTempalte.queryForObject(SQL_GET_ALL_STATUS, mapper);
 	}
 
+	@Override
+	public StackStatus getSnapshotStatus() {
+		Snapshot current = snapshot.get();
+		if(current == null || System.currentTimeMillis() - current.loadedOn > maxStalenessMS){
+			// The refresher has fallen behind so this request must wait for the database.
+			current = refreshSnapshot();
+		}
+		return copy(current.status);
+	}
+
 	@Transactional(readOnly = true)
 	@Override
 	public StatusEnum getCurrentStatus() {
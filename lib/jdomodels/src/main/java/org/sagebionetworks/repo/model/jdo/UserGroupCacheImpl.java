@@ -1,77 +1,122 @@
 package org.sagebionetworks.repo.model.jdo;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.sagebionetworks.repo.model.query.jdo.SqlConstants;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
- * A simple cache for getting user names from user ids and user ids from user names. 
+ * A simple cache for getting user names from user ids and user ids from user names.
+ *
+ * Lookups do not take a lock. Changes are made to both maps while holding a
+ * single lock so a name and id are always added and removed together. A miss
+ * is a single query, so no transaction is started for a lookup.
+ *
  * @author jmhill
  *
  */
-@Transactional(readOnly = true)
 public class UserGroupCacheImpl implements UserGroupCache {
-	
+
 	// Get an ID using the name.
 	private static final String SQL_GET_ID_FOR_NAME = "SELECT "+SqlConstants.COL_USER_GROUP_ID+" FROM "+SqlConstants.TABLE_USER_GROUP+" WHERE "+SqlConstants.COL_USER_GROUP_NAME+" = ?";
+	// Get a name using the ID.
+	private static final String SQL_GET_NAME_FOR_ID = "SELECT "+SqlConstants.COL_USER_GROUP_NAME+" FROM "+SqlConstants.TABLE_USER_GROUP+" WHERE "+SqlConstants.COL_USER_GROUP_ID+" = ?";
 
 	@Autowired
 	private SimpleJdbcTemplate simpleJdbcTempalte;
-	
-	private Map<String, Long> mapNamesToId = Collections.synchronizedMap(new HashMap<String, Long>());
-	private Map<Long, String> mapIdToName = Collections.synchronizedMap(new HashMap<Long, String>());
 
-	@Transactional(readOnly = true)
+	private ConcurrentMap<String, Long> mapNamesToId = new ConcurrentHashMap<String, Long>();
+	private ConcurrentMap<Long, String> mapIdToName = new ConcurrentHashMap<Long, String>();
+	/**
+	 * Guards all changes to the two maps.
+	 */
+	private Object writeLock = new Object();
+	/**
+	 * Incremented on every delete so a name read before a delete is never
+	 * added after it.
+	 */
+	private AtomicLong generation = new AtomicLong(0);
+
 	@Override
 	public Long getIdForUserGroupName(String name) throws NotFoundException {
 		if(name == null) throw new IllegalArgumentException("Name cannot be null");
 		// Check the cache
 		Long id = mapNamesToId.get(name);
 		if(id == null){
+			long generationAtLoad = generation.get();
 			try{
 				id = simpleJdbcTempalte.queryForLong(SQL_GET_ID_FOR_NAME, name);
 			}catch(Exception e){
 				throw new NotFoundException("Could not find a principal named: "+name);
 			}
-			mapNamesToId.put(name, id);
-			mapIdToName.put(id, name);
+			put(name, id, generationAtLoad);
 		}
 		return id;
 	}
 
-	@Transactional(readOnly = true)
 	@Override
 	public String getUserGroupNameForId(Long id) throws NotFoundException {
 		if(id == null) throw new IllegalArgumentException("ID cannot be null");
 		// Check the cache
 		String name = mapIdToName.get(id);
 		if(name == null){
+			long generationAtLoad = generation.get();
 			try{
-				name = simpleJdbcTempalte.queryForObject("SELECT "+SqlConstants.COL_USER_GROUP_NAME+" FROM "+SqlConstants.TABLE_USER_GROUP+" WHERE "+SqlConstants.COL_USER_GROUP_ID+" = ?", String.class, id);
+				name = simpleJdbcTempalte.queryForObject(SQL_GET_NAME_FOR_ID, String.class, id);
 			}catch(Exception e){
-				throw new NotFoundException("Could not find a principal named: "+name);
+				throw new NotFoundException("Could not find a principal with id: "+id);
 			}
-			mapIdToName.put(id, name);
-			mapNamesToId.put(name, id);
+			put(name, id, generationAtLoad);
 		}
 		return name;
 	}
 
+	/**
+	 * Add a name and id to both maps. Any other id currently mapped to the name,
+	 * or name currently mapped to the id, is removed first so the two maps
+	 * always agree.
+	 *
+	 * @param name
+	 * @param id
+	 * @param generationAtLoad
+	 */
+	private void put(String name, Long id, long generationAtLoad){
+		synchronized(writeLock){
+			if(generation.get() != generationAtLoad) return;
+			Long oldId = mapNamesToId.put(name, id);
+			if(oldId != null && !oldId.equals(id)){
+				mapIdToName.remove(oldId);
+			}
+			String oldName = mapIdToName.put(id, name);
+			if(oldName != null && !oldName.equals(name)){
+				mapNamesToId.remove(oldName);
+			}
+		}
+	}
+
 	@Override
 	public void delete(Long id) {
 		if(id == null) throw new IllegalArgumentException("ID cannot be null");
-		String name = mapIdToName.get(id);
-		if(name != null){
-			mapNamesToId.remove(name);
+		synchronized(writeLock){
+			generation.incrementAndGet();
+			String name = mapIdToName.remove(id);
+			if(name != null){
+				mapNamesToId.remove(name);
+			}
 		}
-		mapIdToName.remove(id);
-		
+	}
+
+	/**
+	 * The number of principals currently in the cache.
+	 *
+	 * @return
+	 */
+	public int size(){
+		return mapIdToName.size();
 	}
 
 }
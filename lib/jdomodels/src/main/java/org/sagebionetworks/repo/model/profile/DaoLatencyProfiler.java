@@ -0,0 +1,65 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.List;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Records the latency of every DBOBasicDao operation in the LatencyRegistry.
+ * Each operation is named after the method and the database object it works
+ * on, for example "createNew.DBONode".
+ */
+@Aspect
+public class DaoLatencyProfiler {
+
+	private static final long NANOSECOND_PER_MILLISECOND = 1000000L;
+
+	private LatencyRegistry latencyRegistry;
+
+	/**
+	 * Injected via Spring
+	 * @param latencyRegistry
+	 */
+	public void setLatencyRegistry(LatencyRegistry latencyRegistry) {
+		this.latencyRegistry = latencyRegistry;
+	}
+
+	/**
+	 * Time each call to the DBOBasicDao.
+	 * @param pjp
+	 * @return
+	 * @throws Throwable
+	 */
+	@Around("execution(* org.sagebionetworks.repo.model.dbo.DBOBasicDao.*(..))")
+	public Object doBasicProfiling(ProceedingJoinPoint pjp) throws Throwable {
+		long start = System.nanoTime();
+		try {
+			return pjp.proceed();
+		} finally {
+			long timeMS = (System.nanoTime() - start) / NANOSECOND_PER_MILLISECOND;
+			latencyRegistry.record(LatencyRegistry.DAO, getName(pjp.getSignature().getName(), pjp.getArgs()), timeMS);
+		}
+	}
+
+	/**
+	 * The name of an operation is the method name followed by the simple name
+	 * of the database object class it was called with.
+	 *
+	 * @param methodName
+	 * @param args
+	 * @return
+	 */
+	static String getName(String methodName, Object[] args) {
+		if (args == null || args.length < 1 || args[0] == null) return methodName;
+		Object first = args[0];
+		if (first instanceof List) {
+			List<?> batch = (List<?>) first;
+			if (batch.isEmpty() || batch.get(0) == null) return methodName;
+			first = batch.get(0);
+		}
+		Class<?> clazz = (first instanceof Class) ? (Class<?>) first : first.getClass();
+		return methodName + "." + clazz.getSimpleName();
+	}
+}
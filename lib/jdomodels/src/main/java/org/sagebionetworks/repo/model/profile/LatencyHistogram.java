@@ -0,0 +1,271 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the latency of a single method. Recording a latency does not
+ * allocate or take a lock: each thread updates one of a fixed set of cells,
+ * and each cell keeps a count, sum, min, max and a histogram with power of two
+ * buckets. The cells are combined when a snapshot is taken, so the memory used
+ * is the same no matter how many calls are recorded.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Bucket zero holds latencies of 0 ms and bucket i holds latencies from
+	 * 2^(i-1) up to 2^i ms. The last bucket holds everything longer.
+	 */
+	static final int NUMBER_OF_BUCKETS = 40;
+
+	/**
+	 * One stripe of the histogram.
+	 */
+	private static class Cell {
+		AtomicLong count = new AtomicLong(0);
+		AtomicLong sum = new AtomicLong(0);
+		AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+		AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	}
+
+	private final Cell[] cells;
+	private final int mask;
+
+	/**
+	 * Create a histogram with one cell per available processor.
+	 */
+	public LatencyHistogram() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes
+	 *            The number of cells to spread updates over. Rounded up to a
+	 *            power of two.
+	 */
+	public LatencyHistogram(int stripes) {
+		if (stripes < 1) {
+			throw (new IllegalArgumentException());
+		}
+		int size = 1;
+		while (size < stripes) {
+			size <<= 1;
+		}
+		cells = new Cell[size];
+		for (int i = 0; i < size; i++) {
+			cells[i] = new Cell();
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * Record a single latency.
+	 *
+	 * @param latencyMS
+	 * @throws IllegalArgumentException
+	 *             if the latency is negative
+	 */
+	public void record(long latencyMS) {
+		if (latencyMS < 0) {
+			throw (new IllegalArgumentException());
+		}
+		Cell cell = cells[(int) Thread.currentThread().getId() & mask];
+		cell.count.incrementAndGet();
+		cell.sum.addAndGet(latencyMS);
+		cell.buckets.incrementAndGet(bucketFor(latencyMS));
+		long min = cell.min.get();
+		while (latencyMS < min && !cell.min.compareAndSet(min, latencyMS)) {
+			min = cell.min.get();
+		}
+		long max = cell.max.get();
+		while (latencyMS > max && !cell.max.compareAndSet(max, latencyMS)) {
+			max = cell.max.get();
+		}
+	}
+
+	/**
+	 * The bucket for a latency.
+	 *
+	 * @param latencyMS
+	 * @return
+	 */
+	static int bucketFor(long latencyMS) {
+		int bucket = 64 - Long.numberOfLeadingZeros(latencyMS);
+		return Math.min(bucket, NUMBER_OF_BUCKETS - 1);
+	}
+
+	/**
+	 * The largest latency held by a bucket.
+	 *
+	 * @param bucket
+	 * @return
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket == 0) {
+			return 0;
+		}
+		return (1L << bucket) - 1;
+	}
+
+	/**
+	 * Combine the cells without resetting them.
+	 *
+	 * @return
+	 */
+	public Snapshot snapshot() {
+		return combine(false);
+	}
+
+	/**
+	 * Combine the cells and reset them, so the next snapshot only holds the
+	 * latencies recorded after this call.
+	 *
+	 * @return
+	 */
+	public Snapshot snapshotAndReset() {
+		return combine(true);
+	}
+
+	private Snapshot combine(boolean reset) {
+		long count = 0;
+		long sum = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		long[] buckets = new long[NUMBER_OF_BUCKETS];
+		for (Cell cell : cells) {
+			if (reset) {
+				count += cell.count.getAndSet(0);
+				sum += cell.sum.getAndSet(0);
+				min = Math.min(min, cell.min.getAndSet(Long.MAX_VALUE));
+				max = Math.max(max, cell.max.getAndSet(Long.MIN_VALUE));
+				for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+					buckets[i] += cell.buckets.getAndSet(i, 0);
+				}
+			} else {
+				count += cell.count.get();
+				sum += cell.sum.get();
+				min = Math.min(min, cell.min.get());
+				max = Math.max(max, cell.max.get());
+				for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+					buckets[i] += cell.buckets.get(i);
+				}
+			}
+		}
+		return new Snapshot(count, sum, min, max, buckets);
+	}
+
+	/**
+	 * The combined latencies of a histogram at one point in time.
+	 */
+	public static class Snapshot {
+		private final long count;
+		private final long sum;
+		private final long min;
+		private final long max;
+		private final long[] buckets;
+
+		Snapshot(long count, long sum, long min, long max, long[] buckets) {
+			this.count = count;
+			this.sum = sum;
+			this.min = (count == 0) ? 0 : min;
+			this.max = (count == 0) ? 0 : max;
+			this.buckets = buckets;
+		}
+
+		/**
+		 * Getter for the number of latencies recorded.
+		 * @return long
+		 */
+		public long getSampleCount() {
+			return count;
+		}
+
+		/**
+		 * Getter for the sum of the latencies.
+		 * @return long
+		 */
+		public long getSum() {
+			return sum;
+		}
+
+		/**
+		 * Getter for the smallest latency.
+		 * @return long
+		 */
+		public long getMinimum() {
+			return min;
+		}
+
+		/**
+		 * Getter for the largest latency.
+		 * @return long
+		 */
+		public long getMaximum() {
+			return max;
+		}
+
+		/**
+		 * Estimate a percentile from the buckets. The result is the upper
+		 * bound of the bucket that holds the percentile, but never more than
+		 * the largest latency.
+		 *
+		 * @param percentile
+		 *            between 0 and 100
+		 * @return long
+		 * @throws IllegalArgumentException
+		 *             if the percentile is out of range
+		 */
+		public long getPercentile(double percentile) {
+			if (percentile < 0 || percentile > 100) {
+				throw (new IllegalArgumentException());
+			}
+			if (count == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(percentile / 100.0 * count);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank && seen > 0) {
+					return Math.max(min, Math.min(max, upperBoundOf(i)));
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * Getter for the estimated median latency.
+		 * @return long
+		 */
+		public long getP50() {
+			return getPercentile(50);
+		}
+
+		/**
+		 * Getter for the estimated 90th percentile latency.
+		 * @return long
+		 */
+		public long getP90() {
+			return getPercentile(90);
+		}
+
+		/**
+		 * Getter for the estimated 99th percentile latency.
+		 * @return long
+		 */
+		public long getP99() {
+			return getPercentile(99);
+		}
+
+		/**
+		 * toString method.
+		 * @return String
+		 */
+		public String toString() {
+			return "count=" + count + " sum=" + sum + " min=" + min + " max="
+					+ max + " p50=" + getP50() + " p90=" + getP90() + " p99="
+					+ getP99();
+		}
+	}
+}
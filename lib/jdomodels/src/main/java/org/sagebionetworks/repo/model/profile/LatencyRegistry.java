@@ -0,0 +1,146 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagebionetworks.StackConfiguration;
+
+/**
+ * Holds the latency histograms of this instance, grouped by category
+ * (controllers, DAO operations, JDBC statements and connection pool waits)
+ * and then by name. Nothing is sent anywhere: the histograms are read through
+ * the admin API, so hot paths can be found without CloudWatch.
+ *
+ * The number of names in each category is capped, so a caller that builds
+ * names from unbounded input cannot grow the registry without limit. Latencies
+ * for a new name in a full category are counted as dropped.
+ */
+public class LatencyRegistry {
+
+	/**
+	 * Latency of each controller method.
+	 */
+	public static final String CONTROLLER = "controller";
+	/**
+	 * Latency of each DBOBasicDao operation, by database object.
+	 */
+	public static final String DAO = "dao";
+	/**
+	 * Latency of each JDBC statement execution.
+	 */
+	public static final String JDBC = "jdbc";
+	/**
+	 * Time spent waiting for a connection from the pool.
+	 */
+	public static final String CONNECTION_POOL = "connectionPool";
+
+	private final int maxNamesPerCategory;
+	private ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> categories = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+	private AtomicLong droppedCount = new AtomicLong(0);
+
+	/**
+	 * Create a registry with the maximum number of names per category from
+	 * the stack configuration.
+	 */
+	public LatencyRegistry() {
+		this(StackConfiguration.getLatencyRegistryMaxNamesPerCategory());
+	}
+
+	/**
+	 * @param maxNamesPerCategory
+	 *            The maximum number of names tracked in each category.
+	 */
+	public LatencyRegistry(int maxNamesPerCategory) {
+		if (maxNamesPerCategory < 1) throw new IllegalArgumentException("Max names per category must be at least one");
+		this.maxNamesPerCategory = maxNamesPerCategory;
+	}
+
+	/**
+	 * Record a single latency.
+	 *
+	 * @param category
+	 * @param name
+	 * @param latencyMS
+	 */
+	public void record(String category, String name, long latencyMS) {
+		if (category == null) throw new IllegalArgumentException("Category cannot be null");
+		if (name == null) throw new IllegalArgumentException("Name cannot be null");
+		LatencyHistogram histogram = getHistogram(category, name);
+		if (histogram == null) {
+			droppedCount.incrementAndGet();
+			return;
+		}
+		histogram.record(latencyMS);
+	}
+
+	/**
+	 * Get the histogram for a name, creating it if there is room.
+	 *
+	 * @param category
+	 * @param name
+	 * @return null if the category is full.
+	 */
+	private LatencyHistogram getHistogram(String category, String name) {
+		ConcurrentMap<String, LatencyHistogram> byName = categories.get(category);
+		if (byName == null) {
+			byName = new ConcurrentHashMap<String, LatencyHistogram>();
+			ConcurrentMap<String, LatencyHistogram> existing = categories.putIfAbsent(category, byName);
+			if (existing != null) {
+				byName = existing;
+			}
+		}
+		LatencyHistogram histogram = byName.get(name);
+		if (histogram == null) {
+			// The cap can be passed by a few names when threads race here, which is fine.
+			if (byName.size() >= maxNamesPerCategory) return null;
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = byName.putIfAbsent(name, histogram);
+			if (existing != null) {
+				histogram = existing;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Take a snapshot of every histogram, sorted by category and name.
+	 *
+	 * @param reset
+	 *            When true each histogram is reset, so the next call only
+	 *            returns the latencies recorded after this one.
+	 * @return
+	 */
+	public Map<String, Map<String, LatencyHistogram.Snapshot>> getSnapshots(boolean reset) {
+		Map<String, Map<String, LatencyHistogram.Snapshot>> results = new TreeMap<String, Map<String, LatencyHistogram.Snapshot>>();
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> category : categories.entrySet()) {
+			Map<String, LatencyHistogram.Snapshot> byName = new TreeMap<String, LatencyHistogram.Snapshot>();
+			for (Map.Entry<String, LatencyHistogram> entry : category.getValue().entrySet()) {
+				LatencyHistogram histogram = entry.getValue();
+				byName.put(entry.getKey(), reset ? histogram.snapshotAndReset() : histogram.snapshot());
+			}
+			results.put(category.getKey(), byName);
+		}
+		return results;
+	}
+
+	/**
+	 * The number of latencies that were not recorded because their category
+	 * was full.
+	 *
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Remove all histograms and reset the dropped count.
+	 */
+	public void clear() {
+		categories.clear();
+		droppedCount.set(0);
+	}
+}
@@ -0,0 +1,249 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Wraps the connection pool so the time spent waiting for a connection and
+ * the time spent executing each JDBC statement is recorded in the
+ * LatencyRegistry. Every query made through the SimpleJdbcTemplate or a
+ * transaction manager that uses this DataSource is covered.
+ *
+ * When a SqlStatementRegistry is set, each execution is also recorded by its
+ * normalized SQL along with the rows it read or changed, and slow executions
+ * are kept in its slow query log. Bind values are never captured.
+ *
+ * Connections, statements and result sets are wrapped with dynamic proxies,
+ * so this works with any JDBC driver and pool.
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+	private static final long NANOSECOND_PER_MILLISECOND = 1000000L;
+	/**
+	 * The name used for connection pool waits.
+	 */
+	public static final String GET_CONNECTION = "getConnection";
+
+	private final LatencyRegistry latencyRegistry;
+	private SqlStatementRegistry sqlStatementRegistry;
+
+	/**
+	 * @param targetDataSource
+	 *            The connection pool.
+	 * @param latencyRegistry
+	 *            Where latencies are recorded.
+	 */
+	public ProfilingDataSource(DataSource targetDataSource, LatencyRegistry latencyRegistry) {
+		super(targetDataSource);
+		if (latencyRegistry == null) throw new IllegalArgumentException("LatencyRegistry cannot be null");
+		this.latencyRegistry = latencyRegistry;
+	}
+
+	/**
+	 * @param targetDataSource
+	 *            The connection pool.
+	 * @param latencyRegistry
+	 *            Where latencies are recorded.
+	 * @param sqlStatementRegistry
+	 *            Where the statistics of each statement are recorded.
+	 */
+	public ProfilingDataSource(DataSource targetDataSource, LatencyRegistry latencyRegistry, SqlStatementRegistry sqlStatementRegistry) {
+		this(targetDataSource, latencyRegistry);
+		this.sqlStatementRegistry = sqlStatementRegistry;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return wrapConnection(getTargetDataSource().getConnection());
+		} finally {
+			latencyRegistry.record(LatencyRegistry.CONNECTION_POOL, GET_CONNECTION, elapsedMS(start));
+		}
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return wrapConnection(getTargetDataSource().getConnection(username, password));
+		} finally {
+			latencyRegistry.record(LatencyRegistry.CONNECTION_POOL, GET_CONNECTION, elapsedMS(start));
+		}
+	}
+
+	private static long elapsedMS(long startNanos) {
+		return (System.nanoTime() - startNanos) / NANOSECOND_PER_MILLISECOND;
+	}
+
+	private Connection wrapConnection(Connection target) {
+		return (Connection) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+				new Class[] { Connection.class }, new ConnectionHandler(target));
+	}
+
+	/**
+	 * Passes every call to the real connection, and wraps each statement it
+	 * creates.
+	 */
+	private class ConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			// A wrapped connection is only equal to itself.
+			if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(method.getName()) && args == null) {
+				return System.identityHashCode(proxy);
+			}
+			Object result = invokeTarget(target, method, args);
+			if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+				// The SQL of a prepared statement or call is given when it is created.
+				String sql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : null;
+				// Proxy the interface the caller asked for: Statement, PreparedStatement or CallableStatement.
+				return Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+						new Class[] { method.getReturnType() }, new StatementHandler((Statement) result, (Connection) proxy, sql));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Times each execute call made on a statement.
+	 */
+	private class StatementHandler implements InvocationHandler {
+
+		private final Statement target;
+		private final Connection connection;
+		private final String preparedSql;
+
+		StatementHandler(Statement target, Connection connection, String preparedSql) {
+			this.target = target;
+			this.connection = connection;
+			this.preparedSql = preparedSql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getConnection".equals(name)) {
+				// Callers must see the same connection that created the statement.
+				return connection;
+			}
+			if (!name.startsWith("execute")) {
+				return invokeTarget(target, method, args);
+			}
+			// A plain statement is given its SQL when it is executed.
+			String sql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : preparedSql;
+			long start = System.nanoTime();
+			boolean failed = true;
+			Object result = null;
+			try {
+				result = invokeTarget(target, method, args);
+				failed = false;
+			} finally {
+				long timeMS = elapsedMS(start);
+				latencyRegistry.record(LatencyRegistry.JDBC, name, timeMS);
+				if (sqlStatementRegistry != null && sql != null) {
+					StatementStatistics stats = sqlStatementRegistry.record(sql, timeMS, failed);
+					if (stats != null) {
+						result = countRows(stats, proxy, result);
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Count the rows changed by an update, or wrap a result set to count
+		 * the rows read from it.
+		 */
+		private Object countRows(StatementStatistics stats, Object statement, Object result) {
+			if (result instanceof Integer) {
+				stats.addRowsUpdated(Math.max(0, (Integer) result));
+			} else if (result instanceof int[]) {
+				for (int count : (int[]) result) {
+					stats.addRowsUpdated(Math.max(0, count));
+				}
+			} else if (result instanceof ResultSet) {
+				return Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+						new Class[] { ResultSet.class }, new ResultSetHandler((ResultSet) result, (Statement) statement, stats));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Counts the rows read from a result set, and adds them to the statistics
+	 * of its statement once it is exhausted or closed.
+	 */
+	private static class ResultSetHandler implements InvocationHandler {
+
+		private final ResultSet target;
+		private final Statement statement;
+		private final StatementStatistics stats;
+		private long rows = 0;
+		private boolean counted = false;
+
+		ResultSetHandler(ResultSet target, Statement statement, StatementStatistics stats) {
+			this.target = target;
+			this.statement = statement;
+			this.stats = stats;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getStatement".equals(name)) {
+				return statement;
+			}
+			if ("close".equals(name)) {
+				addRows();
+				return invokeTarget(target, method, args);
+			}
+			Object result = invokeTarget(target, method, args);
+			if ("next".equals(name)) {
+				if (Boolean.TRUE.equals(result)) {
+					rows++;
+				} else {
+					addRows();
+				}
+			}
+			return result;
+		}
+
+		private void addRows() {
+			if (!counted) {
+				counted = true;
+				stats.addRowsReturned(rows);
+			}
+		}
+	}
+
+	/**
+	 * Invoke a method on the real object, throwing whatever it throws.
+	 */
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.Date;
+
+/**
+ * A single execution of a SQL statement that took longer than the slow query
+ * threshold. Only the normalized SQL is kept, so no bind values or literals
+ * are held.
+ */
+public class SlowQuery {
+
+	private final String sql;
+	private final long latencyMS;
+	private final Date timestamp;
+	private final String threadName;
+
+	/**
+	 * @param sql
+	 *            The normalized SQL.
+	 * @param latencyMS
+	 * @param timestamp
+	 *            When the statement finished.
+	 * @param threadName
+	 *            The thread that ran the statement.
+	 */
+	public SlowQuery(String sql, long latencyMS, Date timestamp, String threadName) {
+		this.sql = sql;
+		this.latencyMS = latencyMS;
+		this.timestamp = timestamp;
+		this.threadName = threadName;
+	}
+
+	/**
+	 * Getter for the normalized SQL.
+	 * @return String
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Getter for the latency.
+	 * @return long
+	 */
+	public long getLatencyMS() {
+		return latencyMS;
+	}
+
+	/**
+	 * Getter for when the statement finished.
+	 * @return Date
+	 */
+	public Date getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Getter for the thread that ran the statement.
+	 * @return String
+	 */
+	public String getThreadName() {
+		return threadName;
+	}
+
+	/**
+	 * toString method.
+	 * @return String
+	 */
+	public String toString() {
+		return latencyMS + " ms on " + threadName + ": " + sql;
+	}
+}
@@ -0,0 +1,98 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL statement to a normalized form so that every execution of the
+ * same query is counted together, no matter what values it was run with.
+ *
+ * String and number literals are replaced with '?', runs of white space are
+ * collapsed, and a list of bind variables such as the expansion of
+ * "IN (:ids)" is reduced to a single '?'. Since bind values are never
+ * captured and literals are removed, the normalized form holds no user data
+ * and is safe to show in the admin API.
+ */
+public class SqlNormalizer {
+
+	/**
+	 * Matches a list of two or more bind variables in parentheses.
+	 */
+	private static final Pattern BIND_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+	/**
+	 * Normalize a SQL statement.
+	 *
+	 * @param sql
+	 * @return
+	 */
+	public static String normalize(String sql) {
+		if (sql == null) throw new IllegalArgumentException("SQL cannot be null");
+		StringBuilder builder = new StringBuilder(sql.length());
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				// Skip to the end of the string literal.
+				i = skipQuoted(sql, i, c);
+				builder.append('?');
+			} else if (c == '`') {
+				// Quoted identifiers are kept as is.
+				int end = sql.indexOf('`', i + 1);
+				end = (end < 0) ? length : end + 1;
+				builder.append(sql, i, end);
+				i = end;
+			} else if (Character.isWhitespace(c)) {
+				while (i < length && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (builder.length() > 0 && i < length) {
+					builder.append(' ');
+				}
+			} else if (Character.isDigit(c) && !isIdentifierPart(builder)) {
+				// A number literal.
+				while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				builder.append('?');
+			} else {
+				builder.append(c);
+				i++;
+			}
+		}
+		return BIND_LIST.matcher(builder).replaceAll("(?)");
+	}
+
+	/**
+	 * Find the index just past the end of a quoted string. Both a doubled
+	 * quote and a backslash escape the quote character.
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		while (i < sql.length()) {
+			char c = sql.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (c == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+				} else {
+					return i + 1;
+				}
+			} else {
+				i++;
+			}
+		}
+		return sql.length();
+	}
+
+	/**
+	 * Is the last character written part of an identifier, such as the "n"
+	 * in the alias "n0"?
+	 */
+	private static boolean isIdentifierPart(StringBuilder builder) {
+		if (builder.length() == 0) return false;
+		char last = builder.charAt(builder.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+	}
+}
@@ -0,0 +1,273 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.sagebionetworks.StackConfiguration;
+
+/**
+ * Keeps the statistics of every SQL statement this instance runs, keyed by
+ * the normalized SQL, plus a ring buffer of the most recent slow executions.
+ * It is fed by the ProfilingDataSource, so it sees the dynamically built SQL
+ * from the query and path DAOs as well as the static statements.
+ *
+ * The number of statements tracked is capped; executions of a new statement
+ * once the cap is reached are counted as dropped, but are still checked
+ * against the slow query threshold.
+ */
+public class SqlStatementRegistry {
+
+	static private Log log = LogFactory.getLog(SqlStatementRegistry.class);
+
+	/**
+	 * Orders statements by the total time spent in them, largest first.
+	 */
+	private static final Comparator<StatementStatistics.Snapshot> BY_TOTAL_LATENCY = new Comparator<StatementStatistics.Snapshot>() {
+		@Override
+		public int compare(StatementStatistics.Snapshot one, StatementStatistics.Snapshot two) {
+			long diff = two.getLatency().getSum() - one.getLatency().getSum();
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+	};
+
+	/**
+	 * Orders slow queries newest first.
+	 */
+	private static final Comparator<SlowQuery> NEWEST_FIRST = new Comparator<SlowQuery>() {
+		@Override
+		public int compare(SlowQuery one, SlowQuery two) {
+			return two.getTimestamp().compareTo(one.getTimestamp());
+		}
+	};
+
+	private final int maxStatements;
+	private final long slowQueryThresholdMS;
+	private ConcurrentMap<String, String> normalizedSql = new ConcurrentHashMap<String, String>();
+	private ConcurrentMap<String, StatementStatistics> statements = new ConcurrentHashMap<String, StatementStatistics>();
+	private AtomicLong droppedCount = new AtomicLong(0);
+	private final AtomicReferenceArray<SlowQuery> slowQueries;
+	private AtomicLong slowQueryCount = new AtomicLong(0);
+
+	/**
+	 * Create a registry configured from the stack configuration.
+	 */
+	public SqlStatementRegistry() {
+		this(StackConfiguration.getSqlStatementRegistryMaxSize(),
+				StackConfiguration.getSlowQueryThresholdMS(),
+				StackConfiguration.getSlowQueryLogSize());
+	}
+
+	/**
+	 * @param maxStatements
+	 *            The maximum number of normalized statements tracked.
+	 * @param slowQueryThresholdMS
+	 *            Executions that take at least this long are kept in the slow
+	 *            query log.
+	 * @param slowQueryLogSize
+	 *            The number of slow queries kept.
+	 */
+	public SqlStatementRegistry(int maxStatements, long slowQueryThresholdMS, int slowQueryLogSize) {
+		if (maxStatements < 1) throw new IllegalArgumentException("Max statements must be at least one");
+		if (slowQueryThresholdMS < 0) throw new IllegalArgumentException("Slow query threshold cannot be negative");
+		if (slowQueryLogSize < 1) throw new IllegalArgumentException("Slow query log size must be at least one");
+		this.maxStatements = maxStatements;
+		this.slowQueryThresholdMS = slowQueryThresholdMS;
+		this.slowQueries = new AtomicReferenceArray<SlowQuery>(slowQueryLogSize);
+	}
+
+	/**
+	 * Record a single execution of a statement.
+	 *
+	 * @param sql
+	 *            The SQL as it was sent to the driver.
+	 * @param latencyMS
+	 * @param failed
+	 * @return The statistics of the statement, so rows can be added to them,
+	 *         or null if the registry is full.
+	 */
+	public StatementStatistics record(String sql, long latencyMS, boolean failed) {
+		if (sql == null) throw new IllegalArgumentException("SQL cannot be null");
+		String normalized = normalize(sql);
+		if (latencyMS >= slowQueryThresholdMS) {
+			SlowQuery slow = new SlowQuery(normalized, latencyMS, new Date(), Thread.currentThread().getName());
+			long index = slowQueryCount.getAndIncrement();
+			slowQueries.set((int) (index % slowQueries.length()), slow);
+			if (log.isDebugEnabled()) {
+				log.debug("Slow query: " + slow);
+			}
+		}
+		StatementStatistics stats = statements.get(normalized);
+		if (stats == null) {
+			if (statements.size() >= maxStatements) {
+				droppedCount.incrementAndGet();
+				return null;
+			}
+			stats = new StatementStatistics(normalized);
+			StatementStatistics existing = statements.putIfAbsent(normalized, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		stats.record(latencyMS, failed);
+		return stats;
+	}
+
+	/**
+	 * Normalizing is only done the first time a SQL string is seen.
+	 */
+	private String normalize(String sql) {
+		String normalized = normalizedSql.get(sql);
+		if (normalized == null) {
+			normalized = SqlNormalizer.normalize(sql);
+			// SQL with inlined values can be unique on every call, so this cache is bounded.
+			if (normalizedSql.size() >= maxStatements) {
+				normalizedSql.clear();
+			}
+			normalizedSql.put(sql, normalized);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Take a snapshot of every statement, the ones with the most total time
+	 * first.
+	 *
+	 * @param reset
+	 *            When true the statistics are reset.
+	 * @return
+	 */
+	public List<StatementStatistics.Snapshot> getStatements(boolean reset) {
+		List<StatementStatistics.Snapshot> results = new ArrayList<StatementStatistics.Snapshot>(statements.size());
+		for (StatementStatistics stats : statements.values()) {
+			results.add(stats.snapshot(reset));
+		}
+		Collections.sort(results, BY_TOTAL_LATENCY);
+		return results;
+	}
+
+	/**
+	 * The slow queries in the log, newest first.
+	 *
+	 * @return
+	 */
+	public List<SlowQuery> getSlowQueries() {
+		List<SlowQuery> results = new ArrayList<SlowQuery>(slowQueries.length());
+		for (int i = 0; i < slowQueries.length(); i++) {
+			SlowQuery slow = slowQueries.get(i);
+			if (slow != null) {
+				results.add(slow);
+			}
+		}
+		Collections.sort(results, NEWEST_FIRST);
+		return results;
+	}
+
+	/**
+	 * Executions this long or longer are slow queries.
+	 *
+	 * @return
+	 */
+	public long getSlowQueryThresholdMS() {
+		return slowQueryThresholdMS;
+	}
+
+	/**
+	 * The number of executions not recorded because the registry was full.
+	 *
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Build a report of the statements and slow queries.
+	 *
+	 * @param reset
+	 *            When true the statistics and the slow query log are reset.
+	 * @return
+	 */
+	public Report getReport(boolean reset) {
+		Report report = new Report(getStatements(reset), getSlowQueries(), slowQueryThresholdMS, droppedCount.get());
+		if (reset) {
+			clearSlowQueries();
+			droppedCount.set(0);
+		}
+		return report;
+	}
+
+	private void clearSlowQueries() {
+		for (int i = 0; i < slowQueries.length(); i++) {
+			slowQueries.set(i, null);
+		}
+	}
+
+	/**
+	 * Remove all statements and slow queries.
+	 */
+	public void clear() {
+		statements.clear();
+		normalizedSql.clear();
+		clearSlowQueries();
+		droppedCount.set(0);
+	}
+
+	/**
+	 * The statements and slow queries served by the admin API.
+	 */
+	public static class Report {
+		private final List<StatementStatistics.Snapshot> statements;
+		private final List<SlowQuery> slowQueries;
+		private final long slowQueryThresholdMS;
+		private final long droppedCount;
+
+		Report(List<StatementStatistics.Snapshot> statements, List<SlowQuery> slowQueries, long slowQueryThresholdMS, long droppedCount) {
+			this.statements = statements;
+			this.slowQueries = slowQueries;
+			this.slowQueryThresholdMS = slowQueryThresholdMS;
+			this.droppedCount = droppedCount;
+		}
+
+		/**
+		 * Getter for the statements, the ones with the most total time first.
+		 * @return List<StatementStatistics.Snapshot>
+		 */
+		public List<StatementStatistics.Snapshot> getStatements() {
+			return statements;
+		}
+
+		/**
+		 * Getter for the slow queries, newest first.
+		 * @return List<SlowQuery>
+		 */
+		public List<SlowQuery> getSlowQueries() {
+			return slowQueries;
+		}
+
+		/**
+		 * Getter for the slow query threshold.
+		 * @return long
+		 */
+		public long getSlowQueryThresholdMS() {
+			return slowQueryThresholdMS;
+		}
+
+		/**
+		 * Getter for the number of executions not recorded because the
+		 * registry was full.
+		 * @return long
+		 */
+		public long getDroppedCount() {
+			return droppedCount;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package org.sagebionetworks.repo.model.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of one normalized SQL statement: how often it ran, how long
+ * it took, how many rows it read or changed and how often it failed.
+ */
+public class StatementStatistics {
+
+	private final String sql;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private AtomicLong rowsReturned = new AtomicLong(0);
+	private AtomicLong rowsUpdated = new AtomicLong(0);
+	private AtomicLong errorCount = new AtomicLong(0);
+
+	/**
+	 * @param sql
+	 *            The normalized SQL.
+	 */
+	public StatementStatistics(String sql) {
+		if (sql == null) throw new IllegalArgumentException("SQL cannot be null");
+		this.sql = sql;
+	}
+
+	/**
+	 * Record a single execution.
+	 *
+	 * @param latencyMS
+	 * @param failed
+	 */
+	public void record(long latencyMS, boolean failed) {
+		latency.record(latencyMS);
+		if (failed) {
+			errorCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Add the rows read from a result set of this statement.
+	 *
+	 * @param rows
+	 */
+	public void addRowsReturned(long rows) {
+		rowsReturned.addAndGet(rows);
+	}
+
+	/**
+	 * Add the rows changed by an update of this statement.
+	 *
+	 * @param rows
+	 */
+	public void addRowsUpdated(long rows) {
+		rowsUpdated.addAndGet(rows);
+	}
+
+	/**
+	 * The normalized SQL.
+	 *
+	 * @return
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Take a snapshot of these statistics.
+	 *
+	 * @param reset
+	 *            When true the counts are reset.
+	 * @return
+	 */
+	public Snapshot snapshot(boolean reset) {
+		if (reset) {
+			return new Snapshot(sql, latency.snapshotAndReset(), rowsReturned.getAndSet(0), rowsUpdated.getAndSet(0), errorCount.getAndSet(0));
+		}
+		return new Snapshot(sql, latency.snapshot(), rowsReturned.get(), rowsUpdated.get(), errorCount.get());
+	}
+
+	/**
+	 * The statistics of a statement at one point in time.
+	 */
+	public static class Snapshot {
+		private final String sql;
+		private final LatencyHistogram.Snapshot latency;
+		private final long rowsReturned;
+		private final long rowsUpdated;
+		private final long errorCount;
+
+		Snapshot(String sql, LatencyHistogram.Snapshot latency, long rowsReturned, long rowsUpdated, long errorCount) {
+			this.sql = sql;
+			this.latency = latency;
+			this.rowsReturned = rowsReturned;
+			this.rowsUpdated = rowsUpdated;
+			this.errorCount = errorCount;
+		}
+
+		/**
+		 * Getter for the normalized SQL.
+		 * @return String
+		 */
+		public String getSql() {
+			return sql;
+		}
+
+		/**
+		 * Getter for the latency of the executions.
+		 * @return LatencyHistogram.Snapshot
+		 */
+		public LatencyHistogram.Snapshot getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Getter for the number of rows read from result sets.
+		 * @return long
+		 */
+		public long getRowsReturned() {
+			return rowsReturned;
+		}
+
+		/**
+		 * Getter for the number of rows changed by updates.
+		 * @return long
+		 */
+		public long getRowsUpdated() {
+			return rowsUpdated;
+		}
+
+		/**
+		 * Getter for the number of executions that failed.
+		 * @return long
+		 */
+		public long getErrorCount() {
+			return errorCount;
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package org.sagebionetworks.repo.model.query.jdo;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -15,6 +21,7 @@ import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.NamedAnnotations;
 import org.sagebionetworks.repo.model.NodeQueryDao;
 import org.sagebionetworks.repo.model.NodeQueryResults;
+import org.sagebionetworks.repo.model.NodeQueryRowHandler;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.jdo.FieldTypeCache;
 import org.sagebionetworks.repo.model.jdo.JDOSecondaryPropertyUtils;
@@ -22,11 +29,22 @@ import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.sagebionetworks.repo.model.query.BasicQuery;
 import org.sagebionetworks.repo.model.query.Comparator;
 import org.sagebionetworks.repo.model.query.CompoundId;
+import org.sagebionetworks.repo.model.query.CountMode;
 import org.sagebionetworks.repo.model.query.Expression;
 import org.sagebionetworks.repo.model.query.FieldType;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -53,6 +71,37 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 	 */
 	public static final long MAX_BYTES_PER_QUERY = StackConfiguration.getMaximumBytesPerQueryResult();
 	
+	/**
+	 * Bind variable names used by the generated SQL.
+	 */
+	private static final String BIND_SORT_ATT_NAME = "sortAttName";
+	private static final String BIND_PRIMARY_VALUE_PREFIX = "expKey";
+	private static final String BIND_ATT_NAME_PREFIX = "attName";
+	private static final String BIND_ATT_VALUE_PREFIX = "valeKey";
+	private static final String BIND_LIMIT = QueryUtils.BIND_LIMIT;
+	private static final String BIND_OFFSET = QueryUtils.BIND_OFFSET;
+	
+	/**
+	 * MySQL only streams the rows of a forward only, read only result set one at a time
+	 * when the fetch size is Integer.MIN_VALUE; otherwise every row is read into memory.
+	 */
+	private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+	
+	/**
+	 * The total reported when the count was not computed.
+	 */
+	public static final long UNKNOWN_COUNT = -1;
+	
+	/**
+	 * The generated SQL for each query shape.
+	 */
+	private QueryPlanCache planCache = new QueryPlanCache(StackConfiguration.getQueryPlanCacheMaxSize());
+	
+	/**
+	 * Recent counts used by queries that accept an estimated count.
+	 */
+	private QueryCountCache countCache = new QueryCountCache(StackConfiguration.getQueryCountCacheTimeToLiveMS(), StackConfiguration.getQueryCountCacheMaxSize());
+	
 	
 	/**
 	 * Execute the actual query
@@ -69,6 +118,24 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 		}
 	}
 	
+	/**
+	 * Execute the actual query, streaming the rows to the handler.
+	 */
+	@Transactional(readOnly = true)
+	@Override
+	public NodeQueryResults executeQuery(BasicQuery query, UserInfo userInfo, NodeQueryRowHandler handler) throws DatastoreException {
+		if(handler == null) throw new IllegalArgumentException("NodeQueryRowHandler cannot be null");
+		try {
+			return executeStreamingQueryImpl(query, userInfo, handler);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(e);
+		} catch (DatastoreException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DatastoreException(e);
+		}
+	}
+	
 	/**
 	 * Execute a count query.
 	 */
@@ -117,11 +184,27 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 			// For this case there will be no results
 			return new NodeQueryResults();
 		}
-		// Run the count query
-		long count = this.simpleJdbcTemplate.queryForLong(countQuery.toString(), parameters);
+		CountMode countMode = in.getCountMode() == null ? CountMode.EXACT : in.getCountMode();
+		long pageLimit = (Long) parameters.get(BIND_LIMIT);
+		if(CountMode.HAS_MORE == countMode){
+			// Fetch one extra row to find out if there is another page.
+			parameters.put(BIND_LIMIT, pageLimit + 1);
+		}
+		// Run the count query if needed
+		long count = runCountQuery(countMode, countQuery.toString(), parameters);
 		// Now execute the non-count query
 		SizeLimitRowMapper sizeLimitMapper = new SizeLimitRowMapper(MAX_BYTES_PER_QUERY);
 		List<Map<String, Object>> results = simpleJdbcTemplate.query(fullQuery.toString(), sizeLimitMapper, parameters);
+		boolean hasMore = false;
+		if(CountMode.HAS_MORE == countMode){
+			if(results.size() > pageLimit){
+				hasMore = true;
+				results.remove(results.size()-1);
+			}
+			// Without a count the total is only known to be at least this large.
+			long offset = (Long) parameters.get(BIND_OFFSET);
+			count = offset + results.size() + (hasMore ? 1 : 0);
+		}
 		String userId = null;
 		if(userInfo.getUser() != null){
 			userId = userInfo.getUser().getUserId();
@@ -135,7 +218,126 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 			log.debug("user: "+userId+ " query bytes returned: "+sizeLimitMapper.getBytesUsed()+" bytes");
 		}
 		// Create the results
-		return translateResults(results, count, in.getSelect());
+		NodeQueryResults nodeResults = translateResults(results, count, in.getSelect());
+		nodeResults.setHasMore(hasMore);
+		return nodeResults;
+	}
+
+	/**
+	 * Run the query, passing each row to the handler as it is read. The rows are
+	 * not held so there is no limit on the size of the results.
+	 * 
+	 * @param in
+	 * @param userInfo
+	 * @param handler
+	 * @return
+	 * @throws DatastoreException
+	 */
+	private NodeQueryResults executeStreamingQueryImpl(BasicQuery in, UserInfo userInfo, NodeQueryRowHandler handler) throws DatastoreException {
+		// Prepare the parameters
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		// This will contain the count query.
+		StringBuilder countQuery = new StringBuilder();
+		// This will contain the full query
+		StringBuilder fullQuery = new StringBuilder();
+		boolean columnsExist = buildQueryStrings(in, userInfo, countQuery, fullQuery, parameters);
+		if(!columnsExist){
+			// For this case there will be no results
+			return new NodeQueryResults();
+		}
+		CountMode countMode = in.getCountMode() == null ? CountMode.EXACT : in.getCountMode();
+		long pageLimit = (Long) parameters.get(BIND_LIMIT);
+		if(CountMode.HAS_MORE == countMode){
+			// Fetch one extra row to find out if there is another page.
+			parameters.put(BIND_LIMIT, pageLimit + 1);
+		}
+		// Run the count query if needed
+		long count = runCountQuery(countMode, countQuery.toString(), parameters);
+		// Now stream the non-count query
+		StreamingRowCallbackHandler callback = new StreamingRowCallbackHandler(handler, in.getSelect(), pageLimit);
+		try {
+			streamQuery(fullQuery.toString(), parameters, callback);
+		} catch (RowHandlerException e) {
+			throw new DatastoreException(e.getCause());
+		}
+		// Only a query run with HAS_MORE can read more rows than the limit.
+		boolean hasMore = callback.getRowCount() > pageLimit;
+		if(CountMode.HAS_MORE == countMode){
+			// Without a count the total is only known to be at least this large.
+			long offset = (Long) parameters.get(BIND_OFFSET);
+			count = offset + Math.min(callback.getRowCount(), pageLimit) + (hasMore ? 1 : 0);
+		}
+		if(log.isDebugEnabled()){
+			log.debug("Streamed query: "+fullQuery.toString());
+			log.debug("parameters: "+parameters+" rows: "+callback.getRowCount());
+		}
+		NodeQueryResults nodeResults = new NodeQueryResults(new ArrayList<String>(0), new ArrayList<Map<String, Object>>(0), count);
+		nodeResults.setHasMore(hasMore);
+		return nodeResults;
+	}
+	
+	/**
+	 * Run a query with a forward only cursor, passing each row to the callback.
+	 * The statement is managed here rather than by the template so the fetch size
+	 * can be set to stream, and reset in case the driver is configured to cache
+	 * the statement.
+	 * 
+	 * @param sql
+	 * @param parameters
+	 * @param callback
+	 */
+	private void streamQuery(String sql, Map<String, Object> parameters, final RowCallbackHandler callback){
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+		MapSqlParameterSource source = new MapSqlParameterSource(parameters);
+		String sqlToUse = NamedParameterUtils.substituteNamedParameters(parsedSql, source);
+		Object[] values = NamedParameterUtils.buildValueArray(parsedSql, source, null);
+		List<SqlParameter> declared = NamedParameterUtils.buildSqlParameterList(parsedSql, source);
+		final PreparedStatementCreator creator = new PreparedStatementCreatorFactory(sqlToUse, declared).newPreparedStatementCreator(values);
+		simpleJdbcTemplate.getJdbcOperations().execute(new ConnectionCallback<Void>() {
+			@Override
+			public Void doInConnection(Connection con) throws SQLException {
+				PreparedStatement ps = creator.createPreparedStatement(con);
+				ResultSet rs = null;
+				try {
+					ps.setFetchSize(STREAMING_FETCH_SIZE);
+					rs = ps.executeQuery();
+					while(rs.next()){
+						callback.processRow(rs);
+					}
+				} finally {
+					JdbcUtils.closeResultSet(rs);
+					try {
+						ps.setFetchSize(0);
+					} catch (SQLException e) {
+						log.debug("Could not reset the fetch size", e);
+					}
+					JdbcUtils.closeStatement(ps);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Run the count query as needed for the passed count mode.
+	 * @param countMode
+	 * @param countQuery
+	 * @param parameters
+	 * @return The count, or -1 if the count was not computed.
+	 */
+	private long runCountQuery(CountMode countMode, String countQuery, Map<String, Object> parameters){
+		if(CountMode.NONE == countMode || CountMode.HAS_MORE == countMode){
+			return UNKNOWN_COUNT;
+		}
+		if(CountMode.ESTIMATE == countMode){
+			String countKey = QueryCountCache.createKey(countQuery, parameters);
+			Long cached = countCache.get(countKey);
+			if(cached != null) return cached;
+			long count = this.simpleJdbcTemplate.queryForLong(countQuery, parameters);
+			countCache.put(countKey, count);
+			return count;
+		}
+		return this.simpleJdbcTemplate.queryForLong(countQuery, parameters);
 	}
 	
 	/**
@@ -172,7 +374,7 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 	 * @throws DatastoreException
 	 * @return True, if the query is valid and can be run, else false.
 	 */
-	private boolean buildQueryStrings(BasicQuery in, UserInfo userInfo, StringBuilder countQuery, StringBuilder fullQuery, Map parameters) throws DatastoreException{
+	boolean buildQueryStrings(BasicQuery in, UserInfo userInfo, StringBuilder countQuery, StringBuilder fullQuery, Map parameters) throws DatastoreException{
 		// Add a filter on type if needed
 		if(in.getFrom() != null){
 			// Add the type to the filter
@@ -180,6 +382,15 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 			in.addExpression(new Expression(new CompoundId(null, SqlConstants.TYPE_COLUMN_NAME), Comparator.IN, ids));
 		}
 		
+		// Queries with the same shape share the same SQL, so only the parameters need to be bound.
+		String planKey = bindPlanParameters(in, userInfo, parameters);
+		QueryPlanCache.QueryPlan plan = planCache.get(planKey);
+		if(plan != null){
+			countQuery.append(plan.getCountSql());
+			fullQuery.append(plan.getFullSql());
+			return true;
+		}
+		
 		// A count query is composed of the following parts
 		// <select> + <from> + <authorization_filter> + <where>
 		// The real query is composed of the following parts
@@ -192,12 +403,14 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 		StringBuilder from = new StringBuilder();
 		StringBuilder where = new StringBuilder();
 		StringBuilder orderByClause = new StringBuilder();
+		// The parameters used by the generated SQL. These must match the parameters bound with the plan key.
+		Map<String, Object> sqlParameters = new HashMap<String, Object>();
 
 		try {
 			// Build the from
 			Map<String, FieldType> aliasMap = buildFrom(from, in);
 			// Build the where
-			buildWhere(where, aliasMap, parameters, in);
+			buildWhere(where, aliasMap, sqlParameters, in);
 			
 			// These two get built at the same time
 			if (in.getSort() != null) {
@@ -212,9 +425,13 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 			return false;
 		}
 		// Build the authorization filter
-		String authorizationFilter = QueryUtils.buildAuthorizationFilter(userInfo, parameters);
+		String authorizationFilter = QueryUtils.buildAuthorizationFilter(userInfo, sqlParameters);
 		// Build the paging
-		String paging = QueryUtils.buildPaging(in.getOffset(), in.getLimit(), parameters);
+		String paging = QueryUtils.buildPaging(in.getOffset(), in.getLimit(), sqlParameters);
+		if(!sqlParameters.equals(parameters)){
+			// The cached plan would be run with the wrong parameters.
+			throw new IllegalStateException("The parameters bound for the plan: "+planKey+" do not match the generated SQL. Bound: "+parameters+" generated: "+sqlParameters);
+		}
 
 		// Build the SQL strings
 		// Count
@@ -238,9 +455,122 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 		fullQuery.append(orderByClause);
 		fullQuery.append(" ");
 		fullQuery.append(paging);
+		// Save this plan for the next query with the same shape.
+		planCache.put(planKey, new QueryPlanCache.QueryPlan(countQuery.toString(), fullQuery.toString()));
 		return true;
 	}
 	
+	/**
+	 * Bind all of the parameters of a query and create a key that captures everything
+	 * about the query that changes the generated SQL. Both are done in a single pass,
+	 * so each part of the query that adds a bind variable also adds its shape to the key.
+	 * Values are not part of the key since they are always bound as parameters.
+	 * @param in
+	 * @param userInfo
+	 * @param parameters
+	 * @return The key of the plan for this query.
+	 * @throws DatastoreException
+	 */
+	@SuppressWarnings("unchecked")
+	String bindPlanParameters(BasicQuery in, UserInfo userInfo, Map parameters) throws DatastoreException{
+		StringBuilder key = new StringBuilder();
+		// The select only depends on the primary fields and whether any annotation is selected.
+		key.append("select:");
+		if(in.getSelect() == null){
+			key.append("*");
+		}else{
+			boolean isAnnotaionsSelected = false;
+			for(String selectName: in.getSelect()){
+				try{
+					NodeField field = NodeField.getFieldForName(selectName);
+					key.append(field.getFieldName());
+					key.append(",");
+				}catch (IllegalArgumentException e){
+					if(!isAnnotaionsSelected){
+						key.append("@annotations,");
+						isAnnotaionsSelected = true;
+					}
+				}
+			}
+		}
+		// Annotation filters only need the type and comparator since the name is bound.
+		key.append("|where:");
+		if(in.getFilters() != null){
+			for(int i=0; i<in.getFilters().size(); i++){
+				Expression exp = in.getFilters().get(i);
+				if (exp.getId() == null)
+					throw new IllegalArgumentException("Compound id cannot be null");
+				String fieldName = exp.getId().getFieldName();
+				FieldType type = getFieldType(fieldName);
+				key.append(type.name());
+				if(FieldType.PRIMARY_FIELD == type){
+					key.append(":");
+					key.append(fieldName);
+					if(exp.getValue() == null){
+						key.append(":null");
+					}else{
+						NodeField nodeField = NodeField.getFieldForName(fieldName);
+						parameters.put(BIND_PRIMARY_VALUE_PREFIX + i, getPrimaryFieldBindValue(nodeField, exp.getValue()));
+					}
+				}else{
+					parameters.put(BIND_ATT_NAME_PREFIX + i, fieldName);
+					parameters.put(BIND_ATT_VALUE_PREFIX + i, exp.getValue());
+				}
+				key.append(":");
+				key.append(exp.getCompare());
+				key.append(",");
+			}
+		}
+		key.append("|sort:");
+		if(in.getSort() != null){
+			FieldType sortType = getFieldType(in.getSort());
+			key.append(sortType.name());
+			if(FieldType.PRIMARY_FIELD == sortType){
+				key.append(":");
+				key.append(in.getSort());
+			}else{
+				parameters.put(BIND_SORT_ATT_NAME, in.getSort());
+			}
+			key.append(in.isAscending() ? ":asc" : ":desc");
+		}
+		// The authorization filter has one bind variable per group.
+		key.append("|auth:");
+		key.append(QueryUtils.bindAuthorizationFilter(userInfo, parameters));
+		// Paging is always bound.
+		QueryUtils.buildPaging(in.getOffset(), in.getLimit(), parameters);
+		return key.toString();
+	}
+	
+	/**
+	 * Ids are stored as longs so they must be converted before they are bound.
+	 * @param nodeField
+	 * @param value
+	 * @return
+	 * @throws DatastoreException
+	 */
+	private static Object getPrimaryFieldBindValue(NodeField nodeField, Object value) throws DatastoreException{
+		if((NodeField.PARENT_ID == nodeField) || (NodeField.ID == nodeField)) {
+			return KeyFactory.stringToKey(value.toString());
+		}
+		return value;
+	}
+	
+	/**
+	 * The cache of generated SQL.
+	 * @return
+	 */
+	public QueryPlanCache getQueryPlanCache(){
+		return planCache;
+	}
+	
+	/**
+	 * The cache of recent counts.
+	 * @return
+	 */
+	public QueryCountCache getQueryCountCache(){
+		return countCache;
+	}
+	
 	/**
 	 * Helper to get the count from various objects
 	 * 
@@ -560,8 +890,10 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 				whereBuilder.append(SqlConstants.SORT_ALIAS);
 				whereBuilder.append(".");
 				whereBuilder.append(SqlConstants.ANNOTATION_ATTRIBUTE_COLUMN);
-				whereBuilder.append(" = :sortAttName ");
-				parameters.put("sortAttName", in.getSort());
+				whereBuilder.append(" = :");
+				whereBuilder.append(BIND_SORT_ATT_NAME);
+				whereBuilder.append(" ");
+				parameters.put(BIND_SORT_ATT_NAME, in.getSort());
 				conditionCount++;
 			}
 		}
@@ -597,15 +929,10 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 						}
 						whereBuilder.append(" :");
 						// Add a bind variable
-						String bindKey = "expKey" + i;
+						String bindKey = BIND_PRIMARY_VALUE_PREFIX + i;
 						whereBuilder.append(bindKey);
 						// Bind the value to the parameters
-						if((NodeField.PARENT_ID == nodeField) || (NodeField.ID == nodeField)) {
-							parameters.put(bindKey, KeyFactory.stringToKey(exp.getValue().toString()));
-						}
-						else {
-							parameters.put(bindKey, exp.getValue());
-						}
+						parameters.put(bindKey, getPrimaryFieldBindValue(nodeField, exp.getValue()));
 						if(Comparator.IN == exp.getCompare()){
 							whereBuilder.append(")");
 						}
@@ -619,7 +946,7 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 					whereBuilder.append(".");
 					whereBuilder.append(SqlConstants.ANNOTATION_ATTRIBUTE_COLUMN);
 					whereBuilder.append(" = :");
-					String attNameKey = "attName" + i;
+					String attNameKey = BIND_ATT_NAME_PREFIX + i;
 					whereBuilder.append(attNameKey);
 					// Bind the key
 					parameters.put(attNameKey, exp.getId().getFieldName());
@@ -630,7 +957,7 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 					whereBuilder.append(" ");
 					whereBuilder.append(SqlConstants.getSqlForComparator(exp.getCompare()));
 					whereBuilder.append(" :");
-					String valueKey = "valeKey" + i;
+					String valueKey = BIND_ATT_VALUE_PREFIX + i;
 					whereBuilder.append(valueKey);
 					// Bind the value
 					parameters.put(valueKey, exp.getValue());
@@ -664,40 +991,60 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 	static NodeQueryResults translateResults(List<Map<String, Object>> fromDB, long totalCount, List<String> select) throws DatastoreException{
 		// First build up the list of ID
 		List<String> idList = new ArrayList<String>();
+		// Only the selected keys need to be decoded. If select is null then decode all.
+		Set<String> keysToDecode = null;
+		if(select != null){
+			keysToDecode = new HashSet<String>(select);
+		}
 		for(Map<String, Object> row: fromDB){
-			// Remove the annotations from the map if there
-			byte[] zippedAnnos = (byte[]) row.remove(SqlConstants.COL_REVISION_ANNOS_BLOB);
-			// If select is null then add all
-			if(zippedAnnos != null){
-				try {
-					NamedAnnotations named = JDOSecondaryPropertyUtils.decompressedAnnotations(zippedAnnos);
-					// Add the primary
-					addNewToMap(row, named.getPrimaryAnnotations(), select);
-					// Now add the secondary.
-					addNewToMap(row, named.getAdditionalAnnotations(), select);
-				} catch (IOException e) {
-					throw new DatastoreException(e);
-				}
-			}
-			// Replace the ID with a string if needed
-			Long idLong = (Long) row.remove(NodeField.ID.getFieldName());
-			if(idLong != null){
-				String id = KeyFactory.keyToString(idLong);
-				row.put(NodeField.ID.getFieldName(), id);
+			String id = translateRow(row, keysToDecode, select);
+			if(id != null){
 				idList.add(id);
 			}
-			// Replace the parentID with a string if needed
-			Long parentIdLong = (Long) row.get(NodeField.PARENT_ID.getFieldName());
-			if(parentIdLong != null){
-				String parentId = KeyFactory.keyToString(parentIdLong);
-				row.put(NodeField.PARENT_ID.getFieldName(), parentId);
-			}
-			//			System.out.println(row);
 		}
 		// Return the results.
 		return new NodeQueryResults(idList, fromDB, totalCount);
 	}
 	
+	/**
+	 * Decode the annotations of a single row and replace the IDs with strings.
+	 * @param row
+	 * @param keysToDecode The annotation keys to decode, or null to decode all.
+	 * @param select
+	 * @return The ID of the row's node, if it was selected.
+	 * @throws DatastoreException
+	 */
+	static String translateRow(Map<String, Object> row, Set<String> keysToDecode, List<String> select) throws DatastoreException{
+		// Remove the annotations from the map if there
+		byte[] zippedAnnos = (byte[]) row.remove(SqlConstants.COL_REVISION_ANNOS_BLOB);
+		// Blobs are never returned by a query so they are not decoded.
+		if(zippedAnnos != null && (keysToDecode == null || !keysToDecode.isEmpty())){
+			try {
+				NamedAnnotations named = JDOSecondaryPropertyUtils.decompressedAnnotations(zippedAnnos, keysToDecode, false);
+				// Add the primary
+				addNewToMap(row, named.getPrimaryAnnotations(), select);
+				// Now add the secondary.
+				addNewToMap(row, named.getAdditionalAnnotations(), select);
+			} catch (IOException e) {
+				throw new DatastoreException(e);
+			}
+		}
+		// Replace the ID with a string if needed
+		String id = null;
+		Long idLong = (Long) row.remove(NodeField.ID.getFieldName());
+		if(idLong != null){
+			id = KeyFactory.keyToString(idLong);
+			row.put(NodeField.ID.getFieldName(), id);
+		}
+		// Replace the parentID with a string if needed
+		Long parentIdLong = (Long) row.get(NodeField.PARENT_ID.getFieldName());
+		if(parentIdLong != null){
+			String parentId = KeyFactory.keyToString(parentIdLong);
+			row.put(NodeField.PARENT_ID.getFieldName(), parentId);
+		}
+		return id;
+	}
+	
 	private static void addNewToMap(Map<String, Object> row, Annotations annotations, List<String> select) {
 		if(annotations != null){
 			addNewOnly(row, annotations.getStringAnnotations(), select);
@@ -737,6 +1084,66 @@ public class JDONodeQueryDaoImpl implements NodeQueryDao {
 
 
 
+	/**
+	 * Maps, decodes and hands off each row as it is read. Only the number of
+	 * rows is kept.
+	 */
+	private static class StreamingRowCallbackHandler implements RowCallbackHandler {
+
+		private ColumnMapRowMapper mapper = new ColumnMapRowMapper();
+		private NodeQueryRowHandler handler;
+		private List<String> select;
+		private Set<String> keysToDecode;
+		private long pageLimit;
+		private long rowCount = 0;
+
+		StreamingRowCallbackHandler(NodeQueryRowHandler handler, List<String> select, long pageLimit) {
+			this.handler = handler;
+			this.select = select;
+			this.pageLimit = pageLimit;
+			// Only the selected keys need to be decoded. If select is null then decode all.
+			if(select != null){
+				this.keysToDecode = new HashSet<String>(select);
+			}
+		}
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			rowCount++;
+			// The extra row fetched to find out if there is another page is not passed on.
+			if(rowCount > pageLimit) return;
+			Map<String, Object> row = mapper.mapRow(rs, (int) rowCount - 1);
+			try {
+				translateRow(row, keysToDecode, select);
+				handler.handleRow(row);
+			} catch (DatastoreException e) {
+				throw new RowHandlerException(e);
+			} catch (IOException e) {
+				throw new RowHandlerException(e);
+			}
+		}
+
+		/**
+		 * The number of rows read, including any extra row.
+		 * @return
+		 */
+		long getRowCount() {
+			return rowCount;
+		}
+	}
+
+	/**
+	 * Carries a checked exception from a row handler out of the JDBC callback.
+	 */
+	private static class RowHandlerException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		RowHandlerException(Exception cause) {
+			super(cause);
+		}
+	}
+
 	public static class AttributeDoesNotExist extends Exception {
 
 		public AttributeDoesNotExist(String message) {
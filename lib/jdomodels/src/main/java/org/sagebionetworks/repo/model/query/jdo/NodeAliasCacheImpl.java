@@ -1,27 +1,40 @@
 package org.sagebionetworks.repo.model.query.jdo;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import org.sagebionetworks.StackConfiguration;
 import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.util.ExpiringCache;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * A simple cache for Entity alias types.
- * 
+ *
+ * Aliases come from the 'from' clause of user queries, so the number of
+ * aliases held is bounded.
+ *
  * @author John
- * 
+ *
  */
 public class NodeAliasCacheImpl implements NodeAliasCache {
-	
+
 	@Autowired
 	private NodeDAO nodeDao;
 	// da cache
-	private Map<String, List<Short>> cache = Collections
-			.synchronizedMap(new HashMap<String, List<Short>>());
+	private ExpiringCache<String, List<Short>> cache;
+
+	public NodeAliasCacheImpl() {
+		this(StackConfiguration.getNodeAliasCacheMaxSize());
+	}
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of aliases held by this cache.
+	 */
+	public NodeAliasCacheImpl(int maxSize) {
+		this.cache = new ExpiringCache<String, List<Short>>(maxSize);
+	}
 
 	@Override
 	public List<Short> getAllNodeTypesForAlias(String alias) {
@@ -29,6 +42,7 @@ public class NodeAliasCacheImpl implements NodeAliasCache {
 		List<Short> results = cache.get(alias);
 		if (results == null) {
 			results = nodeDao.getAllNodeTypesForAlias(alias);
+			// The types are cheap to look up again, so when the cache is full it is simply cleared.
 			cache.put(alias, results);
 		}
 		// return the results
@@ -0,0 +1,111 @@
+package org.sagebionetworks.repo.model.query.jdo;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.sagebionetworks.repo.model.util.ExpiringCache;
+
+/**
+ * A short lived cache of query counts.
+ * 
+ * Counts are keyed by the count SQL and all of its bound parameters, which
+ * include the groups used for authorization, so a count is only shared by
+ * identical queries run with the same groups. Counts expire after a fixed
+ * time so results are at most that stale.
+ */
+public class QueryCountCache {
+
+	/**
+	 * These parameters are not used by the count query.
+	 */
+	private static final String[] PAGING_PARAMETERS = new String[]{QueryUtils.BIND_LIMIT, QueryUtils.BIND_OFFSET};
+
+	private ExpiringCache<String, Long> counts;
+
+	/**
+	 * @param timeToLiveMS
+	 *            How long a count can be used after it is added.
+	 * @param maxSize
+	 *            The maximum number of counts held by this cache.
+	 */
+	public QueryCountCache(long timeToLiveMS, int maxSize) {
+		if (timeToLiveMS < 0) throw new IllegalArgumentException("Time to live cannot be negative");
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		this.counts = new ExpiringCache<String, Long>(timeToLiveMS, maxSize);
+	}
+
+	/**
+	 * Create the key for a count query and its parameters.
+	 * 
+	 * @param countSql
+	 * @param parameters
+	 * @return
+	 */
+	public static String createKey(String countSql, Map<String, Object> parameters) {
+		if (countSql == null) throw new IllegalArgumentException("Count SQL cannot be null");
+		// Sort the parameters so the key does not depend on the order they were added.
+		TreeMap<String, Object> sorted = new TreeMap<String, Object>();
+		if (parameters != null) {
+			sorted.putAll(parameters);
+		}
+		for (String paging : PAGING_PARAMETERS) {
+			sorted.remove(paging);
+		}
+		return countSql + sorted.toString();
+	}
+
+	/**
+	 * Get the count for a key.
+	 * 
+	 * @param key
+	 * @return null if there is no count for this key or it has expired.
+	 */
+	public Long get(String key) {
+		return counts.get(key);
+	}
+
+	/**
+	 * Add a count to the cache. When the cache is full it is simply cleared.
+	 * 
+	 * @param key
+	 * @param count
+	 */
+	public void put(String key, long count) {
+		counts.put(key, count);
+	}
+
+	/**
+	 * The number of counts currently in the cache.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return counts.size();
+	}
+
+	/**
+	 * The number of lookups that found a count.
+	 * 
+	 * @return
+	 */
+	public long getHitCount() {
+		return counts.getHitCount();
+	}
+
+	/**
+	 * The number of lookups that did not find a count.
+	 * 
+	 * @return
+	 */
+	public long getMissCount() {
+		return counts.getMissCount();
+	}
+
+	/**
+	 * Remove all counts and reset the hit and miss counts.
+	 */
+	public void clear() {
+		counts.clear();
+		counts.resetCounts();
+	}
+}
@@ -0,0 +1,110 @@
+package org.sagebionetworks.repo.model.query.jdo;
+
+import org.sagebionetworks.repo.model.util.ExpiringCache;
+
+/**
+ * A bounded cache of the SQL generated for each query shape.
+ *
+ * The generated SQL only depends on the shape of a query (the select list, the
+ * field types and comparators of the filters, the sort and the number of
+ * groups used for authorization), while all values are bound as parameters.
+ * This means the SQL for a given shape can be reused by all queries with that
+ * shape, and the database driver can reuse its prepared statements.
+ */
+public class QueryPlanCache {
+
+	/**
+	 * The SQL generated for a single query shape.
+	 */
+	public static class QueryPlan {
+
+		private String countSql;
+		private String fullSql;
+
+		public QueryPlan(String countSql, String fullSql) {
+			if (countSql == null) throw new IllegalArgumentException("Count SQL cannot be null");
+			if (fullSql == null) throw new IllegalArgumentException("Full SQL cannot be null");
+			this.countSql = countSql;
+			this.fullSql = fullSql;
+		}
+
+		public String getCountSql() {
+			return countSql;
+		}
+
+		public String getFullSql() {
+			return fullSql;
+		}
+
+		@Override
+		public String toString() {
+			return "QueryPlan [countSql=" + countSql + ", fullSql=" + fullSql + "]";
+		}
+	}
+
+	private ExpiringCache<String, QueryPlan> plans;
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of plans held by this cache.
+	 */
+	public QueryPlanCache(int maxSize) {
+		this.plans = new ExpiringCache<String, QueryPlan>(maxSize);
+	}
+
+	/**
+	 * Get the plan for the passed shape key.
+	 *
+	 * @param key
+	 * @return null if there is no plan for this shape.
+	 */
+	public QueryPlan get(String key) {
+		return plans.get(key);
+	}
+
+	/**
+	 * Add a plan to the cache. Plans are cheap to rebuild, so when the cache is
+	 * full it is simply cleared.
+	 *
+	 * @param key
+	 * @param plan
+	 */
+	public void put(String key, QueryPlan plan) {
+		plans.put(key, plan);
+	}
+
+	/**
+	 * The number of plans currently in the cache.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return plans.size();
+	}
+
+	/**
+	 * The number of lookups that found a plan.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return plans.getHitCount();
+	}
+
+	/**
+	 * The number of lookups that did not find a plan.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return plans.getMissCount();
+	}
+
+	/**
+	 * Remove all plans and reset the counts.
+	 */
+	public void clear() {
+		plans.clear();
+		plans.resetCounts();
+	}
+}
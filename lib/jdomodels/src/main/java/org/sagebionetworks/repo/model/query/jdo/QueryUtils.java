@@ -6,7 +6,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 
-import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.UserGroup;
 import org.sagebionetworks.repo.model.UserInfo;
@@ -22,6 +21,12 @@ public class QueryUtils {
 	public static final int MAX_LIMIT = 50000000; // MySQL's upper bound on
 	// LIMIT
 
+	/**
+	 * The bind variable names used for paging.
+	 */
+	public static final String BIND_LIMIT = "limitVal";
+	public static final String BIND_OFFSET = "offsetVal";
+
 	private static final HashSet<String> primaryFields;
 	
 	// Import the primary fields from the dao
@@ -69,19 +74,40 @@ public class QueryUtils {
 	 * @throws DatastoreException 
 	 */
 	public static String buildAuthorizationFilter(UserInfo userInfo, Map<String, Object> parameters) throws DatastoreException {
-		if(userInfo == null) throw new IllegalArgumentException("UserInfo cannot be null");
-		if(parameters == null) throw new IllegalArgumentException("Parameters cannot be null");
+		int groupCount = bindAuthorizationFilter(userInfo, parameters);
 		// First off, if the user is an administrator then there is no filter
-		if(userInfo.isAdmin()){
+		if(groupCount == 0){
 			return "";
 		}
 		// For all other cases we build up a filter
+		String sql = AuthorizationSqlUtil.authorizationSQL(groupCount);
+		StringBuilder builder = new StringBuilder();
+		builder.append("inner join (");
+		builder.append(sql);
+		builder.append(") ");
+		builder.append(SqlConstants.AUTH_FILTER_ALIAS);
+		buildJoinOn(builder, SqlConstants.NODE_ALIAS,
+				SqlConstants.COL_NODE_BENEFACTOR_ID, SqlConstants.AUTH_FILTER_ALIAS, SqlConstants.ACL_OWNER_ID_COLUMN);
+		return builder.toString();
+	}
+
+	/**
+	 * Bind the parameters used by the authorization filter without building the SQL.
+	 * @param userInfo
+	 * @param parameters a mutable parameter list
+	 * @return The number of groups bound. This will be zero for an administrator since there is no filter.
+	 * @throws DatastoreException
+	 */
+	public static int bindAuthorizationFilter(UserInfo userInfo, Map<String, Object> parameters) throws DatastoreException {
+		if(userInfo == null) throw new IllegalArgumentException("UserInfo cannot be null");
+		if(parameters == null) throw new IllegalArgumentException("Parameters cannot be null");
+		// There is no filter for an administrator
+		if(userInfo.isAdmin()){
+			return 0;
+		}
 		Collection<UserGroup> groups = userInfo.getGroups();
 		if(groups == null) throw new IllegalArgumentException("User's groups cannot be null");
 		if(groups.size() < 1) throw new IllegalArgumentException("User must belong to at least one group");
-		String sql = AuthorizationSqlUtil.authorizationSQL(groups.size());
-		// Bind the variables
-		parameters.put(AuthorizationSqlUtil.ACCESS_TYPE_BIND_VAR, ACCESS_TYPE.READ.name());
 		// Bind each group
 		Iterator<UserGroup> it = groups.iterator();
 		int index = 0;
@@ -92,14 +118,7 @@ public class QueryUtils {
 			parameters.put(AuthorizationSqlUtil.BIND_VAR_PREFIX+index, KeyFactory.stringToKey(ug.getId()));
 			index++;
 		}
-		StringBuilder builder = new StringBuilder();
-		builder.append("inner join (");
-		builder.append(sql);
-		builder.append(") ");
-		builder.append(SqlConstants.AUTH_FILTER_ALIAS);
-		buildJoinOn(builder, SqlConstants.NODE_ALIAS,
-				SqlConstants.COL_NODE_BENEFACTOR_ID, SqlConstants.AUTH_FILTER_ALIAS, SqlConstants.ACL_OWNER_ID_COLUMN);
-		return builder.toString();
+		return index;
 	}
 
 	/**
@@ -133,9 +152,9 @@ public class QueryUtils {
 		if (limit > MAX_LIMIT) {
 			limit = MAX_LIMIT - 1;
 		}
-		String paging = "limit :limitVal offset :offsetVal";
-		parameters.put("limitVal", limit);
-		parameters.put("offsetVal", offset);
+		String paging = "limit :"+BIND_LIMIT+" offset :"+BIND_OFFSET;
+		parameters.put(BIND_LIMIT, limit);
+		parameters.put(BIND_OFFSET, offset);
 		return paging;
 	}
 
@@ -188,6 +188,12 @@ public class SqlConstants {
 	public static final String COL_RESOURCE_ACCESS_TYPE_ELEMENT	= "STRING_ELE";
 	public static final String DDL_FILE_RES_ACCESS_TYPE			= "schema/ResourceAccessType-ddl.sql";
 	
+	// The groups that can read each benefactor. This is derived from the ACL tables.
+	public static final String TABLE_BENEFACTOR_VISIBILITY			= "BENEFACTOR_VISIBILITY";
+	public static final String COL_BENEFACTOR_VISIBILITY_GROUP_ID	= "GROUP_ID";
+	public static final String COL_BENEFACTOR_VISIBILITY_BENEFACTOR_ID	= "BENEFACTOR_ID";
+	public static final String DDL_FILE_BENEFACTOR_VISIBILITY		= "schema/BenefactorVisibility-ddl.sql";
+	
 	// Preview blobs.
 	public static final String TABLE_PREVIEW_BLOB				= "PREVIEW_BLOB";
 	public static final String COL_PREVIEW_OWNER_ID				= "OWNER_NODE_ID";
@@ -0,0 +1,8 @@
+CREATE TABLE `BENEFACTOR_VISIBILITY` (
+  `GROUP_ID` bigint(20) NOT NULL,
+  `BENEFACTOR_ID` bigint(20) NOT NULL,
+  PRIMARY KEY (`GROUP_ID`,`BENEFACTOR_ID`),
+  KEY `BENEFACTOR_VISIBILITY_BENEFACTOR_ID` (`BENEFACTOR_ID`),
+  CONSTRAINT `BENEFACTOR_VISIBILITY_ACL_FK` FOREIGN KEY (`BENEFACTOR_ID`) REFERENCES `ACL` (`ID`) ON DELETE CASCADE,
+  CONSTRAINT `BENEFACTOR_VISIBILITY_GROUP_ID_FK` FOREIGN KEY (`GROUP_ID`) REFERENCES `JDOUSERGROUP` (`ID`) ON DELETE CASCADE
+)
\ No newline at end of file
@@ -0,0 +1,99 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.ACCESS_TYPE;
+import org.sagebionetworks.repo.model.UserGroup;
+
+/**
+ * Unit test for the AccessDecisionCache.
+ */
+public class AccessDecisionCacheTest {
+
+	private static UserGroup createGroup(String id){
+		UserGroup group = new UserGroup();
+		group.setId(id);
+		return group;
+	}
+
+	@Test
+	public void testMaskRoundTrip(){
+		Set<ACCESS_TYPE> types = EnumSet.of(ACCESS_TYPE.READ, ACCESS_TYPE.UPDATE, ACCESS_TYPE.CHANGE_PERMISSIONS);
+		assertEquals(types, AccessDecisionCache.fromMask(AccessDecisionCache.toMask(types)));
+		assertEquals(EnumSet.noneOf(ACCESS_TYPE.class), AccessDecisionCache.fromMask(0));
+		assertEquals(EnumSet.allOf(ACCESS_TYPE.class), AccessDecisionCache.fromMask(AccessDecisionCache.toMask(EnumSet.allOf(ACCESS_TYPE.class))));
+	}
+
+	@Test
+	public void testGroupKeyIgnoresOrder(){
+		List<UserGroup> one = new ArrayList<UserGroup>();
+		one.add(createGroup("1"));
+		one.add(createGroup("2"));
+		List<UserGroup> two = new ArrayList<UserGroup>();
+		two.add(createGroup("2"));
+		two.add(createGroup("1"));
+		assertEquals(AccessDecisionCache.createGroupKey(one), AccessDecisionCache.createGroupKey(two));
+	}
+
+	@Test
+	public void testPutGet(){
+		AccessDecisionCache cache = new AccessDecisionCache(60000, 10);
+		assertNull(cache.get(123L, "[1]"));
+		cache.put(123L, "[1]", 5L, cache.getGeneration());
+		assertEquals(new Long(5), cache.get(123L, "[1]"));
+		assertNull(cache.get(123L, "[2]"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testInvalidate(){
+		AccessDecisionCache cache = new AccessDecisionCache(60000, 10);
+		cache.put(123L, "[1]", 5L, cache.getGeneration());
+		cache.put(123L, "[2]", 5L, cache.getGeneration());
+		cache.put(456L, "[1]", 5L, cache.getGeneration());
+		assertEquals(2, cache.size());
+		cache.invalidate(123L);
+		assertNull(cache.get(123L, "[1]"));
+		assertNull(cache.get(123L, "[2]"));
+		assertEquals(new Long(5), cache.get(456L, "[1]"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testPutAfterInvalidateIsDropped(){
+		AccessDecisionCache cache = new AccessDecisionCache(60000, 10);
+		long generation = cache.getGeneration();
+		// The ACL changes while the decision is being loaded.
+		cache.invalidate(123L);
+		cache.put(123L, "[1]", 5L, generation);
+		assertNull(cache.get(123L, "[1]"));
+	}
+
+	@Test
+	public void testExpired() throws InterruptedException{
+		AccessDecisionCache cache = new AccessDecisionCache(0, 10);
+		cache.put(123L, "[1]", 5L, cache.getGeneration());
+		Thread.sleep(5);
+		assertNull(cache.get(123L, "[1]"));
+	}
+
+	@Test
+	public void testEvictOldestWhenFull(){
+		AccessDecisionCache cache = new AccessDecisionCache(60000, 2);
+		cache.put(1L, "[1]", 1L, cache.getGeneration());
+		cache.put(2L, "[1]", 2L, cache.getGeneration());
+		cache.put(3L, "[1]", 3L, cache.getGeneration());
+		assertEquals(2, cache.size());
+		assertNull(cache.get(1L, "[1]"));
+		assertEquals(new Long(2), cache.get(2L, "[1]"));
+		assertEquals(new Long(3), cache.get(3L, "[1]"));
+	}
+}
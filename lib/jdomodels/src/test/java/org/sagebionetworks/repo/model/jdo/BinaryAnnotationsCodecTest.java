@@ -0,0 +1,174 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.Annotations;
+import org.sagebionetworks.repo.model.NamedAnnotations;
+import org.sagebionetworks.repo.model.Reference;
+import org.sagebionetworks.repo.model.util.RandomAnnotationsUtil;
+
+/**
+ * Unit test for the binary annotations format.
+ */
+public class BinaryAnnotationsCodecTest {
+
+	BinaryAnnotationsCodec codec = new BinaryAnnotationsCodec();
+
+	@Test
+	public void testRoundTripSmall() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		named.setId("123");
+		named.setEtag("45");
+		named.setCreationDate(new Date(System.currentTimeMillis()));
+		Annotations dto = named.getAdditionalAnnotations();
+		dto.addAnnotation("stringOne", "one");
+		dto.addAnnotation("longOne", new Long(324));
+		dto.addAnnotation("doubleOne", new Double(32.4));
+		dto.addAnnotation("dateOne", new Date(System.currentTimeMillis()));
+		named.getPrimaryAnnotations().addAnnotation("name", "some name");
+		byte[] blob = codec.encodeAnnotations(named);
+		assertTrue(BinaryAnnotationsCodec.isBinaryFormat(blob));
+		// This should be too small to compress
+		assertEquals(0, blob[3]);
+		NamedAnnotations clone = codec.decodeAnnotations(blob);
+		assertEquals(named, clone);
+	}
+
+	@Test
+	public void testRoundTripCompressed() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		Annotations annos = named.getAdditionalAnnotations();
+		for(int i=0; i<100; i++){
+			annos.addAnnotation("stringKey"+i, "some repeated string value");
+			annos.addAnnotation("longKey"+i, new Long(i));
+		}
+		byte[] blob = codec.encodeAnnotations(named);
+		assertTrue(BinaryAnnotationsCodec.isBinaryFormat(blob));
+		assertEquals(BinaryAnnotationsCodec.FLAG_DEFLATED, blob[3]);
+		NamedAnnotations clone = codec.decodeAnnotations(blob);
+		assertEquals(named, clone);
+	}
+	
+	@Test
+	public void testRoundTripRandom() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		named.put(NamedAnnotations.NAME_SPACE_ADDITIONAL, RandomAnnotationsUtil.generateRandom(123L, 50));
+		byte[] blob = codec.encodeAnnotations(named);
+		assertTrue(BinaryAnnotationsCodec.isBinaryFormat(blob));
+		NamedAnnotations clone = codec.decodeAnnotations(blob);
+		assertEquals(named, clone);
+		// The binary format should be smaller than the legacy format.
+		byte[] legacy = JDOSecondaryPropertyUtils.compressObject(named);
+		System.out.println("Binary size: "+blob.length+" legacy size: "+legacy.length);
+		assertTrue(blob.length < legacy.length);
+	}
+
+	@Test
+	public void testNullValues() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		Annotations annos = named.getAdditionalAnnotations();
+		annos.getLongAnnotations().put("nullList", null);
+		List<Long> longs = new ArrayList<Long>();
+		longs.add(null);
+		longs.add(new Long(3));
+		annos.getLongAnnotations().put("hasNull", longs);
+		List<String> strings = new ArrayList<String>();
+		strings.add(null);
+		annos.getStringAnnotations().put("nullString", strings);
+		List<Double> doubles = new ArrayList<Double>();
+		doubles.add(null);
+		annos.getDoubleAnnotations().put("nullDouble", doubles);
+		NamedAnnotations clone = codec.decodeAnnotations(codec.encodeAnnotations(named));
+		assertEquals(named, clone);
+	}
+
+	@Test
+	public void testBlobs() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		byte[] value = "some blob".getBytes("UTF-8");
+		named.getAdditionalAnnotations().addAnnotation("blobOne", value);
+		NamedAnnotations clone = codec.decodeAnnotations(codec.encodeAnnotations(named));
+		List<byte[]> list = clone.getAdditionalAnnotations().getBlobAnnotations().get("blobOne");
+		assertNotNull(list);
+		assertEquals(1, list.size());
+		assertArrayEquals(value, list.get(0));
+	}
+
+	@Test
+	public void testSelectedKeys() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		Annotations annos = named.getAdditionalAnnotations();
+		annos.addAnnotation("keep", "a");
+		annos.addAnnotation("skip", "b");
+		annos.addAnnotation("keepLong", new Long(1));
+		annos.addAnnotation("skipLong", new Long(2));
+		Set<String> keys = new HashSet<String>();
+		keys.add("keep");
+		keys.add("keepLong");
+		NamedAnnotations clone = codec.decodeAnnotations(codec.encodeAnnotations(named), keys, true);
+		Annotations cloneAnnos = clone.getAdditionalAnnotations();
+		assertEquals("a", cloneAnnos.getSingleValue("keep"));
+		assertEquals(new Long(1), cloneAnnos.getSingleValue("keepLong"));
+		assertFalse(cloneAnnos.getStringAnnotations().containsKey("skip"));
+		assertFalse(cloneAnnos.getLongAnnotations().containsKey("skipLong"));
+	}
+
+	@Test
+	public void testSkipBlobs() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		named.getAdditionalAnnotations().addAnnotation("blobOne", "some blob".getBytes("UTF-8"));
+		named.getAdditionalAnnotations().addAnnotation("stringOne", "one");
+		NamedAnnotations clone = codec.decodeAnnotations(codec.encodeAnnotations(named), null, false);
+		assertTrue(clone.getAdditionalAnnotations().getBlobAnnotations().isEmpty());
+		assertEquals("one", clone.getAdditionalAnnotations().getSingleValue("stringOne"));
+	}
+
+	@Test
+	public void testReferences() throws IOException{
+		Map<String, Set<Reference>> refs = new HashMap<String, Set<Reference>>();
+		Set<Reference> set = new HashSet<Reference>();
+		Reference ref = new Reference();
+		ref.setTargetId("syn123");
+		ref.setTargetVersionNumber(new Long(2));
+		set.add(ref);
+		ref = new Reference();
+		ref.setTargetId("syn456");
+		set.add(ref);
+		refs.put("linksTo", set);
+		refs.put("nullSet", null);
+		byte[] blob = codec.encodeReferences(refs);
+		assertTrue(BinaryAnnotationsCodec.isBinaryFormat(blob));
+		Map<String, Set<Reference>> clone = codec.decodeReferences(blob);
+		assertEquals(refs, clone);
+		assertNull(clone.get("nullSet"));
+	}
+
+	@Test (expected=IOException.class)
+	public void testWrongRecordType() throws IOException{
+		byte[] blob = codec.encodeReferences(new HashMap<String, Set<Reference>>());
+		codec.decodeAnnotations(blob);
+	}
+
+	@Test (expected=IOException.class)
+	public void testUnknownVersion() throws IOException{
+		byte[] blob = codec.encodeAnnotations(new NamedAnnotations());
+		blob[2] = 99;
+		codec.decodeAnnotations(blob);
+	}
+
+}
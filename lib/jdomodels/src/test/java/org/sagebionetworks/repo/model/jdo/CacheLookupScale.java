@@ -0,0 +1,165 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sagebionetworks.repo.model.UserGroup;
+import org.sagebionetworks.repo.model.UserGroupDAO;
+import org.sagebionetworks.repo.model.query.FieldType;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Measures how lookups against the FieldTypeCache and the UserGroupCache scale
+ * as threads are added. Every query and every request reads these caches, so
+ * lookups must not serialize on a single lock. The throughput for each number
+ * of threads is printed; only the results of the lookups are checked.
+ *
+ * This is a benchmark rather than a unit test, so it is not named *Test and
+ * does not run with the build. Run its main() against the test database.
+ */
+public class CacheLookupScale {
+
+	private UserGroupDAO userGroupDAO;
+	private UserGroupCache userGroupCache;
+
+	private List<UserGroup> userGroups;
+	private int lookupsPerThread = 200000;
+	private int[] threadCounts = new int[] { 1, 2, 4, 8 };
+
+	public static void main(String[] args) throws Exception {
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("jdomodels-test-context.xml");
+		try {
+			CacheLookupScale scale = new CacheLookupScale();
+			scale.userGroupDAO = context.getBean(UserGroupDAO.class);
+			scale.userGroupCache = context.getBean(UserGroupCache.class);
+			scale.createGroups();
+			try {
+				scale.runFieldTypeLookups();
+				scale.runUserGroupLookups();
+			} finally {
+				scale.deleteGroups();
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	private void createGroups() throws Exception {
+		userGroups = new ArrayList<UserGroup>();
+		for (int i = 0; i < 10; i++) {
+			UserGroup ug = new UserGroup();
+			ug.setCreationDate(new Date(System.currentTimeMillis()));
+			ug.setName("CacheLookupScale." + i);
+			ug.setIsIndividual(true);
+			ug.setId(userGroupDAO.create(ug));
+			userGroups.add(ug);
+		}
+	}
+
+	private void deleteGroups() throws Exception {
+		for (UserGroup ug : userGroups) {
+			userGroupDAO.delete(ug.getId());
+		}
+	}
+
+	private void runFieldTypeLookups() throws Exception {
+		final FieldTypeCache cache = FieldTypeCache.getInstance();
+		final String[] names = new String[] { "name", "parentId", "numSamples", "platform", "notAField" };
+		for (int threads : threadCounts) {
+			long elapse = runLookups(threads, new Lookup() {
+				@Override
+				public boolean lookup(int index) {
+					String name = names[index % names.length];
+					FieldType type = cache.getTypeForName(name);
+					return type != null;
+				}
+			});
+			report("FieldTypeCache", threads, elapse);
+		}
+	}
+
+	private void runUserGroupLookups() throws Exception {
+		// Load every group into the cache.
+		final String[] names = new String[userGroups.size()];
+		final Long[] ids = new Long[userGroups.size()];
+		for (int i = 0; i < userGroups.size(); i++) {
+			names[i] = userGroups.get(i).getName();
+			ids[i] = KeyFactory.stringToKey(userGroups.get(i).getId());
+			if (!ids[i].equals(userGroupCache.getIdForUserGroupName(names[i]))) {
+				throw new IllegalStateException("Wrong id for " + names[i]);
+			}
+		}
+		for (int threads : threadCounts) {
+			long elapse = runLookups(threads, new Lookup() {
+				@Override
+				public boolean lookup(int index) throws Exception {
+					int i = index % names.length;
+					if (index % 2 == 0) {
+						return ids[i].equals(userGroupCache.getIdForUserGroupName(names[i]));
+					} else {
+						return names[i].equals(userGroupCache.getUserGroupNameForId(ids[i]));
+					}
+				}
+			});
+			report("UserGroupCache", threads, elapse);
+		}
+	}
+
+	private interface Lookup {
+		boolean lookup(int index) throws Exception;
+	}
+
+	/**
+	 * Run the lookup from the given number of threads, all starting at once.
+	 *
+	 * @param numberOfThreads
+	 * @param lookup
+	 * @return The elapsed time in ms.
+	 * @throws InterruptedException
+	 */
+	private long runLookups(int numberOfThreads, final Lookup lookup) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(numberOfThreads);
+		final AtomicInteger failures = new AtomicInteger(0);
+		for (int i = 0; i < numberOfThreads; i++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < lookupsPerThread; j++) {
+							if (!lookup.lookup(j)) {
+								failures.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+						failures.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		long startMS = System.currentTimeMillis();
+		start.countDown();
+		if (!done.await(60, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Timeout waiting for the lookups to finish");
+		}
+		long elapse = System.currentTimeMillis() - startMS;
+		if (failures.get() != 0) {
+			throw new IllegalStateException(failures.get() + " lookups returned the wrong result");
+		}
+		return elapse;
+	}
+
+	private void report(String cache, int threads, long elapse) {
+		long total = (long) threads * lookupsPerThread;
+		System.out.println(cache + ": " + total + " lookups with " + threads + " threads in " + elapse + " ms ("
+				+ (total * 1000 / Math.max(elapse, 1)) + " lookups/sec)");
+	}
+}
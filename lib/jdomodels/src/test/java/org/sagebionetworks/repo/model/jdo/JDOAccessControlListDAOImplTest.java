@@ -14,7 +14,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.After;
@@ -33,6 +37,8 @@ import org.sagebionetworks.repo.model.UserGroup;
 import org.sagebionetworks.repo.model.UserGroupDAO;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -53,6 +59,9 @@ public class JDOAccessControlListDAOImplTest {
 	@Autowired
 	private UserGroupDAO userGroupDAO;
 	
+	@Autowired
+	private SimpleJdbcTemplate simpleJdbcTemplate;
+	
 	private Collection<Node> nodeList = new ArrayList<Node>();
 	private Collection<UserGroup> groupList = new ArrayList<UserGroup>();
 	private Collection<AccessControlList> aclList = new ArrayList<AccessControlList>();
@@ -250,6 +259,24 @@ public class JDOAccessControlListDAOImplTest {
 	}
 	
 	
+	@Test
+	public void testGetAccessTypes() throws Exception {
+		Collection<UserGroup> gs = new ArrayList<UserGroup>();
+		gs.add(group);
+		// as expressed in 'setUp', 'group' has only 'READ' access to 'node'
+		assertEquals(EnumSet.of(ACCESS_TYPE.READ), accessControlListDAO.getAccessTypes(gs, node.getId()));
+		// The update must be seen even though the first decision was cached.
+		AccessControlList acl = accessControlListDAO.getForResource(node.getId());
+		ResourceAccess ra = acl.getResourceAccess().iterator().next();
+		ra.setAccessType(new HashSet<ACCESS_TYPE>(Arrays.asList(new ACCESS_TYPE[]{ACCESS_TYPE.UPDATE, ACCESS_TYPE.DELETE})));
+		accessControlListDAO.update(acl);
+		assertEquals(EnumSet.of(ACCESS_TYPE.UPDATE, ACCESS_TYPE.DELETE), accessControlListDAO.getAccessTypes(gs, node.getId()));
+		// group2 has no access
+		gs.clear();
+		gs.add(group2);
+		assertTrue(accessControlListDAO.getAccessTypes(gs, node.getId()).isEmpty());
+	}
+	
 	@Test
 	public void testUpdateMultipleGroups() throws Exception {
 		Node node = nodeList.iterator().next();
@@ -289,4 +316,35 @@ public class JDOAccessControlListDAOImplTest {
 		
 	}
 
+	/**
+	 * Run the query authorization filter SQL for a single group.
+	 */
+	private List<Long> getReadableBenefactors(UserGroup group){
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put(AuthorizationSqlUtil.BIND_VAR_PREFIX+"0", KeyFactory.stringToKey(group.getId()));
+		return simpleJdbcTemplate.query(AuthorizationSqlUtil.authorizationSQL(1), new SingleColumnRowMapper<Long>(Long.class), params);
+	}
+
+	@Test
+	public void testAuthorizationSQLFollowsACL() throws Exception {
+		Long nodeKey = KeyFactory.stringToKey(node.getId());
+		// as expressed in 'setUp', 'group' has 'READ' access to 'node'
+		assertTrue(getReadableBenefactors(group).contains(nodeKey));
+		assertFalse(getReadableBenefactors(group2).contains(nodeKey));
+		// Move READ from group to group2
+		AccessControlList acl = accessControlListDAO.getForResource(node.getId());
+		ResourceAccess ra = acl.getResourceAccess().iterator().next();
+		ra.setAccessType(new HashSet<ACCESS_TYPE>(Arrays.asList(new ACCESS_TYPE[]{ACCESS_TYPE.UPDATE})));
+		ResourceAccess ra2 = new ResourceAccess();
+		ra2.setPrincipalId(Long.parseLong(group2.getId()));
+		ra2.setAccessType(new HashSet<ACCESS_TYPE>(Arrays.asList(new ACCESS_TYPE[]{ACCESS_TYPE.READ})));
+		acl.getResourceAccess().add(ra2);
+		accessControlListDAO.update(acl);
+		assertFalse(getReadableBenefactors(group).contains(nodeKey));
+		assertTrue(getReadableBenefactors(group2).contains(nodeKey));
+		// Deleting the ACL removes all visibility.
+		accessControlListDAO.delete(node.getId());
+		assertFalse(getReadableBenefactors(group2).contains(nodeKey));
+	}
+
 }
@@ -1,7 +1,9 @@
 package org.sagebionetworks.repo.model.jdo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -13,13 +15,18 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.sagebionetworks.repo.model.Annotations;
 import org.sagebionetworks.repo.model.NamedAnnotations;
+import org.sagebionetworks.repo.model.Reference;
 import org.sagebionetworks.repo.model.dbo.persistence.DBONode;
 import org.sagebionetworks.repo.model.dbo.persistence.DBORevision;
 import org.sagebionetworks.repo.model.util.RandomAnnotationsUtil;
@@ -115,6 +122,47 @@ public class JDOSecondaryPropertyUtilsTest {
 
 	}
 	
+	@Test
+	public void testReadLegacyAnnotations() throws IOException{
+		NamedAnnotations named = new NamedAnnotations();
+		named.getAdditionalAnnotations().addAnnotation("stringOne", "one");
+		named.getAdditionalAnnotations().addAnnotation("longOne", new Long(324));
+		// Blobs written before the binary format was introduced.
+		byte[] legacy = JDOSecondaryPropertyUtils.compressObject(named);
+		assertTrue(JDOSecondaryPropertyUtils.isLegacyFormat(legacy));
+		NamedAnnotations clone = JDOSecondaryPropertyUtils.decompressedAnnotations(legacy);
+		assertEquals(named, clone);
+		// New blobs should use the binary format
+		byte[] current = JDOSecondaryPropertyUtils.compressAnnotations(named);
+		assertFalse(JDOSecondaryPropertyUtils.isLegacyFormat(current));
+		assertTrue(BinaryAnnotationsCodec.isBinaryFormat(current));
+		assertEquals(named, JDOSecondaryPropertyUtils.decompressedAnnotations(current));
+	}
+	
+	@Test
+	public void testReadLegacyReferences() throws IOException{
+		Map<String, Set<Reference>> refs = new HashMap<String, Set<Reference>>();
+		Set<Reference> set = new HashSet<Reference>();
+		Reference ref = new Reference();
+		ref.setTargetId("syn123");
+		ref.setTargetVersionNumber(new Long(1));
+		set.add(ref);
+		refs.put("linksTo", set);
+		byte[] legacy = JDOSecondaryPropertyUtils.compressObject(refs);
+		assertEquals(refs, JDOSecondaryPropertyUtils.decompressedReferences(legacy));
+		byte[] current = JDOSecondaryPropertyUtils.compressReferences(refs);
+		assertTrue(BinaryAnnotationsCodec.isBinaryFormat(current));
+		assertEquals(refs, JDOSecondaryPropertyUtils.decompressedReferences(current));
+	}
+	
+	@Test
+	public void testReadLegacyFile() throws IOException{
+		byte[] legacy = loadFileAsBytes("CompressedAnnotationsV0.zip");
+		assertTrue(JDOSecondaryPropertyUtils.isLegacyFormat(legacy));
+		Object o = JDOSecondaryPropertyUtils.decompressedObject(legacy);
+		assertTrue(o instanceof Annotations);
+	}
+	
 	/**
 	 * Test for adding all values to strings.
 	 */
@@ -0,0 +1,73 @@
+package org.sagebionetworks.repo.model.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.jdo.NodeDAOImpl.ParentTypeName;
+
+/**
+ * Unit test for the NodeAncestorCache.
+ */
+public class NodeAncestorCacheTest {
+
+	private static ParentTypeName createParentTypeName(Long parentId, String name){
+		ParentTypeName ptn = new ParentTypeName();
+		ptn.setParentId(parentId);
+		ptn.setName(name);
+		ptn.setType((short) 1);
+		return ptn;
+	}
+
+	@Test
+	public void testPutGet(){
+		NodeAncestorCache cache = new NodeAncestorCache(60000, 10);
+		assertNull(cache.get(123L));
+		ParentTypeName ptn = createParentTypeName(4L, "child");
+		cache.put(123L, ptn, cache.getGeneration());
+		assertEquals(ptn, cache.get(123L));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testInvalidate(){
+		NodeAncestorCache cache = new NodeAncestorCache(60000, 10);
+		cache.put(123L, createParentTypeName(4L, "child"), cache.getGeneration());
+		cache.put(4L, createParentTypeName(null, "parent"), cache.getGeneration());
+		cache.invalidate(123L);
+		assertNull(cache.get(123L));
+		assertEquals("parent", cache.get(4L).getName());
+	}
+
+	@Test
+	public void testStaleGeneration(){
+		NodeAncestorCache cache = new NodeAncestorCache(60000, 10);
+		// A node read before an invalidation must not be added after it.
+		long generation = cache.getGeneration();
+		cache.invalidate(123L);
+		cache.put(123L, createParentTypeName(4L, "child"), generation);
+		assertNull(cache.get(123L));
+	}
+
+	@Test
+	public void testExpired() throws InterruptedException{
+		NodeAncestorCache cache = new NodeAncestorCache(0, 10);
+		cache.put(123L, createParentTypeName(4L, "child"), cache.getGeneration());
+		Thread.sleep(1);
+		assertNull(cache.get(123L));
+	}
+
+	@Test
+	public void testEvictOldestWhenFull(){
+		NodeAncestorCache cache = new NodeAncestorCache(60000, 2);
+		cache.put(1L, createParentTypeName(null, "one"), cache.getGeneration());
+		cache.put(2L, createParentTypeName(1L, "two"), cache.getGeneration());
+		cache.put(3L, createParentTypeName(2L, "three"), cache.getGeneration());
+		assertEquals(2, cache.size());
+		assertNull(cache.get(1L));
+		assertEquals("two", cache.get(2L).getName());
+		assertEquals("three", cache.get(3L).getName());
+	}
+}
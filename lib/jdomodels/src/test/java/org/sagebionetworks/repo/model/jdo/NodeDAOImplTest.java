@@ -28,11 +28,14 @@ import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.EntityHeader;
 import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.InvalidModelException;
+import org.sagebionetworks.repo.model.NameConflictException;
 import org.sagebionetworks.repo.model.NamedAnnotations;
 import org.sagebionetworks.repo.model.Node;
+import org.sagebionetworks.repo.model.NodeBackup;
 import org.sagebionetworks.repo.model.NodeBackupDAO;
 import org.sagebionetworks.repo.model.NodeConstants;
 import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.NodeEtag;
 import org.sagebionetworks.repo.model.NodeInheritanceDAO;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
 import org.sagebionetworks.repo.model.Reference;
@@ -62,6 +65,9 @@ public class NodeDAOImplTest {
 	@Autowired
 	private UserGroupDAO userGroupDAO;
 	
+	@Autowired
+	private AccessDecisionCache accessDecisionCache;
+	
 	// the datasets that must be deleted at the end of each test.
 	List<String> toDelete = new ArrayList<String>();
 	
@@ -645,6 +651,65 @@ public class NodeDAOImplTest {
 		assertEquals(2.3, rolledBackAnnos.getAdditionalAnnotations().getSingleValue("double"));
 	}
 	
+	@Test
+	public void testGetNodes() throws Exception {
+		// One node with many versions and one node with annotations.
+		String multiVersionId = createNodeWithMultipleVersions(3);
+		Node node = privateCreateNew("testGetNodes");
+		String id = nodeDao.createNew(node);
+		toDelete.add(id);
+		NamedAnnotations named = nodeDao.getAnnotations(id);
+		named.getAdditionalAnnotations().addAnnotation("stringOne", "one");
+		nodeDao.updateAnnotations(id, named);
+		// The results must be in the order requested.
+		List<String> ids = new ArrayList<String>();
+		ids.add(id);
+		ids.add(multiVersionId);
+		List<Node> nodes = nodeDao.getNodes(ids);
+		assertNotNull(nodes);
+		assertEquals(2, nodes.size());
+		assertEquals(nodeDao.getNode(id), nodes.get(0));
+		assertEquals(nodeDao.getNode(multiVersionId), nodes.get(1));
+		// Only the current version should be loaded.
+		assertEquals(new Long(3), nodes.get(1).getVersionNumber());
+		List<NamedAnnotations> annos = nodeDao.getAnnotations(ids);
+		assertNotNull(annos);
+		assertEquals(2, annos.size());
+		assertEquals(nodeDao.getAnnotations(id), annos.get(0));
+		assertEquals(nodeDao.getAnnotations(multiVersionId), annos.get(1));
+		assertEquals("one", annos.get(0).getAdditionalAnnotations().getSingleValue("stringOne"));
+		// An empty list is allowed
+		assertEquals(0, nodeDao.getNodes(new ArrayList<String>()).size());
+	}
+	
+	@Test (expected=NotFoundException.class)
+	public void testGetNodesDoesNotExist() throws Exception {
+		Node node = privateCreateNew("testGetNodesDoesNotExist");
+		String id = nodeDao.createNew(node);
+		toDelete.add(id);
+		List<String> ids = new ArrayList<String>();
+		ids.add(id);
+		ids.add(KeyFactory.keyToString(new Long(-1)));
+		nodeDao.getNodes(ids);
+	}
+	
+	@Test
+	public void testGetBenefactors() throws Exception {
+		Node parent = privateCreateNew("testGetBenefactorsParent");
+		String parentId = nodeDao.createNew(parent);
+		toDelete.add(parentId);
+		Node child = privateCreateNew("testGetBenefactorsChild");
+		child.setParentId(parentId);
+		String childId = nodeDao.createNew(child);
+		List<String> ids = new ArrayList<String>();
+		ids.add(parentId);
+		ids.add(childId);
+		Map<String, String> benefactors = nodeInheritanceDAO.getBenefactors(ids);
+		assertEquals(2, benefactors.size());
+		assertEquals(nodeInheritanceDAO.getBenefactor(parentId), benefactors.get(parentId));
+		assertEquals(nodeInheritanceDAO.getBenefactor(childId), benefactors.get(childId));
+	}
+	
 	@Test
 	public void testGetVersionNumbers() throws Exception {
 		// Create a number of versions
@@ -837,6 +902,52 @@ public class NodeDAOImplTest {
 		assertEquals(array[0], path.get(0));
 	}
 	
+	@Test
+	public void testGetEntityPathsDeep() throws Exception {
+		// Build a chain deeper than a single pass of the ancestor query
+		List<String> chain = new ArrayList<String>();
+		String parentId = null;
+		for(int i=0; i<12; i++){
+			Node node = privateCreateNew("level"+i);
+			node.setNodeType(EntityType.folder.name());
+			node.setParentId(parentId);
+			parentId = nodeDao.createNew(node);
+			toDelete.add(parentId);
+			chain.add(parentId);
+		}
+		String leafId = chain.get(chain.size()-1);
+		String middleId = chain.get(5);
+		List<String> ids = new ArrayList<String>();
+		ids.add(leafId);
+		ids.add(middleId);
+		Map<String, List<EntityHeader>> paths = nodeDao.getEntityPaths(ids);
+		assertEquals(2, paths.size());
+		List<EntityHeader> leafPath = paths.get(leafId);
+		assertEquals(chain.size(), leafPath.size());
+		for(int i=0; i<chain.size(); i++){
+			assertEquals(nodeDao.getEntityHeader(chain.get(i)), leafPath.get(i));
+		}
+		assertEquals(leafPath.subList(0, 6), paths.get(middleId));
+		// A second call must match the first, now served from the cache.
+		assertEquals(leafPath, nodeDao.getEntityPath(leafId));
+		// Renaming an ancestor must be reflected in the path.
+		Node middle = nodeDao.getNode(middleId);
+		middle.setName("renamed");
+		nodeDao.updateNode(middle);
+		assertEquals("renamed", nodeDao.getEntityPath(leafId).get(5).getName());
+		// Moving an ancestor must be reflected in the path.
+		nodeDao.changeNodeParent(chain.get(6), chain.get(1));
+		List<EntityHeader> moved = nodeDao.getEntityPath(leafId);
+		assertEquals(chain.size()-4, moved.size());
+		assertEquals(chain.get(1), moved.get(1).getId());
+		assertEquals(chain.get(6), moved.get(2).getId());
+	}
+	
+	@Test (expected=NotFoundException.class)
+	public void testGetEntityPathDoesNotExist() throws Exception {
+		nodeDao.getEntityPath(KeyFactory.keyToString(new Long(-1)));
+	}
+	
 	@Test
 	public void testGetChildrenList() throws NotFoundException, DatastoreException, InvalidModelException {
 		Node node = privateCreateNew("parent");
@@ -1374,6 +1485,91 @@ public class NodeDAOImplTest {
 		assertEquals("Failed to set the eTag. See: PLFM-845", newEtag, restored.getETag());
 	}
 	
+	@Test
+	public void testCreateNodesFromBackup() throws NotFoundException, DatastoreException, InvalidModelException {
+		Node parent = privateCreateNew("batchParent");
+		parent.setNodeType(EntityType.project.name());
+		String parentId = nodeDao.createNew(parent);
+		toDelete.add(parentId);
+		Node child = privateCreateNew("batchChild");
+		child.setNodeType(EntityType.dataset.name());
+		child.setParentId(parentId);
+		String childId = nodeDao.createNew(child);
+		// Annotate the current revision of the child
+		String key = "NodeDAOImplTest.testCreateNodesFromBackup";
+		NodeRevisionBackup childRev = nodeBackupDao.getNodeRevision(childId, nodeDao.getNode(childId).getVersionNumber());
+		childRev.getNamedAnnotations().getAdditionalAnnotations().addAnnotation(key, "batchValue");
+		nodeBackupDao.updateRevisionFromBackup(childRev);
+		// Capture the backups then delete the nodes
+		List<NodeBackup> backups = new ArrayList<NodeBackup>();
+		List<NodeRevisionBackup> revisions = new ArrayList<NodeRevisionBackup>();
+		for(String id: new String[]{parentId, childId}){
+			Node node = nodeDao.getNode(id);
+			node.setETag("77");
+			NodeBackup backup = new NodeBackup();
+			backup.setNode(node);
+			backup.setBenefactor(parentId);
+			backups.add(backup);
+			revisions.add(nodeBackupDao.getNodeRevision(id, node.getVersionNumber()));
+		}
+		nodeDao.delete(parentId);
+		assertFalse(nodeDao.doesNodeExist(KeyFactory.stringToKey(childId)));
+		// Restore both with one batch
+		nodeBackupDao.createNewNodesFromBackup(backups, revisions);
+		Node restoredParent = nodeDao.getNode(parentId);
+		assertEquals("77", restoredParent.getETag());
+		Node restoredChild = nodeDao.getNode(childId);
+		assertEquals(parentId, restoredChild.getParentId());
+		assertEquals("77", restoredChild.getETag());
+		assertEquals(revisions.get(1), nodeBackupDao.getNodeRevision(childId, restoredChild.getVersionNumber()));
+		// The annotations of the current revision are query-able
+		assertTrue(nodeDao.isStringAnnotationQueryable(childId, key));
+	}
+	
+	@Test
+	public void testCreateNodesFromBackupInvalidatesAccessDecisions() throws NotFoundException, DatastoreException, InvalidModelException {
+		Node node = privateCreateNew("batchAccess");
+		node.setNodeType(EntityType.project.name());
+		String id = nodeDao.createNew(node);
+		toDelete.add(id);
+		NodeBackup backup = new NodeBackup();
+		backup.setNode(nodeDao.getNode(id));
+		backup.setBenefactor(id);
+		List<NodeRevisionBackup> revisions = new ArrayList<NodeRevisionBackup>();
+		revisions.add(nodeBackupDao.getNodeRevision(id, backup.getNode().getVersionNumber()));
+		nodeDao.delete(id);
+		// A decision cached for this id must not survive the restore.
+		Long key = KeyFactory.stringToKey(id);
+		accessDecisionCache.put(key, "groups", 1L, accessDecisionCache.getGeneration());
+		assertNotNull(accessDecisionCache.get(key, "groups"));
+		nodeBackupDao.createNewNodesFromBackup(Arrays.asList(backup), revisions);
+		assertNull(accessDecisionCache.get(key, "groups"));
+	}
+	
+	@Test (expected=NameConflictException.class)
+	public void testCreateNodesFromBackupNameConflict() throws NotFoundException, DatastoreException, InvalidModelException {
+		Node parent = privateCreateNew("batchConflictParent");
+		parent.setNodeType(EntityType.project.name());
+		String parentId = nodeDao.createNew(parent);
+		toDelete.add(parentId);
+		Node child = privateCreateNew("batchConflictChild");
+		child.setNodeType(EntityType.dataset.name());
+		child.setParentId(parentId);
+		String childId = nodeDao.createNew(child);
+		NodeBackup backup = new NodeBackup();
+		backup.setNode(nodeDao.getNode(childId));
+		backup.setBenefactor(parentId);
+		List<NodeRevisionBackup> revisions = new ArrayList<NodeRevisionBackup>();
+		revisions.add(nodeBackupDao.getNodeRevision(childId, backup.getNode().getVersionNumber()));
+		nodeDao.delete(childId);
+		// Another child of the parent now has the same name.
+		Node sameName = privateCreateNew("batchConflictChild");
+		sameName.setNodeType(EntityType.dataset.name());
+		sameName.setParentId(parentId);
+		nodeDao.createNew(sameName);
+		nodeBackupDao.createNewNodesFromBackup(Arrays.asList(backup), revisions);
+	}
+	
 	@Test
 	public void testUpdateNodeFromBackup() throws NotFoundException, DatastoreException, InvalidModelException {
 		// This will be our backup node.
@@ -1500,4 +1696,21 @@ public class NodeDAOImplTest {
 		assertFalse(nodeDao.isNodesParentRoot(grandkidId));
 	}
 	
+	@Test
+	public void testGetAllNodeEtags() throws Exception {
+		Node node = privateCreateNew("parent");
+		String parentId = nodeDao.createNew(node);
+		toDelete.add(parentId);
+		node = privateCreateNew("child");
+		node.setParentId(parentId);
+		String childId = nodeDao.createNew(node);
+		toDelete.add(childId);
+		Node parent = nodeDao.getNode(parentId);
+		Node child = nodeDao.getNode(childId);
+		List<NodeEtag> etags = nodeBackupDao.getAllNodeEtags();
+		assertNotNull(etags);
+		assertTrue(etags.contains(new NodeEtag(parentId, parent.getETag(), null)));
+		assertTrue(etags.contains(new NodeEtag(childId, child.getETag(), parentId)));
+	}
+	
 }
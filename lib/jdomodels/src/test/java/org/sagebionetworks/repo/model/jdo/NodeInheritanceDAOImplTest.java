@@ -1,6 +1,7 @@
 package org.sagebionetworks.repo.model.jdo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -105,4 +106,44 @@ public class NodeInheritanceDAOImplTest {
 		nodeDao.delete(parentId);
 	}
 	
+	@Test
+	public void testBatchChange() throws Exception{
+		Long creatorUserGroupId = Long.parseLong(userGroupDAO.findGroup(AuthorizationConstants.BOOTSTRAP_USER_GROUP_NAME, false).getId());
+		Node toCreate = NodeTestUtils.createNew("nodeInheritanceDaoBatchTest", creatorUserGroupId);
+		String parentId = nodeDao.createNew(toCreate);
+		toDelete.add(parentId);
+		// One child inherits from the parent and the other from itself.
+		Node child = NodeTestUtils.createNew("inheritsFromParent", creatorUserGroupId);
+		child.setParentId(parentId);
+		String inheritsId = nodeDao.createNew(child);
+		toDelete.add(inheritsId);
+		child = NodeTestUtils.createNew("inheritsFromSelf", creatorUserGroupId);
+		child.setParentId(parentId);
+		String selfId = nodeDao.createNew(child);
+		toDelete.add(selfId);
+		nodenheritanceDao.addBeneficiary(selfId, selfId);
+		// Only the child inheriting from the parent should be found.
+		List<String> parents = new ArrayList<String>();
+		parents.add(parentId);
+		Set<String> children = nodenheritanceDao.getChildrenWithBenefactor(parents, parentId);
+		assertEquals(1, children.size());
+		assertTrue(children.contains(inheritsId));
+		assertFalse(children.contains(selfId));
+		// Now move both children to the second child
+		List<String> toChange = new ArrayList<String>();
+		toChange.add(inheritsId);
+		toChange.add(selfId);
+		nodenheritanceDao.addBeneficiaries(toChange, selfId);
+		assertEquals(selfId, nodenheritanceDao.getBenefactor(inheritsId));
+		assertEquals(selfId, nodenheritanceDao.getBenefactor(selfId));
+		assertEquals(parentId, nodenheritanceDao.getBenefactor(parentId));
+		assertTrue(nodenheritanceDao.getChildrenWithBenefactor(parents, parentId).isEmpty());
+	}
+	
+	@Test (expected=NotFoundException.class)
+	public void testAddBeneficiariesBenefactorDoesNotExist() throws Exception{
+		List<String> toChange = new ArrayList<String>();
+		nodenheritanceDao.addBeneficiaries(toChange, KeyFactory.keyToString(new Long(-1)));
+	}
+	
 }
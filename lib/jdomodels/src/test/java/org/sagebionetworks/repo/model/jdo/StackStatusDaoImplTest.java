@@ -58,5 +58,31 @@ public class StackStatusDaoImplTest {
 		current = stackStatusDao.getFullCurrentStatus();
 		assertEquals(starting, current);
 	}
+	
+	@Test
+	public void testSnapshotUpdatedImmediately(){
+		StackStatus starting = stackStatusDao.getFullCurrentStatus();
+		assertEquals(starting, stackStatusDao.getSnapshotStatus());
+		StackStatus newStatus = new StackStatus();
+		newStatus.setStatus(StatusEnum.READ_ONLY);
+		newStatus.setCurrentMessage("Snapshot message");
+		stackStatusDao.updateStatus(newStatus);
+		try{
+			// The snapshot should change as soon as the update commits.
+			assertEquals(newStatus, stackStatusDao.getSnapshotStatus());
+			// Changing the returned status must not change the snapshot.
+			stackStatusDao.getSnapshotStatus().setStatus(StatusEnum.DOWN);
+			assertEquals(StatusEnum.READ_ONLY, stackStatusDao.getSnapshotStatus().getStatus());
+		}finally{
+			// Change it back
+			stackStatusDao.updateStatus(starting);
+		}
+		assertEquals(starting, stackStatusDao.getSnapshotStatus());
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testStalenessLessThanRefresh(){
+		new StackStatusDaoImpl(1000, 10);
+	}
 
 }
@@ -2,6 +2,7 @@ package org.sagebionetworks.repo.model.jdo;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -84,5 +85,22 @@ public class UserGroupCacheImplTest {
 			}
 		}
 	}
+	
+	@Test
+	public void testDelete() throws DatastoreException, NotFoundException{
+		UserGroup ug = userGroups.get(0);
+		Long id = KeyFactory.stringToKey(ug.getId());
+		assertEquals(id, userGroupCache.getIdForUserGroupName(ug.getName()));
+		// Removing the id must also remove the name.
+		userGroupCache.delete(id);
+		userGroupDAO.delete(ug.getId());
+		userGroups.remove(0);
+		try{
+			userGroupCache.getIdForUserGroupName(ug.getName());
+			fail("The name should have been removed with the id");
+		}catch(NotFoundException e){
+			// expected
+		}
+	}
 
 }
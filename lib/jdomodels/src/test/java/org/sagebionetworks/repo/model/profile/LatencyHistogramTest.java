@@ -0,0 +1,115 @@
+package org.sagebionetworks.repo.model.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for LatencyHistogram
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Verifies the count, sum, min and max of a snapshot.
+	 */
+	@Test
+	public void testSnapshot() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(4);
+		histogram.record(5);
+		histogram.record(1);
+		histogram.record(30);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(3, snapshot.getSampleCount());
+		assertEquals(36, snapshot.getSum());
+		assertEquals(1, snapshot.getMinimum());
+		assertEquals(30, snapshot.getMaximum());
+		// A plain snapshot does not reset
+		assertEquals(3, histogram.snapshot().getSampleCount());
+	}
+
+	/**
+	 * Verifies snapshotAndReset clears the histogram.
+	 */
+	@Test
+	public void testSnapshotAndReset() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(4);
+		histogram.record(5);
+		assertEquals(1, histogram.snapshotAndReset().getSampleCount());
+		LatencyHistogram.Snapshot empty = histogram.snapshot();
+		assertEquals(0, empty.getSampleCount());
+		assertEquals(0, empty.getMinimum());
+		assertEquals(0, empty.getMaximum());
+		assertEquals(0, empty.getPercentile(99));
+		histogram.record(7);
+		assertEquals(7, histogram.snapshot().getMinimum());
+	}
+
+	/**
+	 * Verifies percentiles fall in the right power of two bucket.
+	 */
+	@Test
+	public void testPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(1);
+		for (int i = 0; i < 99; i++) {
+			histogram.record(10);
+		}
+		histogram.record(1000);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		// 10 is in the bucket 8 to 15
+		assertEquals(15, snapshot.getPercentile(50));
+		assertEquals(15, snapshot.getPercentile(99));
+		// Never more than the max
+		assertEquals(1000, snapshot.getPercentile(100));
+	}
+
+	/**
+	 * Verifies the bucket boundaries.
+	 */
+	@Test
+	public void testBuckets() throws Exception {
+		assertEquals(0, LatencyHistogram.bucketFor(0));
+		assertEquals(1, LatencyHistogram.bucketFor(1));
+		assertEquals(2, LatencyHistogram.bucketFor(2));
+		assertEquals(2, LatencyHistogram.bucketFor(3));
+		assertEquals(3, LatencyHistogram.bucketFor(4));
+		assertEquals(LatencyHistogram.NUMBER_OF_BUCKETS - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+		assertEquals(3, LatencyHistogram.upperBoundOf(2));
+	}
+
+	/**
+	 * Verifies no latencies are lost when many threads record at once.
+	 */
+	@Test
+	public void testConcurrentRecord() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final int perThread = 100000;
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					for (int j = 0; j < perThread; j++) {
+						histogram.record(j % 100);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(threads.length * perThread, snapshot.getSampleCount());
+		assertEquals(0, snapshot.getMinimum());
+		assertEquals(99, snapshot.getMaximum());
+		assertTrue(snapshot.getPercentile(50) <= 63);
+	}
+
+	/**
+	 * Verifies a negative latency is rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeLatency() throws Exception {
+		new LatencyHistogram().record(-1);
+	}
+}
@@ -0,0 +1,75 @@
+package org.sagebionetworks.repo.model.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.dbo.DBOExample;
+
+/**
+ * Unit test for the LatencyRegistry.
+ */
+public class LatencyRegistryTest {
+
+	@Test
+	public void testRecordAndSnapshot(){
+		LatencyRegistry registry = new LatencyRegistry(10);
+		registry.record(LatencyRegistry.DAO, "createNew.DBONode", 5);
+		registry.record(LatencyRegistry.DAO, "createNew.DBONode", 7);
+		registry.record(LatencyRegistry.JDBC, "executeQuery", 1);
+		Map<String, Map<String, LatencyHistogram.Snapshot>> results = registry.getSnapshots(false);
+		assertEquals(2, results.size());
+		LatencyHistogram.Snapshot snapshot = results.get(LatencyRegistry.DAO).get("createNew.DBONode");
+		assertEquals(2, snapshot.getSampleCount());
+		assertEquals(12, snapshot.getSum());
+		assertEquals(1, results.get(LatencyRegistry.JDBC).get("executeQuery").getSampleCount());
+		// Not reset
+		assertEquals(2, registry.getSnapshots(false).get(LatencyRegistry.DAO).get("createNew.DBONode").getSampleCount());
+	}
+
+	@Test
+	public void testReset(){
+		LatencyRegistry registry = new LatencyRegistry(10);
+		registry.record(LatencyRegistry.CONTROLLER, "EntityController.getEntity", 5);
+		assertEquals(1, registry.getSnapshots(true).get(LatencyRegistry.CONTROLLER).get("EntityController.getEntity").getSampleCount());
+		assertEquals(0, registry.getSnapshots(false).get(LatencyRegistry.CONTROLLER).get("EntityController.getEntity").getSampleCount());
+	}
+
+	@Test
+	public void testMaxNamesPerCategory(){
+		LatencyRegistry registry = new LatencyRegistry(2);
+		registry.record(LatencyRegistry.JDBC, "one", 1);
+		registry.record(LatencyRegistry.JDBC, "two", 1);
+		registry.record(LatencyRegistry.JDBC, "three", 1);
+		// Existing names are still recorded
+		registry.record(LatencyRegistry.JDBC, "one", 1);
+		// Other categories have their own limit
+		registry.record(LatencyRegistry.DAO, "three", 1);
+		Map<String, LatencyHistogram.Snapshot> jdbc = registry.getSnapshots(false).get(LatencyRegistry.JDBC);
+		assertEquals(2, jdbc.size());
+		assertNull(jdbc.get("three"));
+		assertEquals(2, jdbc.get("one").getSampleCount());
+		assertEquals(1, registry.getDroppedCount());
+		registry.clear();
+		assertTrue(registry.getSnapshots(false).isEmpty());
+		assertEquals(0, registry.getDroppedCount());
+	}
+
+	@Test
+	public void testDaoName(){
+		assertEquals("createNew.DBOExample", DaoLatencyProfiler.getName("createNew", new Object[]{new DBOExample()}));
+		assertEquals("getObjectById.DBOExample", DaoLatencyProfiler.getName("getObjectById", new Object[]{DBOExample.class, null}));
+		assertEquals("createBatch.DBOExample", DaoLatencyProfiler.getName("createBatch", new Object[]{Arrays.asList(new DBOExample())}));
+		assertEquals("createBatch", DaoLatencyProfiler.getName("createBatch", new Object[]{new ArrayList<DBOExample>()}));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidSize(){
+		new LatencyRegistry(0);
+	}
+}
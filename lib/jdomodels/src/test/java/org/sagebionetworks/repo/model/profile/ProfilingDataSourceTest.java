@@ -0,0 +1,153 @@
+package org.sagebionetworks.repo.model.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the ProfilingDataSource. The pool, connections and statements
+ * are stubbed with dynamic proxies so no database is needed.
+ */
+public class ProfilingDataSourceTest {
+
+	LatencyRegistry registry;
+	SqlStatementRegistry sqlRegistry;
+	ProfilingDataSource dataSource;
+
+	/**
+	 * Stub any JDBC interface. Boolean methods return true, executeUpdate
+	 * fails, executeBatch updates two rows, statements are created for create
+	 * and prepare calls, and result sets have three rows.
+	 */
+	private static Object stub(final Class<?> clazz) {
+		return Proxy.newProxyInstance(ProfilingDataSourceTest.class.getClassLoader(), new Class[] { clazz }, new InvocationHandler() {
+			int rows = 3;
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("executeUpdate".equals(method.getName())) throw new SQLException("Stubbed failure");
+				if ("executeBatch".equals(method.getName())) return new int[] { 1, 1 };
+				if ("next".equals(method.getName())) return rows-- > 0;
+				if (ResultSet.class.equals(method.getReturnType())) return stub(ResultSet.class);
+				if (boolean.class.equals(method.getReturnType())) return Boolean.TRUE;
+				if (Statement.class.isAssignableFrom(method.getReturnType())) return stub(method.getReturnType());
+				if (Connection.class.equals(method.getReturnType())) return stub(Connection.class);
+				return null;
+			}
+		});
+	}
+
+	@Before
+	public void before(){
+		registry = new LatencyRegistry(10);
+		sqlRegistry = new SqlStatementRegistry(10, 0, 10);
+		dataSource = new ProfilingDataSource((DataSource) stub(DataSource.class), registry, sqlRegistry);
+	}
+
+	@Test
+	public void testGetConnection() throws Exception {
+		Connection connection = dataSource.getConnection();
+		dataSource.getConnection("user", "password");
+		Map<String, Map<String, LatencyHistogram.Snapshot>> results = registry.getSnapshots(false);
+		assertEquals(2, results.get(LatencyRegistry.CONNECTION_POOL).get(ProfilingDataSource.GET_CONNECTION).getSampleCount());
+		// A wrapped connection is only equal to itself
+		assertTrue(connection.equals(connection));
+		assertFalse(connection.equals(dataSource.getConnection()));
+	}
+
+	@Test
+	public void testStatements() throws Exception {
+		Connection connection = dataSource.getConnection();
+		PreparedStatement prepared = connection.prepareStatement("select 1");
+		assertTrue(prepared.execute());
+		prepared.executeQuery();
+		Statement statement = connection.createStatement();
+		statement.execute("select 2");
+		assertSame(connection, statement.getConnection());
+		// Calls that do not execute SQL are not recorded
+		statement.close();
+		Map<String, LatencyHistogram.Snapshot> jdbc = registry.getSnapshots(false).get(LatencyRegistry.JDBC);
+		assertEquals(2, jdbc.get("execute").getSampleCount());
+		assertEquals(1, jdbc.get("executeQuery").getSampleCount());
+		assertNull(jdbc.get("close"));
+	}
+
+	@Test
+	public void testFailedStatementRecorded() throws Exception {
+		Statement statement = dataSource.getConnection().createStatement();
+		try {
+			statement.executeUpdate("delete from nothing");
+			fail("The stub should have thrown");
+		} catch (SQLException e) {
+			// The real exception is passed through
+			assertEquals("Stubbed failure", e.getMessage());
+		}
+		assertEquals(1, registry.getSnapshots(false).get(LatencyRegistry.JDBC).get("executeUpdate").getSampleCount());
+	}
+
+	@Test
+	public void testStatementStatistics() throws Exception {
+		Connection connection = dataSource.getConnection();
+		PreparedStatement prepared = connection.prepareStatement("select * from NODE where ID = ?");
+		ResultSet rs = prepared.executeQuery();
+		assertSame(prepared, rs.getStatement());
+		while (rs.next()) {
+			// read every row
+		}
+		rs.close();
+		// Literals are not kept
+		connection.createStatement().executeQuery("select * from NODE where ID = 123").close();
+		connection.prepareStatement("insert into NODE values (?, ?)").executeBatch();
+		List<StatementStatistics.Snapshot> statements = sqlRegistry.getStatements(false);
+		assertEquals(2, statements.size());
+		for (StatementStatistics.Snapshot snapshot : statements) {
+			if (snapshot.getSql().startsWith("select")) {
+				assertEquals("select * from NODE where ID = ?", snapshot.getSql());
+				assertEquals(2, snapshot.getLatency().getSampleCount());
+				// Only the first result set was read
+				assertEquals(3, snapshot.getRowsReturned());
+			} else {
+				assertEquals("insert into NODE values (?)", snapshot.getSql());
+				assertEquals(2, snapshot.getRowsUpdated());
+			}
+		}
+		// With a threshold of zero every execution is slow
+		assertEquals(3, sqlRegistry.getSlowQueries().size());
+	}
+
+	@Test
+	public void testFailedStatementCounted() throws Exception {
+		try {
+			dataSource.getConnection().prepareStatement("delete from NODE").executeUpdate();
+			fail("The stub should have thrown");
+		} catch (SQLException e) {
+			// expected
+		}
+		StatementStatistics.Snapshot snapshot = sqlRegistry.getStatements(false).get(0);
+		assertEquals(1, snapshot.getErrorCount());
+		assertEquals(0, snapshot.getRowsUpdated());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullRegistry(){
+		new ProfilingDataSource((DataSource) stub(DataSource.class), null);
+	}
+}
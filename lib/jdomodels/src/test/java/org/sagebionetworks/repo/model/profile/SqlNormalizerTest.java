@@ -0,0 +1,44 @@
+package org.sagebionetworks.repo.model.profile;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the SqlNormalizer.
+ */
+public class SqlNormalizerTest {
+
+	@Test
+	public void testWhiteSpace(){
+		assertEquals("SELECT * FROM NODE WHERE ID = ?", SqlNormalizer.normalize("  SELECT *\n\tFROM   NODE WHERE ID = ?  "));
+	}
+
+	@Test
+	public void testStringLiterals(){
+		assertEquals("SELECT * FROM NODE WHERE NAME = ? AND TYPE = ?", SqlNormalizer.normalize("SELECT * FROM NODE WHERE NAME = 'it''s a \\'secret\\'' AND TYPE = \"project\""));
+	}
+
+	@Test
+	public void testNumberLiterals(){
+		assertEquals("SELECT n0.ID FROM NODE n0 WHERE n0.ID = ? AND n0.SIZE > ? LIMIT ? OFFSET ?", SqlNormalizer.normalize("SELECT n0.ID FROM NODE n0 WHERE n0.ID = 123 AND n0.SIZE > 1.5 LIMIT 10 OFFSET 0"));
+	}
+
+	@Test
+	public void testQuotedIdentifiers(){
+		assertEquals("SELECT `T1`.`COL 2` FROM `T1` WHERE X = ?", SqlNormalizer.normalize("SELECT `T1`.`COL 2` FROM `T1` WHERE X = 5"));
+	}
+
+	@Test
+	public void testBindLists(){
+		// The expansion of a named parameter list is reduced to one bind variable.
+		assertEquals("SELECT * FROM NODE WHERE ID IN (?)", SqlNormalizer.normalize("SELECT * FROM NODE WHERE ID IN (?, ?, ?)"));
+		assertEquals("SELECT * FROM NODE WHERE ID IN (?)", SqlNormalizer.normalize("SELECT * FROM NODE WHERE ID IN (1,2,3)"));
+		assertEquals("SELECT * FROM NODE WHERE ID IN (?)", SqlNormalizer.normalize("SELECT * FROM NODE WHERE ID IN (?)"));
+	}
+
+	@Test
+	public void testUnterminatedString(){
+		assertEquals("SELECT ?", SqlNormalizer.normalize("SELECT 'abc"));
+	}
+}
@@ -0,0 +1,91 @@
+package org.sagebionetworks.repo.model.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the SqlStatementRegistry.
+ */
+public class SqlStatementRegistryTest {
+
+	@Test
+	public void testRecord(){
+		SqlStatementRegistry registry = new SqlStatementRegistry(10, 100, 10);
+		StatementStatistics stats = registry.record("SELECT * FROM NODE WHERE ID = 1", 5, false);
+		assertNotNull(stats);
+		stats.addRowsReturned(1);
+		// The same statement with another value
+		assertTrue(stats == registry.record("SELECT * FROM NODE WHERE ID = 2", 7, true));
+		registry.record("DELETE FROM NODE", 50, false).addRowsUpdated(4);
+		List<StatementStatistics.Snapshot> statements = registry.getStatements(false);
+		assertEquals(2, statements.size());
+		// The most total time first
+		StatementStatistics.Snapshot delete = statements.get(0);
+		assertEquals("DELETE FROM NODE", delete.getSql());
+		assertEquals(4, delete.getRowsUpdated());
+		StatementStatistics.Snapshot select = statements.get(1);
+		assertEquals("SELECT * FROM NODE WHERE ID = ?", select.getSql());
+		assertEquals(2, select.getLatency().getSampleCount());
+		assertEquals(12, select.getLatency().getSum());
+		assertEquals(1, select.getRowsReturned());
+		assertEquals(1, select.getErrorCount());
+		// Nothing was slow
+		assertTrue(registry.getSlowQueries().isEmpty());
+	}
+
+	@Test
+	public void testSlowQueryRingBuffer(){
+		SqlStatementRegistry registry = new SqlStatementRegistry(10, 100, 3);
+		for (int i = 0; i < 5; i++) {
+			registry.record("SELECT * FROM NODE WHERE NAME = 'secret" + i + "'", 100 + i, false);
+		}
+		registry.record("SELECT 1", 99, false);
+		List<SlowQuery> slow = registry.getSlowQueries();
+		// Only the most recent are kept
+		assertEquals(3, slow.size());
+		long total = 0;
+		for (SlowQuery query : slow) {
+			// The literal values are redacted
+			assertEquals("SELECT * FROM NODE WHERE NAME = ?", query.getSql());
+			assertNotNull(query.getTimestamp());
+			assertTrue(query.getLatencyMS() >= 102);
+			total += query.getLatencyMS();
+		}
+		assertEquals(102 + 103 + 104, total);
+	}
+
+	@Test
+	public void testMaxStatements(){
+		SqlStatementRegistry registry = new SqlStatementRegistry(1, 1000, 10);
+		assertNotNull(registry.record("SELECT A FROM T", 1, false));
+		assertNull(registry.record("SELECT B FROM T", 1, false));
+		assertEquals(1, registry.getDroppedCount());
+		assertEquals(1, registry.getStatements(false).size());
+	}
+
+	@Test
+	public void testReportReset(){
+		SqlStatementRegistry registry = new SqlStatementRegistry(10, 0, 10);
+		registry.record("SELECT A FROM T", 1, false);
+		SqlStatementRegistry.Report report = registry.getReport(true);
+		assertEquals(1, report.getStatements().size());
+		assertEquals(1, report.getSlowQueries().size());
+		assertEquals(0, report.getSlowQueryThresholdMS());
+		report = registry.getReport(false);
+		assertEquals(0, report.getStatements().get(0).getLatency().getSampleCount());
+		assertTrue(report.getSlowQueries().isEmpty());
+		registry.clear();
+		assertTrue(registry.getStatements(false).isEmpty());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidSize(){
+		new SqlStatementRegistry(0, 100, 10);
+	}
+}
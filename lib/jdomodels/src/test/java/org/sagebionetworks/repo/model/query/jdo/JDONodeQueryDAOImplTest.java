@@ -1,10 +1,12 @@
 package org.sagebionetworks.repo.model.query.jdo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -31,6 +33,7 @@ import org.sagebionetworks.repo.model.NodeConstants;
 import org.sagebionetworks.repo.model.NodeDAO;
 import org.sagebionetworks.repo.model.NodeQueryDao;
 import org.sagebionetworks.repo.model.NodeQueryResults;
+import org.sagebionetworks.repo.model.NodeQueryRowHandler;
 import org.sagebionetworks.repo.model.UserGroupDAO;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.jdo.KeyFactory;
@@ -38,6 +41,7 @@ import org.sagebionetworks.repo.model.jdo.NodeTestUtils;
 import org.sagebionetworks.repo.model.query.BasicQuery;
 import org.sagebionetworks.repo.model.query.Comparator;
 import org.sagebionetworks.repo.model.query.CompoundId;
+import org.sagebionetworks.repo.model.query.CountMode;
 import org.sagebionetworks.repo.model.query.Expression;
 import org.sagebionetworks.repo.model.query.FieldType;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -341,6 +345,131 @@ public class JDONodeQueryDAOImplTest {
 		assertEquals("dsName3", idToNameMap.get(two));
 	}
 
+	@Test
+	public void testPagingHasMore() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(2);
+		query.setLimit(2);
+		query.setCountMode(CountMode.HAS_MORE);
+		NodeQueryResults results = nodeQueryDao.executeQuery(query, mockUserInfo);
+		assertNotNull(results);
+		// The extra row must not be returned
+		assertEquals(2, results.getResultIds().size());
+		assertEquals(2, results.getAllSelectedData().size());
+		assertTrue(results.isHasMore());
+		// Without a count the total is a lower bound
+		assertEquals(5, results.getTotalNumberOfResults());
+		assertEquals("dsName2", idToNameMap.get(results.getResultIds().get(0)));
+		assertEquals("dsName3", idToNameMap.get(results.getResultIds().get(1)));
+	}
+
+	@Test
+	public void testPagingHasMoreLastPage() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(3);
+		query.setLimit(2);
+		query.setCountMode(CountMode.HAS_MORE);
+		NodeQueryResults results = nodeQueryDao.executeQuery(query, mockUserInfo);
+		assertNotNull(results);
+		assertEquals(2, results.getResultIds().size());
+		assertFalse(results.isHasMore());
+		// On the last page the total is exact.
+		assertEquals(totalNumberOfDatasets, results.getTotalNumberOfResults());
+	}
+
+	@Test
+	public void testCountModeNone() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(0);
+		query.setLimit(2);
+		query.setCountMode(CountMode.NONE);
+		NodeQueryResults results = nodeQueryDao.executeQuery(query, mockUserInfo);
+		assertNotNull(results);
+		assertEquals(2, results.getResultIds().size());
+		assertEquals(JDONodeQueryDaoImpl.UNKNOWN_COUNT, results.getTotalNumberOfResults());
+	}
+
+	@Test
+	public void testStreamingQuery() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(1);
+		query.setLimit(3);
+		query.setSort("name");
+		final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		NodeQueryResults results = nodeQueryDao.executeQuery(query, mockUserInfo, new NodeQueryRowHandler() {
+			@Override
+			public void handleRow(Map<String, Object> row) throws IOException {
+				rows.add(row);
+			}
+		});
+		assertNotNull(results);
+		assertEquals(totalNumberOfDatasets, results.getTotalNumberOfResults());
+		// The rows go to the handler, not the results
+		assertTrue(results.getAllSelectedData().isEmpty());
+		assertEquals(3, rows.size());
+		// The rows match the paginated query.
+		NodeQueryResults paged = nodeQueryDao.executeQuery(query, mockUserInfo);
+		assertEquals(paged.getAllSelectedData(), rows);
+		assertEquals("dsName1", idToNameMap.get(rows.get(0).get(NodeField.ID.getFieldName())));
+	}
+
+	@Test
+	public void testStreamingQueryHasMore() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(2);
+		query.setLimit(2);
+		query.setCountMode(CountMode.HAS_MORE);
+		final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		NodeQueryResults results = nodeQueryDao.executeQuery(query, mockUserInfo, new NodeQueryRowHandler() {
+			@Override
+			public void handleRow(Map<String, Object> row) throws IOException {
+				rows.add(row);
+			}
+		});
+		// The extra row must not be passed to the handler
+		assertEquals(2, rows.size());
+		assertTrue(results.isHasMore());
+		assertEquals(5, results.getTotalNumberOfResults());
+	}
+
+	@Test (expected=DatastoreException.class)
+	public void testStreamingQueryHandlerFailure() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		nodeQueryDao.executeQuery(query, mockUserInfo, new NodeQueryRowHandler() {
+			@Override
+			public void handleRow(Map<String, Object> row) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		});
+	}
+
+	@Test
+	public void testCountModeEstimate() throws DatastoreException {
+		BasicQuery query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(0);
+		query.setLimit(2);
+		query.setCountMode(CountMode.ESTIMATE);
+		NodeQueryResults results = nodeQueryDao.executeQuery(query, mockUserInfo);
+		assertNotNull(results);
+		assertEquals(2, results.getResultIds().size());
+		assertEquals(totalNumberOfDatasets, results.getTotalNumberOfResults());
+		// The second page should get the same count
+		query = new BasicQuery();
+		query.setFrom(EntityType.dataset.name());
+		query.setOffset(2);
+		query.setLimit(2);
+		query.setCountMode(CountMode.ESTIMATE);
+		results = nodeQueryDao.executeQuery(query, mockUserInfo);
+		assertEquals(totalNumberOfDatasets, results.getTotalNumberOfResults());
+	}
+
 	@Test
 	public void testSortOnPrimaryAscending() throws DatastoreException {
 		BasicQuery query = new BasicQuery();
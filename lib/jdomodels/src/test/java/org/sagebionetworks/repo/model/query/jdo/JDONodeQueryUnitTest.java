@@ -3,10 +3,12 @@ package org.sagebionetworks.repo.model.query.jdo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,10 +17,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
 import org.mockito.Mockito;
-import org.sagebionetworks.repo.model.ACCESS_TYPE;
+import org.sagebionetworks.repo.model.NamedAnnotations;
+import org.sagebionetworks.repo.model.NodeQueryResults;
 import org.sagebionetworks.repo.model.UserGroup;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.jdo.AuthorizationSqlUtil;
+import org.sagebionetworks.repo.model.jdo.JDOSecondaryPropertyUtils;
+import org.sagebionetworks.repo.model.jdo.KeyFactory;
+import org.sagebionetworks.repo.model.query.BasicQuery;
+import org.sagebionetworks.repo.model.query.Comparator;
+import org.sagebionetworks.repo.model.query.CompoundId;
+import org.sagebionetworks.repo.model.query.Expression;
 import org.sagebionetworks.repo.model.query.FieldType;
 
 /**
@@ -82,7 +91,8 @@ public class JDONodeQueryUnitTest {
 		log.info(sql);
 		log.info(params);
 		// Check the bind variables.
-		assertEquals(ACCESS_TYPE.READ.name(), params.get(AuthorizationSqlUtil.ACCESS_TYPE_BIND_VAR));
+		// The visibility table only holds READ access so the type is not bound.
+		assertNull(params.get(AuthorizationSqlUtil.ACCESS_TYPE_BIND_VAR));
 		Long groupBindValue0 = (Long) params.get(AuthorizationSqlUtil.BIND_VAR_PREFIX+"0");
 		assertNotNull(groupBindValue0);
 		Long groupBindValue1 = (Long) params.get(AuthorizationSqlUtil.BIND_VAR_PREFIX+"1");
@@ -137,4 +147,120 @@ public class JDONodeQueryUnitTest {
 		assertEquals("one", map.get(annoKey));
 		assertEquals("123", map.get("id"));
 	}
+	
+	@Test
+	public void testTranslateResultsSelectedAnnotations() throws Exception {
+		NamedAnnotations named = new NamedAnnotations();
+		named.getAdditionalAnnotations().addAnnotation("foo", "fooValue");
+		named.getAdditionalAnnotations().addAnnotation("bar", new Long(12));
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put(NodeField.ID.getFieldName(), new Long(123));
+		row.put(SqlConstants.COL_REVISION_ANNOS_BLOB, JDOSecondaryPropertyUtils.compressAnnotations(named));
+		rows.add(row);
+		List<String> select = new ArrayList<String>();
+		select.add(NodeField.ID.getFieldName());
+		select.add("foo");
+		NodeQueryResults results = JDONodeQueryDaoImpl.translateResults(rows, 1, select);
+		assertNotNull(results);
+		Map<String, Object> result = results.getAllSelectedData().get(0);
+		assertEquals(KeyFactory.keyToString(123L), result.get(NodeField.ID.getFieldName()));
+		assertEquals(Arrays.asList("fooValue"), result.get("foo"));
+		assertFalse(result.containsKey("bar"));
+		assertFalse(result.containsKey(SqlConstants.COL_REVISION_ANNOS_BLOB));
+	}
+	
+	@Test
+	public void testTranslateResultsSelectAll() throws Exception {
+		NamedAnnotations named = new NamedAnnotations();
+		named.getAdditionalAnnotations().addAnnotation("foo", "fooValue");
+		named.getAdditionalAnnotations().addAnnotation("bar", new Long(12));
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put(NodeField.ID.getFieldName(), new Long(123));
+		row.put(SqlConstants.COL_REVISION_ANNOS_BLOB, JDOSecondaryPropertyUtils.compressAnnotations(named));
+		rows.add(row);
+		NodeQueryResults results = JDONodeQueryDaoImpl.translateResults(rows, 1, null);
+		Map<String, Object> result = results.getAllSelectedData().get(0);
+		assertEquals(Arrays.asList("fooValue"), result.get("foo"));
+		assertEquals(Arrays.asList(new Long(12)), result.get("bar"));
+	}
+	
+	@Test
+	public void testQueryPlanCacheHitBindsSameParameters() throws Exception {
+		JDONodeQueryDaoImpl dao = new JDONodeQueryDaoImpl();
+		UserInfo nonAdminUserInfo = Mockito.mock(UserInfo.class);
+		when(nonAdminUserInfo.isAdmin()).thenReturn(false);
+		ArrayList<UserGroup> groups = new ArrayList<UserGroup>();
+		UserGroup group = Mockito.mock(UserGroup.class);
+		when(group.getId()).thenReturn("123");
+		groups.add(group);
+		when(nonAdminUserInfo.getGroups()).thenReturn(groups);
+		// The first query will generate the SQL
+		BasicQuery query = new BasicQuery();
+		query.setSelect(Arrays.asList(NodeField.ID.getFieldName(), "foo"));
+		query.addExpression(new Expression(new CompoundId(null, NodeField.PARENT_ID.getFieldName()), Comparator.EQUALS, "syn456"));
+		query.addExpression(new Expression(new CompoundId(null, "foo"), Comparator.EQUALS, "bar"));
+		query.setSort("foo");
+		query.setLimit(100);
+		StringBuilder countOne = new StringBuilder();
+		StringBuilder fullOne = new StringBuilder();
+		Map<String, Object> paramsOne = new HashMap<String, Object>();
+		assertTrue(dao.buildQueryStrings(query, nonAdminUserInfo, countOne, fullOne, paramsOne));
+		assertEquals(1, dao.getQueryPlanCache().getMissCount());
+		assertEquals(0, dao.getQueryPlanCache().getHitCount());
+		// The same shape with different values should use the cached SQL
+		query = new BasicQuery();
+		query.setSelect(Arrays.asList(NodeField.ID.getFieldName(), "foo"));
+		query.addExpression(new Expression(new CompoundId(null, NodeField.PARENT_ID.getFieldName()), Comparator.EQUALS, "syn789"));
+		query.addExpression(new Expression(new CompoundId(null, "foo"), Comparator.EQUALS, "other"));
+		query.setSort("foo");
+		query.setLimit(10);
+		StringBuilder countTwo = new StringBuilder();
+		StringBuilder fullTwo = new StringBuilder();
+		Map<String, Object> paramsTwo = new HashMap<String, Object>();
+		assertTrue(dao.buildQueryStrings(query, nonAdminUserInfo, countTwo, fullTwo, paramsTwo));
+		assertEquals(1, dao.getQueryPlanCache().getHitCount());
+		assertEquals(countOne.toString(), countTwo.toString());
+		assertEquals(fullOne.toString(), fullTwo.toString());
+		// The same parameters must be bound with the new values.
+		assertEquals(paramsOne.keySet(), paramsTwo.keySet());
+		assertEquals(new Long(789), paramsTwo.get("expKey0"));
+		assertEquals("other", paramsTwo.get("valeKey1"));
+		assertEquals(new Long(10), paramsTwo.get("limitVal"));
+		// A different shape should not use the cached SQL
+		query.setAscending(false);
+		assertTrue(dao.buildQueryStrings(query, nonAdminUserInfo, new StringBuilder(), new StringBuilder(), new HashMap<String, Object>()));
+		assertEquals(2, dao.getQueryPlanCache().getMissCount());
+	}
+	
+	@Test
+	public void testPlanParametersMatchGeneratedSql() throws Exception {
+		JDONodeQueryDaoImpl dao = new JDONodeQueryDaoImpl();
+		UserInfo adminUserInfo = Mockito.mock(UserInfo.class);
+		when(adminUserInfo.isAdmin()).thenReturn(true);
+		// Each of these shapes is generated once, which fails if the parameters bound
+		// with the plan key differ from the parameters used by the SQL.
+		List<BasicQuery> queries = new ArrayList<BasicQuery>();
+		BasicQuery query = new BasicQuery();
+		queries.add(query);
+		query = new BasicQuery();
+		query.addExpression(new Expression(new CompoundId(null, NodeField.PARENT_ID.getFieldName()), Comparator.EQUALS, null));
+		query.setSort(NodeField.NAME.getFieldName());
+		queries.add(query);
+		query = new BasicQuery();
+		query.addExpression(new Expression(new CompoundId(null, NodeField.NAME.getFieldName()), Comparator.IN, Arrays.asList("one", "two")));
+		query.addExpression(new Expression(new CompoundId(null, "foo"), Comparator.GREATER_THAN, "bar"));
+		query.setSort("foo");
+		query.setAscending(false);
+		queries.add(query);
+		for(BasicQuery toBuild: queries){
+			Map<String, Object> parameters = new HashMap<String, Object>();
+			assertTrue(dao.buildQueryStrings(toBuild, adminUserInfo, new StringBuilder(), new StringBuilder(), parameters));
+			Map<String, Object> planParameters = new HashMap<String, Object>();
+			dao.bindPlanParameters(toBuild, adminUserInfo, planParameters);
+			assertEquals(parameters, planParameters);
+		}
+		assertEquals(queries.size(), dao.getQueryPlanCache().getMissCount());
+	}
 }
@@ -0,0 +1,78 @@
+package org.sagebionetworks.repo.model.query.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the QueryCountCache.
+ */
+public class QueryCountCacheTest {
+
+	@Test
+	public void testPutGet(){
+		QueryCountCache cache = new QueryCountCache(60000, 10);
+		assertNull(cache.get("one"));
+		cache.put("one", 123);
+		assertEquals(new Long(123), cache.get("one"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testExpired() throws InterruptedException{
+		QueryCountCache cache = new QueryCountCache(0, 10);
+		cache.put("one", 123);
+		Thread.sleep(5);
+		assertNull(cache.get("one"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEvictOldestWhenFull(){
+		QueryCountCache cache = new QueryCountCache(60000, 2);
+		cache.put("one", 1);
+		cache.put("two", 2);
+		cache.put("three", 3);
+		assertEquals(2, cache.size());
+		assertNull(cache.get("one"));
+		assertEquals(new Long(2), cache.get("two"));
+		assertEquals(new Long(3), cache.get("three"));
+	}
+
+	@Test
+	public void testCreateKeyIgnoresOrderAndPaging(){
+		Map<String, Object> one = new LinkedHashMap<String, Object>();
+		one.put("g0", new Long(1));
+		one.put("g1", new Long(2));
+		one.put("limitVal", new Long(10));
+		one.put("offsetVal", new Long(0));
+		Map<String, Object> two = new LinkedHashMap<String, Object>();
+		two.put("offsetVal", new Long(20));
+		two.put("g1", new Long(2));
+		two.put("g0", new Long(1));
+		two.put("limitVal", new Long(10));
+		assertEquals(QueryCountCache.createKey("select count(*)", one), QueryCountCache.createKey("select count(*)", two));
+	}
+
+	@Test
+	public void testCreateKeyDifferentValues(){
+		Map<String, Object> one = new HashMap<String, Object>();
+		one.put("expKey0", "a");
+		Map<String, Object> two = new HashMap<String, Object>();
+		two.put("expKey0", "b");
+		assertFalse(QueryCountCache.createKey("select count(*)", one).equals(QueryCountCache.createKey("select count(*)", two)));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullKey(){
+		QueryCountCache cache = new QueryCountCache(60000, 2);
+		cache.put(null, 1);
+	}
+}
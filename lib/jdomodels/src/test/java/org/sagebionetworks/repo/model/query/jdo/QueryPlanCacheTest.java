@@ -0,0 +1,54 @@
+package org.sagebionetworks.repo.model.query.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.query.jdo.QueryPlanCache.QueryPlan;
+
+/**
+ * Unit test for the QueryPlanCache.
+ */
+public class QueryPlanCacheTest {
+	
+	@Test
+	public void testHitMiss(){
+		QueryPlanCache cache = new QueryPlanCache(10);
+		assertNull(cache.get("one"));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+		cache.put("one", new QueryPlan("select count", "select"));
+		QueryPlan plan = cache.get("one");
+		assertNotNull(plan);
+		assertEquals("select count", plan.getCountSql());
+		assertEquals("select", plan.getFullSql());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+	
+	@Test
+	public void testMaxSize(){
+		QueryPlanCache cache = new QueryPlanCache(2);
+		cache.put("one", new QueryPlan("a", "b"));
+		cache.put("two", new QueryPlan("a", "b"));
+		assertEquals(2, cache.size());
+		// This should not grow past the max.
+		cache.put("three", new QueryPlan("a", "b"));
+		assertEquals(2, cache.size());
+		assertNull(cache.get("one"));
+		assertNotNull(cache.get("two"));
+		assertNotNull(cache.get("three"));
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidSize(){
+		new QueryPlanCache(0);
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullKey(){
+		new QueryPlanCache(1).get(null);
+	}
+
+}
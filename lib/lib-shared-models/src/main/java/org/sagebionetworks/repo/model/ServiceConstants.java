@@ -114,6 +114,12 @@ public class ServiceConstants {
 	 */
 	public static final String QUERY_PARAM = "query";
 
+	/**
+	 * Request parameter for how the total number of query results is computed.
+	 * One of: exact, estimate, hasMore or none.
+	 */
+	public static final String QUERY_COUNT_MODE_PARAM = "countMode";
+
 	/**
 	 * Request parameter for the ids in a batch request.
 	 */
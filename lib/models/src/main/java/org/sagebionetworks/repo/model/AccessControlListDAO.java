@@ -1,6 +1,7 @@
 package org.sagebionetworks.repo.model;
 
 import java.util.Collection;
+import java.util.Set;
 
 import org.sagebionetworks.repo.web.NotFoundException;
 
@@ -19,6 +20,12 @@ public interface AccessControlListDAO  {
 	 */
 	public boolean canAccess(Collection<UserGroup> groups, String resourceId, ACCESS_TYPE accessType) throws DatastoreException;
 
+	/**
+	 * @return all of the access types that some group in 'groups' has on 'resourceId'
+	 * @throws DatastoreException 
+	 */
+	public Set<ACCESS_TYPE> getAccessTypes(Collection<UserGroup> groups, String resourceId) throws DatastoreException;
+
 	/**
 	 * @return the SQL to find the root-accessible nodes that a specified user-group list can access
 	 * using a specified access type
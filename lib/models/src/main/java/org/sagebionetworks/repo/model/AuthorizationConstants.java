@@ -138,4 +138,15 @@ public class AuthorizationConstants {
 	 * The default auth cache invalidation interval
 	 */
 	public static final long AUTH_CACHE_TIMEOUT_DEFAULT = 60000L;
+	
+	/**
+	 * The name of a system property which sets the maximum number of entries held by each
+	 * of the Authentication filter's caches.
+	 */
+	public static final String AUTH_CACHE_MAX_SIZE = "org.sagebionetworks.authCacheMaxSize";
+	
+	/**
+	 * The default maximum number of entries held by each auth' cache
+	 */
+	public static final int AUTH_CACHE_MAX_SIZE_DEFAULT = 10000;
 }
@@ -1,5 +1,7 @@
 package org.sagebionetworks.repo.model;
 
+import java.util.List;
+
 import org.sagebionetworks.repo.web.NotFoundException;
 
 /**
@@ -32,6 +34,21 @@ public interface NodeBackupDAO {
 	public void createNewRevisionFromBackup(NodeRevisionBackup rev)
 			throws NotFoundException, DatastoreException;
 
+	/**
+	 * Create a batch of new nodes with their revisions from a backup. Each
+	 * type of row is written with a single batch insert. The nodes must be
+	 * ordered so that a parent is either already in the database or before
+	 * its children in the list, and none of the nodes can already exist.
+	 * 
+	 * @param backups
+	 * @param revisions
+	 *            All of the revisions of the nodes in the batch.
+	 * @throws DatastoreException
+	 * @throws InvalidModelException
+	 */
+	public void createNewNodesFromBackup(List<NodeBackup> backups, List<NodeRevisionBackup> revisions)
+			throws DatastoreException, InvalidModelException;
+
 	/**
 	 * Update an existing revision from a backup.
 	 * 
@@ -49,4 +66,13 @@ public interface NodeBackupDAO {
 	 */
 	public long getTotalNodeCount();
 
+	/**
+	 * Get the current etag and parent of every node, in the order of the
+	 * node ids. This is the high-water mark of an incremental backup.
+	 * 
+	 * @return
+	 * @throws DatastoreException
+	 */
+	public List<NodeEtag> getAllNodeEtags() throws DatastoreException;
+
 }
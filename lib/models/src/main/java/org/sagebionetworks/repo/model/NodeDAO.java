@@ -1,7 +1,9 @@
 package org.sagebionetworks.repo.model;
 
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.repo.web.NotFoundException;
@@ -43,6 +45,15 @@ public interface NodeDAO {
 	 */
 	public Node getNode(String id) throws NotFoundException, DatastoreException;
 	
+	/**
+	 * Fetch the current version of many nodes with a fixed number of queries.
+	 * @param ids
+	 * @return the nodes in the same order as the passed ids.
+	 * @throws NotFoundException if any of the nodes does not exist.
+	 * @throws DatastoreException 
+	 */
+	public List<Node> getNodes(List<String> ids) throws NotFoundException, DatastoreException;
+	
 	/**
 	 * Get the node for a given version number.
 	 * @param id
@@ -80,6 +91,15 @@ public interface NodeDAO {
 	 */
 	public NamedAnnotations getAnnotations(String id) throws NotFoundException, DatastoreException;
 	
+	/**
+	 * Get the current Annotations of many nodes with a fixed number of queries.
+	 * @param ids
+	 * @return the annotations in the same order as the passed ids.
+	 * @throws NotFoundException if any of the nodes does not exist.
+	 * @throws DatastoreException 
+	 */
+	public List<NamedAnnotations> getAnnotations(List<String> ids) throws NotFoundException, DatastoreException;
+	
 	/**
 	 * Get the annotations for a given version number
 	 * @param id
@@ -184,6 +204,16 @@ public interface NodeDAO {
 	 */
 	public List<EntityHeader> getEntityPath(String nodeId) throws DatastoreException, NotFoundException;
 	
+	/**
+	 * Get the full path of many entities at once. Ancestors shared by the
+	 * entities are only read once.
+	 * @param nodeIds
+	 * @return Maps each passed id to its path, in the same form as {@link #getEntityPath(String)}.
+	 * @throws DatastoreException
+	 * @throws NotFoundException if any of the nodes does not exist.
+	 */
+	public Map<String, List<EntityHeader>> getEntityPaths(Collection<String> nodeIds) throws DatastoreException, NotFoundException;
+	
 	/**
 	 * Bootstrap all node types.
 	 * @throws DatastoreException 
@@ -0,0 +1,83 @@
+package org.sagebionetworks.repo.model;
+
+/**
+ * The current etag of a node, with the id of its parent. Every change to a
+ * node gives it a new etag, so comparing the etags of two points in time
+ * finds the nodes that changed between them.
+ */
+public class NodeEtag {
+
+	private String id;
+	private String etag;
+	private String parentId;
+
+	public NodeEtag() {
+	}
+
+	public NodeEtag(String id, String etag, String parentId) {
+		this.id = id;
+		this.etag = etag;
+		this.parentId = parentId;
+	}
+
+	public String getId() {
+		return id;
+	}
+	public void setId(String id) {
+		this.id = id;
+	}
+	public String getEtag() {
+		return etag;
+	}
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+	public String getParentId() {
+		return parentId;
+	}
+	public void setParentId(String parentId) {
+		this.parentId = parentId;
+	}
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((etag == null) ? 0 : etag.hashCode());
+		result = prime * result + ((id == null) ? 0 : id.hashCode());
+		result = prime * result
+				+ ((parentId == null) ? 0 : parentId.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		NodeEtag other = (NodeEtag) obj;
+		if (etag == null) {
+			if (other.etag != null)
+				return false;
+		} else if (!etag.equals(other.etag))
+			return false;
+		if (id == null) {
+			if (other.id != null)
+				return false;
+		} else if (!id.equals(other.id))
+			return false;
+		if (parentId == null) {
+			if (other.parentId != null)
+				return false;
+		} else if (!parentId.equals(other.parentId))
+			return false;
+		return true;
+	}
+	@Override
+	public String toString() {
+		return "NodeEtag [id=" + id + ", etag=" + etag + ", parentId="
+				+ parentId + "]";
+	}
+
+}
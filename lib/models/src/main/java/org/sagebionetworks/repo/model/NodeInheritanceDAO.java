@@ -1,5 +1,7 @@
 package org.sagebionetworks.repo.model;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.repo.web.NotFoundException;
@@ -30,6 +32,15 @@ public interface NodeInheritanceDAO {
 	 */
 	public String getBenefactor(String beneficiaryId) throws NotFoundException, DatastoreException;
 	
+	/**
+	 * Get the permissions benefactor of many nodes with a single query.
+	 * @param beneficiaryIds
+	 * @return Maps each beneficiary id to the id of its benefactor.
+	 * @throws NotFoundException if any of the nodes does not exist.
+	 * @throws DatastoreException 
+	 */
+	public Map<String, String> getBenefactors(Collection<String> beneficiaryIds) throws NotFoundException, DatastoreException;
+	
 	/**
 	 * Add a node as beneficiary to a given benefactor
 	 * @param beneficiaryId - Each node in this list will be added as a beneficiary to the passed benefactor.
@@ -37,4 +48,24 @@ public interface NodeInheritanceDAO {
 	 * @throws DatastoreException 
 	 */
 	public void addBeneficiary(String beneficiaryId, String toBenefactorId) throws NotFoundException, DatastoreException;
+	
+	/**
+	 * Get the children of the given parents that currently inherit from the given benefactor.
+	 * Children that inherit from any other benefactor are not included.
+	 * @param parentIds
+	 * @param benefactorId
+	 * @return
+	 * @throws DatastoreException 
+	 */
+	public Set<String> getChildrenWithBenefactor(Collection<String> parentIds, String benefactorId) throws DatastoreException;
+	
+	/**
+	 * Add many nodes as beneficiaries to a given benefactor.  The nodes are updated in sorted order
+	 * with a few multi-row updates rather than one update per node.
+	 * @param beneficiaryIds - Each node in this collection will be added as a beneficiary to the passed benefactor.
+	 * @param toBenefactorId - The new permissions benefactor of the nodes.
+	 * @throws NotFoundException if the benefactor does not exist.
+	 * @throws DatastoreException 
+	 */
+	public void addBeneficiaries(Collection<String> beneficiaryIds, String toBenefactorId) throws NotFoundException, DatastoreException;
 }
@@ -21,6 +21,18 @@ public interface NodeQueryDao {
 	 */
 	public NodeQueryResults executeQuery(BasicQuery query, UserInfo userInfo) throws DatastoreException;
 	
+	/**
+	 * Execute a query, streaming each row to the passed handler as it is read from the database.
+	 * Unlike {@link #executeQuery(BasicQuery, UserInfo)} the rows are never held in memory, so the
+	 * results are not limited in size.
+	 * @param query
+	 * @param userInfo
+	 * @param handler Receives each row of the results.
+	 * @return The total number of results and whether there are more, without any rows or ids.
+	 * @throws DatastoreException 
+	 */
+	public NodeQueryResults executeQuery(BasicQuery query, UserInfo userInfo, NodeQueryRowHandler handler) throws DatastoreException;
+	
 	/**
 	 * Execute the given query as a 'count' query.  The count will be the number of nodes that meet the passed criteria.
 	 * @param query
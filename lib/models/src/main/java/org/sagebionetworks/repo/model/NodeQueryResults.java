@@ -10,6 +10,7 @@ public class NodeQueryResults {
 	private List<String> resultIds;
 	private List<Map<String, Object>> allSelectedData;
 	private long totalNumberOfResults;
+	private boolean hasMore;
 	
 
 	
@@ -38,6 +39,19 @@ public class NodeQueryResults {
 		this.totalNumberOfResults = totalNumberOfResults;
 	}
 
+	/**
+	 * Are there more results after this page?
+	 * Only set when the query was run with CountMode.HAS_MORE.
+	 * @return
+	 */
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+
 	public List<Map<String, Object>> getAllSelectedData() {
 		return allSelectedData;
 	}
@@ -0,0 +1,24 @@
+package org.sagebionetworks.repo.model;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Receives the rows of a streamed query one at a time, in the order of the
+ * query, as they are read from the database.
+ */
+public interface NodeQueryRowHandler {
+
+	/**
+	 * Called once for each row of the results. The row is not referenced
+	 * after this call, so a handler that does not keep it allows the query to
+	 * run in constant memory.
+	 *
+	 * @param row
+	 *            The selected data of a single node, with its annotations
+	 *            decoded.
+	 * @throws IOException
+	 *             When the row cannot be written. This stops the query.
+	 */
+	public void handleRow(Map<String, Object> row) throws IOException;
+}
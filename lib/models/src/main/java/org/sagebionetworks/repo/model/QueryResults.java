@@ -36,10 +36,12 @@ public class QueryResults<T> {
 		ObjectSchema results = new ObjectSchema(TYPE.ARRAY);
 		results.setItems(new ObjectSchema(TYPE.OBJECT));
 		schema.getProperties().put("results", results);
+		schema.getProperties().put("hasMore", new ObjectSchema(TYPE.BOOLEAN));
 	}
 
 	private long totalNumberOfResults;
 	private List<T> results;
+	private boolean hasMore;
 
 	/**
 	 * Default constructor
@@ -90,10 +92,25 @@ public class QueryResults<T> {
 		this.results = results;
 	}
 
+	/**
+	 * @return true if there are more results after this page. This is only
+	 *         computed when the query was run with the hasMore count mode.
+	 */
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	/**
+	 * @param hasMore
+	 */
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+
 	@Override
 	public String toString() {
 		return "QueryResults [totalNumberOfResults=" + totalNumberOfResults
-				+ ", results=" + results + "]";
+				+ ", hasMore=" + hasMore + ", results=" + results + "]";
 	}
 	
 }
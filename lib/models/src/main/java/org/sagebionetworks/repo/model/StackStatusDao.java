@@ -23,6 +23,14 @@ public interface StackStatusDao {
 	 */
 	public StatusEnum getCurrentStatus();
 	
+	/**
+	 * Get the stack status from an in-memory snapshot rather than the database.
+	 * The snapshot is reloaded on a fixed interval and replaced as soon as an
+	 * update commits, and is never older than the configured staleness bound.
+	 * @return
+	 */
+	public StackStatus getSnapshotStatus();
+	
 	/**
 	 * Update the current status.
 	 * @param status
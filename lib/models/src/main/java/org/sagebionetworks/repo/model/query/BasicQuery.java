@@ -20,6 +20,7 @@ public class BasicQuery {
 	boolean ascending = true;
 	long offset = 0;
 	long limit = 10;
+	CountMode countMode = CountMode.EXACT;
 	
 	public List<String> getSelect() {
 		return select;
@@ -58,6 +59,16 @@ public class BasicQuery {
 	public void setLimit(long limit) {
 		this.limit = limit;
 	}
+	/**
+	 * How the total number of results should be computed.
+	 * @return
+	 */
+	public CountMode getCountMode() {
+		return countMode;
+	}
+	public void setCountMode(CountMode countMode) {
+		this.countMode = countMode;
+	}
 	public List<Expression> getFilters() {
 		return filters;
 	}
@@ -0,0 +1,54 @@
+package org.sagebionetworks.repo.model.query;
+
+/**
+ * How the total number of results of a paginated query should be computed.
+ */
+public enum CountMode {
+
+	/**
+	 * Always run the count query. This is the default.
+	 */
+	EXACT("exact"),
+	/**
+	 * Use a recently computed count for the same query and groups when one
+	 * exists. The total can be stale by up to the count cache time to live.
+	 */
+	ESTIMATE("estimate"),
+	/**
+	 * Do not run the count query. Instead one extra row is fetched to
+	 * determine if there are more results after the current page. The total
+	 * is then only a lower bound.
+	 */
+	HAS_MORE("hasMore"),
+	/**
+	 * Do not compute the total at all.
+	 */
+	NONE("none");
+
+	private String parameterValue;
+
+	CountMode(String parameterValue) {
+		this.parameterValue = parameterValue;
+	}
+
+	/**
+	 * The value of this mode when passed as a request parameter.
+	 * @return
+	 */
+	public String getParameterValue() {
+		return parameterValue;
+	}
+
+	/**
+	 * Lookup a mode using its request parameter value.
+	 * @param value
+	 * @return
+	 */
+	public static CountMode fromParameter(String value) {
+		if(value == null) throw new IllegalArgumentException("Count mode cannot be null");
+		for(CountMode mode: values()){
+			if(mode.parameterValue.equalsIgnoreCase(value)) return mode;
+		}
+		throw new IllegalArgumentException("Unknown count mode: "+value);
+	}
+}
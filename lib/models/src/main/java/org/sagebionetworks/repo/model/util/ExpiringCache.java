@@ -0,0 +1,301 @@
+package org.sagebionetworks.repo.model.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread safe cache where each entry expires a fixed time after it
+ * is added.
+ *
+ * When the cache is full, expired entries are removed and then the oldest
+ * entries until it is below nine tenths of its maximum size. Unlike clearing
+ * the whole cache this does not force every key to be loaded again at the
+ * same time.
+ *
+ * Every removal increments a generation, except for making room when the cache
+ * is full. A value loaded before a removal can be dropped by passing the
+ * generation read before the load to {@link #put(Object, Object, long)}.
+ */
+public class ExpiringCache<K, V> {
+
+	/**
+	 * Selects the entries removed by {@link ExpiringCache#removeMatching(Matcher)}.
+	 */
+	public interface Matcher<K, V> {
+		boolean matches(K key, V value);
+	}
+
+	/**
+	 * A value, the time it expires and the order it was added in.
+	 */
+	private static class Entry<V> {
+		V value;
+		long expiresOn;
+		long sequence;
+
+		Entry(V value, long expiresOn, long sequence) {
+			this.value = value;
+			this.expiresOn = expiresOn;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * Orders entries from the oldest to the newest.
+	 */
+	private static final Comparator<Map.Entry<?, ? extends Entry<?>>> OLDEST_FIRST = new Comparator<Map.Entry<?, ? extends Entry<?>>>() {
+		@Override
+		public int compare(Map.Entry<?, ? extends Entry<?>> one, Map.Entry<?, ? extends Entry<?>> two) {
+			long a = one.getValue().sequence;
+			long b = two.getValue().sequence;
+			return a < b ? -1 : (a == b ? 0 : 1);
+		}
+	};
+
+	private long timeToLiveMS;
+	private int maxSize;
+	private ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+	private AtomicLong generation = new AtomicLong(0);
+	private AtomicLong sequence = new AtomicLong(0);
+	private AtomicLong hitCount = new AtomicLong(0);
+	private AtomicLong missCount = new AtomicLong(0);
+
+	/**
+	 * A cache where entries never expire.
+	 *
+	 * @param maxSize
+	 *            The maximum number of entries held by this cache.
+	 */
+	public ExpiringCache(int maxSize) {
+		this(-1, maxSize);
+	}
+
+	/**
+	 * @param timeToLiveMS
+	 *            How long an entry can be used after it is added. A negative
+	 *            value means entries never expire.
+	 * @param maxSize
+	 *            The maximum number of entries held by this cache.
+	 */
+	public ExpiringCache(long timeToLiveMS, int maxSize) {
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		this.timeToLiveMS = timeToLiveMS;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Get the value for a key, counting a hit or a miss.
+	 *
+	 * @param key
+	 * @return null if there is no value for this key or it has expired.
+	 */
+	public V get(K key) {
+		V value = peek(key);
+		recordLookup(value != null);
+		return value;
+	}
+
+	/**
+	 * Get the value for a key without counting a hit or a miss.
+	 *
+	 * @param key
+	 * @return null if there is no value for this key or it has expired.
+	 */
+	public V peek(K key) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		Entry<V> entry = entries.get(key);
+		if (entry == null) return null;
+		if (entry.expiresOn <= System.currentTimeMillis()) {
+			entries.remove(key, entry);
+			return null;
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Count a lookup that was not made with {@link #get(Object)}.
+	 *
+	 * @param hit
+	 */
+	public void recordLookup(boolean hit) {
+		if (hit) {
+			hitCount.incrementAndGet();
+		} else {
+			missCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The current generation. This must be read before loading a value that
+	 * will be passed to {@link #put(Object, Object, long)}.
+	 *
+	 * @return
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Add a value to the cache.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(K key, V value) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		if (value == null) throw new IllegalArgumentException("Value cannot be null");
+		makeRoom();
+		entries.put(key, newEntry(value));
+	}
+
+	/**
+	 * Add a value to the cache unless anything was removed since the passed
+	 * generation was read.
+	 *
+	 * @param key
+	 * @param value
+	 * @param generationAtLoad
+	 * @return False if the value was dropped.
+	 */
+	public boolean put(K key, V value, long generationAtLoad) {
+		if (generation.get() != generationAtLoad) return false;
+		put(key, value);
+		return true;
+	}
+
+	/**
+	 * Add a value unless there is already an unexpired value for the key.
+	 *
+	 * @param key
+	 * @param value
+	 * @param generationAtLoad
+	 * @return The value now in the cache, or null if the value was dropped
+	 *         because something was removed since the passed generation was
+	 *         read.
+	 */
+	public V putIfAbsent(K key, V value, long generationAtLoad) {
+		if (value == null) throw new IllegalArgumentException("Value cannot be null");
+		V existing = peek(key);
+		if (existing != null) return existing;
+		if (generation.get() != generationAtLoad) return null;
+		makeRoom();
+		Entry<V> entry = newEntry(value);
+		Entry<V> raced = entries.putIfAbsent(key, entry);
+		return raced == null ? value : raced.value;
+	}
+
+	/**
+	 * Remove the value for a key.
+	 *
+	 * @param key
+	 * @return The removed value, or null if there was none.
+	 */
+	public V remove(K key) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		generation.incrementAndGet();
+		Entry<V> removed = entries.remove(key);
+		return removed == null ? null : removed.value;
+	}
+
+	/**
+	 * Remove every entry selected by the passed matcher. This visits every
+	 * entry in the cache.
+	 *
+	 * @param matcher
+	 */
+	public void removeMatching(Matcher<K, V> matcher) {
+		if (matcher == null) throw new IllegalArgumentException("Matcher cannot be null");
+		generation.incrementAndGet();
+		Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<K, Entry<V>> next = it.next();
+			if (matcher.matches(next.getKey(), next.getValue().value)) {
+				it.remove();
+			}
+		}
+	}
+
+	private Entry<V> newEntry(V value) {
+		long expiresOn = timeToLiveMS < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeToLiveMS;
+		return new Entry<V>(value, expiresOn, sequence.incrementAndGet());
+	}
+
+	/**
+	 * Remove all expired entries, then remove the oldest entries until the
+	 * cache is below nine tenths of its maximum size. Nothing removed here
+	 * was changed, so values being loaded are still valid and the generation
+	 * is not advanced.
+	 */
+	private void makeRoom() {
+		if (entries.size() < maxSize) return;
+		long now = System.currentTimeMillis();
+		List<Map.Entry<K, Entry<V>>> live = new ArrayList<Map.Entry<K, Entry<V>>>(entries.size());
+		Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<K, Entry<V>> next = it.next();
+			if (next.getValue().expiresOn <= now) {
+				it.remove();
+			} else {
+				live.add(next);
+			}
+		}
+		int target = maxSize - Math.max(1, maxSize / 10);
+		if (live.size() <= target) return;
+		Collections.sort(live, OLDEST_FIRST);
+		for (int i = 0; i < live.size() - target; i++) {
+			Map.Entry<K, Entry<V>> oldest = live.get(i);
+			entries.remove(oldest.getKey(), oldest.getValue());
+		}
+	}
+
+	/**
+	 * The number of entries currently in the cache, including any that have
+	 * expired but not yet been removed.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The number of lookups that found a value.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * The number of lookups that did not find a value.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Reset the hit and miss counts.
+	 */
+	public void resetCounts() {
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+}
@@ -0,0 +1,121 @@
+package org.sagebionetworks.repo.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+	@Test
+	public void testPutGet(){
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(60000, 10);
+		assertNull(cache.get("one"));
+		cache.put("one", 123L);
+		assertEquals(new Long(123), cache.get("one"));
+		assertEquals(new Long(123), cache.peek("one"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		cache.resetCounts();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void testExpired() throws InterruptedException{
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(0, 10);
+		cache.put("one", 123L);
+		Thread.sleep(5);
+		assertNull(cache.get("one"));
+		// The expired entry is removed when it is found.
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testNeverExpires() throws InterruptedException{
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(10);
+		cache.put("one", 123L);
+		Thread.sleep(5);
+		assertEquals(new Long(123), cache.get("one"));
+	}
+
+	@Test
+	public void testEvictOldestWhenFull(){
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(60000, 20);
+		for(long i=0; i<20; i++){
+			cache.put("key"+i, i);
+		}
+		assertEquals(20, cache.size());
+		long generation = cache.getGeneration();
+		// Only the two oldest entries are removed to make room.
+		cache.put("key20", 20L);
+		assertEquals(19, cache.size());
+		assertNull(cache.get("key0"));
+		assertNull(cache.get("key1"));
+		for(long i=2; i<=20; i++){
+			assertEquals(new Long(i), cache.get("key"+i));
+		}
+		// Making room does not drop values being loaded.
+		assertEquals(generation, cache.getGeneration());
+	}
+
+	@Test
+	public void testRemoveExpiredWhenFull() throws InterruptedException{
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(50, 2);
+		cache.put("one", 1L);
+		Thread.sleep(100);
+		cache.put("two", 2L);
+		// Only the expired entry needs to be removed to make room.
+		cache.put("three", 3L);
+		assertEquals(2, cache.size());
+		assertEquals(new Long(2), cache.get("two"));
+	}
+
+	@Test
+	public void testStaleGeneration(){
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(60000, 10);
+		long generation = cache.getGeneration();
+		// A value loaded before a removal must not be added after it.
+		cache.remove("one");
+		assertFalse(cache.put("one", 1L, generation));
+		assertNull(cache.putIfAbsent("one", 1L, generation));
+		assertNull(cache.get("one"));
+		assertTrue(cache.put("one", 1L, cache.getGeneration()));
+		assertEquals(new Long(1), cache.get("one"));
+	}
+
+	@Test
+	public void testPutIfAbsent(){
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(60000, 10);
+		assertEquals(new Long(1), cache.putIfAbsent("one", 1L, cache.getGeneration()));
+		assertEquals(new Long(1), cache.putIfAbsent("one", 2L, cache.getGeneration()));
+	}
+
+	@Test
+	public void testRemoveMatching(){
+		ExpiringCache<String, Long> cache = new ExpiringCache<String, Long>(60000, 10);
+		cache.put("one", 1L);
+		cache.put("two", 2L);
+		cache.put("three", 3L);
+		cache.removeMatching(new ExpiringCache.Matcher<String, Long>() {
+			@Override
+			public boolean matches(String key, Long value) {
+				return value % 2 == 1;
+			}
+		});
+		assertEquals(1, cache.size());
+		assertEquals(new Long(2), cache.get("two"));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidSize(){
+		new ExpiringCache<String, Long>(0);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testNullKey(){
+		new ExpiringCache<String, Long>(1).get(null);
+	}
+}
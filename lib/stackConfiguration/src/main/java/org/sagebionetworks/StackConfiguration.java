@@ -197,6 +197,28 @@ public class StackConfiguration {
 				.getProperty("org.sagebionetworks.id.generator.database.driver");
 	}
 
+	/**
+	 * The number of IDs each instance of the ID Generator leases from the
+	 * database at a time.
+	 * 
+	 * @return
+	 */
+	public Integer getIdGeneratorBlockSize() {
+		return Integer.valueOf(configuration
+				.getProperty("org.sagebionetworks.id.generator.block.size"));
+	}
+
+	/**
+	 * The number of milliseconds an instance of the ID Generator may issue IDs
+	 * from a leased block before the rest of the block is dropped.
+	 * 
+	 * @return
+	 */
+	public Long getIdGeneratorLeaseTimeMS() {
+		return Long.valueOf(configuration
+				.getProperty("org.sagebionetworks.id.generator.lease.time.ms"));
+	}
+
 	/**
 	 * All of these keys are used to build up a map of JDO configurations passed
 	 * to the JDOPersistenceManagerFactory
@@ -484,6 +506,270 @@ public class StackConfiguration {
 						.getProperty("org.sagebionetworks.maximum.bytes.per.query.result"));
 	}
 
+	/**
+	 * The maximum number of generated query SQL plans cached by each repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getQueryPlanCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.query.plan.cache.max.size"));
+	}
+
+	/**
+	 * How long (MS) a query count can be reused before it must be recomputed.
+	 * 
+	 * @return
+	 */
+	public static long getQueryCountCacheTimeToLiveMS() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.query.count.cache.ttl.ms"));
+	}
+
+	/**
+	 * The maximum number of query counts cached by each repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getQueryCountCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.query.count.cache.max.size"));
+	}
+
+	/**
+	 * How long (MS) an ACL access decision can be reused. Decisions are
+	 * invalidated locally when ACLs change, so this only bounds how long a
+	 * change made through another instance can take to be seen.
+	 * 
+	 * @return
+	 */
+	public static long getAccessDecisionCacheTimeToLiveMS() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.access.decision.cache.ttl.ms"));
+	}
+
+	/**
+	 * The maximum number of resources whose ACL access decisions are cached by
+	 * each repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getAccessDecisionCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.access.decision.cache.max.size"));
+	}
+
+	/**
+	 * How long the parent, type and name of a node can be served from the
+	 * ancestor cache.
+	 * 
+	 * @return
+	 */
+	public static long getNodeAncestorCacheTimeToLiveMS() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.node.ancestor.cache.ttl.ms"));
+	}
+
+	/**
+	 * The maximum number of nodes held in the ancestor cache of each repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getNodeAncestorCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.node.ancestor.cache.max.size"));
+	}
+
+	/**
+	 * The maximum number of entity type aliases cached by each repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getNodeAliasCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.node.alias.cache.max.size"));
+	}
+
+	/**
+	 * The maximum number of concepts, and of concept lists, cached by each
+	 * repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getConceptCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.concept.cache.max.size"));
+	}
+
+	/**
+	 * The maximum number of presigned S3 URLs cached by each repository instance.
+	 * 
+	 * @return
+	 */
+	public static int getPresignedUrlCacheMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.presigned.url.cache.max.size"));
+	}
+
+	/**
+	 * The maximum number of distinct method names each instance keeps a
+	 * latency histogram for in a single category (controller, dao, jdbc...).
+	 * 
+	 * @return
+	 */
+	public static int getLatencyRegistryMaxNamesPerCategory() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.latency.registry.max.names.per.category"));
+	}
+
+	/**
+	 * The maximum number of distinct normalized SQL statements each instance
+	 * keeps statistics for.
+	 * 
+	 * @return
+	 */
+	public static int getSqlStatementRegistryMaxSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.sql.statement.registry.max.size"));
+	}
+
+	/**
+	 * SQL executions that take at least this many milliseconds are kept in
+	 * the slow query log.
+	 * 
+	 * @return
+	 */
+	public static long getSlowQueryThresholdMS() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.sql.slow.query.threshold.ms"));
+	}
+
+	/**
+	 * The number of slow SQL executions each instance keeps.
+	 * 
+	 * @return
+	 */
+	public static int getSlowQueryLogSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.sql.slow.query.log.size"));
+	}
+
+	/**
+	 * The number of threads that fetch nodes and their revisions while a
+	 * backup is written.
+	 * 
+	 * @return
+	 */
+	public static int getBackupFetchThreadCount() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.fetch.thread.count"));
+	}
+
+	/**
+	 * The number of threads that serialize nodes and their revisions while a
+	 * backup is written.
+	 * 
+	 * @return
+	 */
+	public static int getBackupSerializationThreadCount() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.serialization.thread.count"));
+	}
+
+	/**
+	 * The maximum number of nodes waiting to be written to a backup file.
+	 * 
+	 * @return
+	 */
+	public static int getBackupPipelineQueueSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.pipeline.queue.size"));
+	}
+
+	/**
+	 * The maximum number of nodes restored in a single transaction.
+	 * 
+	 * @return
+	 */
+	public static int getBackupRestoreBatchSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.restore.batch.size"));
+	}
+
+	/**
+	 * The number of threads that write batches of nodes to the database while
+	 * a backup is restored.
+	 * 
+	 * @return
+	 */
+	public static int getBackupRestoreWriterThreadCount() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.restore.writer.thread.count"));
+	}
+
+	/**
+	 * The uncompressed size in bytes of each block of a compact backup.
+	 * 
+	 * @return
+	 */
+	public static int getBackupCompactBlockSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.compact.block.size"));
+	}
+
+	/**
+	 * The format of new entity backups, either XML_ZIP or COMPACT.
+	 * 
+	 * @return
+	 */
+	public static String getBackupFormat() {
+		return configuration.getProperty("org.sagebionetworks.backup.format");
+	}
+
+	/**
+	 * The size in bytes of each part of a backup file that is uploaded to or
+	 * downloaded from S3.
+	 * 
+	 * @return
+	 */
+	public static long getBackupS3PartSize() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.s3.part.size"));
+	}
+
+	/**
+	 * The number of parts of a backup file that are uploaded to or downloaded
+	 * from S3 at the same time.
+	 * 
+	 * @return
+	 */
+	public static int getBackupS3TransferThreadCount() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.backup.s3.transfer.thread.count"));
+	}
+
 	/**
 	 * The maximum number entities returned in a single call
 	 * 
@@ -495,6 +781,42 @@ public class StackConfiguration {
 						.getProperty("org.sagebionetworks.maximum.number.entities.returned.per.call"));
 	}
 
+	/**
+	 * The maximum number of entities that can be fetched with a single batch
+	 * request.
+	 * 
+	 * @return
+	 */
+	public static int getMaximumEntityBatchSize() {
+		return Integer
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.maximum.entity.batch.size"));
+	}
+
+	/**
+	 * How often each repository instance reloads the stack status from the
+	 * database.
+	 * 
+	 * @return
+	 */
+	public static long getStackStatusRefreshIntervalMS() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.stack.status.refresh.interval.ms"));
+	}
+
+	/**
+	 * The oldest the in-memory stack status can be before a request must
+	 * reload it from the database.
+	 * 
+	 * @return
+	 */
+	public static long getStackStatusMaxStalenessMS() {
+		return Long
+				.valueOf(configuration
+						.getProperty("org.sagebionetworks.stack.status.max.staleness.ms"));
+	}
+
 	
 	/**
 	 * The maximum number of pixels used for a preview image height and width
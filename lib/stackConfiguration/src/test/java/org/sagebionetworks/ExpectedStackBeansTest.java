@@ -21,6 +21,8 @@ public class ExpectedStackBeansTest {
 			"stackConfiguration.idGeneratorDatabaseConnectionUrl",
 			"stackConfiguration.idGeneratorDatabaseUsername",
 			"stackConfiguration.idGeneratorDatabasePassword",
+			"stackConfiguration.idGeneratorBlockSize",
+			"stackConfiguration.idGeneratorLeaseTimeMS",
 			// Repository properties
 			"stackConfiguration.repositoryJDOConfigurationMap",
 			"stackConfiguration.repositoryDatabaseDriver",
@@ -0,0 +1,347 @@
+package org.sagebionetworks.authutil;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of values that are expensive to load from Crowd, such as the
+ * user id of a session token.
+ *
+ * Each entry expires on its own, with a little jitter so entries loaded at the
+ * same time do not all expire at the same time. An entry that is read after
+ * part of its time to live has passed is reloaded in the background while the
+ * cached value continues to be served. Concurrent loads of the same key are
+ * combined into a single call to the loader.
+ */
+public class AuthCache<V> {
+
+	private static final Logger log = Logger.getLogger(AuthCache.class.getName());
+
+	/**
+	 * Loads the value of a key when it is not in the cache.
+	 */
+	public interface Loader<V> {
+		V load(String key) throws Exception;
+	}
+
+	/**
+	 * The source of the current time, so tests can control when entries are
+	 * refreshed and expire.
+	 */
+	public interface Clock {
+		long currentTimeMillis();
+	}
+
+	private static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * A value and the times it should be refreshed and it expires.
+	 */
+	private static class Entry<V> {
+		V value;
+		long refreshAfter;
+		long expiresOn;
+		AtomicBoolean refreshing = new AtomicBoolean(false);
+
+		Entry(V value, long refreshAfter, long expiresOn) {
+			this.value = value;
+			this.refreshAfter = refreshAfter;
+			this.expiresOn = expiresOn;
+		}
+	}
+
+	/**
+	 * Entries are refreshed once this fraction of their time to live has passed...
+	 */
+	private static final double REFRESH_AHEAD_FRACTION = 0.5;
+	/**
+	 * ...plus a random part of this fraction.
+	 */
+	private static final double REFRESH_JITTER_FRACTION = 0.25;
+	/**
+	 * Up to this fraction is taken off the time to live of each entry.
+	 */
+	private static final double EXPIRE_JITTER_FRACTION = 0.1;
+
+	private long timeToLiveMS;
+	private int maxSize;
+	private Loader<V> loader;
+	private Executor refreshExecutor;
+	private Clock clock = SYSTEM_CLOCK;
+	private ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<String, Entry<V>>();
+	private ConcurrentMap<String, FutureTask<V>> loading = new ConcurrentHashMap<String, FutureTask<V>>();
+	private Random random = new Random();
+	private AtomicLong hitCount = new AtomicLong(0);
+	private AtomicLong missCount = new AtomicLong(0);
+	private AtomicLong loadCount = new AtomicLong(0);
+	private AtomicLong loadTimeMS = new AtomicLong(0);
+	private AtomicLong refreshCount = new AtomicLong(0);
+
+	/**
+	 * @param timeToLiveMS
+	 *            How long each entry can be served from the cache.
+	 * @param maxSize
+	 *            The maximum number of entries held by this cache.
+	 * @param loader
+	 *            Loads the value of a key that is not in the cache.
+	 * @param refreshExecutor
+	 *            Used to refresh entries in the background.
+	 */
+	public AuthCache(long timeToLiveMS, int maxSize, Loader<V> loader, Executor refreshExecutor) {
+		if (timeToLiveMS < 1) throw new IllegalArgumentException("Time to live must be at least one ms");
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		if (loader == null) throw new IllegalArgumentException("Loader cannot be null");
+		if (refreshExecutor == null) throw new IllegalArgumentException("Refresh executor cannot be null");
+		this.timeToLiveMS = timeToLiveMS;
+		this.maxSize = maxSize;
+		this.loader = loader;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Replace the system clock used to refresh and expire entries.
+	 *
+	 * @param clock
+	 */
+	public void setClock(Clock clock) {
+		if (clock == null) throw new IllegalArgumentException("Clock cannot be null");
+		this.clock = clock;
+	}
+
+	/**
+	 * Create an executor suitable for refreshing entries in the background.
+	 * Its threads will not keep the JVM alive.
+	 *
+	 * @return
+	 */
+	public static ExecutorService createRefreshExecutor() {
+		return Executors.newFixedThreadPool(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "auth-cache-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Get the value of a key, loading it if it is not in the cache or has
+	 * expired.
+	 *
+	 * @param key
+	 * @return
+	 * @throws Exception
+	 *             Any exception thrown by the loader.
+	 */
+	public V get(String key) throws Exception {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		long now = clock.currentTimeMillis();
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.expiresOn > now) {
+			hitCount.incrementAndGet();
+			if (now >= entry.refreshAfter && entry.refreshing.compareAndSet(false, true)) {
+				refresh(key);
+			}
+			return entry.value;
+		}
+		missCount.incrementAndGet();
+		return load(key);
+	}
+
+	/**
+	 * Load a key. If the key is already being loaded by another thread then
+	 * this waits for that load rather than starting a second one.
+	 *
+	 * @param key
+	 * @return
+	 * @throws Exception
+	 */
+	private V load(final String key) throws Exception {
+		FutureTask<V> task = new FutureTask<V>(new Callable<V>() {
+			@Override
+			public V call() throws Exception {
+				long start = clock.currentTimeMillis();
+				try {
+					V value = loader.load(key);
+					put(key, value);
+					return value;
+				} finally {
+					loadCount.incrementAndGet();
+					loadTimeMS.addAndGet(clock.currentTimeMillis() - start);
+				}
+			}
+		});
+		FutureTask<V> existing = loading.putIfAbsent(key, task);
+		if (existing == null) {
+			// This thread does the load.
+			try {
+				task.run();
+			} finally {
+				loading.remove(key, task);
+			}
+			existing = task;
+		}
+		try {
+			return existing.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Reload a key in the background. If the load fails the failure is logged
+	 * and the cached value is served until it expires, when the key is loaded
+	 * again by the next request.
+	 *
+	 * @param key
+	 */
+	private void refresh(final String key) {
+		refreshCount.incrementAndGet();
+		try {
+			refreshExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						load(key);
+					} catch (Exception e) {
+						log.log(Level.WARNING, "Failed to refresh a cached entry, it will be kept until it expires", e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The entry will simply be loaded again when it expires.
+		}
+	}
+
+	private void put(String key, V value) {
+		if (entries.size() >= maxSize) {
+			makeRoom();
+		}
+		long now = clock.currentTimeMillis();
+		long expiresOn = now + timeToLiveMS - (long) (random.nextDouble() * EXPIRE_JITTER_FRACTION * timeToLiveMS);
+		long refreshAfter = now + (long) ((REFRESH_AHEAD_FRACTION + random.nextDouble() * REFRESH_JITTER_FRACTION) * timeToLiveMS);
+		entries.put(key, new Entry<V>(value, refreshAfter, expiresOn));
+	}
+
+	/**
+	 * Remove all expired entries, and if the cache is still full remove
+	 * entries until it is below nine tenths of its maximum size. Unlike
+	 * clearing the whole cache this does not force every key to be loaded
+	 * again at the same time.
+	 */
+	private void makeRoom() {
+		long now = clock.currentTimeMillis();
+		Iterator<Map.Entry<String, Entry<V>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().expiresOn <= now) {
+				it.remove();
+			}
+		}
+		int target = maxSize - Math.max(1, maxSize / 10);
+		it = entries.entrySet().iterator();
+		while (entries.size() > target && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Remove a key from the cache.
+	 *
+	 * @param key
+	 */
+	public void invalidate(String key) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		entries.remove(key);
+	}
+
+	/**
+	 * The number of entries currently in the cache.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The number of lookups that were served from the cache.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * The number of lookups that had to wait for a load.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * The number of calls made to the loader.
+	 *
+	 * @return
+	 */
+	public long getLoadCount() {
+		return loadCount.get();
+	}
+
+	/**
+	 * The total time spent in the loader.
+	 *
+	 * @return
+	 */
+	public long getTotalLoadTimeMS() {
+		return loadTimeMS.get();
+	}
+
+	/**
+	 * The number of background refreshes started.
+	 *
+	 * @return
+	 */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	/**
+	 * Remove all entries and reset the counts.
+	 */
+	public void clear() {
+		entries.clear();
+		hitCount.set(0);
+		missCount.set(0);
+		loadCount.set(0);
+		loadTimeMS.set(0);
+		refreshCount.set(0);
+	}
+}
@@ -2,11 +2,10 @@ package org.sagebionetworks.authutil;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,6 +42,10 @@ public class CrowdAuthenticationFilter implements Filter {
 	
 	@Override
 	public void destroy() {
+		if (cacheRefresher!=null) {
+			cacheRefresher.shutdownNow();
+			cacheRefresher = null;
+		}
 	}
 	
 	private static void reject(HttpServletRequest req, HttpServletResponse resp, String reason) throws IOException {
@@ -52,30 +55,56 @@ public class CrowdAuthenticationFilter implements Filter {
 	}
 	
 	
-	private static Map<String,String> tokenCache = null; // maps authenticated tokens to userIds
-	private static Map<String,String> secretKeyCache = null; // maps userIds to secret keys
+	private static AuthCache<String> tokenCache = null; // maps authenticated tokens to userIds
+	private static AuthCache<String> secretKeyCache = null; // maps userIds to secret keys
 	private static Long cacheTimeout = null;
-	private static Date lastCacheDump = null;
+	private static ExecutorService cacheRefresher = null; // refreshes hot cache entries in the background
 	
 	private void initCaches() {
-		tokenCache = Collections.synchronizedMap(new HashMap<String,String>());
-		secretKeyCache = Collections.synchronizedMap(new HashMap<String,String>());
-		lastCacheDump = new Date();
 		String s = System.getProperty(AuthorizationConstants.AUTH_CACHE_TIMEOUT_MILLIS);
 		if (s!=null && s.length()>0) {
 			cacheTimeout = Long.parseLong(s);
 		} else {
 			cacheTimeout = AuthorizationConstants.AUTH_CACHE_TIMEOUT_DEFAULT;
 		}
+		int cacheMaxSize = AuthorizationConstants.AUTH_CACHE_MAX_SIZE_DEFAULT;
+		s = System.getProperty(AuthorizationConstants.AUTH_CACHE_MAX_SIZE);
+		if (s!=null && s.length()>0) {
+			cacheMaxSize = Integer.parseInt(s);
+		}
+		destroy();
+		tokenCache = null;
+		secretKeyCache = null;
+		if (cacheTimeout>0) {
+			// Each entry expires on its own, so there is no moment when all tokens must be revalidated at once.
+			cacheRefresher = AuthCache.createRefreshExecutor();
+			tokenCache = new AuthCache<String>(cacheTimeout, cacheMaxSize, new AuthCache.Loader<String>() {
+				@Override
+				public String load(String sessionToken) throws Exception {
+					return CrowdAuthUtil.revalidate(sessionToken);
+				}
+			}, cacheRefresher);
+			secretKeyCache = new AuthCache<String>(cacheTimeout, cacheMaxSize, new AuthCache.Loader<String>() {
+				@Override
+				public String load(String userId) throws Exception {
+					return loadUsersSecretKey(userId);
+				}
+			}, cacheRefresher);
+		}
 	}
 	
-	private void checkCacheDump() {
-		Date now = new Date();
-		if (lastCacheDump.getTime()+cacheTimeout<now.getTime()) {
-			tokenCache.clear();
-			secretKeyCache.clear();
-			lastCacheDump = now;
-		}
+	/**
+	 * The cache of session tokens, or null if caching is not used.
+	 */
+	public static AuthCache<String> getTokenCache() {
+		return tokenCache;
+	}
+	
+	/**
+	 * The cache of secret keys, or null if caching is not used.
+	 */
+	public static AuthCache<String> getSecretKeyCache() {
+		return secretKeyCache;
 	}
 
 	@Override
@@ -96,16 +125,10 @@ public class CrowdAuthenticationFilter implements Filter {
 				if (usingMockCrowd) {
 					userId= sessionToken;
 				} else {
-					userId = null;
-					if (cacheTimeout>0) { // then use cache
-						checkCacheDump();
+					if (tokenCache!=null) { // then use cache
 						userId = tokenCache.get(sessionToken);
-					}
-					if (userId==null) { // not using cache or not found in cache
+					} else {
 						userId = CrowdAuthUtil.revalidate(sessionToken);
-						if (cacheTimeout>0) {
-							tokenCache.put(sessionToken, userId);
-						}
 					}
 				}
 			} catch (Exception xee) {
@@ -140,14 +163,22 @@ public class CrowdAuthenticationFilter implements Filter {
 	}
 	
 	public String getUsersSecretKey(String userId) throws AuthenticationException, IOException {
-		Map<String,Collection<String>> userAttrs = null;
-		String secretKey = null;
-		if (cacheTimeout>0) { // then use cache
-			checkCacheDump();
-			secretKey = secretKeyCache.get(userId);
+		if (secretKeyCache==null) return loadUsersSecretKey(userId);
+		try {
+			return secretKeyCache.get(userId);
+		} catch (AuthenticationException e) {
+			throw e;
+		} catch (IOException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
 		}
-		if (secretKey!=null) return secretKey;
-		
+	}
+	
+	private static String loadUsersSecretKey(String userId) throws AuthenticationException, IOException {
+		Map<String,Collection<String>> userAttrs = null;
 		try {
 			userAttrs = CrowdAuthUtil.getUserAttributes(userId);
 		} catch (NotFoundException nfe) {
@@ -157,11 +188,7 @@ public class CrowdAuthenticationFilter implements Filter {
 		if (secretKeyCollection==null || secretKeyCollection.isEmpty()) {
 			throw new AuthenticationException(HttpStatus.UNAUTHORIZED.value(), "Authentication server has no secret key registered for "+userId, null);
 		}
-		secretKey = secretKeyCollection.iterator().next();
-		if (cacheTimeout>0) {
-			secretKeyCache.put(userId, secretKey);
-		}
-		return secretKey;
+		return secretKeyCollection.iterator().next();
 	}
 
 
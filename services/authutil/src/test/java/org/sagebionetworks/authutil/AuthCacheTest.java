@@ -0,0 +1,204 @@
+package org.sagebionetworks.authutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the AuthCache.
+ *
+ */
+public class AuthCacheTest {
+
+	AtomicInteger loads;
+	Executor sameThread;
+	TestClock clock;
+
+	/**
+	 * A clock that only moves when the test moves it.
+	 */
+	private static class TestClock implements AuthCache.Clock {
+		long now = 1000000;
+
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+	}
+
+	@Before
+	public void before() {
+		loads = new AtomicInteger(0);
+		clock = new TestClock();
+		// Run refreshes immediately so they can be checked.
+		sameThread = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+	}
+
+	private AuthCache.Loader<String> createLoader() {
+		return new AuthCache.Loader<String>() {
+			@Override
+			public String load(String key) throws Exception {
+				return key + loads.incrementAndGet();
+			}
+		};
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		AuthCache<String> cache = new AuthCache<String>(100000, 10, createLoader(), sameThread);
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.get("a"));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getLoadCount());
+		cache.invalidate("a");
+		assertEquals("a2", cache.get("a"));
+	}
+
+	@Test
+	public void testExpires() throws Exception {
+		AuthCache<String> cache = new AuthCache<String>(10, 10, createLoader(), sameThread);
+		cache.setClock(clock);
+		assertEquals("a1", cache.get("a"));
+		clock.now += 10;
+		assertEquals("a2", cache.get("a"));
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testRefreshAhead() throws Exception {
+		AuthCache<String> cache = new AuthCache<String>(1000, 10, createLoader(), sameThread);
+		cache.setClock(clock);
+		assertEquals("a1", cache.get("a"));
+		// Before the earliest refresh point nothing is reloaded.
+		clock.now += 499;
+		assertEquals("a1", cache.get("a"));
+		assertEquals(0, cache.getRefreshCount());
+		// Past the latest refresh point but before the earliest expiry.
+		clock.now += 300;
+		// The cached value is served while it is refreshed.
+		assertEquals("a1", cache.get("a"));
+		assertEquals(1, cache.getRefreshCount());
+		assertEquals("a2", cache.get("a"));
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testFailedRefreshKeepsEntry() throws Exception {
+		final AtomicInteger calls = new AtomicInteger(0);
+		AuthCache<String> cache = new AuthCache<String>(1000, 10, new AuthCache.Loader<String>() {
+			@Override
+			public String load(String key) throws Exception {
+				if (calls.incrementAndGet() > 1) throw new AuthenticationException(401, "expired", null);
+				return "user";
+			}
+		}, sameThread);
+		cache.setClock(clock);
+		assertEquals("user", cache.get("token"));
+		clock.now += 800;
+		// The refresh fails but the entry is still valid.
+		assertEquals("user", cache.get("token"));
+		assertEquals(1, cache.size());
+		assertEquals(2, calls.get());
+		// The failed entry is not refreshed again before it expires.
+		assertEquals("user", cache.get("token"));
+		assertEquals(1, cache.getRefreshCount());
+		assertEquals(2, calls.get());
+		// Once it expires the next request loads it again.
+		clock.now += 200;
+		try {
+			cache.get("token");
+			fail("The token should no longer be valid");
+		} catch (AuthenticationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AuthCache<String> cache = new AuthCache<String>(100000, 10, new AuthCache.Loader<String>() {
+			@Override
+			public String load(String key) throws Exception {
+				loads.incrementAndGet();
+				loading.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return "user";
+			}
+		}, sameThread);
+		int numberOfThreads = 5;
+		final AtomicInteger results = new AtomicInteger(0);
+		Thread[] threads = new Thread[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if ("user".equals(cache.get("token"))) {
+							results.incrementAndGet();
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		assertTrue(loading.await(5, TimeUnit.SECONDS));
+		// Wait for the other threads to join the load.
+		waitUntilBlocked(threads, 5000);
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+		assertEquals(numberOfThreads, results.get());
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * Wait until every thread is waiting, either in the loader or for the load
+	 * it joined.
+	 *
+	 * @param threads
+	 * @param timeoutMS
+	 */
+	private void waitUntilBlocked(Thread[] threads, long timeoutMS) {
+		long start = System.currentTimeMillis();
+		for (Thread thread : threads) {
+			while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+				assertTrue("Timed out waiting for the threads to block", System.currentTimeMillis() - start < timeoutMS);
+				Thread.yield();
+			}
+		}
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+		AuthCache<String> cache = new AuthCache<String>(100000, 10, createLoader(), sameThread);
+		for (int i = 0; i < 25; i++) {
+			cache.get("key" + i);
+		}
+		assertTrue(cache.size() <= 10);
+		// The most recent key is always kept.
+		assertEquals("key2425", cache.get("key24"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroTimeToLive() {
+		new AuthCache<String>(0, 10, createLoader(), sameThread);
+	}
+}
@@ -1,5 +1,7 @@
 package org.sagebionetworks.repo.manager;
 
+import java.util.Collection;
+
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.Node;
@@ -21,6 +23,20 @@ public interface AuthorizationManager {
 	 */
 	public boolean canAccess(UserInfo userInfo, String nodeId, ACCESS_TYPE accessType) 
 		throws NotFoundException, DatastoreException;
+	
+	/**
+	 * Check access to many nodes at once. Each distinct benefactor is only checked once.
+	 * @param userInfo
+	 * @param nodeIds
+	 * @param accessType
+	 * 
+	 * @return true iff the given user has the given access to every one of the given nodes
+	 * 
+	 * @exception NotFoundException if the group or any node is invalid
+	 * 
+	 */
+	public boolean canAccess(UserInfo userInfo, Collection<String> nodeIds, ACCESS_TYPE accessType) 
+		throws NotFoundException, DatastoreException;
 		
 	/**
     *
@@ -1,5 +1,12 @@
 package org.sagebionetworks.repo.manager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.AccessControlListDAO;
 import org.sagebionetworks.repo.model.AccessRequirement;
@@ -86,6 +93,42 @@ public class AuthorizationManagerImpl implements AuthorizationManager {
 		String permissionsBenefactor = nodeInheritanceDAO.getBenefactor(nodeId);
 		return accessControlListDAO.canAccess(userInfo.getGroups(), permissionsBenefactor, accessType);
 	}
+	
+	@Transactional(readOnly = true)
+	@Override
+	public boolean canAccess(UserInfo userInfo, Collection<String> nodeIds, ACCESS_TYPE accessType) 
+		throws NotFoundException, DatastoreException {
+		if (nodeIds == null) throw new IllegalArgumentException("Node ids cannot be null");
+		// if is an administrator, return true
+		if (userInfo.isAdmin()) return true;
+		if (accessType.equals(ACCESS_TYPE.DOWNLOAD)) {
+			// access requirements are specific to each node
+			for (String nodeId : nodeIds) {
+				if (!canDownload(userInfo, nodeId)) return false;
+			}
+			return true;
+		}
+		// Look up the benefactors of all nodes with one query, then check each distinct benefactor once.
+		Map<String, String> benefactors = nodeInheritanceDAO.getBenefactors(nodeIds);
+		Map<String, Boolean> benefactorAccess = new HashMap<String, Boolean>();
+		List<String> denied = new ArrayList<String>();
+		for (String nodeId : nodeIds) {
+			String benefactor = benefactors.get(nodeId);
+			Boolean canAccess = benefactorAccess.get(benefactor);
+			if (canAccess == null) {
+				canAccess = accessControlListDAO.getAccessTypes(userInfo.getGroups(), benefactor).contains(accessType);
+				benefactorAccess.put(benefactor, canAccess);
+			}
+			if (!canAccess) denied.add(nodeId);
+		}
+		if (denied.isEmpty()) return true;
+		// the owner of a node has full access to it, so only the denied nodes need to be loaded
+		Long principalId = Long.parseLong(userInfo.getIndividualGroup().getId());
+		for (Node node : nodeDAO.getNodes(denied)) {
+			if (!node.getCreatedByPrincipalId().equals(principalId)) return false;
+		}
+		return true;
+	}
 
 	/**
      *
@@ -143,12 +186,14 @@ public class AuthorizationManagerImpl implements AuthorizationManager {
 		}
 		// must look-up access
 		String permissionsBenefactor = nodeInheritanceDAO.getBenefactor(entityId);
+		// Look up all of the access types at once.
+		Set<ACCESS_TYPE> accessTypes = this.accessControlListDAO.getAccessTypes(userInfo.getGroups(), permissionsBenefactor);
 		// Child can be added if this entity is not null
-		permission.setCanAddChild(this.accessControlListDAO.canAccess(userInfo.getGroups(), permissionsBenefactor, ACCESS_TYPE.CREATE));
-		permission.setCanChangePermissions(this.accessControlListDAO.canAccess(userInfo.getGroups(), permissionsBenefactor, ACCESS_TYPE.CHANGE_PERMISSIONS));
-		permission.setCanDelete(this.accessControlListDAO.canAccess(userInfo.getGroups(), permissionsBenefactor, ACCESS_TYPE.DELETE));
-		permission.setCanEdit(this.accessControlListDAO.canAccess(userInfo.getGroups(), permissionsBenefactor, ACCESS_TYPE.UPDATE));
-		permission.setCanView(this.accessControlListDAO.canAccess(userInfo.getGroups(), permissionsBenefactor, ACCESS_TYPE.READ));
+		permission.setCanAddChild(accessTypes.contains(ACCESS_TYPE.CREATE));
+		permission.setCanChangePermissions(accessTypes.contains(ACCESS_TYPE.CHANGE_PERMISSIONS));
+		permission.setCanDelete(accessTypes.contains(ACCESS_TYPE.DELETE));
+		permission.setCanEdit(accessTypes.contains(ACCESS_TYPE.UPDATE));
+		permission.setCanView(accessTypes.contains(ACCESS_TYPE.READ));
 		permission.setCanDownload(this.canDownload(userInfo, entityId));
 		permission.setCanEnableInheritance(!parentIsRoot && permission.getCanChangePermissions());
 		return permission;
@@ -49,6 +49,17 @@ public interface EntityManager {
 	 */
 	public <T extends Entity> T getEntity(UserInfo userInfo, String entityId, Class<? extends T> entityClass) throws NotFoundException, DatastoreException, UnauthorizedException;
 	
+	/**
+	 * Get the current version of many entities at once, each as its own type.
+	 * @param userInfo
+	 * @param entityIds
+	 * @return the entities in the same order as the passed ids.
+	 * @throws UnauthorizedException if the user cannot read any one of the entities.
+	 * @throws DatastoreException 
+	 * @throws NotFoundException 
+	 */
+	public List<Entity> getEntities(UserInfo userInfo, List<String> entityIds) throws NotFoundException, DatastoreException, UnauthorizedException;
+	
 	/**
 	 * Get the full path of an entity.
 	 * 
@@ -18,6 +18,7 @@ import org.sagebionetworks.repo.model.InvalidModelException;
 import org.sagebionetworks.repo.model.Locationable;
 import org.sagebionetworks.repo.model.NamedAnnotations;
 import org.sagebionetworks.repo.model.Node;
+import org.sagebionetworks.repo.model.NodeDAO;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.attachment.PresignedUrl;
@@ -41,18 +42,22 @@ public class EntityManagerImpl implements EntityManager {
 	private PermissionsManager permissionsManager;
 	@Autowired
 	UserManager userManager;
+	@Autowired
+	NodeDAO nodeDao;
 
 	public EntityManagerImpl() {
 	}
 	
 	public EntityManagerImpl(NodeManager nodeManager,
 			S3TokenManager s3TokenManager,
-			PermissionsManager permissionsManager, UserManager userManager) {
+			PermissionsManager permissionsManager, UserManager userManager,
+			NodeDAO nodeDao) {
 		super();
 		this.nodeManager = nodeManager;
 		this.s3TokenManager = s3TokenManager;
 		this.permissionsManager = permissionsManager;
 		this.userManager = userManager;
+		this.nodeDao = nodeDao;
 	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
@@ -180,6 +185,30 @@ public class EntityManagerImpl implements EntityManager {
 		return ewa.getEntity();
 	}
 
+	@Transactional(readOnly = true)
+	@Override
+	public List<Entity> getEntities(UserInfo userInfo, List<String> entityIds)
+			throws NotFoundException, DatastoreException, UnauthorizedException {
+		if (entityIds == null)
+			throw new IllegalArgumentException("Entity IDs cannot be null");
+		// The nodes and annotations are each loaded with a fixed number of
+		// queries no matter how many entities are requested. Read access is
+		// checked once when the nodes are loaded, so the annotations of the
+		// same nodes are read straight from the DAO.
+		List<Node> nodes = nodeManager.getNodes(userInfo, entityIds);
+		List<NamedAnnotations> annos = nodeDao.getAnnotations(entityIds);
+		List<Entity> results = new ArrayList<Entity>(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = nodes.get(i);
+			Class<? extends Entity> entityClass = EntityType.valueOf(
+					node.getNodeType()).getClassForType();
+			EntityWithAnnotations<Entity> ewa = populateEntityWithNodeAndAnnotations(
+					entityClass, annos.get(i), node);
+			results.add(ewa.getEntity());
+		}
+		return results;
+	}
+
 	@Transactional(readOnly = true)
 	@Override
 	public <T extends Entity> T getEntityForVersion(UserInfo userInfo,
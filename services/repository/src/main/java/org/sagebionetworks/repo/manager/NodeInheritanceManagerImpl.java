@@ -1,10 +1,11 @@
 package org.sagebionetworks.repo.manager;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeDAO;
@@ -22,6 +23,13 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 public class NodeInheritanceManagerImpl implements NodeInheritanceManager {
 	
+	static private Log log = LogFactory.getLog(NodeInheritanceManagerImpl.class);
+	
+	/**
+	 * Progress is logged each time this many more nodes are found to change.
+	 */
+	private static final int PROGRESS_INTERVAL = 10000;
+	
 	@Autowired
 	NodeInheritanceDAO nodeInheritanceDao;
 	@Autowired
@@ -90,43 +98,31 @@ public class NodeInheritanceManagerImpl implements NodeInheritanceManager {
 	 * @throws DatastoreException 
 	 */
 	private void changeAllChildrenTo(String currentlyInheritingFromId, String parentId, String changeToInheritFromId) throws NotFoundException, DatastoreException{
+		// Nothing changes unless the parent is currently inheriting from the given id.
+		String parentCurrentBenefactorId = nodeInheritanceDao.getBenefactor(parentId);
+		if(!parentCurrentBenefactorId.equals(currentlyInheritingFromId)) return;
 		// This is the set of nodes that will need to change.
 		Set<String> toChange = new HashSet<String>();
-		// Recursively build up the set to change
-		// Now add all children
-		addChildrenToChange(currentlyInheritingFromId, parentId, toChange);
-		// We sort the Ids to prevent deadlock on concurrent updates
-		String[] sortedArrayIds = toChange.toArray(new String[toChange.size()]);
-		Arrays.sort(sortedArrayIds);
-		// Now update each node.
-		for(String idToChange: sortedArrayIds){
-			nodeInheritanceDao.addBeneficiary(idToChange, changeToInheritFromId);
-		}
-	}
-	
-	/**
-	 * This is a recursive method that finds all of the nodes that need to change.
-	 * @param currentBenefactorId
-	 * @param parentId
-	 * @param toChange
-	 * @throws NotFoundException
-	 * @throws DatastoreException 
-	 */
-	private void addChildrenToChange(String currentBenefactorId, String parentId, Set<String> toChange) throws NotFoundException, DatastoreException{
-		// Find find the parent's benefactor
-		String parentCurrentBenefactorId = nodeInheritanceDao.getBenefactor(parentId);
-		if(parentCurrentBenefactorId.equals(currentBenefactorId)){
-			toChange.add(parentId);
-			// Now check this node's children
-			Iterator<String> it = nodeDao.getChildrenIds(parentId).iterator();
-			// Add each child
-			while(it.hasNext()){
-				String childId = it.next();
-				addChildrenToChange(currentBenefactorId, childId, toChange);
+		toChange.add(parentId);
+		// Walk the tree one level at a time. Children that inherit from another
+		// benefactor are not added, so their sub-trees are skipped.
+		Set<String> level = Collections.singleton(parentId);
+		int nextReport = PROGRESS_INTERVAL;
+		while(!level.isEmpty()){
+			level = nodeInheritanceDao.getChildrenWithBenefactor(level, currentlyInheritingFromId);
+			toChange.addAll(level);
+			if(toChange.size() >= nextReport){
+				log.info("Found "+toChange.size()+" nodes under "+parentId+" to change to benefactor "+changeToInheritFromId);
+				nextReport = toChange.size() + PROGRESS_INTERVAL;
 			}
 		}
+		// Update all of the nodes with a few sorted multi-row updates.
+		nodeInheritanceDao.addBeneficiaries(toChange, changeToInheritFromId);
+		if(toChange.size() >= PROGRESS_INTERVAL){
+			log.info("Changed "+toChange.size()+" nodes under "+parentId+" to benefactor "+changeToInheritFromId);
+		}
 	}
-
+	
 	/**
 	 * Get the benefactor of a node.
 	 * @throws DatastoreException 
@@ -1,6 +1,8 @@
 package org.sagebionetworks.repo.manager;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.repo.model.Annotations;
@@ -64,6 +66,17 @@ public interface NodeManager {
 	 */
 	public Node get(UserInfo userInfo, String nodeId) throws NotFoundException, DatastoreException, UnauthorizedException;
 	
+	/**
+	 * Get many nodes at once. Read access is checked once for each distinct benefactor.
+	 * @param userInfo
+	 * @param nodeIds
+	 * @return the nodes in the same order as the passed ids.
+	 * @throws UnauthorizedException if the user cannot read any one of the nodes.
+	 * @throws DatastoreException 
+	 * @throws NotFoundException 
+	 */
+	public List<Node> getNodes(UserInfo userInfo, List<String> nodeIds) throws NotFoundException, DatastoreException, UnauthorizedException;
+	
 	/**
 	 * Get the full path of a node.
 	 * 
@@ -88,6 +101,15 @@ public interface NodeManager {
 	 */
 	public List<EntityHeader> getNodePathAsAdmin(String nodeId) throws NotFoundException, DatastoreException;
 	
+	/**
+	 * Get the full path of many nodes at once. This should only be called for internal use.
+	 * @param nodeIds
+	 * @return Maps each passed id to its path.
+	 * @throws NotFoundException
+	 * @throws DatastoreException
+	 */
+	public Map<String, List<EntityHeader>> getNodePathsAsAdmin(Collection<String> nodeIds) throws NotFoundException, DatastoreException;
+	
 	/**
 	 * Get a node for a given version number.
 	 * @param userInfo
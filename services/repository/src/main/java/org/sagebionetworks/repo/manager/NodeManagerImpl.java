@@ -1,8 +1,10 @@
 package org.sagebionetworks.repo.manager;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -258,6 +260,22 @@ public class NodeManagerImpl implements NodeManager, InitializingBean {
 		return result;
 	}
 	
+	@Transactional(readOnly = true)
+	@Override
+	public List<Node> getNodes(UserInfo userInfo, List<String> nodeIds) throws NotFoundException, DatastoreException, UnauthorizedException {
+		if(nodeIds == null) throw new IllegalArgumentException("NodeIds cannot be null");
+		UserInfo.validateUserInfo(userInfo);
+		String userName = userInfo.getUser().getUserId();
+		if (!authorizationManager.canAccess(userInfo, nodeIds, ACCESS_TYPE.READ)) {
+			throw new UnauthorizedException(userName+" lacks read access to one or more of the requested objects.");
+		}
+		List<Node> results = nodeDao.getNodes(nodeIds);
+		if(log.isDebugEnabled()){
+			log.debug("username "+userName+" fetched "+results.size()+" nodes");
+		}
+		return results;
+	}
+	
 	@Transactional(readOnly = true)
 	@Override
 	public Node getNodeForVersionNumber(UserInfo userInfo, String nodeId, Long versionNumber) throws NotFoundException, DatastoreException, UnauthorizedException {
@@ -466,6 +484,13 @@ public class NodeManagerImpl implements NodeManager, InitializingBean {
 		// This version does not require authorization.
 		return nodeDao.getEntityPath(nodeId);
 	}
+	
+	@Transactional(readOnly = true)
+	@Override
+	public Map<String, List<EntityHeader>> getNodePathsAsAdmin(Collection<String> nodeIds) throws NotFoundException, DatastoreException {
+		// This version does not require authorization.
+		return nodeDao.getEntityPaths(nodeIds);
+	}
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
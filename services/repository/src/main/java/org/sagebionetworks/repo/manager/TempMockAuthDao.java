@@ -1,5 +1,7 @@
 package org.sagebionetworks.repo.manager;
 
+import java.util.Collection;
+
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.Node;
@@ -23,6 +25,13 @@ public class TempMockAuthDao implements AuthorizationManager{
 		return true;
 	}
 
+	@Override
+	public boolean canAccess(UserInfo userInfo, Collection<String> nodeIds,
+			ACCESS_TYPE accessType) throws NotFoundException,
+			DatastoreException {
+		return true;
+	}
+
 	@Override
 	public String authorizationSQL(int n) {
 		// TODO Auto-generated method stub
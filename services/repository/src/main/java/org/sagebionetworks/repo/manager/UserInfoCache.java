@@ -0,0 +1,182 @@
+package org.sagebionetworks.repo.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.User;
+import org.sagebionetworks.repo.model.UserGroup;
+import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.repo.model.util.ExpiringCache;
+import org.sagebionetworks.repo.web.NotFoundException;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A bounded cache of the UserInfo of each user.
+ *
+ * Each user expires on their own and can be invalidated on their own, so a
+ * change to one principal does not force every active user to be loaded
+ * again. Loads are guarded by a fixed set of striped locks so concurrent
+ * requests for the same user result in a single load.
+ */
+public class UserInfoCache {
+
+	/**
+	 * Loads a user that is not in the cache.
+	 */
+	public interface Loader {
+		UserInfo load(String userName) throws DatastoreException, NotFoundException;
+	}
+
+	/**
+	 * The number of locks used to guard loads.
+	 */
+	private static final int LOCK_STRIPES = 64;
+
+	private ExpiringCache<String, UserInfo> entries;
+	private Object[] locks = new Object[LOCK_STRIPES];
+	private AtomicLong loadTimeMS = new AtomicLong(0);
+
+	/**
+	 * @param timeToLiveMS
+	 *            How long a user can be served from the cache.
+	 * @param maxSize
+	 *            The maximum number of users held by this cache.
+	 */
+	public UserInfoCache(long timeToLiveMS, int maxSize) {
+		if (timeToLiveMS < 1) throw new IllegalArgumentException("Time to live must be at least one ms");
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		this.entries = new ExpiringCache<String, UserInfo>(timeToLiveMS, maxSize);
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Get a user from the cache, loading it if needed. Only one thread loads
+	 * a given user at a time; other threads asking for the same user wait and
+	 * then use its result.
+	 *
+	 * @param userName
+	 * @param loader
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 */
+	public UserInfo get(String userName, Loader loader) throws DatastoreException, NotFoundException {
+		if (userName == null) throw new IllegalArgumentException("User name cannot be null");
+		if (loader == null) throw new IllegalArgumentException("Loader cannot be null");
+		UserInfo userInfo = entries.peek(userName);
+		if (userInfo != null) {
+			entries.recordLookup(true);
+			return userInfo;
+		}
+		synchronized (getLock(userName)) {
+			// Another thread might have loaded this user while we waited.
+			userInfo = entries.peek(userName);
+			entries.recordLookup(userInfo != null);
+			if (userInfo != null) {
+				return userInfo;
+			}
+			long generationAtLoad = entries.getGeneration();
+			long start = System.currentTimeMillis();
+			userInfo = loader.load(userName);
+			loadTimeMS.addAndGet(System.currentTimeMillis() - start);
+			entries.put(userName, userInfo, generationAtLoad);
+			return userInfo;
+		}
+	}
+
+	private Object getLock(String userName) {
+		return locks[(userName.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+	}
+
+	/**
+	 * Remove the user identified by the given name or id and every user that
+	 * belongs to a group with the given name or id. When called within a
+	 * transaction these users are removed again after it completes, so a user
+	 * read before the transaction committed cannot remain in the cache.
+	 *
+	 * @param principal
+	 *            The name or id of a user or group.
+	 */
+	public void invalidatePrincipal(final String principal) {
+		if (principal == null) throw new IllegalArgumentException("Principal cannot be null");
+		remove(principal);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					remove(principal);
+				}
+			});
+		}
+	}
+
+	private void remove(final String principal) {
+		entries.removeMatching(new ExpiringCache.Matcher<String, UserInfo>() {
+			@Override
+			public boolean matches(String userName, UserInfo userInfo) {
+				return principal.equals(userName) || isAffected(userInfo, principal);
+			}
+		});
+	}
+
+	/**
+	 * Is the given user, or one of its groups, identified by the given name or id?
+	 */
+	private static boolean isAffected(UserInfo userInfo, String principal) {
+		User user = userInfo.getUser();
+		if (user != null && (principal.equals(user.getId()) || principal.equals(user.getUserId()))) return true;
+		if (userInfo.getGroups() == null) return false;
+		for (UserGroup group : userInfo.getGroups()) {
+			if (principal.equals(group.getName()) || principal.equals(group.getId())) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The number of users currently in the cache.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * The number of lookups that were served from the cache.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return entries.getHitCount();
+	}
+
+	/**
+	 * The number of lookups that loaded the user.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return entries.getMissCount();
+	}
+
+	/**
+	 * The total time spent loading users.
+	 *
+	 * @return
+	 */
+	public long getTotalLoadTimeMS() {
+		return loadTimeMS.get();
+	}
+
+	/**
+	 * Remove all users and reset the counts.
+	 */
+	public void clear() {
+		entries.clear();
+		entries.resetCounts();
+		loadTimeMS.set(0);
+	}
+}
@@ -2,9 +2,7 @@ package org.sagebionetworks.repo.manager;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -40,14 +38,10 @@ public class UserManagerImpl implements UserManager {
 	@Autowired
 	UserProfileDAO userProfileDAO;
 
-	private static Map<String, UserInfo> userInfoCache = null;
+	private static UserInfoCache userInfoCache = null;
 	private static Long cacheTimeout = null;
-	private static Date lastCacheDump = null;
 	
 	public UserManagerImpl() {
-		userInfoCache = Collections
-				.synchronizedMap(new HashMap<String, UserInfo>());
-		lastCacheDump = new Date();
 		String s = System
 				.getProperty(AuthorizationConstants.AUTH_CACHE_TIMEOUT_MILLIS);
 		if (s != null && s.length() > 0) {
@@ -55,6 +49,24 @@ public class UserManagerImpl implements UserManager {
 		} else {
 			cacheTimeout = AuthorizationConstants.AUTH_CACHE_TIMEOUT_DEFAULT;
 		}
+		int cacheMaxSize = AuthorizationConstants.AUTH_CACHE_MAX_SIZE_DEFAULT;
+		s = System.getProperty(AuthorizationConstants.AUTH_CACHE_MAX_SIZE);
+		if (s != null && s.length() > 0) {
+			cacheMaxSize = Integer.parseInt(s);
+		}
+		if (cacheTimeout > 0) {
+			userInfoCache = new UserInfoCache(cacheTimeout, cacheMaxSize);
+		} else {
+			userInfoCache = null;
+		}
+	}
+	
+	/**
+	 * The cache of users, or null if caching is not used.
+	 * @return
+	 */
+	public static UserInfoCache getUserInfoCache() {
+		return userInfoCache;
 	}
 
 	// for testing
@@ -153,15 +165,26 @@ public class UserManagerImpl implements UserManager {
 	@Override
 	public UserInfo getUserInfo(String userName) throws DatastoreException,
 			NotFoundException {
-		if (cacheTimeout > 0) { // then use cache
-			Date now = new Date();
-			if (lastCacheDump.getTime() + cacheTimeout < now.getTime()) {
-				clearCache();
-			}
-			UserInfo ui = userInfoCache.get(userName);
-			if (ui != null)
-				return ui;
+		if (userInfoCache == null) {
+			return loadUserInfo(userName);
 		}
+		return userInfoCache.get(userName, new UserInfoCache.Loader() {
+			@Override
+			public UserInfo load(String userName) throws DatastoreException, NotFoundException {
+				return loadUserInfo(userName);
+			}
+		});
+	}
+	
+	/**
+	 * Build the UserInfo of a user from the UserDAO and the UserGroupDAO.
+	 * @param userName
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 */
+	private UserInfo loadUserInfo(String userName) throws DatastoreException,
+			NotFoundException {
 		User user = userDAO.getUser(userName);
 		Set<UserGroup> groups = new HashSet<UserGroup>();
 		UserGroup individualGroup = null;
@@ -194,9 +217,6 @@ public class UserManagerImpl implements UserManager {
 		userInfo.setIndividualGroup(individualGroup);
 		userInfo.setUser(user);
 		userInfo.setGroups(groups);
-		if (cacheTimeout > 0) { // then use cache
-			userInfoCache.put(userName, userInfo);
-		}
 		return userInfo;
 	}
 	
@@ -219,11 +239,12 @@ public class UserManagerImpl implements UserManager {
 	}
 
 	/**
-	 * Clear the user cache.
+	 * Remove a principal, and any user that belongs to it, from the user cache.
 	 */
-	private void clearCache() {
-		userInfoCache.clear();
-		lastCacheDump = new Date();
+	private void invalidateCache(String principal) {
+		if (userInfoCache != null) {
+			userInfoCache.invalidatePrincipal(principal);
+		}
 	}
 
 	/**
@@ -246,8 +267,8 @@ public class UserManagerImpl implements UserManager {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public void deleteUser(String id) throws DatastoreException, NotFoundException {
-		// Clear the cache when we delete a users.
-		clearCache();
+		// Remove this user from the cache when we delete it.
+		invalidateCache(id);
 		userDAO.delete(id);
 
 	}
@@ -283,7 +304,7 @@ public class UserManagerImpl implements UserManager {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	@Override
 	public boolean deletePrincipal(String name) {
-		clearCache();
+		invalidateCache(name);
 		return userGroupDAO.deletePrincipal(name);
 	}
 	
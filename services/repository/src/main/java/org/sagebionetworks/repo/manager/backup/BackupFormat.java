@@ -0,0 +1,76 @@
+package org.sagebionetworks.repo.manager.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The formats of a node backup file. The format of a new backup is chosen by
+ * the suffix of its file name, while a restore detects the format from the
+ * contents of the file.
+ */
+public enum BackupFormat {
+
+	/**
+	 * A zip file with one XML entry for each node and each revision.
+	 */
+	XML_ZIP(".zip"),
+	/**
+	 * A file of compressed blocks of XML records with an index footer.
+	 * @see CompactBackupFormat
+	 */
+	COMPACT(".sbk");
+
+	private final String fileSuffix;
+
+	private BackupFormat(String fileSuffix) {
+		this.fileSuffix = fileSuffix;
+	}
+
+	/**
+	 * The suffix of files written in this format.
+	 * @return
+	 */
+	public String getFileSuffix() {
+		return fileSuffix;
+	}
+
+	/**
+	 * The format to write a backup with the given file name.
+	 *
+	 * @param fileName
+	 * @return
+	 */
+	public static BackupFormat forFileName(String fileName) {
+		if(fileName == null) throw new IllegalArgumentException("File name cannot be null");
+		if(fileName.endsWith(COMPACT.getFileSuffix())) return COMPACT;
+		return XML_ZIP;
+	}
+
+	/**
+	 * Detect the format of a backup from the start of a stream. The stream is
+	 * reset so the backup can then be read from its start.
+	 *
+	 * @param in
+	 *            A stream that supports mark and reset.
+	 * @return
+	 * @throws IOException
+	 */
+	public static BackupFormat detect(InputStream in) throws IOException {
+		if(in == null) throw new IllegalArgumentException("InputStream cannot be null");
+		if(!in.markSupported()) throw new IllegalArgumentException("The InputStream must support mark and reset");
+		in.mark(4);
+		try{
+			// The stream is not wrapped so it is not closed.
+			int magic = 0;
+			for(int i=0; i<4; i++){
+				int b = in.read();
+				// Too short to be a compact backup.
+				if(b < 0) return XML_ZIP;
+				magic = (magic << 8) | b;
+			}
+			return magic == CompactBackupFormat.MAGIC ? COMPACT : XML_ZIP;
+		}finally{
+			in.reset();
+		}
+	}
+}
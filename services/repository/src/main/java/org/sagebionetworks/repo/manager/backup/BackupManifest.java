@@ -0,0 +1,208 @@
+package org.sagebionetworks.repo.manager.backup;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sagebionetworks.repo.model.MigrationType;
+
+/**
+ * Describes one incremental backup. The manifest records the high-water mark
+ * taken when the backup started, so the next backup only needs to include
+ * what changed since. Each manifest names the manifest of the backup before
+ * it, so restoring the backups of a chain in order rebuilds the full state.
+ * The first manifest of a chain has no previous manifest and its backup
+ * includes everything.
+ */
+public class BackupManifest {
+
+	private MigrationType migrationType;
+	private String backupFileName;
+	private String previousManifest;
+	private Date createdOn;
+	private Map<String, String> highWaterMark = new LinkedHashMap<String, String>();
+	private Set<String> deletedIds = new LinkedHashSet<String>();
+
+	/**
+	 * Find the ids that are new or changed since the previous mark, in the
+	 * order of the current mark.
+	 *
+	 * @param previous
+	 *            The mark of the previous backup, or null when there is none.
+	 * @param current
+	 * @return
+	 */
+	public static Set<String> findChanged(Map<String, String> previous, Map<String, String> current) {
+		if(current == null) throw new IllegalArgumentException("Current mark cannot be null");
+		Set<String> changed = new LinkedHashSet<String>();
+		for(Map.Entry<String, String> entry: current.entrySet()){
+			String old = previous == null ? null : previous.get(entry.getKey());
+			if(old == null || !old.equals(entry.getValue())){
+				changed.add(entry.getKey());
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Find the ids that were in the previous mark but no longer exist.
+	 *
+	 * @param previous
+	 *            The mark of the previous backup, or null when there is none.
+	 * @param current
+	 * @return
+	 */
+	public static Set<String> findDeleted(Map<String, String> previous, Map<String, String> current) {
+		if(current == null) throw new IllegalArgumentException("Current mark cannot be null");
+		Set<String> deleted = new LinkedHashSet<String>();
+		if(previous != null){
+			for(String id: previous.keySet()){
+				if(!current.containsKey(id)){
+					deleted.add(id);
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * The type of data in the backup.
+	 * @return
+	 */
+	public MigrationType getMigrationType() {
+		return migrationType;
+	}
+
+	public void setMigrationType(MigrationType migrationType) {
+		this.migrationType = migrationType;
+	}
+
+	/**
+	 * The S3 key of the backup file, or null when nothing changed.
+	 * @return
+	 */
+	public String getBackupFileName() {
+		return backupFileName;
+	}
+
+	public void setBackupFileName(String backupFileName) {
+		this.backupFileName = backupFileName;
+	}
+
+	/**
+	 * The S3 key of the manifest of the previous backup in the chain, or null
+	 * for the first backup.
+	 * @return
+	 */
+	public String getPreviousManifest() {
+		return previousManifest;
+	}
+
+	public void setPreviousManifest(String previousManifest) {
+		this.previousManifest = previousManifest;
+	}
+
+	public Date getCreatedOn() {
+		return createdOn;
+	}
+
+	public void setCreatedOn(Date createdOn) {
+		this.createdOn = createdOn;
+	}
+
+	/**
+	 * The etag (or other version) of each id when the backup started.
+	 * @return
+	 */
+	public Map<String, String> getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	public void setHighWaterMark(Map<String, String> highWaterMark) {
+		this.highWaterMark = highWaterMark;
+	}
+
+	/**
+	 * The ids that were deleted since the previous backup.
+	 * @return
+	 */
+	public Set<String> getDeletedIds() {
+		return deletedIds;
+	}
+
+	public void setDeletedIds(Set<String> deletedIds) {
+		this.deletedIds = deletedIds;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result
+				+ ((backupFileName == null) ? 0 : backupFileName.hashCode());
+		result = prime * result
+				+ ((createdOn == null) ? 0 : createdOn.hashCode());
+		result = prime * result
+				+ ((deletedIds == null) ? 0 : deletedIds.hashCode());
+		result = prime * result
+				+ ((highWaterMark == null) ? 0 : highWaterMark.hashCode());
+		result = prime * result
+				+ ((migrationType == null) ? 0 : migrationType.hashCode());
+		result = prime
+				* result
+				+ ((previousManifest == null) ? 0 : previousManifest.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BackupManifest other = (BackupManifest) obj;
+		if (backupFileName == null) {
+			if (other.backupFileName != null)
+				return false;
+		} else if (!backupFileName.equals(other.backupFileName))
+			return false;
+		if (createdOn == null) {
+			if (other.createdOn != null)
+				return false;
+		} else if (!createdOn.equals(other.createdOn))
+			return false;
+		if (deletedIds == null) {
+			if (other.deletedIds != null)
+				return false;
+		} else if (!deletedIds.equals(other.deletedIds))
+			return false;
+		if (highWaterMark == null) {
+			if (other.highWaterMark != null)
+				return false;
+		} else if (!highWaterMark.equals(other.highWaterMark))
+			return false;
+		if (migrationType != other.migrationType)
+			return false;
+		if (previousManifest == null) {
+			if (other.previousManifest != null)
+				return false;
+		} else if (!previousManifest.equals(other.previousManifest))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "BackupManifest [migrationType=" + migrationType
+				+ ", backupFileName=" + backupFileName + ", previousManifest="
+				+ previousManifest + ", createdOn=" + createdOn
+				+ ", highWaterMark.size="
+				+ (highWaterMark == null ? 0 : highWaterMark.size())
+				+ ", deletedIds=" + deletedIds + "]";
+	}
+
+}
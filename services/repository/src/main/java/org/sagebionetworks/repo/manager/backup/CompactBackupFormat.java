@@ -0,0 +1,49 @@
+package org.sagebionetworks.repo.manager.backup;
+
+/**
+ * The layout of a compact backup file. A compact backup holds the same XML
+ * records as the zip backup, but many records share each compressed block,
+ * so there is no per entry overhead and the compression can take advantage
+ * of the similarity between the records.
+ *
+ * <pre>
+ * header:  int MAGIC, int VERSION
+ * block:   int compressed length, int uncompressed length, int record count, deflated records
+ * record:  byte type, int length, payload
+ * index:   int INDEX_MARKER, int block count,
+ *          for each block: long offset, int record count, int node count,
+ *          then once after all blocks: long node count, long revision count
+ * footer:  long index offset, int MAGIC
+ * </pre>
+ *
+ * The records are in the same order as the entries of a zip backup: each
+ * node is followed by its revisions and comes before its children. A restore
+ * reads the blocks in order and stops at the index marker, so the index and
+ * footer are only there for tools that need to seek within a backup.
+ */
+public class CompactBackupFormat {
+
+	/**
+	 * The first and last four bytes of a compact backup, "SBKP".
+	 */
+	public static final int MAGIC = 0x53424B50;
+	/**
+	 * The version of the layout written by this class.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * A record holding the XML of a NodeBackup.
+	 */
+	public static final byte RECORD_NODE = 1;
+	/**
+	 * A record holding the XML of a NodeRevisionBackup.
+	 */
+	public static final byte RECORD_REVISION = 2;
+	/**
+	 * Written in place of a block length to mark the start of the index.
+	 */
+	public static final int INDEX_MARKER = -1;
+
+	static final int HEADER_SIZE = 8;
+	static final int BLOCK_HEADER_SIZE = 12;
+}
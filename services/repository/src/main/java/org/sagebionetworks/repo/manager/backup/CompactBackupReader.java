@@ -0,0 +1,126 @@
+package org.sagebionetworks.repo.manager.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the records of a compact backup in order. Only one block is held in
+ * memory at a time, and the index is not needed to read the records.
+ *
+ * <pre>
+ * while(reader.next()){
+ *     reader.getType();
+ *     reader.getPayload();
+ * }
+ * </pre>
+ *
+ * @see CompactBackupFormat
+ */
+public class CompactBackupReader implements Closeable {
+
+	private final DataInputStream in;
+	private final Inflater inflater = new Inflater();
+	private DataInputStream block;
+	private int remainingInBlock = 0;
+	private boolean done = false;
+	private byte type;
+	private byte[] payload;
+
+	/**
+	 * Read the header of a compact backup from the given stream.
+	 *
+	 * @param in
+	 * @throws IOException
+	 *             If the stream is not a compact backup of a supported
+	 *             version.
+	 */
+	public CompactBackupReader(InputStream in) throws IOException {
+		if(in == null) throw new IllegalArgumentException("InputStream cannot be null");
+		this.in = new DataInputStream(in);
+		if(this.in.readInt() != CompactBackupFormat.MAGIC) throw new IOException("Not a compact backup");
+		int version = this.in.readInt();
+		if(version != CompactBackupFormat.VERSION) throw new IOException("Unsupported compact backup version: "+version);
+	}
+
+	/**
+	 * Move to the next record.
+	 *
+	 * @return False once there are no more records.
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		while(remainingInBlock == 0){
+			if(done) return false;
+			readBlock();
+		}
+		type = block.readByte();
+		int length = block.readInt();
+		if(length < 0) throw new IOException("Corrupt record length: "+length);
+		payload = new byte[length];
+		block.readFully(payload);
+		remainingInBlock--;
+		return true;
+	}
+
+	/**
+	 * Read and decompress the next block, or stop at the index.
+	 */
+	private void readBlock() throws IOException {
+		type = 0;
+		payload = null;
+		int compressedLength = in.readInt();
+		if(CompactBackupFormat.INDEX_MARKER == compressedLength){
+			done = true;
+			return;
+		}
+		int length = in.readInt();
+		int recordCount = in.readInt();
+		if(compressedLength < 0 || length < 0 || recordCount < 1) throw new IOException("Corrupt block header");
+		byte[] compressed = new byte[compressedLength];
+		in.readFully(compressed);
+		byte[] raw = new byte[length];
+		inflater.reset();
+		inflater.setInput(compressed);
+		int inflated = 0;
+		try{
+			while(inflated < length && !inflater.finished()){
+				int count = inflater.inflate(raw, inflated, length - inflated);
+				if(count == 0 && inflater.needsInput()) break;
+				inflated += count;
+			}
+		}catch(DataFormatException e){
+			throw new IOException(e);
+		}
+		if(inflated != length) throw new IOException("Truncated block: expected "+length+" bytes but found "+inflated);
+		block = new DataInputStream(new ByteArrayInputStream(raw));
+		remainingInBlock = recordCount;
+	}
+
+	/**
+	 * The type of the current record, either CompactBackupFormat.RECORD_NODE
+	 * or CompactBackupFormat.RECORD_REVISION.
+	 * @return
+	 */
+	public byte getType() {
+		return type;
+	}
+
+	/**
+	 * The payload of the current record.
+	 * @return
+	 */
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		in.close();
+	}
+}
@@ -0,0 +1,152 @@
+package org.sagebionetworks.repo.manager.backup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a compact backup. Records are collected into a block until it
+ * reaches the block size, then the block is compressed and written. Closing
+ * the writer writes the last block and the index.
+ *
+ * @see CompactBackupFormat
+ */
+public class CompactBackupWriter implements Closeable {
+
+	private final DataOutputStream out;
+	private final int blockSize;
+	private final ByteArrayOutputStream block;
+	private final DataOutputStream blockOut;
+	private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+	private final byte[] buffer = new byte[8192];
+	private final Deflater deflater = new Deflater();
+	private final List<long[]> blocks = new ArrayList<long[]>();
+	private long offset;
+	private int blockRecordCount = 0;
+	private int blockNodeCount = 0;
+	private long nodeCount = 0;
+	private long revisionCount = 0;
+	private boolean closed = false;
+
+	/**
+	 * Write the header of a compact backup to the given stream.
+	 *
+	 * @param out
+	 * @param blockSize
+	 *            The uncompressed size of each block.
+	 * @throws IOException
+	 */
+	public CompactBackupWriter(OutputStream out, int blockSize) throws IOException {
+		if(out == null) throw new IllegalArgumentException("OutputStream cannot be null");
+		if(blockSize < 1) throw new IllegalArgumentException("Block size must be at least one");
+		this.out = new DataOutputStream(out);
+		this.blockSize = blockSize;
+		this.block = new ByteArrayOutputStream(blockSize);
+		this.blockOut = new DataOutputStream(block);
+		this.out.writeInt(CompactBackupFormat.MAGIC);
+		this.out.writeInt(CompactBackupFormat.VERSION);
+		this.offset = CompactBackupFormat.HEADER_SIZE;
+	}
+
+	/**
+	 * Add a record to the backup.
+	 *
+	 * @param type
+	 *            Either CompactBackupFormat.RECORD_NODE or
+	 *            CompactBackupFormat.RECORD_REVISION.
+	 * @param payload
+	 * @throws IOException
+	 */
+	public void writeRecord(byte type, byte[] payload) throws IOException {
+		if(closed) throw new IllegalStateException("The writer is closed");
+		if(payload == null) throw new IllegalArgumentException("Payload cannot be null");
+		if(CompactBackupFormat.RECORD_NODE == type){
+			nodeCount++;
+			blockNodeCount++;
+		}else if(CompactBackupFormat.RECORD_REVISION == type){
+			revisionCount++;
+		}else{
+			throw new IllegalArgumentException("Unknown record type: "+type);
+		}
+		blockOut.writeByte(type);
+		blockOut.writeInt(payload.length);
+		blockOut.write(payload);
+		blockRecordCount++;
+		if(block.size() >= blockSize){
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Compress and write the current block.
+	 */
+	private void writeBlock() throws IOException {
+		if(blockRecordCount == 0) return;
+		byte[] raw = block.toByteArray();
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		compressed.reset();
+		while(!deflater.finished()){
+			int length = deflater.deflate(buffer);
+			compressed.write(buffer, 0, length);
+		}
+		blocks.add(new long[]{offset, blockRecordCount, blockNodeCount});
+		out.writeInt(compressed.size());
+		out.writeInt(raw.length);
+		out.writeInt(blockRecordCount);
+		compressed.writeTo(out);
+		offset += CompactBackupFormat.BLOCK_HEADER_SIZE + compressed.size();
+		block.reset();
+		blockRecordCount = 0;
+		blockNodeCount = 0;
+	}
+
+	/**
+	 * The number of node records written so far.
+	 * @return
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The number of revision records written so far.
+	 * @return
+	 */
+	public long getRevisionCount() {
+		return revisionCount;
+	}
+
+	/**
+	 * Write the last block and the index, then close the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		try{
+			writeBlock();
+			long indexOffset = offset;
+			out.writeInt(CompactBackupFormat.INDEX_MARKER);
+			out.writeInt(blocks.size());
+			for(long[] info: blocks){
+				out.writeLong(info[0]);
+				out.writeInt((int) info[1]);
+				out.writeInt((int) info[2]);
+			}
+			out.writeLong(nodeCount);
+			out.writeLong(revisionCount);
+			out.writeLong(indexOffset);
+			out.writeInt(CompactBackupFormat.MAGIC);
+			out.close();
+		}finally{
+			deflater.end();
+		}
+	}
+}
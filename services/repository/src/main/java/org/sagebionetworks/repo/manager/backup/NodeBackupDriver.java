@@ -3,6 +3,8 @@ package org.sagebionetworks.repo.manager.backup;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.repo.model.DatastoreException;
@@ -34,5 +36,29 @@ public interface NodeBackupDriver {
 	 * @throws InterruptedException 
 	 */
 	public boolean restoreFromBackup(File source, Progress progress) throws IOException, InterruptedException;
+	
+	/**
+	 * Restore all data from a backup that is read as a stream, such as a backup that is
+	 * still being downloaded.  The backup is read once from start to end, and the stream
+	 * is closed when the restore finishes.
+	 * @param source - The contents of the backup.
+	 * @param length - The length of the backup in bytes, used to track the progress of the restore.
+	 * @param progress - Used to track the progress of the restore.
+	 * @throws IOException
+	 * @throws InterruptedException 
+	 */
+	public boolean restoreFromBackup(InputStream source, long length, Progress progress) throws IOException, InterruptedException;
+	
+	/**
+	 * Get the high-water mark of everything this driver can backup: a value for each id
+	 * that changes whenever the object changes, such as its etag.  Comparing the mark of
+	 * an earlier backup with the current mark finds the ids to include in an incremental backup.
+	 * The map iterates in an order that can be passed to writeBackup, where parents come
+	 * before their children.
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 */
+	public Map<String, String> getHighWaterMark() throws DatastoreException, NotFoundException;
 
 }
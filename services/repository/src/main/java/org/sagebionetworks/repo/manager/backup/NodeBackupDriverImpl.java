@@ -2,24 +2,47 @@ package org.sagebionetworks.repo.manager.backup;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.sagebionetworks.StackConfiguration;
 import org.sagebionetworks.repo.manager.backup.migration.MigrationDriver;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeBackup;
+import org.sagebionetworks.repo.model.NodeEtag;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +50,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 /**
  * This class drives the backup and restoration process.
  * 
+ * A backup is written by a pipeline: a pool of threads fetches each node with
+ * its revisions, a second pool serializes them to XML, and the calling thread
+ * writes them to the zip file in tree order from a bounded queue.
+ * 
+ * A restore is read on the calling thread, which groups the nodes into
+ * batches. Each batch is written in its own transaction by a pool of writers.
+ * 
+ * A backup is written as a zip file, or as a compact backup when the
+ * destination file has the compact suffix. Restore reads either format.
+ * 
  * @author jmhill
  *
  */
@@ -49,6 +82,13 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 	@Autowired
 	MigrationDriver migrationDriver;
 
+	private int fetchThreadCount = StackConfiguration.getBackupFetchThreadCount();
+	private int serializationThreadCount = StackConfiguration.getBackupSerializationThreadCount();
+	private int pipelineQueueSize = StackConfiguration.getBackupPipelineQueueSize();
+	private int restoreBatchSize = StackConfiguration.getBackupRestoreBatchSize();
+	private int restoreWriterThreadCount = StackConfiguration.getBackupRestoreWriterThreadCount();
+	private int compactBlockSize = StackConfiguration.getBackupCompactBlockSize();
+
 
 	/**
 	 * Used by Spring
@@ -69,6 +109,60 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 		this.migrationDriver = migrationDriver;
 	}
 
+	/**
+	 * The number of threads that fetch nodes and revisions while writing a backup.
+	 * @param fetchThreadCount
+	 */
+	public void setFetchThreadCount(int fetchThreadCount) {
+		if(fetchThreadCount < 1) throw new IllegalArgumentException("Fetch thread count must be at least one");
+		this.fetchThreadCount = fetchThreadCount;
+	}
+
+	/**
+	 * The number of threads that serialize nodes and revisions while writing a backup.
+	 * @param serializationThreadCount
+	 */
+	public void setSerializationThreadCount(int serializationThreadCount) {
+		if(serializationThreadCount < 1) throw new IllegalArgumentException("Serialization thread count must be at least one");
+		this.serializationThreadCount = serializationThreadCount;
+	}
+
+	/**
+	 * The maximum number of nodes waiting to be written to the backup file.
+	 * @param pipelineQueueSize
+	 */
+	public void setPipelineQueueSize(int pipelineQueueSize) {
+		if(pipelineQueueSize < 1) throw new IllegalArgumentException("Pipeline queue size must be at least one");
+		this.pipelineQueueSize = pipelineQueueSize;
+	}
+
+	/**
+	 * The maximum number of nodes restored in a single transaction.
+	 * @param restoreBatchSize
+	 */
+	public void setRestoreBatchSize(int restoreBatchSize) {
+		if(restoreBatchSize < 1) throw new IllegalArgumentException("Restore batch size must be at least one");
+		this.restoreBatchSize = restoreBatchSize;
+	}
+
+	/**
+	 * The number of threads that write batches of nodes while restoring a backup.
+	 * @param restoreWriterThreadCount
+	 */
+	public void setRestoreWriterThreadCount(int restoreWriterThreadCount) {
+		if(restoreWriterThreadCount < 1) throw new IllegalArgumentException("Restore writer thread count must be at least one");
+		this.restoreWriterThreadCount = restoreWriterThreadCount;
+	}
+
+	/**
+	 * The uncompressed size of each block of a compact backup.
+	 * @param compactBlockSize
+	 */
+	public void setCompactBlockSize(int compactBlockSize) {
+		if(compactBlockSize < 1) throw new IllegalArgumentException("Compact block size must be at least one");
+		this.compactBlockSize = compactBlockSize;
+	}
+
 	@Override
 	public boolean writeBackup(File destination, Progress progress, Set<String> entitiesToBackup) throws IOException, DatastoreException, NotFoundException, InterruptedException {
 		if (destination == null)
@@ -91,25 +185,48 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 			isRecursive = false;
 			listToBackup.addAll(entitiesToBackup);
 		}
+		BackupFormat format = BackupFormat.forFileName(destination.getName());
 		log.info("Starting a backup to file: " + destination.getAbsolutePath());
-		progress.appendLog("Starting a backup to file: " + destination.getAbsolutePath());
+		progress.appendLog("Starting a backup to file: " + destination.getAbsolutePath()+" in the format: "+format);
 		progress.setTotalCount(backupManager.getTotalNodeCount());
+		progress.resetStartTime();
+		final BackupPipeline pipeline = new BackupPipeline();
 		// First write to the file
 		FileOutputStream fos = new FileOutputStream(destination);
-		ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(fos));
+		ZipOutputStream zos = null;
+		CompactBackupWriter compact = null;
+		if(BackupFormat.COMPACT == format){
+			compact = new CompactBackupWriter(new BufferedOutputStream(fos), compactBlockSize);
+		}else{
+			zos = new ZipOutputStream(new BufferedOutputStream(fos));
+		}
 		try {
 			progress.appendLog("Processing nodes:");
-			// First write the root node as its own entry
-			for(String idToBackup: listToBackup){
-				// Recursively write each node.
-				progress.appendLog(idToBackup);
-				NodeBackup backup = backupManager.getNode(idToBackup);
-				if(backup == null) throw new IllegalArgumentException("Cannot backup node: "+idToBackup+" because it does not exists");
-				writeBackupNode(zos, backup, "", progress, isRecursive);
+			// The tree is walked on its own thread while this thread writes the nodes in order.
+			final List<String> roots = listToBackup;
+			final boolean recursive = isRecursive;
+			final Progress finalProgress = progress;
+			Future<?> traversal = pipeline.traversalThread.submit(new Runnable() {
+				@Override
+				public void run() {
+					pipeline.traverse(roots, recursive, finalProgress);
+				}
+			});
+			try {
+				writeNodes(zos, compact, pipeline, progress);
+			} finally {
+				traversal.cancel(true);
+			}
+			if(compact != null){
+				compact.close();
+			}else{
+				zos.close();
 			}
-			zos.close();
 			progress.appendLog("Finished processing nodes.");
+			progress.appendLog(String.format("Wrote %1$d nodes, %2$d bytes in %3$d ms: %4$.1f nodes/sec %5$.1f KB/sec",
+					progress.getCurrentIndex(), progress.getBytesProcessed(), progress.getElapsedMS(), progress.getProgressPerSecond(), progress.getBytesPerSecond()/1024.0));
 		} finally {
+			pipeline.shutdown();
 			if (fos != null) {
 				fos.flush();
 				fos.close();
@@ -119,54 +236,53 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 	}
 
 	/**
-	 * This is a recursive method that will write the full tree of node data to
-	 * the zip file.
+	 * Take each node from the pipeline in order and write it to the backup file.
 	 * 
 	 * @param zos
-	 * @param backup
-	 * @param path
+	 *            The zip file, or null for a compact backup.
+	 * @param compact
+	 *            The compact backup, or null for a zip file.
+	 * @param pipeline
+	 * @param progress
 	 * @throws IOException
-	 * @throws DatastoreException 
-	 * @throws NotFoundException 
-	 * @throws InterruptedException 
+	 * @throws NotFoundException
+	 * @throws DatastoreException
+	 * @throws InterruptedException
 	 */
-	private boolean writeBackupNode(ZipOutputStream zos, NodeBackup backup,
-			String path, Progress progress, boolean isRecurisive) throws IOException, NotFoundException, DatastoreException, InterruptedException {
-		if (backup == null)
-			throw new IllegalArgumentException("NodeBackup cannot be null");
-		if (backup.getNode() == null)
-			throw new IllegalArgumentException("NodeBackup.node cannot be null");
-		Node node = backup.getNode();
-		if (node.getId() == null)
-			throw new IllegalArgumentException("node.id cannot be null");
-		// Since this could be called in a tight loop, we need to be
-		// CPU friendly
-		Thread.yield();
-		path = path + node.getId() + PATH_DELIMITER;
-		ZipEntry entry = new ZipEntry(path + NODE_XML_FILE);
-		zos.putNextEntry(entry);
-		// Write this node
-		NodeSerializerUtil.writeNodeBackup(backup, zos);
-		// Now write all revisions of this node.
-		writeRevisions(zos, backup, path);
-		progress.setMessage(backup.getNode().getName());
-		progress.incrementProgress();
-		if(log.isTraceEnabled()){
-			log.trace(progress.toString());			
-		}
-		// Check for termination.
-		checkForTermination(progress);
-		if(isRecurisive){
-			// now write each child
-			List<String> childList = backup.getChildren();
-			if (childList != null) {
-				for (String childId : childList) {
-					NodeBackup child = backupManager.getNode(childId);
-					writeBackupNode(zos, child, path, progress, isRecurisive);
+	private void writeNodes(ZipOutputStream zos, CompactBackupWriter compact, BackupPipeline pipeline, Progress progress) throws IOException, NotFoundException, DatastoreException, InterruptedException {
+		while(true){
+			BackupSlot slot = pipeline.queue.take();
+			if(slot.failure != null) rethrow(slot.failure);
+			if(slot == BackupSlot.END) break;
+			SerializedNode serialized = getResult(slot.serialization);
+			if(compact != null){
+				compact.writeRecord(CompactBackupFormat.RECORD_NODE, serialized.node);
+			}else{
+				zos.putNextEntry(new ZipEntry(slot.path + NODE_XML_FILE));
+				zos.write(serialized.node);
+			}
+			long bytes = serialized.node.length;
+			// Now write all revisions of this node.
+			for(int i=0; i<serialized.revisionIds.size(); i++){
+				byte[] revision = serialized.revisions.get(i);
+				if(compact != null){
+					compact.writeRecord(CompactBackupFormat.RECORD_REVISION, revision);
+				}else{
+					zos.putNextEntry(new ZipEntry(slot.path + REVISIONS_FOLDER
+							+ PATH_DELIMITER + serialized.revisionIds.get(i) + XML_FILE_SUFFIX));
+					zos.write(revision);
 				}
-			}			
+				bytes += revision.length;
+			}
+			progress.setMessage(serialized.name);
+			progress.incrementProgress();
+			progress.incrementBytesBy(bytes);
+			if(log.isTraceEnabled()){
+				log.trace(progress.toString());			
+			}
+			// Check for termination.
+			checkForTermination(progress);
 		}
-		return true;
 	}
 
 	public static void checkForTermination(Progress progress)
@@ -178,30 +294,25 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 	}
 
 	/**
-	 * Add a single revision
+	 * Fetch a node and all of its revisions.
 	 * 
-	 * @param zos
-	 * @param backup
-	 * @param path
-	 * @throws IOException
-	 * @throws DatastoreException 
-	 * @throws NotFoundException 
+	 * @param nodeId
+	 * @return
+	 * @throws NotFoundException
+	 * @throws DatastoreException
 	 */
-	private void writeRevisions(ZipOutputStream zos, NodeBackup backup,
-			String path) throws IOException, NotFoundException, DatastoreException {
-		if (backup == null)
-			throw new IllegalArgumentException("NodeBackup cannot be null");
+	private FetchedNode fetchNode(String nodeId) throws NotFoundException, DatastoreException {
+		NodeBackup backup = backupManager.getNode(nodeId);
+		if(backup == null) throw new IllegalArgumentException("Cannot backup node: "+nodeId+" because it does not exists");
 		if (backup.getNode() == null)
 			throw new IllegalArgumentException("NodeBackup.node cannot be null");
 		Node node = backup.getNode();
 		if (node.getId() == null)
 			throw new IllegalArgumentException("node.id cannot be null");
+		List<NodeRevisionBackup> revisions = new ArrayList<NodeRevisionBackup>();
 		List<Long> revList = backup.getRevisions();
 		if (revList != null) {
 			for (Long revId : revList) {
-				ZipEntry entry = new ZipEntry(path + REVISIONS_FOLDER
-						+ PATH_DELIMITER + revId + XML_FILE_SUFFIX);
-				zos.putNextEntry(entry);
 				NodeRevisionBackup rev = backupManager.getNodeRevision(node.getId(),	revId);
 				if (rev == null)
 					throw new RuntimeException(
@@ -210,13 +321,265 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 				if(!NodeRevisionBackup.CURRENT_XML_VERSION.equals(rev.getXmlVersion())){
 					throw new RuntimeException("Cannot write a NodeRevisionBackup that is not set to the current xml version.  Expected version: "+NodeRevisionBackup.CURRENT_XML_VERSION+" but was "+rev.getXmlVersion());
 				}
-				NodeSerializerUtil.writeNodeRevision(rev, zos);
+				revisions.add(rev);
 			}
 		}
+		return new FetchedNode(backup, revisions);
 	}
 
 	/**
-	 * Restore from the backup.
+	 * Serialize a node and its revisions to XML.
+	 * 
+	 * @param fetched
+	 * @return
+	 */
+	static SerializedNode serializeNode(FetchedNode fetched) {
+		SerializedNode serialized = new SerializedNode();
+		serialized.name = fetched.backup.getNode().getName();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NodeSerializerUtil.writeNodeBackup(fetched.backup, out);
+		serialized.node = out.toByteArray();
+		// The revisions were fetched in the order of the node's revision list.
+		for(int i=0; i<fetched.revisions.size(); i++){
+			out.reset();
+			NodeSerializerUtil.writeNodeRevision(fetched.revisions.get(i), out);
+			serialized.revisionIds.add(fetched.backup.getRevisions().get(i));
+			serialized.revisions.add(out.toByteArray());
+		}
+		return serialized;
+	}
+
+	/**
+	 * Get the result of a pipeline stage, throwing the exception of the stage if it failed.
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException, NotFoundException, DatastoreException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			// A serialization fails with the exception of its fetch.
+			while(cause instanceof ExecutionException){
+				cause = cause.getCause();
+			}
+			rethrow(cause);
+			return null;
+		}
+	}
+
+	private static void rethrow(Throwable cause) throws IOException, NotFoundException, DatastoreException, InterruptedException {
+		if(cause instanceof IOException) throw (IOException) cause;
+		if(cause instanceof NotFoundException) throw (NotFoundException) cause;
+		if(cause instanceof DatastoreException) throw (DatastoreException) cause;
+		if(cause instanceof InterruptedException) throw (InterruptedException) cause;
+		if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+		if(cause instanceof Error) throw (Error) cause;
+		throw new RuntimeException(cause);
+	}
+
+	/**
+	 * The thread pools and queue used to write a single backup. Nodes are
+	 * fetched and serialized in parallel, but are put on the queue in the
+	 * order they must be written: each node before its children.
+	 */
+	private class BackupPipeline {
+
+		ExecutorService traversalThread = Executors.newSingleThreadExecutor();
+		ExecutorService fetchPool = Executors.newFixedThreadPool(fetchThreadCount);
+		ExecutorService serializationPool = Executors.newFixedThreadPool(serializationThreadCount);
+		BlockingQueue<BackupSlot> queue = new ArrayBlockingQueue<BackupSlot>(pipelineQueueSize);
+
+		/**
+		 * Start fetching a node. Once it is fetched it is serialized.
+		 */
+		BackupSlot submit(final String nodeId, String parentPath) {
+			BackupSlot slot = new BackupSlot(parentPath + nodeId + PATH_DELIMITER, new Callable<FetchedNode>() {
+				@Override
+				public FetchedNode call() throws Exception {
+					return fetchNode(nodeId);
+				}
+			}, serializationPool);
+			fetchPool.execute(slot.fetch);
+			return slot;
+		}
+
+		/**
+		 * Walk the nodes, putting each on the queue in order, followed by the
+		 * end of the backup or the failure that stopped the walk.
+		 */
+		void traverse(List<String> roots, boolean isRecursive, Progress progress) {
+			BackupSlot last = BackupSlot.END;
+			try {
+				traverse(roots, "", isRecursive, progress);
+			} catch (InterruptedException e) {
+				// The writer has stopped.
+				return;
+			} catch (Throwable e) {
+				last = new BackupSlot(e);
+			}
+			try {
+				queue.put(last);
+			} catch (InterruptedException e) {
+				// The writer has stopped.
+			}
+		}
+
+		private void traverse(List<String> ids, String path, boolean isRecursive, Progress progress) throws Exception {
+			// Only a few siblings are fetched ahead, so a node with many children does not fill memory.
+			LinkedList<BackupSlot> window = new LinkedList<BackupSlot>();
+			Iterator<String> it = ids.iterator();
+			while(it.hasNext() || !window.isEmpty()){
+				while(it.hasNext() && window.size() < fetchThreadCount){
+					String id = it.next();
+					if("".equals(path)){
+						progress.appendLog(id);
+					}
+					window.add(submit(id, path));
+				}
+				BackupSlot slot = window.removeFirst();
+				queue.put(slot);
+				if(isRecursive){
+					// The children are only known once the node is fetched.
+					List<String> children = getResult(slot.fetch).backup.getChildren();
+					if(children != null && !children.isEmpty()){
+						traverse(children, slot.path, isRecursive, progress);
+					}
+				}
+			}
+		}
+
+		void shutdown() {
+			traversalThread.shutdownNow();
+			fetchPool.shutdownNow();
+			serializationPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * A single node moving through the pipeline.
+	 */
+	private static class BackupSlot {
+
+		/**
+		 * Put on the queue after the last node.
+		 */
+		static final BackupSlot END = new BackupSlot(null);
+
+		final String path;
+		final FutureTask<FetchedNode> fetch;
+		final FutureTask<SerializedNode> serialization;
+		final Throwable failure;
+
+		BackupSlot(String path, Callable<FetchedNode> fetcher, final ExecutorService serializationPool) {
+			this.path = path;
+			this.failure = null;
+			this.serialization = new FutureTask<SerializedNode>(new Callable<SerializedNode>() {
+				@Override
+				public SerializedNode call() throws Exception {
+					return serializeNode(fetch.get());
+				}
+			});
+			this.fetch = new FutureTask<FetchedNode>(fetcher) {
+				@Override
+				protected void done() {
+					try {
+						serializationPool.execute(serialization);
+					} catch (RejectedExecutionException e) {
+						// The backup has stopped.
+						serialization.cancel(false);
+					}
+				}
+			};
+		}
+
+		/**
+		 * A slot that stops the writer with the given failure.
+		 */
+		BackupSlot(Throwable failure) {
+			this.path = null;
+			this.fetch = null;
+			this.serialization = null;
+			this.failure = failure;
+		}
+	}
+
+	/**
+	 * A node and its revisions as read from the source.
+	 */
+	private static class FetchedNode {
+		final NodeBackup backup;
+		final List<NodeRevisionBackup> revisions;
+
+		FetchedNode(NodeBackup backup, List<NodeRevisionBackup> revisions) {
+			this.backup = backup;
+			this.revisions = revisions;
+		}
+	}
+
+	/**
+	 * The XML of a node and its revisions, ready to be written.
+	 */
+	private static class SerializedNode {
+		String name;
+		byte[] node;
+		List<Long> revisionIds = new ArrayList<Long>();
+		List<byte[]> revisions = new ArrayList<byte[]>();
+	}
+
+	/**
+	 * The etag of every node, with parents before their children. Nodes are
+	 * ordered by their depth in the tree rather than by id, since a node can be
+	 * moved under a parent that was created after it.
+	 */
+	@Override
+	public Map<String, String> getHighWaterMark() throws DatastoreException {
+		List<NodeEtag> etags = backupManager.getAllNodeEtags();
+		Map<String, String> parents = new HashMap<String, String>(etags.size());
+		for(NodeEtag etag: etags){
+			parents.put(etag.getId(), etag.getParentId());
+		}
+		final Map<String, Integer> depths = new HashMap<String, Integer>(etags.size());
+		for(NodeEtag etag: etags){
+			calculateDepth(etag.getId(), parents, depths);
+		}
+		// The sort is stable so nodes at the same depth stay in id order.
+		List<NodeEtag> sorted = new ArrayList<NodeEtag>(etags);
+		Collections.sort(sorted, new Comparator<NodeEtag>(){
+			@Override
+			public int compare(NodeEtag one, NodeEtag two) {
+				return depths.get(one.getId()).compareTo(depths.get(two.getId()));
+			}});
+		Map<String, String> mark = new LinkedHashMap<String, String>(sorted.size());
+		for(NodeEtag etag: sorted){
+			mark.put(etag.getId(), etag.getEtag());
+		}
+		return mark;
+	}
+
+	/**
+	 * Walk up from a node until a node with a known depth is found, then
+	 * record the depth of each node on the path.
+	 */
+	private static void calculateDepth(String id, Map<String, String> parents, Map<String, Integer> depths){
+		LinkedList<String> path = new LinkedList<String>();
+		int depth = -1;
+		String current = id;
+		while(current != null){
+			Integer known = depths.get(current);
+			if(known != null){
+				depth = known;
+				break;
+			}
+			path.addFirst(current);
+			// A parent that is not in the table is treated as a root.
+			current = parents.get(current);
+		}
+		for(String onPath: path){
+			depths.put(onPath, ++depth);
+		}
+	}
+
+	/**
+	 * Restore from a backup file.
 	 * @throws InterruptedException 
 	 */
 	@Override
@@ -224,102 +587,343 @@ public class NodeBackupDriverImpl implements NodeBackupDriver {
 		if(source == null) throw new IllegalArgumentException("Source file cannot be null");
 		if(!source.exists()) throw new IllegalArgumentException("Source file dose not exist: "+source.getAbsolutePath());
 		if(progress == null) throw new IllegalArgumentException("Progress cannot be null");
-		FileInputStream fis = new FileInputStream(source);
+		log.info("Restoring: "+source.getAbsolutePath());
+		progress.appendLog("Restoring: "+source.getAbsolutePath());
+		return restoreFromBackup(new FileInputStream(source), source.length(), progress);
+	}
+
+	/**
+	 * Restore from the backup.
+	 * 
+	 * Since a node is always written to the backup before its children, a
+	 * batch of nodes only needs to wait for the earlier batches that hold the
+	 * parents of its nodes.  The backup is read once from start to end, so the
+	 * nodes at the start of a backup can be restored while the rest of it is
+	 * still being downloaded.
+	 * @throws InterruptedException 
+	 */
+	@Override
+	public boolean restoreFromBackup(InputStream source, long length, Progress progress) throws IOException, InterruptedException {
+		if(source == null) throw new IllegalArgumentException("Source cannot be null");
+		if(progress == null) throw new IllegalArgumentException("Progress cannot be null");
+		CountingInputStream counter = new CountingInputStream(source);
+		BufferedInputStream bis = new BufferedInputStream(counter);
+		RestorePipeline pipeline = new RestorePipeline();
 		try{
-			log.info("Restoring: "+source.getAbsolutePath());
-			progress.appendLog("Restoring: "+source.getAbsolutePath());
-			// First clear all data
-			ZipInputStream zin = new  ZipInputStream(new BufferedInputStream(fis));
-			progress.setMessage("Reading: "+source.getAbsolutePath());
-			progress.setTotalCount(source.length());
-			// We need to map the node type to the node id.
-			EntityType nodeType = null;
-			NodeBackup backup = null;
-			List<NodeRevisionBackup> revisions = null;
-			ZipEntry entry;
+			BackupFormat format = BackupFormat.detect(bis);
+			progress.appendLog("Restoring "+length+" bytes in the format: "+format);
+			progress.setMessage("Reading nodes");
+			progress.setTotalCount(length);
+			progress.resetStartTime();
+			RestoreReader reader = new RestoreReader(pipeline, progress);
 			progress.appendLog("Processing nodes:");
-			while((entry = zin.getNextEntry()) != null) {
-				progress.setMessage(entry.getName());
-				// Check for termination.
-				checkForTermination(progress);
-				// What is the name of this entry
-//				log.info("Writing entry: "+entry.getName());
-				// Is this a node or a revision?
-				if(isNodeBackupFile(entry.getName())){
-					// Push the current data
-					if(backup != null){
-						backupManager.createOrUpdateNodeWithRevisions(backup, revisions);
-						// clear the current data
-						backup = null;
-						
+			if(BackupFormat.COMPACT == format){
+				// The index is at the end of the backup, so for both formats the progress is the bytes read so far.
+				CompactBackupReader in = new CompactBackupReader(bis);
+				while(in.next()){
+					// Check for termination.
+					checkForTermination(progress);
+					if(CompactBackupFormat.RECORD_NODE == in.getType()){
+						reader.readNode(new ByteArrayInputStream(in.getPayload()));
+					}else if(CompactBackupFormat.RECORD_REVISION == in.getType()){
+						reader.readRevision(new ByteArrayInputStream(in.getPayload()));
+					}else{
+						throw new IllegalArgumentException("Did not recongnize record type: "+in.getType());
 					}
-					// This is a backup file.
-					backup = nodeSerializer.readNodeBackup(zin);
-					// Append this id to the log.
-					progress.appendLog(backup.getNode().getId());
-					revisions = new ArrayList<NodeRevisionBackup>();
-					try{
-						nodeType = EntityType.valueOf(backup.getNode().getNodeType());
-					}catch(IllegalArgumentException e){
-						// This was likely a deleted entity type.
-						nodeType = EntityType.unknown;
-						backup = null;
-						// for now skip unknown types
-						continue;
-					}
-					
-					migrationDriver.migrateNodePrincipals(backup);
-					
-					// Are we restoring the root node?
-					if(backup.getNode().getParentId() == null){
-						// This node is a root.  Does it match the current root?
-						String currentRootId = getCurrentRootId();
-						if(!backup.getNode().getId().equals(currentRootId)){
-							// We are being asked to restore a root node but we already have one.
-							// Since the current root does not match the ID of the root we were given
-							// we must clear all data and start with a clean database
-							backupManager.clearAllData();
-						}
+					progress.setCurrentIndex(counter.getCount());
+					if(log.isTraceEnabled()){
+						log.trace(progress.toString());			
 					}
-				}else if(isNodeRevisionFile(entry.getName())){
-					// Skip unknown types.
-					if(EntityType.unknown == nodeType) continue;
-					if(backup == null) throw new IllegalArgumentException("Found a revsions without a matching entity.");
-					if(revisions == null) throw new IllegalArgumentException("Found a revisoin without any matching entity");
-
-					// This is a revision file.
-					NodeRevisionBackup revision = NodeSerializerUtil.readNodeRevision(zin);
-					// Add this to the list
-					// Migrate the revision to the current version
-					nodeType = migrationDriver.migrateToCurrentVersion(revision, nodeType);
-					// nodeType is changed as needed
-					backup.getNode().setNodeType(nodeType.name());
-					// Add this to the list of revisions to be processed
-					revisions.add(revision);
-				}else{
-					throw new IllegalArgumentException("Did not recongnize file name: "+entry.getName());
 				}
-				progress.incrementProgressBy(entry.getCompressedSize());
-				if(log.isTraceEnabled()){
-					log.trace(progress.toString());			
+			}else{
+				ZipInputStream zin = new  ZipInputStream(bis);
+				ZipEntry entry;
+				while((entry = zin.getNextEntry()) != null) {
+					progress.setMessage(entry.getName());
+					// Check for termination.
+					checkForTermination(progress);
+					// Is this a node or a revision?
+					if(isNodeBackupFile(entry.getName())){
+						reader.readNode(zin);
+					}else if(isNodeRevisionFile(entry.getName())){
+						reader.readRevision(zin);
+					}else{
+						throw new IllegalArgumentException("Did not recongnize file name: "+entry.getName());
+					}
+					progress.setCurrentIndex(counter.getCount());
+					if(log.isTraceEnabled()){
+						log.trace(progress.toString());			
+					}
 				}
-				// This is run in a tight loop so to be CPU friendly we should yield
-				
-				Thread.yield();
 			}
+			reader.finish();
 			progress.appendLog("Finished processing nodes.");
+			long elapsed = progress.getElapsedMS();
+			progress.appendLog(String.format("Restored %1$d nodes in %2$d batches in %3$d ms: %4$.1f nodes/sec",
+					pipeline.nodeCount, pipeline.batchCount, elapsed, pipeline.nodeCount*1000.0/Math.max(elapsed, 1)));
+		}finally{
+			pipeline.shutdown();
+			source.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the bytes read from a stream.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b >= 0) count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if(read > 0) count += read;
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			// Reset would undo the count.
+			return false;
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * Decodes the nodes and revisions of a backup in order, passing each node
+	 * to the pipeline once all of its revisions are read.
+	 */
+	private class RestoreReader {
+
+		final RestorePipeline pipeline;
+		final Progress progress;
+		// We need to map the node type to the node id.
+		EntityType nodeType = null;
+		NodeBackup backup = null;
+		List<NodeRevisionBackup> revisions = null;
+
+		RestoreReader(RestorePipeline pipeline, Progress progress) {
+			this.pipeline = pipeline;
+			this.progress = progress;
+		}
+
+		void readNode(InputStream in) throws IOException, InterruptedException {
+			// Push the current data
 			if(backup != null){
-				// do the final backup
-				backupManager.createOrUpdateNodeWithRevisions(backup, revisions);
+				pipeline.add(backup, revisions);
+				// clear the current data
+				backup = null;
 			}
-		}finally{
-			if(fis != null){
-				fis.close();
+			// This is a backup file.
+			backup = nodeSerializer.readNodeBackup(in);
+			// Append this id to the log.
+			progress.appendLog(backup.getNode().getId());
+			revisions = new ArrayList<NodeRevisionBackup>();
+			try{
+				nodeType = EntityType.valueOf(backup.getNode().getNodeType());
+			}catch(IllegalArgumentException e){
+				// This was likely a deleted entity type.
+				nodeType = EntityType.unknown;
+				backup = null;
+				// for now skip unknown types
+				return;
+			}
+			
+			migrationDriver.migrateNodePrincipals(backup);
+			
+			// Are we restoring the root node?
+			if(backup.getNode().getParentId() == null){
+				// This node is a root. Everything read before it must be written before the roots can be compared.
+				pipeline.finish();
+				// Does it match the current root?
+				String currentRootId = getCurrentRootId();
+				if(!backup.getNode().getId().equals(currentRootId)){
+					// We are being asked to restore a root node but we already have one.
+					// Since the current root does not match the ID of the root we were given
+					// we must clear all data and start with a clean database
+					backupManager.clearAllData();
+				}
 			}
 		}
-		return true;
+
+		void readRevision(InputStream in) {
+			// Skip unknown types.
+			if(EntityType.unknown == nodeType) return;
+			if(backup == null) throw new IllegalArgumentException("Found a revsions without a matching entity.");
+			if(revisions == null) throw new IllegalArgumentException("Found a revisoin without any matching entity");
+
+			// This is a revision file.
+			NodeRevisionBackup revision = NodeSerializerUtil.readNodeRevision(in);
+			// Migrate the revision to the current version
+			nodeType = migrationDriver.migrateToCurrentVersion(revision, nodeType);
+			// nodeType is changed as needed
+			backup.getNode().setNodeType(nodeType.name());
+			// Add this to the list of revisions to be processed
+			revisions.add(revision);
+		}
+
+		/**
+		 * Push the last node and wait for everything to be written.
+		 */
+		void finish() throws IOException, InterruptedException {
+			if(backup != null){
+				// do the final backup
+				pipeline.add(backup, revisions);
+				backup = null;
+			}
+			pipeline.finish();
+		}
 	}
 	
+	/**
+	 * Write a batch of nodes in a single transaction. If the batch fails its
+	 * nodes are written one at a time, so only the node that cannot be
+	 * restored fails, with its own error.
+	 * 
+	 * @param batch
+	 */
+	private void writeBatch(RestoreBatch batch) {
+		try{
+			backupManager.createOrUpdateNodesWithRevisions(batch.backups, batch.revisions);
+		}catch(RuntimeException e){
+			if(batch.backups.size() == 1) throw e;
+			log.warn("Failed to restore a batch of "+batch.backups.size()+" nodes so they will be restored one at a time: "+e.getMessage());
+			for(NodeBackup backup: batch.backups){
+				backupManager.createOrUpdateNodeWithRevisions(backup, batch.revisions.get(backup.getNode().getId()));
+			}
+		}
+	}
+
+	/**
+	 * The writers and the batches of a single restore. The batches are
+	 * submitted in the order they are read, and the pool takes them in that
+	 * order, so a batch only ever waits on batches that are already running
+	 * or done.
+	 */
+	private class RestorePipeline {
+
+		ExecutorService writerPool = Executors.newFixedThreadPool(restoreWriterThreadCount);
+		LinkedList<RestoreBatch> inFlight = new LinkedList<RestoreBatch>();
+		// The batch of each node that might not be written yet.
+		Map<String, RestoreBatch> nodeBatches = new HashMap<String, RestoreBatch>();
+		RestoreBatch current = new RestoreBatch();
+		long nodeCount = 0;
+		long batchCount = 0;
+
+		/**
+		 * Add a node to the current batch, submitting the batch once it is full.
+		 */
+		void add(NodeBackup backup, List<NodeRevisionBackup> revisions) throws IOException, InterruptedException {
+			current.add(backup, revisions);
+			nodeCount++;
+			if(current.backups.size() >= restoreBatchSize){
+				submitCurrent();
+			}
+		}
+
+		private void submitCurrent() throws IOException, InterruptedException {
+			if(current.backups.isEmpty()) return;
+			final RestoreBatch batch = current;
+			current = new RestoreBatch();
+			// Find the earlier batches that create the parents of this batch.
+			final Set<RestoreBatch> parents = new HashSet<RestoreBatch>();
+			for(NodeBackup backup: batch.backups){
+				String parentId = backup.getNode().getParentId();
+				if(parentId == null) continue;
+				RestoreBatch parent = nodeBatches.get(parentId);
+				if(parent != null){
+					parents.add(parent);
+				}
+			}
+			batch.future = writerPool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for(RestoreBatch parent: parents){
+						try {
+							parent.future.get();
+						} catch (ExecutionException e) {
+							// The failure is reported with the parent's batch.
+						}
+					}
+					writeBatch(batch);
+					return null;
+				}
+			});
+			batchCount++;
+			for(NodeBackup backup: batch.backups){
+				nodeBatches.put(backup.getNode().getId(), batch);
+			}
+			inFlight.add(batch);
+			// Forget the batches that are done, and stop reading while too many are waiting to be written.
+			while(!inFlight.isEmpty() && (inFlight.getFirst().future.isDone() || inFlight.size() > restoreWriterThreadCount*2)){
+				waitFor(inFlight.removeFirst());
+			}
+		}
+
+		private void waitFor(RestoreBatch batch) throws IOException, InterruptedException {
+			try {
+				getResult(batch.future);
+			} catch (NotFoundException e) {
+				throw new RuntimeException(e);
+			} catch (DatastoreException e) {
+				throw new RuntimeException(e);
+			}
+			for(NodeBackup backup: batch.backups){
+				nodeBatches.remove(backup.getNode().getId());
+			}
+		}
+
+		/**
+		 * Submit the current batch and wait for every batch to be written.
+		 */
+		void finish() throws IOException, InterruptedException {
+			submitCurrent();
+			while(!inFlight.isEmpty()){
+				waitFor(inFlight.removeFirst());
+			}
+		}
+
+		void shutdown() {
+			writerPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Nodes that are restored in a single transaction.
+	 */
+	private static class RestoreBatch {
+		final List<NodeBackup> backups = new ArrayList<NodeBackup>();
+		final Map<String, List<NodeRevisionBackup>> revisions = new HashMap<String, List<NodeRevisionBackup>>();
+		Future<Void> future;
+
+		void add(NodeBackup backup, List<NodeRevisionBackup> nodeRevisions) {
+			backups.add(backup);
+			revisions.put(backup.getNode().getId(), nodeRevisions);
+		}
+	}
+
 	/**
 	 * Get the ID of the current root node.
 	 * @return
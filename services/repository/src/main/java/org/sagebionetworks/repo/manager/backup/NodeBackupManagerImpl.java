@@ -1,10 +1,12 @@
 package org.sagebionetworks.repo.manager.backup;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.sagebionetworks.repo.model.AccessControlList;
 import org.sagebionetworks.repo.model.AccessControlListDAO;
@@ -16,6 +18,7 @@ import org.sagebionetworks.repo.model.NodeBackup;
 import org.sagebionetworks.repo.model.NodeBackupDAO;
 import org.sagebionetworks.repo.model.NodeConstants;
 import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.NodeEtag;
 import org.sagebionetworks.repo.model.NodeInheritanceDAO;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
 import org.sagebionetworks.repo.model.ResourceAccess;
@@ -112,6 +115,11 @@ public class NodeBackupManagerImpl implements NodeBackupManager {
 		return nodeBackupDao.getTotalNodeCount();
 	}
 
+	@Override
+	public List<NodeEtag> getAllNodeEtags() throws DatastoreException {
+		return nodeBackupDao.getAllNodeEtags();
+	}
+
 	/**
 	 * Create this node.  This is important. We do not want a transaction
 	 * around an entire system restoration call.  Such a transaction will not scale, and a partial
@@ -162,14 +170,7 @@ public class NodeBackupManagerImpl implements NodeBackupManager {
 		if(rev.getRevisionNumber() == null) throw new IllegalArgumentException("NodeRevisionBackup.revisionNumber cannot be null");
 		if(rev.getLabel() == null) throw new IllegalArgumentException("NodeRevisionBackup.revisionNumber cannot be null");
 		try{
-			// Validate the annotations
-			if(rev.getNamedAnnotations() != null){
-				NamedAnnotations named = rev.getNamedAnnotations();
-				Iterator<String> it = named.nameIterator();
-				while(it.hasNext()){
-					FieldTypeCache.validateAnnotations(named.getAnnotationsForName(it.next()));
-				}
-			}
+			validateAnnotations(rev);
 			if(nodeDao.doesNodeRevisionExist(rev.getNodeId(), rev.getRevisionNumber())){
 				// This is an update.
 				nodeBackupDao.updateRevisionFromBackup(rev);
@@ -184,6 +185,21 @@ public class NodeBackupManagerImpl implements NodeBackupManager {
 		}
 	}
 
+	/**
+	 * Validate the annotations of a revision.
+	 * @param rev
+	 * @throws InvalidModelException
+	 */
+	private void validateAnnotations(NodeRevisionBackup rev) throws InvalidModelException {
+		if(rev.getNamedAnnotations() != null){
+			NamedAnnotations named = rev.getNamedAnnotations();
+			Iterator<String> it = named.nameIterator();
+			while(it.hasNext()){
+				FieldTypeCache.validateAnnotations(named.getAnnotationsForName(it.next()));
+			}
+		}
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	@Override
 	public void clearAllData() {
@@ -206,6 +222,68 @@ public class NodeBackupManagerImpl implements NodeBackupManager {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
 	@Override
 	public void createOrUpdateNodeWithRevisions(NodeBackup backup,	List<NodeRevisionBackup> revisions) {
+		createOrUpdateNodeWithRevisionsPrivate(backup, revisions);
+	}
+
+	/**
+	 * Create the new nodes of the batch with batch inserts, then update the
+	 * nodes that already exist one at a time.
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW)
+	@Override
+	public void createOrUpdateNodesWithRevisions(List<NodeBackup> backups, Map<String, List<NodeRevisionBackup>> revisions) {
+		if(backups == null) throw new IllegalArgumentException("backups cannot be null");
+		if(revisions == null) throw new IllegalArgumentException("revisions cannot be null");
+		List<NodeBackup> toCreate = new ArrayList<NodeBackup>();
+		List<NodeRevisionBackup> toCreateRevisions = new ArrayList<NodeRevisionBackup>();
+		List<NodeBackup> toUpdate = new ArrayList<NodeBackup>();
+		try {
+			for(NodeBackup backup: backups){
+				if(backup == null) throw new IllegalArgumentException("NodeBackup cannot be null");
+				if(backup.getNode() == null) throw new IllegalArgumentException("NodeBackup.node cannot be null");
+				if(backup.getNode().getId() == null) throw new IllegalArgumentException("NodeBackup.node.id cannot be null");
+				if(nodeDao.doesNodeExist(KeyFactory.stringToKey(backup.getNode().getId()))){
+					toUpdate.add(backup);
+					continue;
+				}
+				toCreate.add(backup);
+				List<NodeRevisionBackup> nodeRevisions = revisions.get(backup.getNode().getId());
+				if(nodeRevisions == null) continue;
+				for(NodeRevisionBackup rev: nodeRevisions){
+					if(rev.getLabel() == null) throw new IllegalArgumentException("NodeRevisionBackup.label cannot be null");
+					validateAnnotations(rev);
+					toCreateRevisions.add(rev);
+				}
+			}
+			nodeBackupDao.createNewNodesFromBackup(toCreate, toCreateRevisions);
+			for(NodeBackup backup: toCreate){
+				if (backup.getAcl() != null) {
+					aclDAO.create(backup.getAcl());
+				}
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			// Convert all exceptions to runtimes to force a rollback on this batch.
+			throw new RuntimeException(e);
+		}
+		// The nodes that already exist are updated after the new nodes are created
+		// since they might have been moved under one of them.
+		for(NodeBackup backup: toUpdate){
+			List<NodeRevisionBackup> nodeRevisions = revisions.get(backup.getNode().getId());
+			if(nodeRevisions == null){
+				nodeRevisions = new ArrayList<NodeRevisionBackup>();
+			}
+			createOrUpdateNodeWithRevisionsPrivate(backup, nodeRevisions);
+		}
+	}
+
+	/**
+	 * Create or update a node and its revisions within the current transaction.
+	 * @param backup
+	 * @param revisions
+	 */
+	private void createOrUpdateNodeWithRevisionsPrivate(NodeBackup backup,	List<NodeRevisionBackup> revisions) {
 		if(backup == null) throw new IllegalArgumentException("backup cannot be null");
 		if(revisions == null) throw new IllegalArgumentException("revisions cannot be null");
 		// Make sure we process revision in their natural order
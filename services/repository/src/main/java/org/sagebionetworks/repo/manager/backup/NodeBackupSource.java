@@ -5,6 +5,7 @@ import java.util.Set;
 
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.NodeBackup;
+import org.sagebionetworks.repo.model.NodeEtag;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
 import org.sagebionetworks.repo.web.NotFoundException;
 
@@ -56,5 +57,13 @@ public interface NodeBackupSource {
 	 * @return
 	 */
 	public long getTotalNodeCount();
+	
+	/**
+	 * Get the current etag and parent of every node.  This is the high-water mark
+	 * used to find the nodes that changed since an earlier backup.
+	 * @return
+	 * @throws DatastoreException 
+	 */
+	public List<NodeEtag> getAllNodeEtags() throws DatastoreException;
 
 }
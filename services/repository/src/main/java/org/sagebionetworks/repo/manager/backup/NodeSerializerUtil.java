@@ -34,6 +34,13 @@ public class NodeSerializerUtil  {
 	private static final String ALIAS_NODE_REVISION = "node-revision";
 	private static final String ALIAS_ANNOTATIONS = "annotations";
 	private static final String ALIAS_NAME_SPACE = "name-space";
+	private static final String ALIAS_BACKUP_MANIFEST = "backup-manifest";
+
+	/**
+	 * Creating an XStream is far more expensive than using one, and once
+	 * configured it is safe to share between threads.
+	 */
+	private static final XStream XSTREAM = createXStream();
 
 
 	/**
@@ -55,8 +62,7 @@ public class NodeSerializerUtil  {
 	 */
 	public static void writeNodeBackup(NodeBackup node,	Writer writer) {
 		// For now we just let xstream do the work
-		XStream xstream = createXStream();
-		xstream.toXML(node, writer);
+		XSTREAM.toXML(node, writer);
 	}
 
 
@@ -78,9 +84,8 @@ public class NodeSerializerUtil  {
 	 * @return
 	 */
 	public static NodeBackup readNodeBackup(Reader reader) {
-		XStream xstream = createXStream();
 		NodeBackup backup = new NodeBackup();
-		xstream.fromXML(reader, backup);
+		XSTREAM.fromXML(reader, backup);
 		return backup;
 	}
 	
@@ -90,8 +95,7 @@ public class NodeSerializerUtil  {
 	}
 	
 	public static void writeNodeRevision(NodeRevisionBackup revision, Writer writer){
-		XStream xstream = createXStream();
-		xstream.toXML(revision, writer);
+		XSTREAM.toXML(revision, writer);
 	}
 	
 	public static NodeRevisionBackup readNodeRevision(InputStream in){
@@ -100,24 +104,31 @@ public class NodeSerializerUtil  {
 	}
 	
 	public static NodeRevisionBackup readNodeRevision(Reader reader){
-		XStream xstream = createXStream();
 		NodeRevisionBackup rev = new NodeRevisionBackup();
-		xstream.fromXML(reader, rev);
+		XSTREAM.fromXML(reader, rev);
 		return rev;
 	}
 	
 	public static void writePrincipalBackups(Collection<PrincipalBackup> principalBackups, OutputStream out) {
 		OutputStreamWriter writer = new OutputStreamWriter(out);
-		XStream xstream = createXStream();
-		xstream.toXML(principalBackups, writer);
+		XSTREAM.toXML(principalBackups, writer);
 	}
 	
 	@SuppressWarnings("unchecked")
 	public static Collection<PrincipalBackup> readPrincipalBackups(InputStream in) {
 		InputStreamReader reader = new InputStreamReader(in);
-		XStream xstream = createXStream();
 //		List<PrincipalBackup> principals =  new ArrayList<PrincipalBackup>();
-		return (Collection<PrincipalBackup>)xstream.fromXML(reader);
+		return (Collection<PrincipalBackup>)XSTREAM.fromXML(reader);
+	}
+	
+	public static void writeBackupManifest(BackupManifest manifest, OutputStream out) {
+		OutputStreamWriter writer = new OutputStreamWriter(out);
+		XSTREAM.toXML(manifest, writer);
+	}
+	
+	public static BackupManifest readBackupManifest(InputStream in) {
+		InputStreamReader reader = new InputStreamReader(in);
+		return (BackupManifest)XSTREAM.fromXML(reader);
 	}
 
 	private static XStream createXStream(){
@@ -128,6 +139,7 @@ public class NodeSerializerUtil  {
 		xstream.alias(ALIAS_NODE_REVISION, NodeRevisionBackup.class);
 		xstream.alias(ALIAS_ANNOTATIONS, Annotations.class);
 		xstream.alias(ALIAS_NAME_SPACE, NamedAnnotations.class);
+		xstream.alias(ALIAS_BACKUP_MANIFEST, BackupManifest.class);
 		return xstream;
 	}
 
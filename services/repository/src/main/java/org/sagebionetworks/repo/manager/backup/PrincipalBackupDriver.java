@@ -2,14 +2,22 @@ package org.sagebionetworks.repo.manager.backup;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -122,14 +130,21 @@ public class PrincipalBackupDriver implements NodeBackupDriver {
 		if(source == null) throw new IllegalArgumentException("Source file cannot be null");
 		if(!source.exists()) throw new IllegalArgumentException("Source file dose not exist: "+source.getAbsolutePath());
 		if(progress == null) throw new IllegalArgumentException("Progress cannot be null");
-		FileInputStream fis = new FileInputStream(source);
+		log.info("Restoring: "+source.getAbsolutePath());
+		progress.appendLog("Restoring: "+source.getAbsolutePath());
+		return restoreFromBackup(new FileInputStream(source), source.length(), progress);
+	}
+
+	@Override
+	public boolean restoreFromBackup(InputStream source, long length, Progress progress)
+			throws IOException, InterruptedException {
+		if(source == null) throw new IllegalArgumentException("Source cannot be null");
+		if(progress == null) throw new IllegalArgumentException("Progress cannot be null");
 		try{
-			log.info("Restoring: "+source.getAbsolutePath());
-			progress.appendLog("Restoring: "+source.getAbsolutePath());
 			// First clear all data
-			ZipInputStream zin = new  ZipInputStream(new BufferedInputStream(fis));
-			progress.setMessage("Reading: "+source.getAbsolutePath());
-			progress.setTotalCount(source.length());
+			ZipInputStream zin = new  ZipInputStream(new BufferedInputStream(source));
+			progress.setMessage("Reading principals");
+			progress.setTotalCount(length);
 			ZipEntry entry;
 			progress.appendLog("Processing principals:");
 			while((entry = zin.getNextEntry()) != null) {
@@ -145,13 +160,49 @@ public class PrincipalBackupDriver implements NodeBackupDriver {
 			progress.appendLog("Finished processing principals.");
 
 		}finally{
-			if(fis != null){
-				fis.close();
-			}
+			source.close();
 		}
 		return true;
 	}
 	
+	/**
+	 * Principals do not have an etag, so the mark of each principal is a digest
+	 * of its backup.
+	 */
+	@Override
+	public Map<String, String> getHighWaterMark() throws DatastoreException, NotFoundException {
+		Map<String, String> mark = new LinkedHashMap<String, String>();
+		for (UserGroup g : userGroupDAO.getAll(false)) {
+			PrincipalBackup pb = new PrincipalBackup();
+			pb.setUserGroup(g);
+			mark.put(g.getId(), createDigest(pb));
+		}
+		ObjectSchema schema = SchemaCache.getSchema(UserProfile.class);
+		for (UserGroup u : userGroupDAO.getAll(true)) {
+			PrincipalBackup pb = new PrincipalBackup();
+			pb.setUserGroup(u);
+			pb.setUserProfile(userProfileDAO.get(u.getId(), schema));
+			mark.put(u.getId(), createDigest(pb));
+		}
+		return mark;
+	}
+	
+	/**
+	 * The MD5 of the XML of a principal backup.
+	 * @param pb
+	 * @return
+	 */
+	static String createDigest(PrincipalBackup pb) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NodeSerializerUtil.writePrincipalBackups(Collections.singletonList(pb), out);
+		try {
+			MessageDigest md5 = MessageDigest.getInstance("MD5");
+			return new BigInteger(1, md5.digest(out.toByteArray())).toString(16);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	private void createOrUpdatePrincipals(Collection<PrincipalBackup> principalBackups, Progress progress) {
 		try {
 		    ObjectSchema schema = SchemaCache.getSchema(UserProfile.class);
@@ -16,6 +16,8 @@ public class Progress {
 	private volatile long currentIndex =0;
 	private volatile String message;
 	private volatile boolean terminate = false;
+	private volatile long bytesProcessed = 0;
+	private volatile long startTime = System.currentTimeMillis();
 	// Note we are using a StringBuffer here and not a StringBuilder because
 	// this object is written by one thread and read by another (StringBuilder is not synchronized).
 	private StringBuffer log = new StringBuffer();
@@ -54,6 +56,55 @@ public class Progress {
 		currentIndex += size;
 	}
 
+	/**
+	 * Restart the clock used to compute the rates.
+	 */
+	public void resetStartTime() {
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * The milliseconds since this progress was created or the start time was reset.
+	 * @return
+	 */
+	public long getElapsedMS() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * Add to the number of bytes read or written.
+	 * @param bytes
+	 */
+	public void incrementBytesBy(long bytes) {
+		bytesProcessed += bytes;
+	}
+
+	public long getBytesProcessed() {
+		return bytesProcessed;
+	}
+
+	/**
+	 * The average increase of the current index per second.
+	 * @return
+	 */
+	public double getProgressPerSecond() {
+		return perSecond(currentIndex);
+	}
+
+	/**
+	 * The average number of bytes read or written per second.
+	 * @return
+	 */
+	public double getBytesPerSecond() {
+		return perSecond(bytesProcessed);
+	}
+
+	private double perSecond(long count) {
+		long elapsed = getElapsedMS();
+		if(elapsed < 1) return 0;
+		return ((double)count*1000.0)/(double)elapsed;
+	}
+
 	
 	public String getMessage() {
 		return message;
@@ -97,7 +148,7 @@ public class Progress {
 
 	public String toString(){
 		double percent = ((double)currentIndex/(double)totalCount)*100.0;
-		return 	String.format("%1$-30s %2$10d/%3$-10d %4$8.2f %%", message, currentIndex, totalCount, percent);
+		return 	String.format("%1$-30s %2$10d/%3$-10d %4$8.2f %% %5$10.1f/s", message, currentIndex, totalCount, percent, getProgressPerSecond());
 	}
 
 }
@@ -27,6 +27,7 @@ import org.sagebionetworks.repo.model.Annotations;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.EntityHeader;
 import org.sagebionetworks.repo.model.EntityPath;
+import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeBackup;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
@@ -186,6 +187,10 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 		// anyway
 		outputStream.write('[');
 		boolean isFirstEntry = true;
+		// The paths of all starting nodes are resolved together. The path of
+		// each child is built from the path of its parent.
+		Map<String, List<EntityHeader>> entityPaths = nodeManager
+				.getNodePathsAsAdmin(listToBackup);
 		// First write the root node as its own entry
 		for (String idToBackup : listToBackup) {
 			// Recursively write each node.
@@ -193,8 +198,9 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 			if (backup == null)
 				throw new IllegalArgumentException("Cannot backup node: "
 						+ idToBackup + " because it does not exists");
-			writeSearchDocumentBatch(outputStream, backup, "", progress,
-					isRecursive, isFirstEntry);
+			writeSearchDocumentBatch(outputStream, backup, "",
+					entityPaths.get(idToBackup), progress, isRecursive,
+					isFirstEntry);
 			isFirstEntry = false;
 		}
 		outputStream.write(']');
@@ -209,8 +215,8 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 	 * @throws JSONObjectAdapterException
 	 */
 	private void writeSearchDocumentBatch(OutputStream outputStream,
-			NodeBackup backup, String path, Progress progress,
-			boolean isRecursive, boolean isFirstEntry)
+			NodeBackup backup, String path, List<EntityHeader> entityPath,
+			Progress progress, boolean isRecursive, boolean isFirstEntry)
 			throws NotFoundException, DatastoreException, InterruptedException,
 			IOException, JSONObjectAdapterException {
 		if (backup == null)
@@ -232,7 +238,7 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 		} else {
 			outputStream.write(",\n".getBytes());
 		}
-		writeSearchDocument(outputStream, backup, path);
+		writeSearchDocument(outputStream, backup, path, entityPath);
 		progress.setMessage(backup.getNode().getName());
 		progress.incrementProgress();
 		log.info(progress.toString());
@@ -244,8 +250,11 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 			if (childList != null) {
 				for (String childId : childList) {
 					NodeBackup child = backupManager.getNode(childId);
+					List<EntityHeader> childPath = new ArrayList<EntityHeader>(
+							entityPath);
+					childPath.add(createEntityHeader(child.getNode()));
 					writeSearchDocumentBatch(outputStream, child, path,
-							progress, isRecursive, false);
+							childPath, progress, isRecursive, false);
 				}
 			}
 		}
@@ -264,13 +273,28 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 		}
 	}
 
+	/**
+	 * Create the header of a node, as it appears at the end of its path.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	static EntityHeader createEntityHeader(Node node) {
+		EntityHeader header = new EntityHeader();
+		header.setId(node.getId());
+		header.setName(node.getName());
+		header.setType(EntityType.valueOf(node.getNodeType()).getEntityType());
+		return header;
+	}
+
 	/**
 	 * Write a single search document
 	 * 
 	 * @throws JSONObjectAdapterException
 	 */
 	private void writeSearchDocument(OutputStream outputStream,
-			NodeBackup backup, String path) throws NotFoundException,
+			NodeBackup backup, String path, List<EntityHeader> pathHeaders)
+			throws NotFoundException,
 			DatastoreException, IOException, JSONObjectAdapterException {
 		if (backup == null)
 			throw new IllegalArgumentException("NodeBackup cannot be null");
@@ -285,7 +309,6 @@ public class SearchDocumentDriverImpl implements SearchDocumentDriver {
 		NodeRevisionBackup rev = backupManager.getNodeRevision(node.getId(),
 				revId);
 
-		List<EntityHeader> pathHeaders = nodeManager.getNodePathAsAdmin(node.getId());
 		EntityPath entityPath = new EntityPath();
 		entityPath.setPath(pathHeaders);
 		
@@ -1,21 +1,30 @@
 package org.sagebionetworks.repo.manager.backup.daemon;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.manager.backup.BackupFormat;
+import org.sagebionetworks.repo.manager.backup.BackupManifest;
 import org.sagebionetworks.repo.manager.backup.NodeBackupDriver;
+import org.sagebionetworks.repo.manager.backup.NodeSerializerUtil;
 import org.sagebionetworks.repo.manager.backup.Progress;
 import org.sagebionetworks.repo.manager.backup.SearchDocumentDriver;
 import org.sagebionetworks.repo.model.BackupRestoreStatusDAO;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.MigrationType;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.DaemonStatus;
@@ -24,7 +33,6 @@ import org.sagebionetworks.repo.web.NotFoundException;
 
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.PutObjectResult;
 
 /**
  * This object is not autowired.  A new instance should be created each time one is needed.
@@ -37,6 +45,9 @@ public class BackupDaemon implements Runnable{
 	private static final String PREFIX_BACKUP = "Backup-";
 	private static final String PREFIX_TEMP = "temp-";
 	private static final String PREFIX_SEARCH = "search-";
+	private static final String PREFIX_INCREMENTAL = "Incremental-";
+	private static final String PREFIX_MANIFEST = "Manifest-";
+	private static final String MANIFEST_SUFFIX = ".xml";
 	static private Log log = LogFactory.getLog(BackupDaemon.class);
 	public static long NANO_SECONDS_PER_MILISECOND = 1000000;
 	private static final String S3_DOMAIN = "s3.amazonaws.com";
@@ -52,6 +63,12 @@ public class BackupDaemon implements Runnable{
 	private String backupFileName;
 	// The set of entities to backup
 	private Set<String> entitiesToBackup;
+	// The format of the backup file, chosen by its suffix.
+	private BackupFormat backupFormat = BackupFormat.XML_ZIP;
+	// Incremental backups only include what changed since the previous manifest.
+	private boolean incremental = false;
+	private MigrationType migrationType;
+	private String previousManifest;
 	
 	private BackupRestoreStatus status;
 	private long startTimeNano;
@@ -105,10 +122,36 @@ public class BackupDaemon implements Runnable{
 	public String getBackupFileName(){
 		return backupFileName;
 	}
+	
+	/**
+	 * Set the format of the backup file to write.  The default is BackupFormat.XML_ZIP.
+	 * @param backupFormat
+	 */
+	public void setBackupFormat(BackupFormat backupFormat){
+		if(backupFormat == null) throw new IllegalArgumentException("BackupFormat cannot be null");
+		this.backupFormat = backupFormat;
+	}
+	
+	/**
+	 * Make the backup incremental.  Only the ids whose high-water mark changed since the
+	 * previous manifest are backed up, and a new manifest linking to the previous manifest
+	 * is written next to the backup.  The URL of the completed backup is the URL of the new manifest.
+	 * @param migrationType The type of data in the backup.
+	 * @param previousManifest The S3 key of the previous manifest of the chain, or null to start a new chain with a backup of everything.
+	 */
+	public void setIncremental(MigrationType migrationType, String previousManifest){
+		if(migrationType == null) throw new IllegalArgumentException("MigrationType cannot be null");
+		if(entitiesToBackup != null) throw new IllegalArgumentException("An incremental backup cannot be limited to a set of entities");
+		this.incremental = true;
+		this.migrationType = migrationType;
+		this.previousManifest = previousManifest;
+	}
 
 	@Override
 	public void run() {
 		File tempToDelete = null;
+		S3MultipartUpload upload = null;
+		S3RangedDownload download = null;
 		final Progress progress = new Progress();
 		try{
 			// Before we start, make sure it has not been terminated.
@@ -117,7 +160,10 @@ public class BackupDaemon implements Runnable{
 			String stack = StackConfiguration.getStack();
 			String instance = StackConfiguration.getStackInstance();
 			String prefix = null;
-			if(entitiesToBackup == null){
+			if(incremental){
+				prefix = PREFIX_INCREMENTAL;
+			}
+			else if(entitiesToBackup == null){
 				// This is a full backup file.
 				prefix = PREFIX_BACKUP;
 			}
@@ -128,26 +174,52 @@ public class BackupDaemon implements Runnable{
 				// Incremental backup files are temporary.
 				prefix = PREFIX_TEMP;
 			}
-			final File tempBackup = File.createTempFile(prefix+stack+"-"+instance+"-"+status.getId()+"-", ".zip");
+			final File tempBackup = File.createTempFile(prefix+stack+"-"+instance+"-"+status.getId()+"-", backupFormat.getFileSuffix());
 			tempToDelete = tempBackup;
 			// We have started.
 			status.setStatus(DaemonStatus.STARTED);
 
+			// Is there anything for the driver to do?
+			boolean runDriver = true;
+			BackupManifest manifest = null;
+			if(DaemonType.BACKUP == type && incremental){
+				String since = previousManifest == null ? "the start of a new chain" : previousManifest;
+				status.setProgresssMessage("Finding the changes since: "+since);
+				updateStatus();
+				manifest = createManifest(stack, instance);
+				progress.appendLog("Changed: "+entitiesToBackup.size()+" deleted: "+manifest.getDeletedIds().size()+" since: "+since);
+				runDriver = !entitiesToBackup.isEmpty();
+			}
+
 			// If this is a restore then we need to download the file from S3
+			String toRestore = null;
 			if(DaemonType.RESTORE == type){
 				status.setProgresssMessage("Starting to download the file from S3...");
 				status.setBackupUrl(getS3URL(this.awsBucket, this.backupFileName));
 				updateStatus();
-				downloadFileFromS3(tempBackup, awsBucket, backupFileName);
-				// If this backup file is a temp file then delete it from S3 after we finish the backup
-				if(backupFileName.startsWith(PREFIX_TEMP)){
-					deleteFileFromS3(awsBucket, backupFileName);
+				// A manifest is restored by restoring its backup.
+				toRestore = backupFileName;
+				if(backupFileName.startsWith(PREFIX_MANIFEST)){
+					toRestore = downloadManifest(backupFileName, stack, instance).getBackupFileName();
 				}
-				// Let the user know we finished dowloading file from S#
-				status.setProgresssMessage("Finished dowloading file from S3: "+this.backupFileName);
+				if(toRestore == null){
+					runDriver = false;
+				}else{
+					// The driver reads the file while it downloads.
+					download = startDownload(tempBackup, toRestore);
+				}
+				// Let the user know we started dowloading file from S#
+				status.setProgresssMessage("Started dowloading file from S3: "+this.backupFileName);
 				updateStatus();
 			}
 			
+			// The file is uploaded while the driver is still writing it.
+			if(runDriver && DaemonType.BACKUP == type){
+				upload = createUpload(tempBackup, null);
+			}else if(runDriver && DaemonType.SEARCH_DOCUMENT == type){
+				upload = createUpload(tempBackup, S3KEY_SEARCH_PREFIX);
+			}
+			
 			// Start the driver
 			progress.setMessage("Starting Driver thread...");
 			progress.appendLog("JVM Name: "+ManagementFactory.getRuntimeMXBean().getName());
@@ -155,7 +227,12 @@ public class BackupDaemon implements Runnable{
 			progress.setCurrentIndex(0);
 			progress.setTotalCount(Long.MAX_VALUE);
 			progress.setTerminate(false);
-			startDriverThread(tempBackup, progress);
+			if(runDriver){
+				startDriverThread(tempBackup, download, progress);
+			}else{
+				progress.appendLog("Nothing changed since the previous backup of the chain.");
+				isDriverDone = true;
+			}
 			// Now watch the progress of the driver
 			while(!isDriverDone){
 				// If there is a driver error then fail
@@ -176,6 +253,10 @@ public class BackupDaemon implements Runnable{
 				status.setProgresssTotal(totalProgress);
 				// Update the status
 				updateStatus();
+				// Upload what the driver has written so far.
+				if(upload != null){
+					upload.uploadAvailableParts();
+				}
 			}
 			// If this a backup then update the file to s3
 			if(DaemonType.BACKUP == type){
@@ -183,7 +264,15 @@ public class BackupDaemon implements Runnable{
 				status.setProgresssMessage("Starting to upload temp file: "+tempBackup.getAbsolutePath()+" to S3...");
 				updateStatus();
 				// Now upload the file to S3
-				String backupUrl = uploadFileToS3(tempBackup, null);
+				String backupUrl = null;
+				if(runDriver){
+					backupUrl = uploadFileToS3(upload);
+				}
+				if(manifest != null){
+					// The manifest is written last so it only exists once its backup does.
+					manifest.setBackupFileName(runDriver ? this.backupFileName : null);
+					backupUrl = uploadManifestToS3(manifest, stack, instance);
+				}
 				status.setBackupUrl(backupUrl);
 			}
 			else if(DaemonType.SEARCH_DOCUMENT == type){
@@ -191,7 +280,7 @@ public class BackupDaemon implements Runnable{
 				status.setProgresssMessage("Starting to upload temp file: "+tempBackup.getAbsolutePath()+" to S3...");
 				updateStatus();
 				// Now upload the file to S3
-				String backupUrl = uploadFileToS3(tempBackup, S3KEY_SEARCH_PREFIX);
+				String backupUrl = uploadFileToS3(upload);
 				status.setBackupUrl(backupUrl);
 			}
 			else if(DaemonType.RESTORE == type){
@@ -199,6 +288,10 @@ public class BackupDaemon implements Runnable{
 				// We also want to cleanup backup files from builds.
 				if(backupFileName.startsWith(PREFIX_TEMP) || "dev".equals(stack) || "bamboo".equals(stack)){
 					deleteFileFromS3(awsBucket, backupFileName);
+					// A manifest's backup goes with it.
+					if(toRestore != null && !toRestore.equals(backupFileName)){
+						deleteFileFromS3(awsBucket, toRestore);
+					}
 				}
 			}
 
@@ -214,6 +307,13 @@ public class BackupDaemon implements Runnable{
 			// If there are any errors then change the status
 			setFailed(e);
 		}finally{
+			// Discard any unfinished transfers.
+			if(upload != null){
+				upload.abort();
+			}
+			if(download != null){
+				download.close();
+			}
 			if(tempToDelete != null && tempToDelete.exists()){
 				// Delete the temp file
 				tempToDelete.delete();
@@ -224,9 +324,10 @@ public class BackupDaemon implements Runnable{
 	/**
 	 * Start the driver.
 	 * @param tempBackup
+	 * @param download The download to restore, while it is still running.
 	 * @param progress
 	 */
-	private void startDriverThread(final File tempBackup, final Progress progress) {
+	private void startDriverThread(final File tempBackup, final S3RangedDownload download, final Progress progress) {
 		isDriverDone = false;
 		// The second level pool is used to do the actual work.
 		// We need a second pool to prevent deadlock.
@@ -240,7 +341,7 @@ public class BackupDaemon implements Runnable{
 						backupDriver.writeBackup(tempBackup, progress, entitiesToBackup);							
 					}else if(DaemonType.RESTORE == type) {
 						// This is a restore
-						backupDriver.restoreFromBackup(tempBackup, progress);		
+						backupDriver.restoreFromBackup(download.openStream(), download.getLength(), progress);		
 					}else if(DaemonType.SEARCH_DOCUMENT == type) {
 						// This is a restore
 						searchDocumentDriver.writeSearchDocument(tempBackup, progress, entitiesToBackup);		
@@ -366,17 +467,37 @@ public class BackupDaemon implements Runnable{
 		}
 	}
 	
+	/**
+	 * Create an upload of a file to S3.  Parts of the file can be uploaded while it is still being written.
+	 * @param toUpload
+	 * @param s3KeyPrefix
+	 * @return
+	 */
+	private S3MultipartUpload createUpload(File toUpload, String s3KeyPrefix) {
+		String s3Key = s3KeyPrefix == null ? toUpload.getName() : s3KeyPrefix + toUpload.getName();
+		return new S3MultipartUpload(awsClient, awsBucket, s3Key, toUpload, StackConfiguration.getBackupS3PartSize(), StackConfiguration.getBackupS3TransferThreadCount());
+	}
+	
 	/**
 	 * Upload the file to S3
 	 * @param toUpload
 	 * @param id
+	 * @throws InterruptedException 
+	 */
+	private String uploadFileToS3(File toUpload, String s3KeyPrefix) throws InterruptedException {
+		return uploadFileToS3(createUpload(toUpload, s3KeyPrefix));
+	}
+	
+	/**
+	 * Finish an upload once its file has been written.
+	 * @param upload
+	 * @return
+	 * @throws InterruptedException 
 	 */
-	private String uploadFileToS3(File toUpload, String s3KeyPrefix) {
-		String s3Key = s3KeyPrefix + toUpload.getName();
-		log.info("Atempting to upload: "+getS3URL(awsBucket, s3Key));
-		PutObjectResult results = this.awsClient.putObject(awsBucket, s3Key, toUpload);
-		log.info(results);
-		this.backupFileName = s3Key;
+	private String uploadFileToS3(S3MultipartUpload upload) throws InterruptedException {
+		log.info("Atempting to upload: "+getS3URL(awsBucket, upload.getKey()));
+		upload.complete();
+		this.backupFileName = upload.getKey();
 		return getS3URL(this.awsBucket, this.backupFileName);
 	}
 
@@ -396,6 +517,20 @@ public class BackupDaemon implements Runnable{
 		return url.toString();
 	}
 	
+	/**
+	 * Start a download of the given file in ranges.  The file can be read while it downloads.
+	 * @param tempFile
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	private S3RangedDownload startDownload(File tempFile, String fileName) throws IOException {
+		log.info("Atempting to dowload: "+getS3URL(awsBucket, fileName));
+		S3RangedDownload download = new S3RangedDownload(awsClient, awsBucket, fileName, tempFile, StackConfiguration.getBackupS3PartSize(), StackConfiguration.getBackupS3TransferThreadCount());
+		download.start();
+		return download;
+	}
+	
 	/**
 	 * Download the given file from 
 	 * @param tempFile
@@ -408,6 +543,79 @@ public class BackupDaemon implements Runnable{
 		return true;
 	}
 	
+	/**
+	 * Create the manifest of an incremental backup, and set the entities to backup
+	 * to the ids that changed since the previous manifest.
+	 * @return
+	 * @throws NotFoundException 
+	 * @throws DatastoreException 
+	 * @throws IOException 
+	 */
+	private BackupManifest createManifest(String stack, String instance) throws DatastoreException, NotFoundException, IOException {
+		Map<String, String> previousMark = null;
+		if(previousManifest != null){
+			BackupManifest previous = downloadManifest(previousManifest, stack, instance);
+			if(previous.getMigrationType() != migrationType){
+				throw new IllegalArgumentException("The previous manifest: "+previousManifest+" is for a backup of type: "+previous.getMigrationType()+" not: "+migrationType);
+			}
+			previousMark = previous.getHighWaterMark();
+		}
+		// The mark is taken before anything is backed up, so a change made while the
+		// backup runs is included again by the next backup of the chain.
+		Map<String, String> mark = backupDriver.getHighWaterMark();
+		BackupManifest manifest = new BackupManifest();
+		manifest.setMigrationType(migrationType);
+		manifest.setPreviousManifest(previousManifest);
+		manifest.setCreatedOn(new Date());
+		manifest.setHighWaterMark(new LinkedHashMap<String, String>(mark));
+		manifest.setDeletedIds(BackupManifest.findDeleted(previousMark, mark));
+		this.entitiesToBackup = BackupManifest.findChanged(previousMark, mark);
+		return manifest;
+	}
+	
+	/**
+	 * Download and read a manifest.
+	 * @param s3Key
+	 * @return
+	 * @throws IOException
+	 */
+	private BackupManifest downloadManifest(String s3Key, String stack, String instance) throws IOException {
+		File temp = File.createTempFile(PREFIX_TEMP+stack+"-"+instance+"-"+status.getId()+"-", MANIFEST_SUFFIX);
+		try{
+			downloadFileFromS3(temp, awsBucket, s3Key);
+			FileInputStream in = new FileInputStream(temp);
+			try{
+				return NodeSerializerUtil.readBackupManifest(in);
+			}finally{
+				in.close();
+			}
+		}finally{
+			temp.delete();
+		}
+	}
+	
+	/**
+	 * Write a manifest and upload it to S3.
+	 * @param manifest
+	 * @return The URL of the manifest.
+	 * @throws IOException
+	 * @throws InterruptedException 
+	 */
+	private String uploadManifestToS3(BackupManifest manifest, String stack, String instance) throws IOException, InterruptedException {
+		File temp = File.createTempFile(PREFIX_MANIFEST+stack+"-"+instance+"-"+status.getId()+"-", MANIFEST_SUFFIX);
+		try{
+			FileOutputStream out = new FileOutputStream(temp);
+			try{
+				NodeSerializerUtil.writeBackupManifest(manifest, out);
+			}finally{
+				out.close();
+			}
+			return uploadFileToS3(temp, null);
+		}finally{
+			temp.delete();
+		}
+	}
+	
 	private boolean deleteFileFromS3(String bucket, String fileName){
 		log.info("Atempting to delete a temp file from S3 dowload: "+getS3URL(bucket, fileName));
 		this.awsClient.deleteObject(bucket, fileName);
@@ -20,6 +20,20 @@ public interface BackupDaemonLauncher {
 	 */
 	public BackupRestoreStatus startBackup(UserInfo username, Set<String> entitiesToBackup, MigrationType migrationType) throws UnauthorizedException, DatastoreException;
 	
+	/**
+	 * Start a daemon that will backup everything that changed since the previous backup of a chain.
+	 * The URL of the completed backup is the URL of its manifest, which is passed as the previous
+	 * manifest to the next incremental backup.
+	 * 
+	 * @param username
+	 * @param previousManifest The S3 key of the manifest of the previous backup, or null to start a new chain.
+	 * @param migrationType
+	 * @return
+	 * @throws UnauthorizedException
+	 * @throws DatastoreException
+	 */
+	public BackupRestoreStatus startIncrementalBackup(UserInfo username, String previousManifest, MigrationType migrationType) throws UnauthorizedException, DatastoreException;
+	
 	/**
 	 * Start a restore daemon that will populate the system using the given backup file.
 	 * The backup file must reside in the the S3 Bucket that belongs to this stack.
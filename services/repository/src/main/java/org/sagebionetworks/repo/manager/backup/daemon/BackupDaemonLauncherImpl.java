@@ -4,6 +4,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.manager.backup.BackupFormat;
 import org.sagebionetworks.repo.manager.backup.NodeBackupDriver;
 import org.sagebionetworks.repo.manager.backup.SearchDocumentDriver;
 import org.sagebionetworks.repo.model.BackupRestoreStatusDAO;
@@ -51,21 +52,36 @@ public class BackupDaemonLauncherImpl implements BackupDaemonLauncher {
 		
 		AmazonS3Client client = createNewAWSClient();
 		
-		NodeBackupDriver typeSpecificBackupDriver = null;
-		if (migrationType.equals(MigrationType.ENTITY)) {
-			typeSpecificBackupDriver = backupDriver;
-		} else if (migrationType.equals(MigrationType.PRINCIPAL)) {
-			typeSpecificBackupDriver = principalBackupDriver;
-		} else {
-			throw new IllegalArgumentException(migrationType.toString());
-		}
+		NodeBackupDriver typeSpecificBackupDriver = getBackupDriver(migrationType);
 		
 		// Create a new daemon and start it
 		BackupDaemon daemon = new BackupDaemon(backupRestoreStatusDao, typeSpecificBackupDriver, searchDocumentDriver, client, backupBucket, backupDaemonThreadPool, backupDaemonThreadPool2, entitiesToBackup);
+		if (migrationType.equals(MigrationType.ENTITY)) {
+			daemon.setBackupFormat(BackupFormat.valueOf(StackConfiguration.getBackupFormat()));
+		}
 		// Start that bad boy up!
 		return daemon.startBackup(username.getIndividualGroup().getId());
 	}
 
+	@Override
+	public BackupRestoreStatus startIncrementalBackup(UserInfo username, String previousManifest, MigrationType migrationType) throws UnauthorizedException, DatastoreException {
+		UserInfo.validateUserInfo(username);
+		// Only an admin can start a backup Daemon
+		if(!username.isAdmin()) throw new UnauthorizedException("Must be an administrator to start a backup daemon");
+		
+		AmazonS3Client client = createNewAWSClient();
+		
+		NodeBackupDriver typeSpecificBackupDriver = getBackupDriver(migrationType);
+		
+		// Create a new daemon and start it
+		BackupDaemon daemon = new BackupDaemon(backupRestoreStatusDao, typeSpecificBackupDriver, searchDocumentDriver, client, backupBucket, backupDaemonThreadPool, backupDaemonThreadPool2);
+		if (migrationType.equals(MigrationType.ENTITY)) {
+			daemon.setBackupFormat(BackupFormat.valueOf(StackConfiguration.getBackupFormat()));
+		}
+		daemon.setIncremental(migrationType, previousManifest);
+		return daemon.startBackup(username.getIndividualGroup().getId());
+	}
+
 	@Override
 	public BackupRestoreStatus startSearchDocument(UserInfo username, Set<String> entityIds) throws UnauthorizedException, DatastoreException {
 		UserInfo.validateUserInfo(username);
@@ -88,14 +104,7 @@ public class BackupDaemonLauncherImpl implements BackupDaemonLauncher {
 		
 		AmazonS3Client client = createNewAWSClient();
 		
-		NodeBackupDriver typeSpecificBackupDriver = null;
-		if (migrationType.equals(MigrationType.ENTITY)) {
-			typeSpecificBackupDriver = backupDriver;
-		} else if (migrationType.equals(MigrationType.PRINCIPAL)) {
-			typeSpecificBackupDriver = principalBackupDriver;
-		} else {
-			throw new IllegalArgumentException(migrationType.toString());
-		}
+		NodeBackupDriver typeSpecificBackupDriver = getBackupDriver(migrationType);
 		
 
 		// Create a new daemon and start it
@@ -103,6 +112,21 @@ public class BackupDaemonLauncherImpl implements BackupDaemonLauncher {
 		return daemon.startRestore(username.getIndividualGroup().getId(), fileName);
 	}
 
+	/**
+	 * The driver for the given type of data.
+	 * @param migrationType
+	 * @return
+	 */
+	private NodeBackupDriver getBackupDriver(MigrationType migrationType) {
+		if (migrationType.equals(MigrationType.ENTITY)) {
+			return backupDriver;
+		} else if (migrationType.equals(MigrationType.PRINCIPAL)) {
+			return principalBackupDriver;
+		} else {
+			throw new IllegalArgumentException(migrationType.toString());
+		}
+	}
+
 	/**
 	 * Create a new AWS client using the configuration credentials.
 	 * @return
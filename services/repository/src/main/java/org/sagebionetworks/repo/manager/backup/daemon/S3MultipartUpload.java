@@ -0,0 +1,198 @@
+package org.sagebionetworks.repo.manager.backup.daemon;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * Uploads a file to S3 in parts while the file is still being written. The
+ * file must only be appended to, so each part can be uploaded as soon as that
+ * many bytes are in the file. Several parts are uploaded at a time. A file
+ * smaller than one part is uploaded with a single put once it is complete.
+ *
+ * <pre>
+ * upload.uploadAvailableParts(); // while the file is being written.
+ * upload.complete(); // once the file is closed.
+ * </pre>
+ */
+public class S3MultipartUpload {
+
+	static private Log log = LogFactory.getLog(S3MultipartUpload.class);
+
+	private final AmazonS3Client client;
+	private final String bucket;
+	private final String key;
+	private final File file;
+	private final long partSize;
+	private final ExecutorService pool;
+	private String uploadId = null;
+	private long offset = 0;
+	private int nextPartNumber = 1;
+	private boolean finished = false;
+	private final List<Future<PartETag>> parts = new LinkedList<Future<PartETag>>();
+
+	/**
+	 * @param client
+	 * @param bucket
+	 * @param key The S3 key of the new object.
+	 * @param file The file to upload, which may still be written to.
+	 * @param partSize The size of each part.  S3 requires every part but the last to be at least 5 MB.
+	 * @param threadCount The number of parts uploaded at the same time.
+	 */
+	public S3MultipartUpload(AmazonS3Client client, String bucket, String key, File file, long partSize, int threadCount) {
+		if(client == null) throw new IllegalArgumentException("AmazonS3Client cannot be null");
+		if(bucket == null) throw new IllegalArgumentException("Bucket cannot be null");
+		if(key == null) throw new IllegalArgumentException("Key cannot be null");
+		if(file == null) throw new IllegalArgumentException("File cannot be null");
+		if(partSize < 1) throw new IllegalArgumentException("Part size must be at least one byte");
+		if(threadCount < 1) throw new IllegalArgumentException("Thread count must be at least one");
+		this.client = client;
+		this.bucket = bucket;
+		this.key = key;
+		this.file = file;
+		this.partSize = partSize;
+		this.pool = Executors.newFixedThreadPool(threadCount);
+	}
+
+	/**
+	 * The S3 key of the object.
+	 * @return
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Start uploading every whole part that has been written to the file since the last call.
+	 * @return The number of parts that were started.
+	 * @throws InterruptedException
+	 */
+	public synchronized int uploadAvailableParts() throws InterruptedException {
+		if(finished) throw new IllegalStateException("The upload of: "+key+" has already finished");
+		// Stop early if a part has already failed.
+		for(Future<PartETag> part: parts){
+			if(part.isDone()){
+				getPart(part);
+			}
+		}
+		int started = 0;
+		while(file.length() - offset >= partSize){
+			startPart(partSize);
+			started++;
+		}
+		return started;
+	}
+
+	/**
+	 * Upload the rest of the file and wait for every part to finish.  Call this once
+	 * the file is closed.  The upload is aborted if any part fails.
+	 * @throws InterruptedException
+	 */
+	public synchronized void complete() throws InterruptedException {
+		if(finished) throw new IllegalStateException("The upload of: "+key+" has already finished");
+		boolean success = false;
+		try{
+			long length = file.length();
+			if(uploadId == null && length <= partSize){
+				// There is no need for the overhead of parts.
+				client.putObject(bucket, key, file);
+			}else{
+				while(length - offset > partSize){
+					startPart(partSize);
+				}
+				if(length > offset){
+					startPart(length - offset);
+				}
+				List<PartETag> etags = new ArrayList<PartETag>();
+				for(Future<PartETag> part: parts){
+					etags.add(getPart(part));
+				}
+				client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, etags));
+				log.info("Uploaded: "+length+" bytes to: "+key+" in: "+etags.size()+" parts");
+			}
+			success = true;
+		}finally{
+			if(!success){
+				abort();
+			}
+			finished = true;
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Stop the upload and discard any parts that were uploaded.  This does nothing once
+	 * the upload has finished.
+	 */
+	public synchronized void abort() {
+		if(finished) return;
+		finished = true;
+		pool.shutdownNow();
+		if(uploadId != null){
+			try{
+				client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+			}catch(RuntimeException e){
+				// S3 will hold the parts until they are cleaned up.
+				log.error("Failed to abort the upload of: "+key, e);
+			}
+		}
+	}
+
+	/**
+	 * Start the upload of the next part.
+	 * @param size
+	 */
+	private void startPart(long size) {
+		if(uploadId == null){
+			uploadId = client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId();
+		}
+		final UploadPartRequest request = new UploadPartRequest()
+				.withBucketName(bucket)
+				.withKey(key)
+				.withUploadId(uploadId)
+				.withPartNumber(nextPartNumber++)
+				.withFile(file)
+				.withFileOffset(offset)
+				.withPartSize(size);
+		offset += size;
+		parts.add(pool.submit(new Callable<PartETag>() {
+			@Override
+			public PartETag call() throws Exception {
+				return client.uploadPart(request).getPartETag();
+			}
+		}));
+	}
+
+	/**
+	 * Wait for a part to finish.
+	 * @param part
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private static PartETag getPart(Future<PartETag> part) throws InterruptedException {
+		try {
+			return part.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if(cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package org.sagebionetworks.repo.manager.backup.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Downloads an S3 object to a file in ranges, several at a time. The ranges
+ * are started in order, so the start of the file arrives first. The file can
+ * be read with {@link #openStream()} while the download is still running: a
+ * read waits until the range that holds its bytes has arrived.
+ *
+ * <pre>
+ * download.start();
+ * InputStream in = download.openStream();
+ * ...
+ * download.close();
+ * </pre>
+ */
+public class S3RangedDownload {
+
+	static private Log log = LogFactory.getLog(S3RangedDownload.class);
+
+	private static final int BUFFER_SIZE = 64*1024;
+
+	private final AmazonS3Client client;
+	private final String bucket;
+	private final String key;
+	private final File file;
+	private final long partSize;
+	private final ExecutorService pool;
+	private long length = -1;
+	private boolean[] partDone = null;
+	private int partsRemaining = 0;
+	private Throwable error = null;
+	private boolean closed = false;
+
+	/**
+	 * @param client
+	 * @param bucket
+	 * @param key The S3 key of the object to download.
+	 * @param file The file the object is written to.
+	 * @param partSize The size of each range.
+	 * @param threadCount The number of ranges downloaded at the same time.
+	 */
+	public S3RangedDownload(AmazonS3Client client, String bucket, String key, File file, long partSize, int threadCount) {
+		if(client == null) throw new IllegalArgumentException("AmazonS3Client cannot be null");
+		if(bucket == null) throw new IllegalArgumentException("Bucket cannot be null");
+		if(key == null) throw new IllegalArgumentException("Key cannot be null");
+		if(file == null) throw new IllegalArgumentException("File cannot be null");
+		if(partSize < 1) throw new IllegalArgumentException("Part size must be at least one byte");
+		if(threadCount < 1) throw new IllegalArgumentException("Thread count must be at least one");
+		this.client = client;
+		this.bucket = bucket;
+		this.key = key;
+		this.file = file;
+		this.partSize = partSize;
+		this.pool = Executors.newFixedThreadPool(threadCount);
+	}
+
+	/**
+	 * Start downloading every range of the object.
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if(partDone != null) throw new IllegalStateException("The download of: "+key+" has already started");
+		length = client.getObjectMetadata(bucket, key).getContentLength();
+		int partCount = (int) ((length + partSize - 1) / partSize);
+		partDone = new boolean[partCount];
+		partsRemaining = partCount;
+		// Each range is written to its place in the file.
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try{
+			out.setLength(length);
+		}finally{
+			out.close();
+		}
+		for(int i=0; i<partCount; i++){
+			final int part = i;
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					try{
+						downloadPart(part);
+						partFinished(part);
+					}catch(Throwable e){
+						partFailed(part, e);
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		log.info("Downloading: "+length+" bytes from: "+key+" in: "+partCount+" parts");
+	}
+
+	/**
+	 * The length of the object in bytes.
+	 * @return
+	 */
+	public synchronized long getLength() {
+		if(partDone == null) throw new IllegalStateException("The download of: "+key+" has not started");
+		return length;
+	}
+
+	/**
+	 * Has every range been downloaded?
+	 * @return
+	 */
+	public synchronized boolean isDone() {
+		return partDone != null && partsRemaining == 0;
+	}
+
+	/**
+	 * Read the file from its start.  Reads wait for the download of the bytes they need.
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream openStream() throws IOException {
+		// This also checks that the download has started.
+		getLength();
+		return new DownloadInputStream();
+	}
+
+	/**
+	 * Wait for every range to be downloaded.
+	 * @throws IOException If a range failed.
+	 */
+	public synchronized void waitForCompletion() throws IOException {
+		for(int i=0; i<getPartCount(); i++){
+			waitForPart(i);
+		}
+	}
+
+	/**
+	 * Stop any ranges that are still downloading.
+	 */
+	public synchronized void close() {
+		closed = true;
+		pool.shutdownNow();
+		notifyAll();
+	}
+
+	private synchronized int getPartCount() {
+		if(partDone == null) throw new IllegalStateException("The download of: "+key+" has not started");
+		return partDone.length;
+	}
+
+	private synchronized void partFinished(int part) {
+		partDone[part] = true;
+		partsRemaining--;
+		notifyAll();
+	}
+
+	private synchronized void partFailed(int part, Throwable e) {
+		log.error("Failed to download part: "+part+" of: "+key, e);
+		if(error == null){
+			error = e;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Wait until a range has been downloaded.
+	 * @param part
+	 * @throws IOException
+	 */
+	private synchronized void waitForPart(int part) throws IOException {
+		while(!partDone[part]){
+			if(error != null) throw new IOException("Failed to download: "+key, error);
+			if(closed) throw new IOException("The download of: "+key+" was closed");
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while waiting for the download of: "+key);
+			}
+		}
+	}
+
+	/**
+	 * Download one range and write it to its place in the file.
+	 * @param part
+	 * @throws IOException
+	 */
+	private void downloadPart(int part) throws IOException {
+		long start = part * partSize;
+		long end = Math.min(start + partSize, length) - 1;
+		GetObjectRequest request = new GetObjectRequest(bucket, key);
+		request.setRange(start, end);
+		S3Object object = client.getObject(request);
+		InputStream in = object.getObjectContent();
+		try{
+			RandomAccessFile out = new RandomAccessFile(file, "rw");
+			try{
+				out.seek(start);
+				byte[] buffer = new byte[BUFFER_SIZE];
+				long remaining = end - start + 1;
+				while(remaining > 0){
+					int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if(read < 0) throw new IOException("Part: "+part+" of: "+key+" ended: "+remaining+" bytes early");
+					out.write(buffer, 0, read);
+					remaining -= read;
+				}
+			}finally{
+				out.close();
+			}
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the file in order, waiting for each range to arrive.
+	 */
+	private class DownloadInputStream extends InputStream {
+
+		private final RandomAccessFile in = new RandomAccessFile(file, "r");
+		private long position = 0;
+
+		DownloadInputStream() throws IOException {
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			int read = read(one, 0, 1);
+			return read < 0 ? -1 : (one[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(position >= length) return -1;
+			if(len == 0) return 0;
+			int part = (int) (position / partSize);
+			waitForPart(part);
+			// Only read up to the end of this range, since the next may not have arrived.
+			long partEnd = Math.min((part + 1) * partSize, length);
+			int toRead = (int) Math.min(len, partEnd - position);
+			in.seek(position);
+			int read = in.read(b, off, toRead);
+			if(read > 0){
+				position += read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
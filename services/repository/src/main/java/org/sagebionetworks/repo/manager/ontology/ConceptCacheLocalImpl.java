@@ -1,29 +1,48 @@
 package org.sagebionetworks.repo.manager.ontology;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.sagebionetworks.StackConfiguration;
 import org.sagebionetworks.repo.model.ontology.Concept;
+import org.sagebionetworks.repo.model.util.ExpiringCache;
 
 /**
  * This is a local memory implementation of the ConceptCache
- * 
+ *
+ * Both the concept lists and the concepts are held in concurrent maps bounded
+ * by the maximum size, since the keys come from the concept URIs passed by
+ * users. When a map is full its oldest entries are evicted, so a single list
+ * can disappear at any time and callers must treat null as a cache miss.
+ *
  * @author jmhill
  *
  */
 public class ConceptCacheLocalImpl implements ConceptCache {
-	
+
 	/**
 	 * The local in-memory cache.
 	 */
-	private Map<String, List<Concept>> localCache = Collections.synchronizedMap(new HashMap<String, List<Concept>>());
-	private Map<String, Concept> localConceptCache = Collections.synchronizedMap(new HashMap<String, Concept>());
+	private ExpiringCache<String, List<Concept>> localCache;
+	private ExpiringCache<String, Concept> localConceptCache;
+
+	public ConceptCacheLocalImpl() {
+		this(StackConfiguration.getConceptCacheMaxSize());
+	}
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of keys held by each map of this cache.
+	 */
+	public ConceptCacheLocalImpl(int maxSize) {
+		if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least one");
+		this.localCache = new ExpiringCache<String, List<Concept>>(maxSize);
+		this.localConceptCache = new ExpiringCache<String, Concept>(maxSize);
+	}
 
 	@Override
 	public boolean containsKey(String key) {
-		return localCache.containsKey(key);
+		return localCache.peek(key) != null;
 	}
 
 	@Override
@@ -48,7 +67,18 @@ public class ConceptCacheLocalImpl implements ConceptCache {
 
 	@Override
 	public void putAll(Map<String, List<Concept>> map) {
-		localCache.putAll(map);
+		for (Map.Entry<String, List<Concept>> entry : map.entrySet()) {
+			localCache.put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * The number of concept lists currently in the cache.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return localCache.size();
 	}
 
 }
@@ -58,11 +58,6 @@ public class ConceptManagerImpl implements ConceptManager {
 	public EntityQueryResults<Concept> getChildConcepts(String parentConceptURI, String prefix, int limit, int offest) throws DatastoreException, NotFoundException {
 		// First extract the unique value
 		String uniquePart = getUniqueURIPart(parentConceptURI);
-		// First check to see if the cache has 
-		if(!conceptCache.containsKey(uniquePart)){
-			// Populate the cache
-			populateCache(parentConceptURI, uniquePart);
-		}
 		// the unique part is the key unless there is a prefix.
 		String key;
 		if(prefix != null){
@@ -70,7 +65,18 @@ public class ConceptManagerImpl implements ConceptManager {
 		}else{
 			key = uniquePart;
 		}
+		// Entries can be evicted at any time, so only use lists we actually got back.
 		List<Concept> fullList = conceptCache.getConceptsForKey(key);
+		if(fullList == null){
+			// Either no concept matches the prefix or the parent is not cached.
+			List<Concept> all = key.equals(uniquePart) ? null : conceptCache.getConceptsForKey(uniquePart);
+			if(all != null){
+				fullList = filterByPrefix(uniquePart, key, all);
+			}else{
+				// Populate the cache
+				fullList = populateCache(parentConceptURI, uniquePart).get(key);
+			}
+		}
 		if(fullList == null){
 			fullList = new ArrayList<Concept>();
 		}
@@ -83,9 +89,10 @@ public class ConceptManagerImpl implements ConceptManager {
 	/**
 	 * Populate the cache using data from the DAO.
 	 * @param parentConceptURI
+	 * @return The lists that were added to the cache.
 	 * @throws NotFoundException 
 	 */
-	private void populateCache(String parentConceptURI, String uniquePart)throws DatastoreException, NotFoundException {
+	private Map<String, List<Concept>> populateCache(String parentConceptURI, String uniquePart)throws DatastoreException, NotFoundException {
 		// First get all of the concepts.
 		List<ConceptSummary> list = conceptDao.getAllConcepts(parentConceptURI);
 		// Build the full list
@@ -108,6 +115,24 @@ public class ConceptManagerImpl implements ConceptManager {
 		
 		// Add this map the cache
 		conceptCache.putAll(result);
+		return result;
+	}
+	
+	/**
+	 * Select the concepts of a sorted list that match a prefix key.
+	 * @param uniquePart
+	 * @param key
+	 * @param all
+	 * @return
+	 */
+	private List<Concept> filterByPrefix(String uniquePart, String key, List<Concept> all){
+		List<Concept> matches = new LinkedList<Concept>();
+		for(Concept con: all){
+			if(ConceptUtils.getAllLowerCasePefix(uniquePart, con).contains(key)){
+				matches.add(con);
+			}
+		}
+		return matches;
 	}
 	
 	
@@ -180,4 +180,12 @@ public interface LocationHelper {
 	 */
 	String getEntityIdFromS3Url(String s3Url) throws NumberFormatException, DatastoreException;
 
+	/**
+	 * Get the size and hit, miss and eviction counts of the presigned URL
+	 * cache of this instance.
+	 * 
+	 * @return the current statistics of the cache
+	 */
+	PresignedUrlCache.Statistics getUrlCacheStatistics();
+
 }
@@ -1,8 +1,6 @@
 package org.sagebionetworks.repo.util;
 
 import java.net.URLEncoder;
-import java.util.Collections;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,15 +37,13 @@ public class LocationHelpersImpl implements LocationHelper {
 	private static final int MAX_FEDERATED_NAME_LENGTH = 32;
 	// http://docs.amazonwebservices.com/STS/latest/APIReference/API_GetFederationToken.html
 	private static final int MAX_POLICY_LENGTH = 2048;
-	private static final int CACHE_SIZE = 4096;
 
 	// Cache for presigned Urls so that (1) we do not beat up STS & get throttled and (2) to help with caching proxies downstream.
 	// Note that the cache key must be userId+s3Key+method because its not okay to give out urls signed for one user to another user.
-	// This cache is far from perfect, it can get spoiled by folks doing a select * on a large number of locationable 
-	// entities since we are still presigning urls when returned as part of a query.
-	private static final Map<PresignedUrlCacheKey, PresignedUrlCacheValue> URL_CACHE = Collections
-			.synchronizedMap(new LruCache<PresignedUrlCacheKey, PresignedUrlCacheValue>(
-					CACHE_SIZE));
+	// The cache is sharded so concurrent requests do not contend, and evicts the urls that expire soonest first so a
+	// select * on a large number of locationable entities does not empty it.
+	private static final PresignedUrlCache URL_CACHE = new PresignedUrlCache(
+			StackConfiguration.getPresignedUrlCacheMaxSize());
 
 	private static final int READ_ACCESS_EXPIRY_HOURS = StackConfiguration
 			.getS3ReadAccessExpiryHours();
@@ -74,6 +70,11 @@ public class LocationHelpersImpl implements LocationHelper {
 
 	@Autowired
 	private AmazonClientFactory amazonClientFactory;
+
+	@Override
+	public PresignedUrlCache.Statistics getUrlCacheStatistics() {
+		return URL_CACHE.getStatistics();
+	}
 	
 	/**
 	 * Default constructor
@@ -138,16 +139,12 @@ public class LocationHelpersImpl implements LocationHelper {
 
 		DateTime now = new DateTime();
 
-		// Check the cache first
+		// Check the cache first, if url is not too stale, reuse it
 		PresignedUrlCacheKey key = new PresignedUrlCacheKey(userId, s3Key,
 				method.name());
-		PresignedUrlCacheValue value = URL_CACHE.get(key);
+		PresignedUrlCacheValue value = URL_CACHE.get(key, now.plusSeconds(expiresSeconds / 2));
 		if (null != value) {
-			// if url is not too stale, reuse it
-			DateTime minimumTimeLeft = now.plusSeconds(expiresSeconds / 2);
-			if (value.getExpires().isAfter(minimumTimeLeft)) {
-				return value.getUrl();
-			}
+			return value.getUrl();
 		}
 
 		// Get the credentials with which to sign the request
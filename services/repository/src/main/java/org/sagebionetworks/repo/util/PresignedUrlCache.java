@@ -0,0 +1,283 @@
+package org.sagebionetworks.repo.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTime;
+
+/**
+ * A bounded, sharded cache of presigned URLs.
+ *
+ * Each key is held by one of a fixed number of shards, and each shard is a
+ * concurrent map, so lookups never take a lock and threads signing URLs for
+ * different keys do not contend. A URL is dropped as soon as it is read after
+ * it expires. When a shard is full its expired URLs are removed first, then
+ * the URLs that will expire soonest, so a burst of new URLs (such as a select
+ * * over many locationables) only evicts from the shards it lands in and never
+ * empties the whole cache.
+ */
+public class PresignedUrlCache {
+
+	/**
+	 * The number of shards used when none is given.
+	 */
+	public static final int DEFAULT_SHARDS = 16;
+
+	/**
+	 * Orders values by the time they expire.
+	 */
+	private static final Comparator<Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue>> BY_EXPIRES = new Comparator<Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue>>() {
+		@Override
+		public int compare(Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue> one,
+				Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue> two) {
+			return one.getValue().getExpires().compareTo(two.getValue().getExpires());
+		}
+	};
+
+	private final ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue>[] shards;
+	private final int maxPerShard;
+	private AtomicLong hitCount = new AtomicLong(0);
+	private AtomicLong missCount = new AtomicLong(0);
+	private AtomicLong evictionCount = new AtomicLong(0);
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of URLs held by this cache.
+	 */
+	public PresignedUrlCache(int maxSize) {
+		this(maxSize, DEFAULT_SHARDS);
+	}
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of URLs held by this cache.
+	 * @param numberOfShards
+	 *            The number of independent shards the URLs are spread over.
+	 */
+	@SuppressWarnings("unchecked")
+	public PresignedUrlCache(int maxSize, int numberOfShards) {
+		if (numberOfShards < 1) throw new IllegalArgumentException("There must be at least one shard");
+		if (maxSize < numberOfShards) throw new IllegalArgumentException("Max size must be at least the number of shards");
+		this.maxPerShard = maxSize / numberOfShards;
+		this.shards = new ConcurrentMap[numberOfShards];
+		for (int i = 0; i < numberOfShards; i++) {
+			shards[i] = new ConcurrentHashMap<PresignedUrlCacheKey, PresignedUrlCacheValue>();
+		}
+	}
+
+	/**
+	 * Get the URL for a key if it will still be valid at the given time.
+	 *
+	 * @param key
+	 * @param minimumExpires
+	 *            The URL must not expire before this time.
+	 * @return null if there is no URL for the key that is valid long enough.
+	 */
+	public PresignedUrlCacheValue get(PresignedUrlCacheKey key, DateTime minimumExpires) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		if (minimumExpires == null) throw new IllegalArgumentException("Minimum expires cannot be null");
+		ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue> shard = getShard(key);
+		PresignedUrlCacheValue value = shard.get(key);
+		if (value != null && value.getExpires().isAfter(minimumExpires)) {
+			hitCount.incrementAndGet();
+			return value;
+		}
+		if (value != null && !value.getExpires().isAfterNow()) {
+			// This URL can no longer be used by anyone.
+			shard.remove(key, value);
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Add a URL to the cache.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(PresignedUrlCacheKey key, PresignedUrlCacheValue value) {
+		if (key == null) throw new IllegalArgumentException("Key cannot be null");
+		if (value == null) throw new IllegalArgumentException("Value cannot be null");
+		ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue> shard = getShard(key);
+		if (shard.size() >= maxPerShard && !shard.containsKey(key)) {
+			makeRoom(shard);
+		}
+		shard.put(key, value);
+	}
+
+	private ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue> getShard(PresignedUrlCacheKey key) {
+		// Spread the hash so keys that differ only in their high bits use different shards.
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return shards[(hash & Integer.MAX_VALUE) % shards.length];
+	}
+
+	/**
+	 * Remove the expired URLs from a shard, and if it is still full remove the
+	 * URLs that expire soonest until it is below nine tenths of its maximum
+	 * size.
+	 *
+	 * @param shard
+	 */
+	private void makeRoom(ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue> shard) {
+		DateTime now = new DateTime();
+		List<Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue>> live = new ArrayList<Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue>>(shard.size());
+		Iterator<Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue>> it = shard.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue> entry = it.next();
+			if (entry.getValue().getExpires().isAfter(now)) {
+				live.add(entry);
+			} else {
+				it.remove();
+				evictionCount.incrementAndGet();
+			}
+		}
+		int target = maxPerShard - Math.max(1, maxPerShard / 10);
+		if (shard.size() <= target) return;
+		Collections.sort(live, BY_EXPIRES);
+		for (int i = 0; i < live.size() && shard.size() > target; i++) {
+			Map.Entry<PresignedUrlCacheKey, PresignedUrlCacheValue> entry = live.get(i);
+			if (shard.remove(entry.getKey(), entry.getValue())) {
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * The number of URLs currently in the cache.
+	 *
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue> shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	/**
+	 * The number of lookups that found a URL that was valid long enough.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * The number of lookups that did not find a usable URL.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * The number of URLs removed to make room or because they expired.
+	 *
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * The fraction of lookups that found a usable URL.
+	 *
+	 * @return
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	/**
+	 * The current size and counts of this cache.
+	 *
+	 * @return
+	 */
+	public Statistics getStatistics() {
+		return new Statistics(size(), hitCount.get(), missCount.get(), evictionCount.get());
+	}
+
+	/**
+	 * Remove all URLs and reset the counts.
+	 */
+	public void clear() {
+		for (ConcurrentMap<PresignedUrlCacheKey, PresignedUrlCacheValue> shard : shards) {
+			shard.clear();
+		}
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
+
+	/**
+	 * The size and counts of a cache at one point in time.
+	 */
+	public static class Statistics {
+		private final int size;
+		private final long hitCount;
+		private final long missCount;
+		private final long evictionCount;
+
+		Statistics(int size, long hitCount, long missCount, long evictionCount) {
+			this.size = size;
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+		}
+
+		/**
+		 * Getter for the number of URLs in the cache.
+		 * @return int
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Getter for the number of lookups that found a usable URL.
+		 * @return long
+		 */
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		/**
+		 * Getter for the number of lookups that did not find a usable URL.
+		 * @return long
+		 */
+		public long getMissCount() {
+			return missCount;
+		}
+
+		/**
+		 * Getter for the number of URLs removed to make room or because they expired.
+		 * @return long
+		 */
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		/**
+		 * Getter for the fraction of lookups that found a usable URL.
+		 * @return double
+		 */
+		public double getHitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 0.0 : (double) hitCount / total;
+		}
+	}
+}
@@ -13,6 +13,7 @@ import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.Entity;
 import org.sagebionetworks.repo.model.EntityHeader;
 import org.sagebionetworks.repo.model.InvalidModelException;
+import org.sagebionetworks.repo.model.NodeQueryRowHandler;
 import org.sagebionetworks.repo.model.PaginatedResults;
 import org.sagebionetworks.repo.model.QueryResults;
 import org.sagebionetworks.repo.model.UnauthorizedException;
@@ -120,6 +121,18 @@ public interface GenericEntityController {
 	 */
 	public Entity getEntity(String userId, String id, HttpServletRequest request) throws NotFoundException,	DatastoreException, UnauthorizedException;
 	
+	/**
+	 * Get many entities at once without knowing their types.
+	 * @param userId
+	 * @param ids
+	 * @param request
+	 * @return the entities in the same order as the passed ids.
+	 * @throws NotFoundException
+	 * @throws DatastoreException
+	 * @throws UnauthorizedException if the user cannot read any one of the entities.
+	 */
+	public List<Entity> getEntities(String userId, List<String> ids, HttpServletRequest request) throws NotFoundException, DatastoreException, UnauthorizedException;
+	
 
 	/**
 	 * Same as above but takes a UserInfo instead of a username.
@@ -443,6 +456,20 @@ public interface GenericEntityController {
 	 */
 	public QueryResults executeQueryWithAnnotations(String userId, BasicQuery query, HttpServletRequest request) throws DatastoreException, NotFoundException, UnauthorizedException;
 
+	/**
+	 * Execute a query and include the annotations for each entity, passing each row to the
+	 * handler as it is read rather than collecting them.
+	 * @param userId
+	 * @param query
+	 * @param handler Receives each row of the results.
+	 * @param request
+	 * @return The total number of results and whether there are more. The results list is empty.
+	 * @throws DatastoreException 
+	 * @throws NotFoundException 
+	 * @throws UnauthorizedException 
+	 */
+	public QueryResults executeQueryWithAnnotations(String userId, BasicQuery query, NodeQueryRowHandler handler, HttpServletRequest request) throws DatastoreException, NotFoundException, UnauthorizedException;
+
 	/**
 	 * determine whether a user has the given access type for a given entity
 	 * @param nodeId
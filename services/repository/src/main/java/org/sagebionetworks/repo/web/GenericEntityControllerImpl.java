@@ -3,6 +3,7 @@ package org.sagebionetworks.repo.web;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -23,6 +24,7 @@ import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.InvalidModelException;
 import org.sagebionetworks.repo.model.NodeQueryDao;
 import org.sagebionetworks.repo.model.NodeQueryResults;
+import org.sagebionetworks.repo.model.NodeQueryRowHandler;
 import org.sagebionetworks.repo.model.PaginatedResults;
 import org.sagebionetworks.repo.model.QueryResults;
 import org.sagebionetworks.repo.model.ServiceConstants;
@@ -212,6 +214,21 @@ public class GenericEntityControllerImpl implements GenericEntityController {
 		EntityType type = EntityType.getEntityType(header.getType());
 		return getEntity(userInfo, id, request, type.getClassForType(), EventType.GET);
 	}
+	
+	@Override
+	public List<Entity> getEntities(String userId, List<String> ids, HttpServletRequest request) throws NotFoundException, DatastoreException, UnauthorizedException {
+		UserInfo userInfo = userManager.getUserInfo(userId);
+		List<String> entityIds = new ArrayList<String>(ids.size());
+		for(String id: ids){
+			entityIds.add(UrlHelpers.getEntityIdFromUriId(id));
+		}
+		List<Entity> entities = entityManager.getEntities(userInfo, entityIds);
+		for(Entity entity: entities){
+			EntityType type = EntityType.getNodeTypeForClass(entity.getClass());
+			this.doAddServiceSpecificMetadata(userInfo, entity, type, request, EventType.GET);
+		}
+		return entities;
+	}
 	/**
 	 * Any time we fetch an entity we do so through this path.
 	 * @param <T>
@@ -505,11 +522,10 @@ public class GenericEntityControllerImpl implements GenericEntityController {
 		// First try the updated
 		UserInfo userInfo = userManager.getUserInfo(userId);
 		List<String> updatedIds = entityManager.aggregateEntityUpdate(userInfo, parentId, update);
-		// Now create the update object
+		// Now create the update object, fetching all of the updated entities at once.
 		List<T> newList = new ArrayList<T>();
-		Class tClass = update.iterator().next().getClass();
-		for(int i=0; i<updatedIds.size(); i++){
-			newList.add((T) entityManager.getEntity(userInfo, updatedIds.get(i), tClass));
+		for(Entity entity: entityManager.getEntities(userInfo, updatedIds)){
+			newList.add((T) entity);
 		}
 		return newList;
 	}
@@ -591,7 +607,22 @@ public class GenericEntityControllerImpl implements GenericEntityController {
 		UserInfo userInfo = userManager.getUserInfo(userId);
 		NodeQueryResults nodeResults = nodeQueryDao.executeQuery(query, userInfo);
 		// done
-		return new QueryResults(nodeResults.getAllSelectedData(), nodeResults.getTotalNumberOfResults());
+		QueryResults results = new QueryResults(nodeResults.getAllSelectedData(), nodeResults.getTotalNumberOfResults());
+		results.setHasMore(nodeResults.isHasMore());
+		return results;
+	}
+
+	@Override
+	public QueryResults executeQueryWithAnnotations(String userId, BasicQuery query, NodeQueryRowHandler handler, HttpServletRequest request) throws DatastoreException, NotFoundException, UnauthorizedException {
+		if(query == null) throw new IllegalArgumentException("Query cannot be null");
+		if(handler == null) throw new IllegalArgumentException("Handler cannot be null");
+		// Lookup the user
+		UserInfo userInfo = userManager.getUserInfo(userId);
+		NodeQueryResults nodeResults = nodeQueryDao.executeQuery(query, userInfo, handler);
+		// The rows have already been passed to the handler.
+		QueryResults results = new QueryResults(new ArrayList<Map<String, Object>>(0), nodeResults.getTotalNumberOfResults());
+		results.setHasMore(nodeResults.isHasMore());
+		return results;
 	}
 	
 	/**
@@ -34,10 +34,10 @@ public class StackStatusInterceptor implements HandlerInterceptor {
 			return true;
 		}
 		
-		// Get the current stack status
-		StatusEnum status = stackStatusDao.getCurrentStatus();
+		// Get the current stack status from memory so there is no database call for each request.
+		StackStatus full = stackStatusDao.getSnapshotStatus();
+		StatusEnum status = full.getStatus();
 		if(StatusEnum.DOWN == status){
-			StackStatus full = stackStatusDao.getFullCurrentStatus();
 			throw new ServiceUnavailableException("Synapse is down for maintenance.  Message: "+full.getCurrentMessage());
 		}else if(StatusEnum.READ_WRITE == status){
 			return true;
@@ -46,7 +46,6 @@ public class StackStatusInterceptor implements HandlerInterceptor {
 			if("GET".equals(request.getMethod())){
 				return true;
 			}else{
-				StackStatus full = stackStatusDao.getFullCurrentStatus();
 				throw new ServiceUnavailableException("Synapse is in READ_ONLY mode for maintenance.  Only HTTP GETs are allowed at this time.  Message: "+full.getCurrentMessage());
 			}
 		}else{
@@ -65,6 +65,7 @@ public class UrlHelpers {
 //	public static final String TOKEN_ID = "{tokenId}/{filename}.{mimeType}";
 	
 	public static final String TYPE = "/type";
+	public static final String BATCH = "/batch";
 	/**
 	 * The URL prefix for all object's Access Control List (ACL).
 	 */
@@ -121,6 +122,7 @@ public class UrlHelpers {
 	 * All of the base URLs for Synapse object batch requests
 	 */
 	public static final String ENTITY_TYPE = ENTITY+TYPE;
+	public static final String ENTITY_BATCH = ENTITY+BATCH;
 	
 
 
@@ -194,6 +196,11 @@ public class UrlHelpers {
 	 */
 	public static final String QUERY = "/query";
 
+	/**
+	 * URL path for streaming all of the rows of a query in one response
+	 */
+	public static final String QUERY_STREAM = QUERY + "/stream";
+
 	/**
 	 * URL prefix for Users in the system
 	 * 
@@ -240,10 +247,16 @@ public class UrlHelpers {
 	 */
 	public static final String DAEMON 						= ADMIN+"/daemon";
 	public static final String BACKUP						= "/backup";
+	public static final String INCREMENTAL_BACKUP			= "/incrementalBackup";
 	public static final String RESTORE						= "/restore";
 	public static final String SEARCH_DOCUMENT 				= "/searchDocument";
 	public static final String DAEMON_ID					= "/{daemonId}";
 	public static final String ENTITY_BACKUP_DAMEON			= DAEMON+BACKUP;
+	public static final String ENTITY_INCREMENTAL_BACKUP_DAMEON	= DAEMON+INCREMENTAL_BACKUP;
+	/**
+	 * The S3 key of the manifest of the previous incremental backup.
+	 */
+	public static final String PREVIOUS_MANIFEST_PARAM		= "previousManifest";
 	public static final String ENTITY_RESTORE_DAMEON		= DAEMON+RESTORE;
 	public static final String ENTITY_SEARCH_DOCUMENT_DAMEON = DAEMON+SEARCH_DOCUMENT;
 	public static final String ENTITY_DAEMON_ID				= DAEMON+DAEMON_ID;
@@ -269,6 +282,26 @@ public class UrlHelpers {
 	 */
 	public static final String STACK_STATUS					= ADMIN+"/synapse/status";
 	
+	/**
+	 * The local latency histograms of this instance
+	 */
+	public static final String LATENCY						= ADMIN+"/latency";
+	
+	/**
+	 * The statistics of each SQL statement and the slow query log of this instance
+	 */
+	public static final String SQL_STATISTICS				= ADMIN+"/sql";
+	
+	/**
+	 * The size and hit, miss and eviction counts of the presigned URL cache of this instance
+	 */
+	public static final String PRESIGNED_URL_CACHE			= ADMIN+"/cache/presignedurl";
+	
+	/**
+	 * The name of the query parameter used to reset the latency histograms once read.
+	 */
+	public static final String RESET_PARAM = "reset";
+	
 	/**
 	 * Mapping of dependent property classes to their URL suffixes
 	 */
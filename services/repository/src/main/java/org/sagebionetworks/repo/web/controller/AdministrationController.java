@@ -1,6 +1,7 @@
 package org.sagebionetworks.repo.web.controller;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
@@ -18,7 +19,12 @@ import org.sagebionetworks.repo.model.UserInfo;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.BackupSubmission;
 import org.sagebionetworks.repo.model.daemon.RestoreSubmission;
+import org.sagebionetworks.repo.model.profile.LatencyHistogram;
+import org.sagebionetworks.repo.model.profile.LatencyRegistry;
+import org.sagebionetworks.repo.model.profile.SqlStatementRegistry;
 import org.sagebionetworks.repo.model.status.StackStatus;
+import org.sagebionetworks.repo.util.LocationHelper;
+import org.sagebionetworks.repo.util.PresignedUrlCache;
 import org.sagebionetworks.repo.web.NotFoundException;
 import org.sagebionetworks.repo.web.UrlHelpers;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -56,6 +62,12 @@ public class AdministrationController extends BaseController {
 	UserManager userManager;
 	@Autowired
 	StackStatusManager stackStatusManager;
+	@Autowired
+	LatencyRegistry latencyRegistry;
+	@Autowired
+	SqlStatementRegistry sqlStatementRegistry;
+	@Autowired
+	LocationHelper locationHelper;
 
 	
 	/**
@@ -98,6 +110,33 @@ public class AdministrationController extends BaseController {
 		return backupDaemonLauncher.startBackup(userInfo, entityIdsToBackup, MigrationType.valueOf(type));
 	}
 	
+	/**
+	 * Start an incremental backup daemon that will only backup what changed since the previous
+	 * backup of a chain.  The backup URL of the completed daemon is the URL of the manifest of the
+	 * new backup.  Pass the file name of that manifest as the previous manifest of the next backup.
+	 * @param userId
+	 * @param type
+	 * @param previousManifest The file name of the previous manifest.  When excluded a new chain is started with a backup of everything.
+	 * @return
+	 * @throws DatastoreException
+	 * @throws UnauthorizedException
+	 * @throws NotFoundException
+	 */
+	@ResponseStatus(HttpStatus.CREATED)
+	@RequestMapping(value = { 
+			UrlHelpers.ENTITY_INCREMENTAL_BACKUP_DAMEON
+			}, method = RequestMethod.POST)
+	public @ResponseBody
+	BackupRestoreStatus startIncrementalBackup(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
+			@RequestParam(value = AuthorizationConstants.MIGRATION_TYPE_PARAM, required=true) String type,
+			@RequestParam(value = UrlHelpers.PREVIOUS_MANIFEST_PARAM, required = false) String previousManifest)
+			throws DatastoreException, UnauthorizedException, NotFoundException {
+		// Get the user
+		UserInfo userInfo = userManager.getUserInfo(userId);
+		return backupDaemonLauncher.startIncrementalBackup(userInfo, previousManifest, MigrationType.valueOf(type));
+	}
+	
 	/**
 	 * Start a system restore daemon using the passed file name.  The file must be in the 
 	 * the bucket belonging to this stack.
@@ -297,5 +336,96 @@ public class AdministrationController extends BaseController {
 		UserInfo userInfo = userManager.getUserInfo(userId);
 		return stackStatusManager.updateStatus(userInfo, updatedValue);
 	}
+	
+	/**
+	 * Get the latency histograms of this instance, by category (controller,
+	 * dao, jdbc and connectionPool) and then by name. Only an administrator
+	 * may read them.
+	 * 
+	 * @param userId
+	 * @param reset When true the histograms are reset once read.
+	 * @param header
+	 * @param request
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 * @throws UnauthorizedException
+	 */
+	@ResponseStatus(HttpStatus.OK)
+	@RequestMapping(value = { 
+			UrlHelpers.LATENCY
+			}, method = RequestMethod.GET)
+	public @ResponseBody
+	Map<String, Map<String, LatencyHistogram.Snapshot>> getLatencies(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
+			@RequestParam(value = UrlHelpers.RESET_PARAM, required = false, defaultValue = "false") Boolean reset,
+			@RequestHeader HttpHeaders header,
+			HttpServletRequest request) throws DatastoreException, NotFoundException, UnauthorizedException {
+
+		// Get the user
+		UserInfo userInfo = userManager.getUserInfo(userId);
+		if (!userInfo.isAdmin()) throw new UnauthorizedException("Only an administrator may read the latency histograms");
+		return latencyRegistry.getSnapshots(reset);
+	}
+	
+	/**
+	 * Get the statistics of each SQL statement run by this instance, the ones
+	 * with the most total time first, and the most recent slow queries. The
+	 * SQL is normalized so it holds no bind values or literals. Only an
+	 * administrator may read them.
+	 * 
+	 * @param userId
+	 * @param reset When true the statistics and slow query log are reset once read.
+	 * @param header
+	 * @param request
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 * @throws UnauthorizedException
+	 */
+	@ResponseStatus(HttpStatus.OK)
+	@RequestMapping(value = { 
+			UrlHelpers.SQL_STATISTICS
+			}, method = RequestMethod.GET)
+	public @ResponseBody
+	SqlStatementRegistry.Report getSqlStatistics(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
+			@RequestParam(value = UrlHelpers.RESET_PARAM, required = false, defaultValue = "false") Boolean reset,
+			@RequestHeader HttpHeaders header,
+			HttpServletRequest request) throws DatastoreException, NotFoundException, UnauthorizedException {
+
+		// Get the user
+		UserInfo userInfo = userManager.getUserInfo(userId);
+		if (!userInfo.isAdmin()) throw new UnauthorizedException("Only an administrator may read the SQL statistics");
+		return sqlStatementRegistry.getReport(reset);
+	}
+	
+	/**
+	 * Get the size and the hit, miss and eviction counts of the presigned URL
+	 * cache of this instance. Only an administrator may read them.
+	 * 
+	 * @param userId
+	 * @param header
+	 * @param request
+	 * @return
+	 * @throws DatastoreException
+	 * @throws NotFoundException
+	 * @throws UnauthorizedException
+	 */
+	@ResponseStatus(HttpStatus.OK)
+	@RequestMapping(value = { 
+			UrlHelpers.PRESIGNED_URL_CACHE
+			}, method = RequestMethod.GET)
+	public @ResponseBody
+	PresignedUrlCache.Statistics getPresignedUrlCacheStatistics(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
+			@RequestHeader HttpHeaders header,
+			HttpServletRequest request) throws DatastoreException, NotFoundException, UnauthorizedException {
+
+		// Get the user
+		UserInfo userInfo = userManager.getUserInfo(userId);
+		if (!userInfo.isAdmin()) throw new UnauthorizedException("Only an administrator may read the presigned URL cache statistics");
+		return locationHelper.getUrlCacheStatistics();
+	}
 
 }
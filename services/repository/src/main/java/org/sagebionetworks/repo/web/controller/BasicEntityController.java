@@ -2,10 +2,12 @@ package org.sagebionetworks.repo.web.controller;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.sagebionetworks.StackConfiguration;
 import org.sagebionetworks.repo.manager.EntityManager;
 import org.sagebionetworks.repo.manager.SchemaManager;
 import org.sagebionetworks.repo.model.ACLInheritanceException;
@@ -416,6 +418,43 @@ public class BasicEntityController extends BaseController{
             results.setTotalNumberOfResults(entityHeaders.size());
             return results;
     }
+
+	/**
+	 * Get many existing entities with a single GET. The entities are loaded
+	 * together and read access is checked once for each distinct benefactor.
+	 * If any item in the batch fails (e.g., with a 404 or 403) they all fail.
+	 * 
+	 * @param userId
+	 *            -The user that is doing the get.
+	 * @param batch
+	 *            - The comma-separated list of IDs of the entities to fetch.
+	 * @param request
+	 * @return The requested entities in the order of the passed IDs.
+	 * @throws NotFoundException
+	 *             - Thrown if any of the requested entities does not exist.
+	 * @throws DatastoreException
+	 *             - Thrown when an there is a server failure.
+	 * @throws UnauthorizedException
+	 */
+	@ResponseStatus(HttpStatus.OK)
+	@RequestMapping(value = { UrlHelpers.ENTITY_BATCH }, method = RequestMethod.GET)
+	public @ResponseBody
+	BatchResults<Entity> getEntityBatch(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
+			@RequestParam(value = ServiceConstants.BATCH_PARAM, required = true) String batch,
+			HttpServletRequest request) throws NotFoundException,
+			DatastoreException, UnauthorizedException {
+		String ids[] = batch.split(ServiceConstants.BATCH_PARAM_VALUE_SEPARATOR);
+		if (ids.length > StackConfiguration.getMaximumEntityBatchSize()) {
+			throw new IllegalArgumentException("A batch cannot contain more than "
+					+ StackConfiguration.getMaximumEntityBatchSize() + " entities");
+		}
+		List<Entity> entities = entityController.getEntities(userId, Arrays.asList(ids), request);
+		BatchResults<Entity> results = new BatchResults<Entity>();
+		results.setResults(entities);
+		results.setTotalNumberOfResults(entities.size());
+		return results;
+	}
 	
 	@ResponseStatus(HttpStatus.OK)
 	@RequestMapping(value={UrlHelpers.ENTITY_ID+UrlHelpers.PERMISSIONS}, method=RequestMethod.GET)
@@ -3,14 +3,21 @@ package org.sagebionetworks.repo.web.controller;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.sagebionetworks.repo.model.Entity;
 import org.sagebionetworks.repo.util.JSONEntityUtil;
 import org.sagebionetworks.schema.adapter.JSONEntity;
@@ -26,9 +33,20 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 
+/**
+ * Reads and writes JSONEntities. The JSON is parsed directly from the request
+ * stream and written directly to the response stream, so a large entity is
+ * never also held as a String or byte array.
+ *
+ */
 public class JSONEntityHttpMessageConverter implements
 		HttpMessageConverter<JSONEntity> {
 
+	/**
+	 * The size of the character buffer used when reading and writing.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
 	private List<MediaType> supportedMedia;
 
 	public JSONEntityHttpMessageConverter() {
@@ -64,15 +82,49 @@ public class JSONEntityHttpMessageConverter implements
 	public JSONEntity read(Class<? extends JSONEntity> clazz,
 			HttpInputMessage inputMessage) throws IOException,
 			HttpMessageNotReadableException {
-		// First read the string
-		String jsonString = JSONEntityHttpMessageConverter.readToString(inputMessage.getBody(), inputMessage.getHeaders().getContentType().getCharSet());
 		try {
-			return EntityFactory.createEntityFromJSONString(jsonString, clazz);
+			// Parse the body as it is read
+			JSONObject jsonObject = JSONEntityHttpMessageConverter.readJSONObject(inputMessage.getBody(), inputMessage.getHeaders().getContentType().getCharSet());
+			return EntityFactory.createEntityFromJSONObject(jsonObject, clazz);
+		} catch (JSONException e) {
+			throw new HttpMessageNotReadableException(e.getMessage());
 		} catch (JSONObjectAdapterException e) {
 			throw new HttpMessageNotReadableException(e.getMessage());
 		}
 	}
 
+	/**
+	 * Parse a JSON object directly from an input stream.
+	 * 
+	 * @param in
+	 * @param charSet
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static JSONObject readJSONObject(InputStream in, Charset charSet) throws IOException, JSONException {
+		if(in == null) throw new IllegalArgumentException("No content to map to Object due to end of input");
+		try {
+			if(charSet == null){
+				charSet = Charset.defaultCharset();
+			}
+			return readJSONObject(new InputStreamReader(in, charSet));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parse a JSON object directly from a reader.
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws JSONException
+	 */
+	private static JSONObject readJSONObject(Reader reader) throws JSONException {
+		return new JSONObject(new JSONTokener(new BufferedReader(reader, BUFFER_SIZE)));
+	}
+
 	/**
 	 * Read a string from an input stream
 	 * 
@@ -144,11 +196,32 @@ public class JSONEntityHttpMessageConverter implements
 		}
 	}
 
+	/**
+	 * Write a JSON object directly to an output stream.
+	 * 
+	 * @param jsonObject
+	 * @param out
+	 * @param charSet
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static void writeToStream(JSONObject jsonObject, OutputStream out, Charset charSet) throws IOException, JSONException {
+		try {
+			if(charSet == null){
+				charSet = Charset.defaultCharset();
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, charSet), BUFFER_SIZE);
+			jsonObject.write(writer);
+			writer.flush();
+		} finally {
+			out.close();
+		}
+	}
+
 	@Override
 	public void write(JSONEntity entity, MediaType contentType,
 			HttpOutputMessage outputMessage) throws IOException,
 			HttpMessageNotWritableException {
-		// First write the entity to a JSON string
 		try {
 			HttpHeaders headers = outputMessage.getHeaders();
 			if (headers.getContentType() == null) {
@@ -159,11 +232,11 @@ public class JSONEntityHttpMessageConverter implements
 					headers.setContentType(contentType);
 				}
 			}
-			String jsonString = EntityFactory.createJSONStringForEntity(entity);
-			long length = JSONEntityHttpMessageConverter.writeToStream(jsonString, outputMessage.getBody(), contentType.getCharSet());
-			if (headers.getContentLength() == -1) {
-				headers.setContentLength(length);
-			}
+			// The JSON is streamed, so its length is not known up front.
+			JSONObject jsonObject = EntityFactory.createJSONObjectForEntity(entity);
+			JSONEntityHttpMessageConverter.writeToStream(jsonObject, outputMessage.getBody(), contentType.getCharSet());
+		} catch (JSONException e) {
+			throw new HttpMessageNotWritableException(e.getMessage());
 		} catch (JSONObjectAdapterException e) {
 			throw new HttpMessageNotWritableException(e.getMessage());
 		}
@@ -178,11 +251,16 @@ public class JSONEntityHttpMessageConverter implements
 	 * @throws JSONObjectAdapterException 
 	 */
 	public static Entity readEntity(Reader reader) throws IOException, JSONObjectAdapterException {
-		// First read in the string
-		String jsonString = readToString(reader);
-		// Read it into an adapter
-		JSONObjectAdapter adapter = new JSONObjectAdapterImpl(jsonString);
-		return createEntityFromeAdapter(adapter);
+		if(reader == null) throw new IllegalArgumentException("Reader cannot be null");
+		try {
+			// Parse the JSON as it is read
+			JSONObjectAdapter adapter = new JSONObjectAdapterImpl(readJSONObject(reader));
+			return createEntityFromeAdapter(adapter);
+		} catch (JSONException e) {
+			throw new JSONObjectAdapterException(e);
+		} finally {
+			reader.close();
+		}
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package org.sagebionetworks.repo.web.controller;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -11,14 +12,20 @@ import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.sagebionetworks.repo.model.AuthorizationConstants;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.NodeQueryRowHandler;
 import org.sagebionetworks.repo.model.QueryResults;
 import org.sagebionetworks.repo.model.ServiceConstants;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.query.BasicQuery;
+import org.sagebionetworks.repo.model.query.CountMode;
 import org.sagebionetworks.repo.queryparser.ParseException;
 import org.sagebionetworks.repo.web.GenericEntityController;
 import org.sagebionetworks.repo.web.NotFoundException;
@@ -26,6 +33,7 @@ import org.sagebionetworks.repo.web.UrlHelpers;
 import org.sagebionetworks.repo.web.query.QueryStatement;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -48,6 +56,8 @@ public class QueryController extends BaseController {
 	// Use a static instance of this per
 	// http://wiki.fasterxml.com/JacksonBestPracticesPerformance
 	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	// Rows are written one at a time, so the stream is only flushed when its buffer fills.
+	private static final ObjectMapper STREAMING_MAPPER = new ObjectMapper();
 	private static final String excludedDatasetProperties[] = { "uri", "etag",
 			"annotations", "layer" };
 	private static final String excludedLayerProperties[] = { "uri", "etag",
@@ -63,11 +73,14 @@ public class QueryController extends BaseController {
 		excludedProperties.put("dataset", datasetProperties);
 		excludedProperties.put("layer", layerProperties);
 		EXCLUDED_PROPERTIES = Collections.unmodifiableMap(excludedProperties);
+		STREAMING_MAPPER.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
 	}
 
 	/**
 	 * @param userId
 	 * @param query
+	 * @param countMode
+	 *            how the total number of results is computed, exact by default
 	 * @param request
 	 * @return paginated results
 	 * @throws DatastoreException
@@ -81,6 +94,7 @@ public class QueryController extends BaseController {
 	QueryResults query(
 			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
 			@RequestParam(value = ServiceConstants.QUERY_PARAM, required = true) String query,
+			@RequestParam(value = ServiceConstants.QUERY_COUNT_MODE_PARAM, required = false) String countMode,
 			HttpServletRequest request) throws DatastoreException,
 			ParseException, NotFoundException, UnauthorizedException {
 
@@ -93,12 +107,100 @@ public class QueryController extends BaseController {
 
 		// Convert from a query statement to a basic query
 		BasicQuery basic = QueryTranslator.createBasicQuery(stmt);
+		if(countMode != null){
+			basic.setCountMode(CountMode.fromParameter(countMode));
+		}
 		
 		QueryResults results = entityController.executeQueryWithAnnotations(userId, basic, request);
 		results.setResults(formulateResult(stmt, results.getResults()));
 		return results;
 	}
 
+	/**
+	 * Run a query, writing each row to the response as it is read from the
+	 * database. The rows are never collected, so unlike {@link #query} the
+	 * results are not limited in size and large exports run in constant memory.
+	 * The response has the same fields as {@link #query}, with the total after
+	 * the results. Errors found before the first row is written are returned as
+	 * usual; an error after that can only end the response early.
+	 * 
+	 * @param userId
+	 * @param query
+	 * @param countMode
+	 *            how the total number of results is computed, exact by default
+	 * @param request
+	 * @param response
+	 * @throws DatastoreException
+	 * @throws ParseException
+	 * @throws NotFoundException
+	 * @throws UnauthorizedException
+	 * @throws IOException
+	 */
+	@RequestMapping(value = UrlHelpers.QUERY_STREAM, method = RequestMethod.GET)
+	public void streamQuery(
+			@RequestParam(value = AuthorizationConstants.USER_ID_PARAM, required = false) String userId,
+			@RequestParam(value = ServiceConstants.QUERY_PARAM, required = true) String query,
+			@RequestParam(value = ServiceConstants.QUERY_COUNT_MODE_PARAM, required = false) String countMode,
+			HttpServletRequest request, HttpServletResponse response)
+			throws DatastoreException, ParseException, NotFoundException,
+			UnauthorizedException, IOException {
+		QueryStatement stmt = new QueryStatement(query);
+		BasicQuery basic = QueryTranslator.createBasicQuery(stmt);
+		if(countMode != null){
+			basic.setCountMode(CountMode.fromParameter(countMode));
+		}
+		StreamingResultWriter writer = new StreamingResultWriter(stmt, response);
+		QueryResults results = entityController.executeQueryWithAnnotations(userId, basic, writer, request);
+		writer.finish(results);
+	}
+
+	/**
+	 * Writes the rows of a query to the response as a QueryResults JSON
+	 * object. Nothing is written to the response until the first row, so
+	 * errors before then can still be reported normally.
+	 */
+	private class StreamingResultWriter implements NodeQueryRowHandler {
+
+		private QueryStatement stmt;
+		private HttpServletResponse response;
+		private JsonGenerator generator;
+
+		StreamingResultWriter(QueryStatement stmt, HttpServletResponse response) {
+			this.stmt = stmt;
+			this.response = response;
+		}
+
+		@Override
+		public void handleRow(Map<String, Object> row) throws IOException {
+			start();
+			generator.writeObject(formulateResult(stmt, row));
+		}
+
+		/**
+		 * Write the total and close the response.
+		 * @param results
+		 * @throws IOException
+		 */
+		void finish(QueryResults results) throws IOException {
+			start();
+			generator.writeEndArray();
+			generator.writeNumberField("totalNumberOfResults", results.getTotalNumberOfResults());
+			generator.writeBooleanField("hasMore", results.isHasMore());
+			generator.writeEndObject();
+			generator.close();
+		}
+
+		private void start() throws IOException {
+			if(generator != null) return;
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentType(MediaType.APPLICATION_JSON.toString());
+			response.setCharacterEncoding("UTF-8");
+			generator = STREAMING_MAPPER.getJsonFactory().createJsonGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("results");
+		}
+	}
+
 	/**
 	 * Process all of the results.
 	 * @param stmt
@@ -0,0 +1,54 @@
+package profiler.org.sagebionetworks;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.sagebionetworks.repo.model.profile.LatencyRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Records the latency of every public controller method in the local
+ * LatencyRegistry, so it can be read from the admin API without CloudWatch.
+ * Each method is named after its controller, for example
+ * "EntityController.getEntity".
+ */
+@Aspect
+public class ControllerLatencyProfiler {
+
+	private static final long NANOSECOND_PER_MILLISECOND = 1000000L;
+
+	@Autowired
+	LatencyRegistry latencyRegistry;
+
+	/**
+	 * Default constructor used by Spring.
+	 */
+	public ControllerLatencyProfiler() {
+	}
+
+	/**
+	 * @param latencyRegistry
+	 */
+	public ControllerLatencyProfiler(LatencyRegistry latencyRegistry) {
+		this.latencyRegistry = latencyRegistry;
+	}
+
+	/**
+	 * Time each public method of each controller.
+	 * @param pjp
+	 * @return
+	 * @throws Throwable
+	 */
+	@Around("execution(public * org.sagebionetworks.repo.web.controller..*.*(..)) && @within(org.springframework.stereotype.Controller)")
+	public Object doBasicProfiling(ProceedingJoinPoint pjp) throws Throwable {
+		long start = System.nanoTime();
+		try {
+			return pjp.proceed();
+		} finally {
+			long timeMS = (System.nanoTime() - start) / NANOSECOND_PER_MILLISECOND;
+			Signature signature = pjp.getSignature();
+			latencyRegistry.record(LatencyRegistry.CONTROLLER, signature.getDeclaringType().getSimpleName() + "." + signature.getName(), timeMS);
+		}
+	}
+}
@@ -6,29 +6,38 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.joda.time.DateTime;
+import org.sagebionetworks.repo.model.profile.LatencyHistogram;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.amazonaws.services.cloudwatch.AmazonCloudWatchClient;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
 
 /**
  * Sends latency information to AmazonWebServices CloudWatch. It's the consumer
  * in the producer/consumer pattern and it handles the Watchers in the Observer
  * pattern. Watchers can monitor success or failure of "puts" to CloudWatch
  * 
+ * Latencies are aggregated into one LatencyHistogram per method as they are
+ * added, and each put sends a single StatisticSet per method for the interval,
+ * so neither memory nor the size of a put grows with the request rate.
+ * 
  * @author ntiedema
  */
 public class Consumer implements MetricDatumSubject {
 	static private Log log = LogFactory.getLog(Consumer.class);
 
-	// synchronized list to hold MetricDatums objects
-	private List<ProfileData> listProfileData = Collections
-			.synchronizedList(new ArrayList<ProfileData>());
+	private static final String UNIT_MILLISECONDS = "Milliseconds";
+
+	// latency histograms keyed by namespace then method name
+	private ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> latencies = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
 
 	// list of watchers who will be notified with success/failure of all "puts"
 	List<Watcher> listOfWatchers = Collections
@@ -53,8 +62,8 @@ public class Consumer implements MetricDatumSubject {
 	}
 
 	/**
-	 * Takes a ProfileData and adds it to synchronized list. If ProfileData item
-	 * is null, it does not add to the list.
+	 * Takes a ProfileData and adds its latency to the histogram of its
+	 * method.
 	 * 
 	 * @param addToListMDS
 	 *            ProfileData Data Transfer Object
@@ -62,30 +71,58 @@ public class Consumer implements MetricDatumSubject {
 	 *             if the given object is null
 	 */
 	public void addProfileData(ProfileData addToList) {
-		// add method will allow null items
 		if (addToList == null) {
 			throw (new IllegalArgumentException());
 		}
-		listProfileData.add(addToList);
+		addLatency(addToList.getNamespace(), addToList.getName(),
+				addToList.getLatency());
+	}
+
+	/**
+	 * Adds a latency to the histogram of a method. Once a method has a
+	 * histogram this does not allocate or take a lock.
+	 * 
+	 * @param namespace
+	 * @param name
+	 * @param latencyMS
+	 * @throws IllegalArgumentException
+	 *             if the namespace or name is null or the latency is negative
+	 */
+	public void addLatency(String namespace, String name, long latencyMS) {
+		if (namespace == null || name == null || latencyMS < 0) {
+			throw (new IllegalArgumentException());
+		}
+		ConcurrentMap<String, LatencyHistogram> byName = latencies
+				.get(namespace);
+		if (byName == null) {
+			byName = new ConcurrentHashMap<String, LatencyHistogram>();
+			ConcurrentMap<String, LatencyHistogram> existing = latencies
+					.putIfAbsent(namespace, byName);
+			if (existing != null) {
+				byName = existing;
+			}
+		}
+		LatencyHistogram histogram = byName.get(name);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = byName.putIfAbsent(name, histogram);
+			if (existing != null) {
+				histogram = existing;
+			}
+		}
+		histogram.record(latencyMS);
 	}
 
 	/**
-	 * removes ProfileData from synchronized list and sends to CloudWatch.
+	 * Drains the latency histograms and sends one StatisticSet per method to
+	 * CloudWatch.
 	 * 
 	 * @return List<String> where each string represents "put" success/failure
 	 */
 	public List<String> executeCloudWatchPut() {
 		try {
-			// collect the ProfileData from synchronized list
-			List<ProfileData> nextBunch = new ArrayList<ProfileData>();
-			synchronized (listProfileData) {
-				nextBunch.addAll(listProfileData);
-				listProfileData.clear();
-				}
-
-			//here I have a list of potentially different namespaces
 			//convert to a map (key is namespace, value is list of metricDatums)
-			Map<String, List<MetricDatum>> allTheNamespaces = getAllNamespaces(nextBunch);
+			Map<String, List<MetricDatum>> allTheNamespaces = drainLatencies();
 			//need to collect the messages for testing
 			List<String> toReturn = new ArrayList<String>();
 		
@@ -107,6 +144,86 @@ public class Consumer implements MetricDatumSubject {
 		}
 	}
 
+	/**
+	 * Takes a snapshot of each histogram, resetting it, and converts each one
+	 * that recorded any latencies to a MetricDatum.
+	 * 
+	 * @return Map<String, List<MetricDatum>> keyed by namespace
+	 */
+	protected Map<String, List<MetricDatum>> drainLatencies() {
+		Date timestamp = new DateTime().toDate();
+		Map<String, List<MetricDatum>> toReturn = new HashMap<String, List<MetricDatum>>();
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> namespace : latencies
+				.entrySet()) {
+			List<MetricDatum> listMD = new ArrayList<MetricDatum>();
+			for (Map.Entry<String, LatencyHistogram> method : namespace
+					.getValue().entrySet()) {
+				LatencyHistogram.Snapshot snapshot = method.getValue()
+						.snapshotAndReset();
+				if (snapshot.getSampleCount() > 0) {
+					listMD.add(makeMetricDatum(method.getKey(), snapshot,
+							timestamp));
+					log.debug(namespace.getKey() + ":" + method.getKey() + " "
+							+ snapshot);
+				}
+			}
+			if (!listMD.isEmpty()) {
+				toReturn.put(namespace.getKey(), listMD);
+			}
+		}
+		return toReturn;
+	}
+
+	/**
+	 * Converts the snapshot of a method's latencies to a MetricDatum holding
+	 * a StatisticSet.
+	 * 
+	 * @param name
+	 * @param snapshot
+	 * @param timestamp
+	 * @return MetricDatum
+	 * @throws IllegalArgumentException
+	 *             if a parameter is null or the name is empty
+	 */
+	public MetricDatum makeMetricDatum(String name,
+			LatencyHistogram.Snapshot snapshot, Date timestamp) {
+		if (name == null || name.length() == 0 || snapshot == null
+				|| timestamp == null) {
+			throw (new IllegalArgumentException());
+		}
+		StatisticSet statistics = new StatisticSet();
+		statistics.setSampleCount((double) snapshot.getSampleCount());
+		statistics.setSum((double) snapshot.getSum());
+		statistics.setMinimum((double) snapshot.getMinimum());
+		statistics.setMaximum((double) snapshot.getMaximum());
+		MetricDatum toReturn = new MetricDatum();
+		toReturn.setMetricName(name);
+		toReturn.setStatisticValues(statistics);
+		toReturn.setUnit(UNIT_MILLISECONDS);
+		toReturn.setTimestamp(timestamp);
+		return toReturn;
+	}
+
+	/**
+	 * Returns a snapshot of the latencies of every method, keyed by namespace
+	 * then method name, without resetting them.
+	 * 
+	 * @return Map<String, Map<String, LatencyHistogram.Snapshot>>
+	 */
+	public Map<String, Map<String, LatencyHistogram.Snapshot>> getLatencySnapshots() {
+		Map<String, Map<String, LatencyHistogram.Snapshot>> toReturn = new HashMap<String, Map<String, LatencyHistogram.Snapshot>>();
+		for (Map.Entry<String, ConcurrentMap<String, LatencyHistogram>> namespace : latencies
+				.entrySet()) {
+			Map<String, LatencyHistogram.Snapshot> byName = new HashMap<String, LatencyHistogram.Snapshot>();
+			for (Map.Entry<String, LatencyHistogram> method : namespace
+					.getValue().entrySet()) {
+				byName.put(method.getKey(), method.getValue().snapshot());
+			}
+			toReturn.put(namespace.getKey(), byName);
+		}
+		return toReturn;
+	}
+
 	/**
 	 * Returns a map of namespaces, with value being list of each MetricDatum
 	 * parameter list contained for that namespace.
@@ -335,16 +452,6 @@ public class Consumer implements MetricDatumSubject {
 		}
 	}
 
-	/**
-	 * Getter that returns copy of synchronized list of ProfileData.
-	 * 
-	 * @return List<ProfileData>
-	 */
-	protected List<ProfileData> getListProfileData() {
-		List<ProfileData> toReturn = new ArrayList<ProfileData>(listProfileData);
-		return toReturn;
-	}
-
 	/**
 	 * Getter that returns copy of synchronized list of Watcher.
 	 * 
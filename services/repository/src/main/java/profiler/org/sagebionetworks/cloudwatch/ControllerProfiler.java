@@ -1,6 +1,8 @@
 package profiler.org.sagebionetworks.cloudwatch;
 
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -23,6 +25,9 @@ public class ControllerProfiler {
 	
 	static private Log log = LogFactory.getLog(ControllerProfiler.class);
 	
+	//the namespace of each profiled class, so it is not rebuilt on every call
+	private ConcurrentMap<Class<?>, String> namespaces = new ConcurrentHashMap<Class<?>, String>();
+	
 	//a singleton consumer from the Spring settings file 
 	@Autowired
 	Consumer consumer;
@@ -73,9 +78,7 @@ public class ControllerProfiler {
 		Signature signature = pjp.getSignature();
 		String methodName = signature.getName();
 		//want the package information for the namespace
-		Class declaring = signature.getDeclaringType();
-		Package sigPackage = declaring.getPackage();
-		String namespace = sigPackage.toString();
+		String namespace = getNamespace(signature.getDeclaringType());
 		
 		long start = System.nanoTime();	//collect method start time
 		Object results = pjp.proceed(); // runs the method
@@ -83,19 +86,33 @@ public class ControllerProfiler {
 		//converting from nanoseconds to milliseconds
 		long timeMS = (end - start) /NANOSECOND_PER_MILLISECOND;
 		
-		//use our latency time to make a MetricDatum, and
-		//add to synchronized list
-		ProfileData profileData = makeProfileDataDTO(namespace, methodName, timeMS);
-		consumer.addProfileData(profileData);
+		//add our latency time to the histogram for this method
+		consumer.addLatency(namespace, methodName, timeMS);
 		
 		//in configuration file log is set to ERROR to turn off and
 		//DEBUG to turn on
-		log.debug("let's see our profileData " + profileData.toString());
+		if (log.isDebugEnabled()) {
+			log.debug("let's see our latency " + namespace + ":" + methodName + ":" + timeMS);
+		}
 		
 		//must return whatever method returned
 		return results;
 	}
 	
+	/**
+	 * Returns the namespace for a class, which is its package.
+	 * @param declaring class of the profiled method
+	 * @return String representing namespace/package name
+	 */
+	private String getNamespace(Class<?> declaring){
+		String namespace = namespaces.get(declaring);
+		if (namespace == null){
+			namespace = declaring.getPackage().toString();
+			namespaces.put(declaring, namespace);
+		}
+		return namespace;
+	}
+	
 	/**
 	 * Makes transfer object and returns it.
 	 * @param String representing namespace/package name
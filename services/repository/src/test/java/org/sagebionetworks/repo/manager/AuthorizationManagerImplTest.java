@@ -250,6 +250,27 @@ public class AuthorizationManagerImplTest {
 		
 	}
 
+	@Test
+	public void testCanAccessBatch() throws Exception {
+		List<String> ids = new ArrayList<String>();
+		ids.add(node.getId());
+		ids.add(childNode.getId());
+		ids.add(nodeCreatedByTestUser.getId());
+		// the user only owns one of the nodes
+		assertFalse(authorizationManager.canAccess(userInfo, ids, ACCESS_TYPE.READ));
+		assertTrue(authorizationManager.canAccess(adminUser, ids, ACCESS_TYPE.READ));
+		// grant access to the parent which is inherited by the child
+		AccessControlList acl = permissionsManager.getACL(node.getId(), userInfo);
+		acl = AuthorizationHelper.addToACL(acl, userInfo.getIndividualGroup(), ACCESS_TYPE.READ);
+		acl = permissionsManager.updateACL(acl, adminUser);
+		assertTrue(authorizationManager.canAccess(userInfo, ids, ACCESS_TYPE.READ));
+		assertFalse(authorizationManager.canAccess(userInfo, ids, ACCESS_TYPE.DELETE));
+		// the batch check must agree with the single checks
+		for (String id : ids) {
+			assertTrue(authorizationManager.canAccess(userInfo, id, ACCESS_TYPE.READ));
+		}
+	}
+
 	// test lack of access to something that doesn't inherit its permissions, whose parent you CAN access
 	@Test
 	public void testCantAccessNotInherited() throws Exception {		
@@ -1,15 +1,28 @@
 package org.sagebionetworks.repo.manager;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sagebionetworks.ids.IdGenerator;
 import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.Entity;
+import org.sagebionetworks.repo.model.EntityType;
 import org.sagebionetworks.repo.model.InvalidModelException;
+import org.sagebionetworks.repo.model.NamedAnnotations;
+import org.sagebionetworks.repo.model.Node;
+import org.sagebionetworks.repo.model.NodeDAO;
+import org.sagebionetworks.repo.model.Project;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.User;
 import org.sagebionetworks.repo.model.UserInfo;
@@ -29,6 +42,7 @@ public class EntityManagerImplUnitTest {
 	private EntityManagerImpl entityManager;
 	private NodeManager mockNodeManager;
 	private S3TokenManager mockS3TokenManager;
+	private NodeDAO mockNodeDao;
 	private IdGenerator mocIdGenerator;
 	private LocationHelper mocKLocationHelper;
 	String userId = "007";
@@ -40,12 +54,13 @@ public class EntityManagerImplUnitTest {
 		mockUserManager = Mockito.mock(UserManager.class);
 		mockNodeManager = Mockito.mock(NodeManager.class);
 		mockS3TokenManager = Mockito.mock(S3TokenManager.class);
+		mockNodeDao = Mockito.mock(NodeDAO.class);
 		mocIdGenerator = Mockito.mock(IdGenerator.class);
 		mocKLocationHelper = Mockito.mock(LocationHelper.class);
 		mockUser = new UserInfo(false);
 		mockUser.setUser(new User());
 		mockUser.getUser().setId(userId);
-		entityManager = new EntityManagerImpl(mockNodeManager, mockS3TokenManager, mockPermissionsManager, mockUserManager);
+		entityManager = new EntityManagerImpl(mockNodeManager, mockS3TokenManager, mockPermissionsManager, mockUserManager, mockNodeDao);
 	}
 
 	@Test (expected=UnauthorizedException.class)
@@ -113,5 +128,42 @@ public class EntityManagerImplUnitTest {
 		assertNotNull(endToken);
 		assertEquals(expectePreSigneUrl, endToken.getPresignedUrl());
 	}
+	
+	@Test
+	public void testGetEntitiesChecksAccessOnce() throws Exception{
+		List<String> ids = Arrays.asList("101", "102");
+		Node one = new Node();
+		one.setId("101");
+		one.setName("one");
+		one.setNodeType(EntityType.project.name());
+		Node two = new Node();
+		two.setId("102");
+		two.setName("two");
+		two.setNodeType(EntityType.project.name());
+		// The batch check happens when the nodes are loaded.
+		when(mockNodeManager.getNodes(mockUser, ids)).thenReturn(Arrays.asList(one, two));
+		when(mockNodeDao.getAnnotations(ids)).thenReturn(Arrays.asList(new NamedAnnotations(), new NamedAnnotations()));
+		List<Entity> results = entityManager.getEntities(mockUser, ids);
+		assertEquals(2, results.size());
+		assertTrue(results.get(0) instanceof Project);
+		assertEquals("one", results.get(0).getName());
+		assertEquals("two", results.get(1).getName());
+		verify(mockNodeManager, times(1)).getNodes(mockUser, ids);
+		// The annotations are not checked a second time.
+		verify(mockNodeManager, never()).getAnnotations((UserInfo)any(), (String)any());
+		verify(mockNodeDao, times(1)).getAnnotations(ids);
+	}
+	
+	@Test (expected=UnauthorizedException.class)
+	public void testGetEntitiesUnauthorized() throws Exception{
+		List<String> ids = Arrays.asList("101", "102");
+		when(mockNodeManager.getNodes(mockUser, ids)).thenThrow(new UnauthorizedException());
+		try{
+			entityManager.getEntities(mockUser, ids);
+		}finally{
+			// Nothing is read without access.
+			verify(mockNodeDao, never()).getAnnotations((List<String>)any());
+		}
+	}
 
 }
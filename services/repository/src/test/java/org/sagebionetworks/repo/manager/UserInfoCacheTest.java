@@ -0,0 +1,161 @@
+package org.sagebionetworks.repo.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.User;
+import org.sagebionetworks.repo.model.UserGroup;
+import org.sagebionetworks.repo.model.UserInfo;
+import org.sagebionetworks.repo.web.NotFoundException;
+
+/**
+ * Unit test for the UserInfoCache.
+ */
+public class UserInfoCacheTest {
+
+	AtomicInteger loads;
+	UserInfoCache.Loader loader;
+
+	@Before
+	public void before() {
+		loads = new AtomicInteger(0);
+		// Every user belongs to its own group and the group 'shared'.
+		loader = new UserInfoCache.Loader() {
+			@Override
+			public UserInfo load(String userName) throws DatastoreException, NotFoundException {
+				loads.incrementAndGet();
+				return createUserInfo(userName);
+			}
+		};
+	}
+
+	private static UserInfo createUserInfo(String userName) {
+		User user = new User();
+		user.setId(userName + "Id");
+		user.setUserId(userName);
+		UserGroup individual = new UserGroup();
+		individual.setId(userName + "GroupId");
+		individual.setName(userName);
+		UserGroup shared = new UserGroup();
+		shared.setId("sharedId");
+		shared.setName("shared");
+		Set<UserGroup> groups = new HashSet<UserGroup>();
+		groups.add(individual);
+		groups.add(shared);
+		UserInfo userInfo = new UserInfo(false);
+		userInfo.setUser(user);
+		userInfo.setIndividualGroup(individual);
+		userInfo.setGroups(groups);
+		return userInfo;
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		UserInfoCache cache = new UserInfoCache(100000, 10);
+		UserInfo first = cache.get("one", loader);
+		assertSame(first, cache.get("one", loader));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testExpires() throws Exception {
+		UserInfoCache cache = new UserInfoCache(10, 10);
+		UserInfo first = cache.get("one", loader);
+		Thread.sleep(20);
+		assertNotSame(first, cache.get("one", loader));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void testInvalidateOnlyAffectedUser() throws Exception {
+		UserInfoCache cache = new UserInfoCache(100000, 10);
+		cache.get("one", loader);
+		cache.get("two", loader);
+		cache.invalidatePrincipal("one");
+		assertEquals(1, cache.size());
+		// Users can also be invalidated by id.
+		cache.invalidatePrincipal("twoId");
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testInvalidateGroup() throws Exception {
+		UserInfoCache cache = new UserInfoCache(100000, 10);
+		cache.get("one", loader);
+		cache.get("two", loader);
+		// Both users belong to this group.
+		cache.invalidatePrincipal("shared");
+		assertEquals(0, cache.size());
+		cache.get("one", loader);
+		cache.invalidatePrincipal("sharedId");
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSingleLoad() throws Exception {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final UserInfoCache cache = new UserInfoCache(100000, 10);
+		final UserInfoCache.Loader slowLoader = new UserInfoCache.Loader() {
+			@Override
+			public UserInfo load(String userName) throws DatastoreException, NotFoundException {
+				loads.incrementAndGet();
+				loading.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new DatastoreException(e);
+				}
+				return createUserInfo(userName);
+			}
+		};
+		int numberOfThreads = 5;
+		Thread[] threads = new Thread[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						cache.get("one", slowLoader);
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		loading.await(5, TimeUnit.SECONDS);
+		// Give the other threads a chance to wait on the load.
+		Thread.sleep(100);
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+		assertEquals(1, loads.get());
+		assertEquals(numberOfThreads - 1, cache.getHitCount());
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+		UserInfoCache cache = new UserInfoCache(100000, 10);
+		for (int i = 0; i < 25; i++) {
+			cache.get("user" + i, loader);
+		}
+		// Only the oldest entries are evicted, so the latest user is still cached.
+		assertEquals(10, cache.size());
+		cache.get("user24", loader);
+		assertEquals(25, loads.get());
+	}
+}
@@ -0,0 +1,69 @@
+package org.sagebionetworks.repo.manager.backup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for BackupManifest.
+ */
+public class BackupManifestTest {
+
+	Map<String, String> previous;
+	Map<String, String> current;
+
+	@Before
+	public void before(){
+		previous = new LinkedHashMap<String, String>();
+		previous.put("1", "a");
+		previous.put("2", "b");
+		previous.put("3", "c");
+		previous.put("4", "d");
+		// Changed, unchanged, new and deleted ids.
+		current = new LinkedHashMap<String, String>();
+		current.put("1", "a");
+		current.put("3", "c2");
+		current.put("4", "d");
+		current.put("5", "e");
+	}
+
+	@Test
+	public void testFindChanged(){
+		Set<String> changed = BackupManifest.findChanged(previous, current);
+		assertEquals(Arrays.asList("3", "5"), new ArrayList<String>(changed));
+	}
+
+	@Test
+	public void testFindChangedNoPrevious(){
+		// Without a previous mark everything has changed, in the order of the current mark.
+		Set<String> changed = BackupManifest.findChanged(null, current);
+		assertEquals(new ArrayList<String>(current.keySet()), new ArrayList<String>(changed));
+	}
+
+	@Test
+	public void testFindDeleted(){
+		Set<String> deleted = BackupManifest.findDeleted(previous, current);
+		assertEquals(Arrays.asList("2"), new ArrayList<String>(deleted));
+		assertTrue(BackupManifest.findDeleted(null, current).isEmpty());
+	}
+
+	@Test
+	public void testNoChanges(){
+		assertTrue(BackupManifest.findChanged(current, current).isEmpty());
+		assertTrue(BackupManifest.findDeleted(current, current).isEmpty());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testFindChangedNullCurrent(){
+		BackupManifest.findChanged(previous, null);
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.sagebionetworks.repo.manager.backup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for the compact backup format.
+ */
+public class CompactBackupFormatTest {
+
+	File temp = null;
+
+	@Before
+	public void before() throws IOException{
+		temp = File.createTempFile("CompactBackupFormatTest", BackupFormat.COMPACT.getFileSuffix());
+	}
+
+	@After
+	public void after(){
+		if(temp != null){
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException{
+		Random rand = new Random(123);
+		List<byte[]> payloads = new ArrayList<byte[]>();
+		List<Byte> types = new ArrayList<Byte>();
+		CompactBackupWriter writer = new CompactBackupWriter(new FileOutputStream(temp), 100);
+		for(int i=0; i<50; i++){
+			byte type = i % 3 == 0 ? CompactBackupFormat.RECORD_NODE : CompactBackupFormat.RECORD_REVISION;
+			byte[] payload = new byte[rand.nextInt(80)];
+			rand.nextBytes(payload);
+			writer.writeRecord(type, payload);
+			types.add(type);
+			payloads.add(payload);
+		}
+		writer.close();
+		assertEquals(17, writer.getNodeCount());
+		assertEquals(33, writer.getRevisionCount());
+		// Read it back
+		CompactBackupReader reader = new CompactBackupReader(new FileInputStream(temp));
+		try{
+			for(int i=0; i<payloads.size(); i++){
+				assertTrue(reader.next());
+				assertEquals(types.get(i).byteValue(), reader.getType());
+				assertArrayEquals(payloads.get(i), reader.getPayload());
+			}
+			assertFalse(reader.next());
+		}finally{
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException{
+		CompactBackupWriter writer = new CompactBackupWriter(new FileOutputStream(temp), 1024);
+		writer.close();
+		CompactBackupReader reader = new CompactBackupReader(new FileInputStream(temp));
+		try{
+			assertFalse(reader.next());
+		}finally{
+			reader.close();
+		}
+	}
+
+	@Test (expected=IOException.class)
+	public void testReadNotCompact() throws IOException{
+		new CompactBackupReader(new ByteArrayInputStream("<xml>not a compact backup</xml>".getBytes("UTF-8")));
+	}
+
+	@Test (expected=IOException.class)
+	public void testReadIncomplete() throws IOException{
+		// A backup that was never closed ends without the index marker.
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompactBackupWriter writer = new CompactBackupWriter(out, 1024);
+		writer.writeRecord(CompactBackupFormat.RECORD_NODE, new byte[]{1,2,3});
+		CompactBackupReader reader = new CompactBackupReader(new ByteArrayInputStream(out.toByteArray()));
+		reader.next();
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testUnknownRecordType() throws IOException{
+		CompactBackupWriter writer = new CompactBackupWriter(new ByteArrayOutputStream(), 1024);
+		writer.writeRecord((byte)7, new byte[]{1});
+	}
+
+	@Test
+	public void testDetect() throws IOException{
+		// An empty stream is not a compact backup.
+		assertEquals(BackupFormat.XML_ZIP, BackupFormat.detect(new ByteArrayInputStream(new byte[0])));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompactBackupWriter writer = new CompactBackupWriter(out, 1024);
+		writer.close();
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		assertEquals(BackupFormat.COMPACT, BackupFormat.detect(in));
+		// The stream is left at the start of the backup.
+		CompactBackupReader reader = new CompactBackupReader(in);
+		assertFalse(reader.next());
+	}
+
+	@Test
+	public void testForFileName(){
+		assertEquals(BackupFormat.COMPACT, BackupFormat.forFileName("Backup-stack-1-99.sbk"));
+		assertEquals(BackupFormat.XML_ZIP, BackupFormat.forFileName("Backup-stack-1-99.zip"));
+		assertEquals(BackupFormat.XML_ZIP, BackupFormat.forFileName("Backup-stack-1-99"));
+	}
+
+}
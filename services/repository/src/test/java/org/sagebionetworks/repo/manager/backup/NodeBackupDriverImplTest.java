@@ -5,9 +5,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -15,6 +18,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sagebionetworks.repo.manager.backup.migration.MigrationDriver;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
 import org.sagebionetworks.repo.model.util.RandomAccessControlListUtil;
 import org.sagebionetworks.repo.model.util.RandomNodeRevisionUtil;
@@ -127,6 +131,179 @@ public class NodeBackupDriverImplTest {
 		}
 	}
 	
+	@Test
+	public void testRoundTripPipelineSizes() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		// The backup must be the same no matter how many threads fetch the nodes.
+		int[][] sizes = new int[][]{{1,1,1}, {2,1,1}, {8,3,2}};
+		for(int[] size: sizes){
+			File temp = File.createTempFile("NodeBackupDriverImplTest", ".zip");
+			try{
+				sourceDriver.setFetchThreadCount(size[0]);
+				sourceDriver.setSerializationThreadCount(size[1]);
+				sourceDriver.setPipelineQueueSize(size[2]);
+				Progress progress = new Progress();
+				sourceDriver.writeBackup(temp, progress, null);
+				assertEquals(stubSource.getTotalNodeCount(), progress.getCurrentIndex());
+				assertTrue(progress.getBytesProcessed() > 0);
+				NodeBackupStub destination = new NodeBackupStub();
+				new NodeBackupDriverImpl(destination, mockMigrationDriver).restoreFromBackup(temp, new Progress());
+				assertEquals(stubSource, destination);
+			}finally{
+				temp.delete();
+			}
+		}
+	}
+
+	@Test (expected=InterruptedException.class)
+	public void testWriteBackupTerminate() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		File temp = File.createTempFile("NodeBackupDriverImplTest", ".zip");
+		try{
+			Progress progress = new Progress();
+			progress.setTerminate(true);
+			sourceDriver.writeBackup(temp, progress, null);
+		}finally{
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testRoundTripRestoreBatchSizes() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		File temp = File.createTempFile("NodeBackupDriverImplTest", ".zip");
+		try{
+			sourceDriver.writeBackup(temp, new Progress(), null);
+			long nodeCount = stubSource.getTotalNodeCount();
+			// The restore must be the same no matter how the nodes are batched and written.
+			int[][] sizes = new int[][]{{1,1}, {2,3}, {5,4}, {1000,2}};
+			for(int[] size: sizes){
+				NodeBackupStub destination = new NodeBackupStub();
+				NodeBackupDriverImpl driver = new NodeBackupDriverImpl(destination, mockMigrationDriver);
+				driver.setRestoreBatchSize(size[0]);
+				driver.setRestoreWriterThreadCount(size[1]);
+				driver.restoreFromBackup(temp, new Progress());
+				assertEquals(stubSource, destination);
+				assertEquals((nodeCount + size[0] - 1)/size[0], destination.getBatchCount());
+			}
+		}finally{
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testRestoreBatchFailure() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		File temp = File.createTempFile("NodeBackupDriverImplTest", ".zip");
+		try{
+			sourceDriver.writeBackup(temp, new Progress(), null);
+			// When a batch fails its nodes are restored one at a time.
+			NodeBackupStub destination = new NodeBackupStub();
+			destination.setFailBatches(true);
+			NodeBackupDriverImpl driver = new NodeBackupDriverImpl(destination, mockMigrationDriver);
+			driver.setRestoreBatchSize(3);
+			driver.setRestoreWriterThreadCount(2);
+			driver.restoreFromBackup(temp, new Progress());
+			assertEquals(stubSource, destination);
+			assertEquals(0, destination.getBatchCount());
+		}finally{
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testRestoreFromStream() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		for(BackupFormat format: BackupFormat.values()){
+			File temp = File.createTempFile("NodeBackupDriverImplTest", format.getFileSuffix());
+			try{
+				stubDestination = new NodeBackupStub();
+				destinationDriver = new NodeBackupDriverImpl(stubDestination, mockMigrationDriver);
+				sourceDriver.writeBackup(temp, new Progress(), null);
+				// The format is detected from the start of the stream.
+				Progress progress = new Progress();
+				destinationDriver.restoreFromBackup(new FileInputStream(temp), temp.length(), progress);
+				assertEquals(stubSource, stubDestination);
+				assertEquals(temp.length(), progress.getTotalCount());
+			}finally{
+				temp.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testRoundTripCompact() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		// The suffix of the file selects the compact format.
+		File temp = File.createTempFile("NodeBackupDriverImplTest", BackupFormat.COMPACT.getFileSuffix());
+		try{
+			// Use small blocks so the backup spans many of them.
+			sourceDriver.setCompactBlockSize(1024);
+			Progress progress = new Progress();
+			sourceDriver.writeBackup(temp, progress, null);
+			BufferedInputStream in = new BufferedInputStream(new FileInputStream(temp));
+			try{
+				assertEquals(BackupFormat.COMPACT, BackupFormat.detect(in));
+			}finally{
+				in.close();
+			}
+			// The restore detects the format.
+			progress = new Progress();
+			destinationDriver.restoreFromBackup(temp, progress);
+			assertEquals(stubSource, stubDestination);
+			// The progress is the bytes read.
+			assertEquals(temp.length(), progress.getTotalCount());
+			assertTrue(progress.getCurrentIndex() > 0);
+			assertTrue(progress.getCurrentIndex() <= temp.length());
+		}finally{
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testHighWaterMark() throws DatastoreException, NotFoundException{
+		Map<String, String> mark = sourceDriver.getHighWaterMark();
+		assertEquals(stubSource.getTotalNodeCount(), mark.size());
+		// Each node must come after its parent.
+		Set<String> seen = new HashSet<String>();
+		for(String id: mark.keySet()){
+			Node node = stubSource.getNode(id).getNode();
+			assertEquals(node.getETag(), mark.get(id));
+			if(node.getParentId() != null){
+				assertTrue(seen.contains(node.getParentId()));
+			}
+			seen.add(id);
+		}
+	}
+
+	@Test
+	public void testIncrementalRoundTrip() throws IOException, DatastoreException, NotFoundException, InterruptedException{
+		File full = File.createTempFile("NodeBackupDriverImplTest", ".zip");
+		File delta = File.createTempFile("NodeBackupDriverImplTest", ".zip");
+		try{
+			// Start the chain with everything.
+			Map<String, String> previous = sourceDriver.getHighWaterMark();
+			sourceDriver.writeBackup(full, new Progress(), BackupManifest.findChanged(null, previous));
+			destinationDriver.restoreFromBackup(full, new Progress());
+			assertEquals(stubSource, stubDestination);
+			// Change a parent and one of its children.
+			String parentId = stubSource.getRoot().getChildren().get(0);
+			String childId = stubSource.getNode(parentId).getChildren().get(0);
+			for(String id: new String[]{childId, parentId}){
+				Node node = stubSource.getNode(id).getNode();
+				node.setName(node.getName()+" changed");
+				node.setETag(node.getETag()+"1");
+			}
+			assertFalse(stubSource.equals(stubDestination));
+			Set<String> changed = BackupManifest.findChanged(previous, sourceDriver.getHighWaterMark());
+			assertEquals(2, changed.size());
+			// The parent is first even though it was changed last.
+			assertEquals(parentId, changed.iterator().next());
+			Progress progress = new Progress();
+			sourceDriver.writeBackup(delta, progress, changed);
+			assertEquals(2, progress.getCurrentIndex());
+			destinationDriver.restoreFromBackup(delta, new Progress());
+			assertEquals(stubSource, stubDestination);
+		}finally{
+			full.delete();
+			delta.delete();
+		}
+	}
+
 	@Test
 	public void testRoundTripSubSet() throws IOException, DatastoreException, NotFoundException, InterruptedException{
 		// Create a temp file
@@ -11,7 +11,9 @@ import org.sagebionetworks.repo.model.AccessControlList;
 import org.sagebionetworks.repo.model.DatastoreException;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeBackup;
+import org.sagebionetworks.repo.model.NodeEtag;
 import org.sagebionetworks.repo.model.NodeRevisionBackup;
+import org.sagebionetworks.repo.model.jdo.KeyFactory;
 import org.sagebionetworks.repo.web.NotFoundException;
 
 /**
@@ -26,6 +28,8 @@ public class NodeBackupStub implements NodeBackupManager {
 	private Map<String, NodeRevisionBackup> revisionIdMap = new HashMap<String, NodeRevisionBackup>();
 	private long nodeIdSequence;
 	private boolean wasCleared = false;
+	private int batchCount = 0;
+	private boolean failBatches = false;
 	
 	public NodeBackupStub(TreeNodeBackup root){
 		this.root = root;
@@ -128,7 +132,14 @@ public class NodeBackupStub implements NodeBackupManager {
 		// Find this node's parent
 		if(backup.getNode().getParentId() != null){
 			TreeNodeBackup parent = getNodeNode(backup.getNode().getParentId());
-			parent.getChildren().add(node);
+			// Keep the children in id order since siblings can be restored in parallel.
+			Long id = KeyFactory.stringToKey(backup.getNode().getId());
+			List<TreeNodeBackup> children = parent.getChildren();
+			int index = children.size();
+			while(index > 0 && KeyFactory.stringToKey(children.get(index-1).getNode().getId()) > id){
+				index--;
+			}
+			children.add(index, node);
 		}
 		nodeIdMap.put(backup.getNode().getId(), node);
 		return node;
@@ -182,6 +193,15 @@ public class NodeBackupStub implements NodeBackupManager {
 	
 	public void createOrUpdateNode(NodeBackup backup) {
 		if(backup == null) throw new IllegalArgumentException("Backup cannot be null");
+		TreeNodeBackup existing = nodeIdMap.get(backup.getNode().getId());
+		if(existing != null){
+			// Update the node in place. The backup includes all of its revisions so they are replaced.
+			existing.setNode(backup.getNode());
+			existing.setAcl(backup.getAcl());
+			existing.setBenefactor(backup.getBenefactor());
+			existing.getRevisions().clear();
+			return;
+		}
 		TreeNodeBackup newNode = createTreeNodeForBackup(backup);
 		// Is this the root?
 		if(root == null){
@@ -226,6 +246,22 @@ public class NodeBackupStub implements NodeBackupManager {
 		return nodeIdMap.size();
 	}
 
+	@Override
+	public synchronized List<NodeEtag> getAllNodeEtags() {
+		List<NodeEtag> results = new ArrayList<NodeEtag>();
+		for(TreeNodeBackup nn: nodeIdMap.values()){
+			Node node = nn.getNode();
+			results.add(new NodeEtag(node.getId(), node.getETag(), node.getParentId()));
+		}
+		// Match the database, which returns them in the order of the ids.
+		Collections.sort(results, new Comparator<NodeEtag>(){
+			@Override
+			public int compare(NodeEtag one, NodeEtag two) {
+				return KeyFactory.stringToKey(one.getId()).compareTo(KeyFactory.stringToKey(two.getId()));
+			}} );
+		return results;
+	}
+
 	@Override
 	public void clearAllData() {
 		root = null;
@@ -255,7 +291,38 @@ public class NodeBackupStub implements NodeBackupManager {
 	}
 
 	@Override
-	public void createOrUpdateNodeWithRevisions(NodeBackup backup,	List<NodeRevisionBackup> revisions) {
+	public synchronized void createOrUpdateNodesWithRevisions(List<NodeBackup> backups, Map<String, List<NodeRevisionBackup>> revisions) {
+		if(backups == null) throw new IllegalArgumentException("backups cannot be null");
+		if(revisions == null) throw new IllegalArgumentException("revisions cannot be null");
+		if(failBatches) throw new IllegalStateException("Batches are set to fail");
+		batchCount++;
+		for(NodeBackup backup: backups){
+			List<NodeRevisionBackup> nodeRevisions = revisions.get(backup.getNode().getId());
+			if(nodeRevisions == null){
+				nodeRevisions = new ArrayList<NodeRevisionBackup>();
+			}
+			createOrUpdateNodeWithRevisions(backup, nodeRevisions);
+		}
+	}
+	
+	/**
+	 * When true every batch fails, so only single nodes can be restored.
+	 * @param failBatches
+	 */
+	public void setFailBatches(boolean failBatches){
+		this.failBatches = failBatches;
+	}
+	
+	/**
+	 * The number of batches restored to this stub.
+	 * @return
+	 */
+	public synchronized int getBatchCount(){
+		return batchCount;
+	}
+
+	@Override
+	public synchronized void createOrUpdateNodeWithRevisions(NodeBackup backup,	List<NodeRevisionBackup> revisions) {
 		if(backup == null) throw new IllegalArgumentException("backup cannot be null");
 		if(revisions == null) throw new IllegalArgumentException("revisions cannot be null");
 		// Make sure we process revision in their natural order
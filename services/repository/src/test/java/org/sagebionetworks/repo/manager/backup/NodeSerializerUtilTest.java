@@ -28,6 +28,7 @@ import org.sagebionetworks.repo.model.ACCESS_TYPE;
 import org.sagebionetworks.repo.model.AccessControlList;
 import org.sagebionetworks.repo.model.Annotations;
 import org.sagebionetworks.repo.model.EntityType;
+import org.sagebionetworks.repo.model.MigrationType;
 import org.sagebionetworks.repo.model.NamedAnnotations;
 import org.sagebionetworks.repo.model.Node;
 import org.sagebionetworks.repo.model.NodeBackup;
@@ -63,6 +64,25 @@ public class NodeSerializerUtilTest {
 		
 	}
 	
+	@Test
+	public void testRoundTripBackupManifest(){
+		BackupManifest manifest = new BackupManifest();
+		manifest.setMigrationType(MigrationType.ENTITY);
+		manifest.setBackupFileName("Incremental-stack-1-99-123.zip");
+		manifest.setPreviousManifest("Manifest-stack-1-98-456.xml");
+		manifest.setCreatedOn(new Date());
+		manifest.getHighWaterMark().put("syn4489", "3");
+		manifest.getHighWaterMark().put("syn4490", "11");
+		manifest.getDeletedIds().add("syn101");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NodeSerializerUtil.writeBackupManifest(manifest, out);
+		BackupManifest clone = NodeSerializerUtil.readBackupManifest(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(manifest, clone);
+		// The order of the mark is the order of a restore.
+		assertEquals(new ArrayList<String>(manifest.getHighWaterMark().keySet()), new ArrayList<String>(clone.getHighWaterMark().keySet()));
+	}
+	
 	@Test 
 	public void testRoundTripPrincipalBackup() throws Exception {
 		Collection<PrincipalBackup> pbs = new HashSet<PrincipalBackup>();
@@ -5,25 +5,43 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.manager.backup.BackupFormat;
+import org.sagebionetworks.repo.manager.backup.BackupManifest;
 import org.sagebionetworks.repo.manager.backup.NodeBackupDriver;
+import org.sagebionetworks.repo.manager.backup.NodeSerializerUtil;
 import org.sagebionetworks.repo.manager.backup.Progress;
 import org.sagebionetworks.repo.manager.backup.SearchDocumentDriver;
 import org.sagebionetworks.repo.model.BackupRestoreStatusDAO;
 import org.sagebionetworks.repo.model.DaemonStatusUtil;
 import org.sagebionetworks.repo.model.DatastoreException;
+import org.sagebionetworks.repo.model.MigrationType;
 import org.sagebionetworks.repo.model.UnauthorizedException;
 import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.DaemonStatus;
@@ -33,6 +51,7 @@ import org.sagebionetworks.repo.web.NotFoundException;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 
 /**
  * Mocks are used to test the daemon.
@@ -66,6 +85,10 @@ public class BackupDaemonTest {
 		stubDao = new BackupRestoreStatusDAOStub();
 		// The daemon is passed all mock data.
 		daemon = new BackupDaemon(stubDao, mockDriver, mockSearchDocumentDriver, mockAwsClient, "someFakeBucket", threadPool, threadPool2);
+		// Every backup to restore is empty.
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(0);
+		when(mockAwsClient.getObjectMetadata((String)any(), (String)any())).thenReturn(metadata);
 	}
 	
 	private String getStarterPrincipalId() {
@@ -107,6 +130,134 @@ public class BackupDaemonTest {
 		verify(mockDriver, atLeastOnce()).writeBackup((File)any(), (Progress)any(), (Set<String>)any());
 	}
 	
+	@Test
+	public void testSuccessfulCompactBackupRun() throws UnauthorizedException, DatastoreException, NotFoundException, InterruptedException, IOException{
+		daemon.setBackupFormat(BackupFormat.COMPACT);
+		BackupRestoreStatus status = daemon.startBackup(getStarterPrincipalId());
+		status = waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		// The suffix of the file tells the driver which format to write.
+		String fileName = daemon.getBackupFileName();
+		assertNotNull(fileName);
+		assertTrue(fileName.endsWith(BackupFormat.COMPACT.getFileSuffix()));
+		assertEquals(BackupDaemon.getS3URL(bucketName, fileName), status.getBackupUrl());
+		verify(mockDriver, atLeastOnce()).writeBackup((File)any(), (Progress)any(), (Set<String>)any());
+	}
+	
+	@Test
+	public void testIncrementalBackupNewChain() throws Exception{
+		Map<String, String> mark = new LinkedHashMap<String, String>();
+		mark.put("101", "3");
+		mark.put("102", "7");
+		when(mockDriver.getHighWaterMark()).thenReturn(mark);
+		daemon.setIncremental(MigrationType.ENTITY, null);
+		BackupRestoreStatus status = daemon.startBackup(getStarterPrincipalId());
+		status = waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		// The URL of an incremental backup is the URL of its manifest.
+		String fileName = daemon.getBackupFileName();
+		assertTrue(fileName.startsWith("Manifest-"));
+		assertEquals(BackupDaemon.getS3URL(bucketName, fileName), status.getBackupUrl());
+		// A new chain starts with everything.
+		ArgumentCaptor<Set> captor = ArgumentCaptor.forClass(Set.class);
+		verify(mockDriver).writeBackup((File)any(), (Progress)any(), captor.capture());
+		assertEquals(Arrays.asList("101", "102"), new ArrayList<String>(captor.getValue()));
+		// Both the backup and the manifest are uploaded.
+		verify(mockAwsClient, times(2)).putObject((String)any(), (String)any(), (File)any());
+	}
+	
+	@Test
+	public void testIncrementalBackupChanges() throws Exception{
+		BackupManifest previous = new BackupManifest();
+		previous.setMigrationType(MigrationType.ENTITY);
+		previous.getHighWaterMark().put("101", "3");
+		previous.getHighWaterMark().put("102", "7");
+		previous.getHighWaterMark().put("103", "1");
+		mockManifestDownload(previous);
+		Map<String, String> mark = new LinkedHashMap<String, String>();
+		mark.put("101", "3");
+		mark.put("102", "8");
+		mark.put("104", "1");
+		when(mockDriver.getHighWaterMark()).thenReturn(mark);
+		daemon.setIncremental(MigrationType.ENTITY, "Manifest-previous.xml");
+		BackupRestoreStatus status = daemon.startBackup(getStarterPrincipalId());
+		status = waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		// Only the changed and new nodes are backed up.
+		ArgumentCaptor<Set> captor = ArgumentCaptor.forClass(Set.class);
+		verify(mockDriver).writeBackup((File)any(), (Progress)any(), captor.capture());
+		assertEquals(Arrays.asList("102", "104"), new ArrayList<String>(captor.getValue()));
+		verify(mockAwsClient, times(2)).putObject((String)any(), (String)any(), (File)any());
+	}
+	
+	@Test
+	public void testIncrementalBackupNoChanges() throws Exception{
+		BackupManifest previous = new BackupManifest();
+		previous.setMigrationType(MigrationType.ENTITY);
+		previous.getHighWaterMark().put("101", "3");
+		mockManifestDownload(previous);
+		when(mockDriver.getHighWaterMark()).thenReturn(previous.getHighWaterMark());
+		daemon.setIncremental(MigrationType.ENTITY, "Manifest-previous.xml");
+		BackupRestoreStatus status = daemon.startBackup(getStarterPrincipalId());
+		status = waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		// Only the manifest is uploaded.
+		verify(mockDriver, never()).writeBackup((File)any(), (Progress)any(), (Set<String>)any());
+		verify(mockAwsClient, times(1)).putObject((String)any(), (String)any(), (File)any());
+		assertTrue(daemon.getBackupFileName().startsWith("Manifest-"));
+	}
+	
+	@Test
+	public void testIncrementalBackupWrongType() throws Exception{
+		BackupManifest previous = new BackupManifest();
+		previous.setMigrationType(MigrationType.PRINCIPAL);
+		mockManifestDownload(previous);
+		daemon.setIncremental(MigrationType.ENTITY, "Manifest-previous.xml");
+		BackupRestoreStatus status = daemon.startBackup(getStarterPrincipalId());
+		status = waitForStatus(DaemonStatus.FAILED, status.getId());
+		assertNotNull(status.getErrorMessage());
+	}
+	
+	@Test
+	public void testRestoreManifest() throws Exception{
+		BackupManifest manifest = new BackupManifest();
+		manifest.setMigrationType(MigrationType.ENTITY);
+		manifest.setBackupFileName("Incremental-backup.zip");
+		mockManifestDownload(manifest);
+		BackupRestoreStatus status = daemon.startRestore(getStarterPrincipalId(), "Manifest-previous.xml");
+		status = waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		// The manifest and then its backup are downloaded.
+		ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+		verify(mockAwsClient, times(1)).getObject(captor.capture(), (File)any());
+		assertEquals("Manifest-previous.xml", captor.getValue().getKey());
+		verify(mockAwsClient).getObjectMetadata(bucketName, "Incremental-backup.zip");
+		verify(mockDriver).restoreFromBackup((InputStream)any(), anyLong(), (Progress)any());
+		// Builds clean up the manifest and its backup together.
+		String stack = StackConfiguration.getStack();
+		if("dev".equals(stack) || "bamboo".equals(stack)){
+			verify(mockAwsClient).deleteObject(bucketName, "Manifest-previous.xml");
+			verify(mockAwsClient).deleteObject(bucketName, "Incremental-backup.zip");
+		}else{
+			verify(mockAwsClient, never()).deleteObject((String)any(), (String)any());
+		}
+	}
+	
+	/**
+	 * Any file downloaded from S3 will contain the given manifest.
+	 * @param manifest
+	 */
+	private void mockManifestDownload(final BackupManifest manifest){
+		when(mockAwsClient.getObject((GetObjectRequest) any(), (File)any())).thenAnswer(new Answer<ObjectMetadata>() {
+			@Override
+			public ObjectMetadata answer(InvocationOnMock invocation) throws Throwable {
+				File file = (File) invocation.getArguments()[1];
+				FileOutputStream out = new FileOutputStream(file);
+				try{
+					NodeSerializerUtil.writeBackupManifest(manifest, out);
+				}finally{
+					out.close();
+				}
+				return new ObjectMetadata();
+			}
+		});
+	}
+	
 	@Test
 	public void testSuccessfulRestoreRun() throws UnauthorizedException, DatastoreException, NotFoundException, InterruptedException, IOException{
 		// Start the daemon
@@ -134,10 +285,10 @@ public class BackupDaemonTest {
 		assertTrue(status.getErrorDetails() == null);
 		assertEquals(DaemonStatus.COMPLETED, status.getStatus());
 		
-		// The AWS client should have been called with the file to update once.
-		verify(mockAwsClient, atLeastOnce()).getObject((GetObjectRequest) any(), (File)any());
+		// The AWS client should have been asked for the length of the file to download.
+		verify(mockAwsClient, atLeastOnce()).getObjectMetadata(bucketName, "someBackupFileName");
 		// the driver should have been called to create a backup onece
-		verify(mockDriver, atLeastOnce()).restoreFromBackup((File)any(), (Progress)any());
+		verify(mockDriver, atLeastOnce()).restoreFromBackup((InputStream)any(), anyLong(), (Progress)any());
 	}
 	
 	@Test
@@ -197,7 +348,7 @@ public class BackupDaemonTest {
 	@Test
 	public void testDriverFailureRestore() throws Exception, DatastoreException{
 		// Simulate a driver failure
-		when(mockDriver.restoreFromBackup((File)any(), (Progress)any())).thenThrow(new InterruptedException());
+		when(mockDriver.restoreFromBackup((InputStream)any(), anyLong(), (Progress)any())).thenThrow(new InterruptedException());
 		BackupRestoreStatus status = daemon.startRestore(getStarterPrincipalId(), "SomeFileName");
 		assertNotNull(status);
 		assertNotNull(status.getId());
@@ -231,7 +382,7 @@ public class BackupDaemonTest {
 	@Test
 	public void testAwsClientFailureRestore() throws Exception, DatastoreException{
 		// This time simulate an AWS failure
-		when(mockAwsClient.getObject((GetObjectRequest) any(),(File)any() )).thenThrow(new AmazonClientException("Some error"));
+		when(mockAwsClient.getObjectMetadata((String) any(),(String)any() )).thenThrow(new AmazonClientException("Some error"));
 		BackupRestoreStatus status = daemon.startRestore(getStarterPrincipalId(), "some file neam");
 		assertNotNull(status);
 		assertNotNull(status.getId());
@@ -245,6 +396,49 @@ public class BackupDaemonTest {
 		assertEquals(DaemonStatus.FAILED, status.getStatus());
 	}
 	
+	@Test
+	public void testRoundTripWithS3Stub() throws Exception{
+		S3Stub s3 = new S3Stub();
+		final byte[] backup = "The contents of a backup".getBytes("UTF-8");
+		// The driver writes the backup to the file it is given.
+		when(mockDriver.writeBackup((File)any(), (Progress)any(), (Set<String>)any())).thenAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				FileOutputStream out = new FileOutputStream((File) invocation.getArguments()[0]);
+				try{
+					out.write(backup);
+				}finally{
+					out.close();
+				}
+				return true;
+			}
+		});
+		daemon = new BackupDaemon(stubDao, mockDriver, mockSearchDocumentDriver, s3, bucketName, threadPool, threadPool2);
+		BackupRestoreStatus status = daemon.startBackup(getStarterPrincipalId());
+		waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		String fileName = daemon.getBackupFileName();
+		assertTrue(Arrays.equals(backup, s3.getBytes(bucketName, fileName)));
+		// The restore reads what the backup wrote.
+		final ByteArrayOutputStream restored = new ByteArrayOutputStream();
+		when(mockDriver.restoreFromBackup((InputStream)any(), anyLong(), (Progress)any())).thenAnswer(new Answer<Boolean>() {
+			@Override
+			public Boolean answer(InvocationOnMock invocation) throws Throwable {
+				InputStream in = (InputStream) invocation.getArguments()[0];
+				assertEquals((long) backup.length, invocation.getArguments()[1]);
+				int b;
+				while((b = in.read()) >= 0){
+					restored.write(b);
+				}
+				in.close();
+				return true;
+			}
+		});
+		daemon = new BackupDaemon(stubDao, mockDriver, mockSearchDocumentDriver, s3, bucketName, threadPool, threadPool2);
+		status = daemon.startRestore(getStarterPrincipalId(), fileName);
+		waitForStatus(DaemonStatus.COMPLETED, status.getId());
+		assertTrue(Arrays.equals(backup, restored.toByteArray()));
+	}
+	
 	/**
 	 * Helper method to wait for a given status of the Daemon
 	 * @param lookinFor
@@ -0,0 +1,148 @@
+package org.sagebionetworks.repo.manager.backup.daemon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Unit test for S3MultipartUpload against a local S3 stand-in.
+ */
+public class S3MultipartUploadTest {
+
+	private static final String BUCKET = "bucket";
+	private static final String KEY = "Backup-test.zip";
+	private static final int PART_SIZE = 1000;
+
+	S3Stub s3;
+	File temp;
+	byte[] data;
+
+	@Before
+	public void before() throws IOException{
+		s3 = new S3Stub();
+		s3.setMinimumPartSize(PART_SIZE);
+		temp = File.createTempFile("S3MultipartUploadTest", ".zip");
+		data = new byte[PART_SIZE*5+123];
+		new Random(123).nextBytes(data);
+	}
+
+	@After
+	public void after(){
+		if(temp != null){
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testUploadWhileWriting() throws Exception{
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		FileOutputStream out = new FileOutputStream(temp);
+		int started = 0;
+		try{
+			// Write the file in pieces that do not line up with the parts.
+			for(int offset=0; offset<data.length; offset+=700){
+				out.write(data, offset, Math.min(700, data.length-offset));
+				out.flush();
+				started += upload.uploadAvailableParts();
+			}
+		}finally{
+			out.close();
+		}
+		// Every whole part was started before the file was closed.
+		assertEquals(5, started);
+		upload.complete();
+		assertArrayEquals(data, s3.getBytes(BUCKET, KEY));
+		assertEquals(6, s3.getPartCount());
+		assertEquals(0, s3.getPutCount());
+		assertEquals(0, s3.getOpenUploadCount());
+	}
+
+	@Test
+	public void testUploadExactParts() throws Exception{
+		data = new byte[PART_SIZE*3];
+		new Random(7).nextBytes(data);
+		writeFile(data);
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 2);
+		upload.complete();
+		assertArrayEquals(data, s3.getBytes(BUCKET, KEY));
+		assertEquals(3, s3.getPartCount());
+	}
+
+	@Test
+	public void testSmallFile() throws Exception{
+		data = new byte[PART_SIZE-1];
+		new Random(3).nextBytes(data);
+		writeFile(data);
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 2);
+		assertEquals(0, upload.uploadAvailableParts());
+		upload.complete();
+		// A file smaller than one part is uploaded with a single put.
+		assertArrayEquals(data, s3.getBytes(BUCKET, KEY));
+		assertEquals(1, s3.getPutCount());
+		assertEquals(0, s3.getPartCount());
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception{
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 2);
+		upload.complete();
+		assertEquals(0, s3.getBytes(BUCKET, KEY).length);
+	}
+
+	@Test
+	public void testFailedPart() throws Exception{
+		writeFile(data);
+		s3.setFailPartNumber(2);
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		try{
+			upload.complete();
+			fail("The failed part should have failed the upload");
+		}catch(AmazonClientException e){
+			// expected
+		}
+		// The upload was aborted.
+		assertNull(s3.getBytes(BUCKET, KEY));
+		assertEquals(0, s3.getOpenUploadCount());
+	}
+
+	@Test
+	public void testAbort() throws Exception{
+		writeFile(data);
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		assertTrue(upload.uploadAvailableParts() > 0);
+		upload.abort();
+		assertNull(s3.getBytes(BUCKET, KEY));
+		assertEquals(0, s3.getOpenUploadCount());
+		// Abort does nothing once the upload has finished.
+		upload.abort();
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testCompleteTwice() throws Exception{
+		S3MultipartUpload upload = new S3MultipartUpload(s3, BUCKET, KEY, temp, PART_SIZE, 2);
+		upload.complete();
+		upload.complete();
+	}
+
+	private void writeFile(byte[] bytes) throws IOException{
+		FileOutputStream out = new FileOutputStream(temp);
+		try{
+			out.write(bytes);
+		}finally{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package org.sagebionetworks.repo.manager.backup.daemon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Unit test for S3RangedDownload against a local S3 stand-in.
+ */
+public class S3RangedDownloadTest {
+
+	private static final String BUCKET = "bucket";
+	private static final String KEY = "Backup-test.zip";
+	private static final int PART_SIZE = 1000;
+
+	S3Stub s3;
+	File temp;
+	byte[] data;
+	S3RangedDownload download;
+
+	@Before
+	public void before() throws IOException{
+		s3 = new S3Stub();
+		temp = File.createTempFile("S3RangedDownloadTest", ".zip");
+		data = new byte[PART_SIZE*7+45];
+		new Random(123).nextBytes(data);
+		s3.putBytes(BUCKET, KEY, data);
+	}
+
+	@After
+	public void after(){
+		if(download != null){
+			download.close();
+		}
+		if(temp != null){
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void testDownload() throws Exception{
+		download = new S3RangedDownload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		download.start();
+		assertEquals(data.length, download.getLength());
+		assertArrayEquals(data, readAll(download.openStream()));
+		download.waitForCompletion();
+		assertTrue(download.isDone());
+		assertEquals(8, s3.getRangeCount());
+		// The file holds the whole object.
+		assertArrayEquals(data, readAll(new FileInputStream(temp)));
+	}
+
+	@Test
+	public void testReadWhileDownloading() throws Exception{
+		// Hold every range but the first.
+		CountDownLatch gate = new CountDownLatch(1);
+		s3.setRangeGate(gate);
+		download = new S3RangedDownload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		download.start();
+		InputStream in = download.openStream();
+		// The first range can be read before the rest of the object arrives.
+		byte[] first = new byte[PART_SIZE];
+		int read = 0;
+		while(read < first.length){
+			read += in.read(first, read, first.length-read);
+		}
+		assertFalse(download.isDone());
+		for(int i=0; i<PART_SIZE; i++){
+			assertEquals(data[i], first[i]);
+		}
+		gate.countDown();
+		byte[] rest = readAll(in);
+		assertEquals(data.length-PART_SIZE, rest.length);
+		assertEquals(data[PART_SIZE], rest[0]);
+		assertEquals(data[data.length-1], rest[rest.length-1]);
+	}
+
+	@Test
+	public void testEmpty() throws Exception{
+		s3.putBytes(BUCKET, KEY, new byte[0]);
+		download = new S3RangedDownload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		download.start();
+		assertTrue(download.isDone());
+		assertEquals(-1, download.openStream().read());
+		assertEquals(0, s3.getRangeCount());
+	}
+
+	@Test (expected=AmazonS3Exception.class)
+	public void testMissingObject() throws Exception{
+		download = new S3RangedDownload(s3, BUCKET, "missing", temp, PART_SIZE, 3);
+		download.start();
+	}
+
+	@Test
+	public void testFailedRange() throws Exception{
+		// A range that ends early fails the download.
+		S3Stub truncating = new S3Stub(){
+			@Override
+			public S3Object getObject(GetObjectRequest request) {
+				S3Object object = super.getObject(request);
+				if(request.getRange()[0] > 0){
+					object.setObjectContent(new ByteArrayInputStream(new byte[10]));
+				}
+				return object;
+			}
+		};
+		truncating.putBytes(BUCKET, KEY, data);
+		download = new S3RangedDownload(truncating, BUCKET, KEY, temp, PART_SIZE, 3);
+		download.start();
+		InputStream in = download.openStream();
+		try{
+			readAll(in);
+			fail("The truncated range should have failed the read");
+		}catch(IOException e){
+			// expected
+		}
+		try{
+			download.waitForCompletion();
+			fail("The truncated range should have failed the download");
+		}catch(IOException e){
+			// expected
+		}
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testNotStarted() throws Exception{
+		download = new S3RangedDownload(s3, BUCKET, KEY, temp, PART_SIZE, 3);
+		download.openStream();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException{
+		try{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[333];
+			int read;
+			while((read = in.read(buffer)) > 0){
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}finally{
+			in.close();
+		}
+	}
+}
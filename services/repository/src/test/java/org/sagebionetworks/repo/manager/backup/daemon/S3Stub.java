@@ -0,0 +1,244 @@
+package org.sagebionetworks.repo.manager.backup.daemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+/**
+ * A local stand-in for S3 that keeps objects in memory. It supports the
+ * single and multipart uploads, the ranged downloads and the deletes used by
+ * the backup daemon, and never connects to AWS.
+ */
+public class S3Stub extends AmazonS3Client {
+
+	private Map<String, byte[]> objects = new HashMap<String, byte[]>();
+	private Map<String, TreeMap<Integer, byte[]>> uploads = new HashMap<String, TreeMap<Integer, byte[]>>();
+	private int nextUploadId = 0;
+	private long minimumPartSize = 0;
+	private int failPartNumber = -1;
+	private CountDownLatch rangeGate = null;
+	private int putCount = 0;
+	private int partCount = 0;
+	private int rangeCount = 0;
+
+	public S3Stub() {
+		super(new BasicAWSCredentials("stub", "stub"));
+	}
+
+	/**
+	 * Reject a multipart upload with any part but the last smaller than this, as S3 does.
+	 * @param minimumPartSize
+	 */
+	public void setMinimumPartSize(long minimumPartSize) {
+		this.minimumPartSize = minimumPartSize;
+	}
+
+	/**
+	 * Fail the upload of any part with this number.
+	 * @param failPartNumber
+	 */
+	public void setFailPartNumber(int failPartNumber) {
+		this.failPartNumber = failPartNumber;
+	}
+
+	/**
+	 * Hold every range that does not start at zero until the gate opens.
+	 * @param rangeGate
+	 */
+	public void setRangeGate(CountDownLatch rangeGate) {
+		this.rangeGate = rangeGate;
+	}
+
+	public synchronized void putBytes(String bucketName, String key, byte[] bytes) {
+		objects.put(bucketName+"/"+key, bytes);
+	}
+
+	public synchronized byte[] getBytes(String bucketName, String key) {
+		return objects.get(bucketName+"/"+key);
+	}
+
+	public synchronized int getPutCount() {
+		return putCount;
+	}
+
+	public synchronized int getPartCount() {
+		return partCount;
+	}
+
+	public synchronized int getRangeCount() {
+		return rangeCount;
+	}
+
+	/**
+	 * The number of multipart uploads that were neither completed nor aborted.
+	 * @return
+	 */
+	public synchronized int getOpenUploadCount() {
+		return uploads.size();
+	}
+
+	@Override
+	public synchronized PutObjectResult putObject(String bucketName, String key, File file) {
+		putCount++;
+		putBytes(bucketName, key, read(file, 0, file.length()));
+		return new PutObjectResult();
+	}
+
+	@Override
+	public synchronized InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+		String uploadId = request.getBucketName()+"/"+request.getKey()+"/"+(nextUploadId++);
+		uploads.put(uploadId, new TreeMap<Integer, byte[]>());
+		InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+		result.setUploadId(uploadId);
+		return result;
+	}
+
+	@Override
+	public UploadPartResult uploadPart(UploadPartRequest request) {
+		if(request.getPartNumber() == failPartNumber) throw new AmazonClientException("Failed part: "+failPartNumber);
+		byte[] bytes = read(request.getFile(), request.getFileOffset(), request.getPartSize());
+		synchronized (this) {
+			TreeMap<Integer, byte[]> parts = uploads.get(request.getUploadId());
+			if(parts == null) throw new AmazonS3Exception("No such upload: "+request.getUploadId());
+			parts.put(request.getPartNumber(), bytes);
+			partCount++;
+		}
+		UploadPartResult result = new UploadPartResult();
+		result.setPartNumber(request.getPartNumber());
+		result.setETag("etag-"+request.getPartNumber());
+		return result;
+	}
+
+	@Override
+	public synchronized CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+		TreeMap<Integer, byte[]> parts = uploads.remove(request.getUploadId());
+		if(parts == null) throw new AmazonS3Exception("No such upload: "+request.getUploadId());
+		List<PartETag> etags = request.getPartETags();
+		if(etags.size() != parts.size()) throw new AmazonS3Exception("Expected: "+parts.size()+" parts but got: "+etags.size());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for(int i=0; i<etags.size(); i++){
+			PartETag etag = etags.get(i);
+			byte[] bytes = parts.get(etag.getPartNumber());
+			if(bytes == null || !("etag-"+etag.getPartNumber()).equals(etag.getETag())) throw new AmazonS3Exception("Invalid part: "+etag.getPartNumber());
+			if(i < etags.size()-1 && bytes.length < minimumPartSize) throw new AmazonS3Exception("Part: "+etag.getPartNumber()+" is too small");
+			out.write(bytes, 0, bytes.length);
+		}
+		putBytes(request.getBucketName(), request.getKey(), out.toByteArray());
+		return new CompleteMultipartUploadResult();
+	}
+
+	@Override
+	public synchronized void abortMultipartUpload(AbortMultipartUploadRequest request) {
+		uploads.remove(request.getUploadId());
+	}
+
+	@Override
+	public synchronized void deleteObject(String bucketName, String key) {
+		objects.remove(bucketName+"/"+key);
+	}
+
+	@Override
+	public synchronized ObjectMetadata getObjectMetadata(String bucketName, String key) {
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(getExisting(bucketName, key).length);
+		return metadata;
+	}
+
+	@Override
+	public S3Object getObject(GetObjectRequest request) {
+		long[] range = request.getRange();
+		if(range != null && range[0] > 0 && rangeGate != null){
+			try {
+				rangeGate.await();
+			} catch (InterruptedException e) {
+				throw new AmazonClientException("Interrupted", e);
+			}
+		}
+		byte[] bytes;
+		synchronized (this) {
+			bytes = getExisting(request.getBucketName(), request.getKey());
+			if(range != null){
+				rangeCount++;
+				byte[] part = new byte[(int) (range[1] - range[0] + 1)];
+				System.arraycopy(bytes, (int) range[0], part, 0, part.length);
+				bytes = part;
+			}
+		}
+		S3Object object = new S3Object();
+		object.setBucketName(request.getBucketName());
+		object.setKey(request.getKey());
+		object.getObjectMetadata().setContentLength(bytes.length);
+		object.setObjectContent(new ByteArrayInputStream(bytes));
+		return object;
+	}
+
+	@Override
+	public ObjectMetadata getObject(GetObjectRequest request, File destinationFile) {
+		S3Object object = getObject(request);
+		try{
+			InputStream in = object.getObjectContent();
+			FileOutputStream out = new FileOutputStream(destinationFile);
+			try{
+				byte[] buffer = new byte[4096];
+				int read;
+				while((read = in.read(buffer)) > 0){
+					out.write(buffer, 0, read);
+				}
+			}finally{
+				out.close();
+				in.close();
+			}
+		}catch(IOException e){
+			throw new AmazonClientException("Failed to write: "+destinationFile, e);
+		}
+		return object.getObjectMetadata();
+	}
+
+	private synchronized byte[] getExisting(String bucketName, String key) {
+		byte[] bytes = getBytes(bucketName, key);
+		if(bytes == null) throw new AmazonS3Exception("No such key: "+key);
+		return bytes;
+	}
+
+	private static byte[] read(File file, long offset, long size) {
+		try{
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			try{
+				byte[] bytes = new byte[(int) size];
+				in.seek(offset);
+				in.readFully(bytes);
+				return bytes;
+			}finally{
+				in.close();
+			}
+		}catch(IOException e){
+			throw new AmazonClientException("Failed to read: "+file, e);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package org.sagebionetworks.repo.manager.ontology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sagebionetworks.repo.model.ontology.Concept;
+
+/**
+ * Unit test for the ConceptCacheLocalImpl.
+ */
+public class ConceptCacheLocalImplTest {
+
+	@Test
+	public void testPutAll(){
+		ConceptCacheLocalImpl cache = new ConceptCacheLocalImpl(10);
+		Map<String, List<Concept>> map = new HashMap<String, List<Concept>>();
+		map.put("parent", new ArrayList<Concept>());
+		map.put("parenta", new ArrayList<Concept>());
+		cache.putAll(map);
+		assertTrue(cache.containsKey("parent"));
+		assertNotNull(cache.getConceptsForKey("parenta"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testMaxSize(){
+		ConceptCacheLocalImpl cache = new ConceptCacheLocalImpl(2);
+		cache.put("one", new ArrayList<Concept>());
+		cache.put("two", new ArrayList<Concept>());
+		assertEquals(2, cache.size());
+		// This should not grow past the max.
+		cache.put("three", new ArrayList<Concept>());
+		assertEquals(2, cache.size());
+		assertFalse(cache.containsKey("one"));
+		assertTrue(cache.containsKey("two"));
+		assertTrue(cache.containsKey("three"));
+	}
+
+	@Test
+	public void testConceptMaxSize(){
+		ConceptCacheLocalImpl cache = new ConceptCacheLocalImpl(2);
+		cache.put("one", new Concept());
+		cache.put("two", new Concept());
+		cache.put("three", new Concept());
+		assertNull(cache.getConcept("one"));
+		assertNotNull(cache.getConcept("three"));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testInvalidSize(){
+		new ConceptCacheLocalImpl(0);
+	}
+}
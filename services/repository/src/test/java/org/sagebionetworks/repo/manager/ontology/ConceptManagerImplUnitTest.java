@@ -250,7 +250,7 @@ public class ConceptManagerImplUnitTest {
 		// The dao should return this concept.
 		when(mockDao.getConceptForUri(conceptUri)).thenReturn(con);
 		// This is a cache miss
-		when(mockCache.containsKey(parentUniquePart)).thenReturn(false);
+		when(mockCache.getConceptsForKey(parentUniquePart)).thenReturn(null);
 		manager = new ConceptManagerImpl(mockDao, mockCache, baseURI);
 		// The first time should hit the dao
 		EntityQueryResults<Concept> paged = manager.getChildConcepts(parentURI, null, Integer.MAX_VALUE, 0);
@@ -277,7 +277,7 @@ public class ConceptManagerImplUnitTest {
 		// The dao should return this concept.
 		when(mockDao.getConceptForUri(conceptUri)).thenThrow(new IllegalStateException("ConceptDao.getConceptForUri() should not have been called because it was in the cache"));
 		// This is a cache hit
-		when(mockCache.containsKey(parentUniquePart)).thenReturn(true);
+		when(mockCache.getConceptsForKey(parentUniquePart)).thenReturn(new ArrayList<Concept>());
 		manager = new ConceptManagerImpl(mockDao, mockCache, baseURI);
 		// The first time should hit the dao
 		EntityQueryResults<Concept> paged = manager.getChildConcepts(parentURI, null, Integer.MAX_VALUE, 0);
@@ -286,4 +286,43 @@ public class ConceptManagerImplUnitTest {
 		// Now validate that the concept was placed in the cache
 		verify(mockCache, never()).putAll((Map<String, List<Concept>>) any());
 	}
+
+	/**
+	 * The lists may be evicted as soon as they are added, so the results must come from the loaded lists.
+	 */
+	@Test
+	public void testGetChildConceptsEvictedAfterLoad() throws DatastoreException, NotFoundException{
+		ConceptCache mockCache = Mockito.mock(ConceptCache.class);
+		// The cache never holds on to anything.
+		when(mockCache.getConceptsForKey(any(String.class))).thenReturn(null);
+		manager = new ConceptManagerImpl(dao, mockCache, baseURI);
+		EntityQueryResults<Concept> paged = manager.getChildConcepts(parentURI, "th", Integer.MAX_VALUE, 0);
+		List<Concept> results = paged.getResults();
+		assertEquals(2, results.size());
+		assertEquals(childC, results.get(0));
+		assertEquals(childA, results.get(1));
+		verify(mockCache, times(1)).putAll((Map<String, List<Concept>>) any());
+	}
+
+	/**
+	 * A prefix that is not cached is matched against the cached parent list without a dao hit.
+	 */
+	@Test
+	public void testGetChildConceptsPrefixMiss() throws DatastoreException, NotFoundException{
+		ConceptCache mockCache = Mockito.mock(ConceptCache.class);
+		ConceptDAO mockDao = Mockito.mock(ConceptDAO.class);
+		when(mockDao.getAllConcepts(parentURI)).thenThrow(new IllegalStateException("ConceptDao.getAllConcepts() should not have been called because the parent was in the cache"));
+		List<Concept> all = new ArrayList<Concept>();
+		all.add(childC);
+		all.add(childA);
+		all.add(childB);
+		when(mockCache.getConceptsForKey(parentUniquePart)).thenReturn(all);
+		manager = new ConceptManagerImpl(mockDao, mockCache, baseURI);
+		EntityQueryResults<Concept> paged = manager.getChildConcepts(parentURI, "Th", Integer.MAX_VALUE, 0);
+		List<Concept> results = paged.getResults();
+		assertEquals(2, results.size());
+		assertEquals(childC, results.get(0));
+		assertEquals(childA, results.get(1));
+		verify(mockCache, never()).putAll((Map<String, List<Concept>>) any());
+	}
 }
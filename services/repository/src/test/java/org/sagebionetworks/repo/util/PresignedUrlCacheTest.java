@@ -0,0 +1,107 @@
+package org.sagebionetworks.repo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+/**
+ * Unit test for the PresignedUrlCache.
+ */
+public class PresignedUrlCacheTest {
+
+	private static PresignedUrlCacheKey key(int i) {
+		return new PresignedUrlCacheKey("user", "/123/file" + i, "GET");
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		PresignedUrlCache cache = new PresignedUrlCache(10, 1);
+		DateTime now = new DateTime();
+		assertNull(cache.get(key(0), now));
+		cache.put(key(0), new PresignedUrlCacheValue("url", now.plusMinutes(10)));
+		assertEquals("url", cache.get(key(0), now.plusMinutes(5)).getUrl());
+		// Not valid long enough
+		assertNull(cache.get(key(0), now.plusMinutes(20)));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1.0 / 3.0, cache.getHitRate(), 0.0001);
+		// It is still valid for others
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testStatistics() {
+		PresignedUrlCache cache = new PresignedUrlCache(10, 1);
+		DateTime now = new DateTime();
+		cache.put(key(0), new PresignedUrlCacheValue("url", now.plusMinutes(10)));
+		cache.get(key(0), now);
+		cache.get(key(1), now);
+		PresignedUrlCache.Statistics stats = cache.getStatistics();
+		assertEquals(1, stats.getSize());
+		assertEquals(1, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(0, stats.getEvictionCount());
+		assertEquals(0.5, stats.getHitRate(), 0.0001);
+		// A snapshot does not change with the cache.
+		cache.get(key(0), now);
+		assertEquals(1, stats.getHitCount());
+	}
+
+	@Test
+	public void testExpiredRemovedOnRead() {
+		PresignedUrlCache cache = new PresignedUrlCache(10, 1);
+		DateTime now = new DateTime();
+		cache.put(key(0), new PresignedUrlCacheValue("url", now.minusSeconds(1)));
+		assertNull(cache.get(key(0), now));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEvictsSoonestToExpire() {
+		PresignedUrlCache cache = new PresignedUrlCache(10, 1);
+		DateTime now = new DateTime();
+		for (int i = 0; i < 10; i++) {
+			// Each url expires later than the one before
+			cache.put(key(i), new PresignedUrlCacheValue("url" + i, now.plusMinutes(i + 1)));
+		}
+		cache.put(key(10), new PresignedUrlCacheValue("url10", now.plusMinutes(100)));
+		assertTrue(cache.size() <= 10);
+		assertTrue(cache.getEvictionCount() > 0);
+		// The url that expires first is gone while the new and late ones are kept.
+		assertNull(cache.get(key(0), now));
+		assertNotNull(cache.get(key(9), now));
+		assertNotNull(cache.get(key(10), now));
+	}
+
+	@Test
+	public void testExpiredEvictedFirst() {
+		PresignedUrlCache cache = new PresignedUrlCache(10, 1);
+		DateTime now = new DateTime();
+		for (int i = 0; i < 10; i++) {
+			DateTime expires = (i == 5) ? now.minusMinutes(1) : now.plusMinutes(10);
+			cache.put(key(i), new PresignedUrlCacheValue("url" + i, expires));
+		}
+		cache.put(key(10), new PresignedUrlCacheValue("url10", now.plusMinutes(10)));
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(10, cache.size());
+	}
+
+	@Test
+	public void testShardsBounded() {
+		PresignedUrlCache cache = new PresignedUrlCache(64, 16);
+		DateTime now = new DateTime();
+		for (int i = 0; i < 1000; i++) {
+			cache.put(key(i), new PresignedUrlCacheValue("url" + i, now.plusMinutes(10)));
+		}
+		assertTrue(cache.size() <= 64);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooSmall() {
+		new PresignedUrlCache(4, 16);
+	}
+}
@@ -2,6 +2,7 @@ package org.sagebionetworks.repo.web.controller;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -15,6 +16,9 @@ import java.util.Set;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -37,6 +41,7 @@ import org.sagebionetworks.repo.model.daemon.BackupRestoreStatus;
 import org.sagebionetworks.repo.model.daemon.BackupSubmission;
 import org.sagebionetworks.repo.model.daemon.DaemonStatus;
 import org.sagebionetworks.repo.model.daemon.RestoreSubmission;
+import org.sagebionetworks.repo.model.profile.LatencyRegistry;
 import org.sagebionetworks.repo.model.status.StackStatus;
 import org.sagebionetworks.repo.model.status.StatusEnum;
 import org.sagebionetworks.repo.model.util.RandomAnnotationsUtil;
@@ -365,6 +370,54 @@ public class AdministrationControllerTest {
 		assertEquals(StatusEnum.READ_WRITE, status.getStatus());
 	}
 	
+	@Test
+	public void testGetLatencies() throws Exception{
+		// Any call through the servlet is recorded
+		ServletTestHelper.getStackStatus(dispatchServlet);
+		JSONObject latencies = ServletTestHelper.getLatencies(dispatchServlet, adminUserName);
+		JSONObject controllers = latencies.getJSONObject(LatencyRegistry.CONTROLLER);
+		JSONObject status = controllers.getJSONObject("AdministrationController.getStackStatus");
+		assertTrue(status.getLong("sampleCount") > 0);
+		assertTrue(status.has("p99"));
+	}
+	
+	@Test (expected=ServletTestHelperException.class)
+	public void testGetLatenciesNonAdmin() throws Exception{
+		ServletTestHelper.getLatencies(dispatchServlet, testUserProvider.getTestUserInfo().getUser().getUserId());
+	}
+	
+	@Test
+	public void testGetSqlStatistics() throws Exception{
+		// Bootstrapping the repository has already run many statements
+		JSONObject report = ServletTestHelper.getSqlStatistics(dispatchServlet, adminUserName);
+		JSONArray statements = report.getJSONArray("statements");
+		assertTrue(statements.length() > 0);
+		JSONObject first = statements.getJSONObject(0);
+		assertTrue(first.has("sql"));
+		assertTrue(first.getJSONObject("latency").getLong("sampleCount") > 0);
+		assertNotNull(report.getJSONArray("slowQueries"));
+	}
+	
+	@Test
+	public void testGetPresignedUrlCacheStatistics() throws Exception{
+		JSONObject stats = ServletTestHelper.getPresignedUrlCacheStatistics(dispatchServlet, adminUserName);
+		assertTrue(stats.getLong("size") >= 0);
+		assertTrue(stats.has("hitCount"));
+		assertTrue(stats.has("missCount"));
+		assertTrue(stats.has("evictionCount"));
+		assertTrue(stats.has("hitRate"));
+	}
+	
+	@Test (expected=ServletTestHelperException.class)
+	public void testGetPresignedUrlCacheStatisticsNonAdmin() throws Exception{
+		ServletTestHelper.getPresignedUrlCacheStatistics(dispatchServlet, testUserProvider.getTestUserInfo().getUser().getUserId());
+	}
+	
+	@Test (expected=ServletTestHelperException.class)
+	public void testGetSqlStatisticsNonAdmin() throws Exception{
+		ServletTestHelper.getSqlStatistics(dispatchServlet, testUserProvider.getTestUserInfo().getUser().getUserId());
+	}
+	
 	@Test
 	public void testUpdateStatus() throws ServletException, IOException{
 		// Make sure we can get the stack status
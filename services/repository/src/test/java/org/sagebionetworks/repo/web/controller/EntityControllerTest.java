@@ -167,6 +167,29 @@ public class EntityControllerTest {
 		assertTrue(ids.containsAll(outputIds));
 	}
 	
+	@Test
+	public void testEntityBatch() throws Exception {
+		Project p = new Project();
+		p.setName("EntityBatchParent");
+		p.setEntityType(p.getClass().getName());
+		Project parent = (Project) entityServletHelper.createEntity(p, TEST_USER1);
+		toDelete.add(parent.getId());
+		Study s = new Study();
+		s.setName("EntityBatchChild");
+		s.setEntityType(s.getClass().getName());
+		s.setParentId(parent.getId());
+		Study child = (Study) entityServletHelper.createEntity(s, TEST_USER1);
+		// Mixed types are returned in the order requested
+		List<String> ids = new ArrayList<String>();
+		ids.add(child.getId());
+		ids.add(parent.getId());
+		List<Entity> results = entityServletHelper.getEntityBatch(ids, TEST_USER1);
+		assertNotNull(results);
+		assertEquals(2, results.size());
+		assertEquals(child, results.get(0));
+		assertEquals(parent, results.get(1));
+	}
+	
 	@Test
 	public void testEntityPath() throws JSONObjectAdapterException, ServletException, IOException, NotFoundException, DatastoreException{
 		Project p = new Project();
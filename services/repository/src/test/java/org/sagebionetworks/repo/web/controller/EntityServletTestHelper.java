@@ -3,6 +3,7 @@ package org.sagebionetworks.repo.web.controller;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.servlet.ServletException;
@@ -11,6 +12,7 @@ import javax.servlet.http.HttpServlet;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.sagebionetworks.repo.model.Annotations;
@@ -374,6 +376,42 @@ public class EntityServletTestHelper {
 		return results;
 	}
 	
+	/**
+	 * Get many entities with a single batch request.
+	 * @param ids
+	 * @param username
+	 * @return the entities in the order of the passed ids.
+	 * @throws ServletException
+	 * @throws IOException
+	 * @throws NotFoundException
+	 * @throws DatastoreException
+	 * @throws JSONException
+	 * @throws JSONObjectAdapterException
+	 */
+	public List<Entity> getEntityBatch(List<String> ids,
+			String username) throws ServletException, IOException, NotFoundException, DatastoreException, JSONException, JSONObjectAdapterException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setMethod("GET");
+		request.addHeader("Accept", "application/json");
+		request.setRequestURI(UrlHelpers.ENTITY_BATCH);
+		request.setParameter(AuthorizationConstants.USER_ID_PARAM, username);
+		request.setParameter(ServiceConstants.BATCH_PARAM, StringUtils.join(ids, ServiceConstants.BATCH_PARAM_VALUE_SEPARATOR));
+		request.addHeader("Content-Type", "application/json; charset=UTF-8");
+		dispatcherServlet.service(request, response);
+		log.debug("Results: " + response.getContentAsString());
+		if (response.getStatus() != HttpStatus.OK.value()) {
+			handleException(response.getStatus(), response.getContentAsString());
+		}
+		// Each result is read using its own entity type.
+		JSONArray array = new JSONObject(response.getContentAsString()).getJSONArray("results");
+		List<Entity> results = new ArrayList<Entity>();
+		for(int i=0; i<array.length(); i++){
+			results.add(JSONEntityHttpMessageConverter.readEntity(new StringReader(array.getJSONObject(i).toString())));
+		}
+		return results;
+	}
+	
 	
 	/**
 	 * Get the list of all REST resources.
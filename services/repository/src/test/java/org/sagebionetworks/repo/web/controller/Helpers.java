@@ -556,6 +556,33 @@ public class Helpers {
 		return queryResult;
 	}
 
+	/**
+	 * @param query
+	 * @param countMode
+	 * @return the query results written by the streaming query
+	 * @throws Exception
+	 */
+	public JSONObject testStreamQuery(String query, String countMode) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		request.setMethod("GET");
+		request.addHeader("Accept", "application/json");
+		request.setRequestURI(servletPrefix + UrlHelpers.QUERY_STREAM);
+		request.addParameter("query", query);
+		request.addParameter(AuthorizationConstants.USER_ID_PARAM, userId);
+		if (null != countMode) {
+			request.addParameter(ServiceConstants.QUERY_COUNT_MODE_PARAM, countMode);
+		}
+		servlet.service(request, response);
+		log.info("Results: " + response.getContentAsString());
+		assertEquals(HttpStatus.OK.value(), response.getStatus());
+		JSONObject queryResult = new JSONObject(response.getContentAsString());
+		assertTrue(queryResult.has("totalNumberOfResults"));
+		assertTrue(queryResult.has("results"));
+		return queryResult;
+	}
+
 	/**
 	 * @param requestUrl
 	 * @param jsonRequestContent
@@ -27,6 +27,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 
 public class JSONEntityHttpMessageConverterTest {
@@ -99,6 +100,26 @@ public class JSONEntityHttpMessageConverterTest {
 		assertEquals(container, results);
 	}
 	
+	@Test
+	public void testRoundTripUTF8() throws HttpMessageNotWritableException, IOException{
+		MediaType utf8 = new MediaType("application","json", Charset.forName("UTF-8"));
+		Mockito.when(mockHeaders.getContentType()).thenReturn(utf8);
+		container.getExampleList().get(0).setName("\u00e9t\u00e9 \u6771\u4eac");
+		JSONEntityHttpMessageConverter converter = new JSONEntityHttpMessageConverter();
+		converter.write(container, utf8, mockOutMessage);
+		ByteArrayInputStream in  = new ByteArrayInputStream(outStream.toByteArray());
+		Mockito.when(mockInMessage.getBody()).thenReturn(in);
+		JSONEntity results = converter.read(ExampleContainer.class, mockInMessage);
+		assertEquals(container, results);
+	}
+	
+	@Test (expected=HttpMessageNotReadableException.class)
+	public void testReadMalformed() throws IOException{
+		JSONEntityHttpMessageConverter converter = new JSONEntityHttpMessageConverter();
+		Mockito.when(mockInMessage.getBody()).thenReturn(new ByteArrayInputStream("{\"name\":".getBytes("UTF-8")));
+		converter.read(ExampleContainer.class, mockInMessage);
+	}
+	
 	@Test 
 	public void testReadToString() throws IOException{
 		String value = "This string should make a round trip!";
@@ -69,7 +69,7 @@ public class QueryControllerAutowireTest {
 	@Test
 	public void testQueryForRoot() throws Exception{
 		String query = "select id, eTag from entity where parentId == null";
-		QueryResults results = controller.query(TestUserDAO.ADMIN_USER_NAME, query, mockRequest);
+		QueryResults results = controller.query(TestUserDAO.ADMIN_USER_NAME, query, null, mockRequest);
 		assertNotNull(results);
 		assertTrue(results.getTotalNumberOfResults() > 0);
 	}
@@ -92,12 +92,12 @@ public class QueryControllerAutowireTest {
 		data.setId(id);
 		// Now query for the data object
 		String queryString = "SELECT id, name FROM data WHERE data.parentId == \""+p.getId()+"\"";
-		QueryResults results = controller.query(TestUserDAO.ADMIN_USER_NAME, queryString, mockRequest);
+		QueryResults results = controller.query(TestUserDAO.ADMIN_USER_NAME, queryString, null, mockRequest);
 		assertNotNull(results);
 		assertEquals(1l, results.getTotalNumberOfResults());
 		
 		queryString = "SELECT id, name FROM layer WHERE layer.parentId == \""+p.getId()+"\"";
-		results = controller.query(TestUserDAO.ADMIN_USER_NAME, queryString, mockRequest);
+		results = controller.query(TestUserDAO.ADMIN_USER_NAME, queryString, null, mockRequest);
 		assertNotNull(results);
 		assertEquals(1l, results.getTotalNumberOfResults());
 	}
@@ -113,7 +113,7 @@ public class QueryControllerAutowireTest {
 		toDelete.add(p.getId());
 		// Now query for the data object
 		String queryString = "SELECT id, name FROM project WHERE createdByPrincipalId == \""+user.getIndividualGroup().getId()+"\"";
-		QueryResults results = controller.query(TestUserDAO.ADMIN_USER_NAME, queryString, mockRequest);
+		QueryResults results = controller.query(TestUserDAO.ADMIN_USER_NAME, queryString, null, mockRequest);
 		assertNotNull(results);
 		assertEquals(1l, results.getTotalNumberOfResults());
 	}
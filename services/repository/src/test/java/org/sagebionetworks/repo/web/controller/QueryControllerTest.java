@@ -250,6 +250,46 @@ public class QueryControllerTest {
 				error.getString("reason"));
 	}
 
+	/**
+	 * Test method for
+	 * {@link org.sagebionetworks.repo.web.controller.QueryController#streamQuery} .
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamQuery() throws Exception {
+		String query = "select * from dataset order by \"name\"";
+		JSONObject expected = helper.testQuery(query);
+		JSONObject queryResult = helper.testStreamQuery(query, null);
+		assertExpectedQueryResultProperties("dataset", queryResult);
+		assertEquals(expected.getInt("totalNumberOfResults"),
+				queryResult.getInt("totalNumberOfResults"));
+		JSONArray expectedResults = expected.getJSONArray("results");
+		JSONArray results = queryResult.getJSONArray("results");
+		assertEquals(expectedResults.length(), results.length());
+		// The streamed rows match the rows of the paginated query
+		for (int i = 0; i < results.length(); i++) {
+			assertEquals(expectedResults.getJSONObject(i).getString("dataset.id"),
+					results.getJSONObject(i).getString("dataset.id"));
+			assertEquals(expectedResults.getJSONObject(i).getString("dataset.name"),
+					results.getJSONObject(i).getString("dataset.name"));
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link org.sagebionetworks.repo.web.controller.QueryController#streamQuery} .
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamQueryHasMore() throws Exception {
+		JSONObject queryResult = helper.testStreamQuery(
+				"select * from dataset order by \"name\" limit 2", "hasMore");
+		assertEquals(2, queryResult.getJSONArray("results").length());
+		assertTrue(queryResult.getBoolean("hasMore"));
+	}
+
 	/*****************************************************************************************************
 	 * Query API-specific helpers
 	 */
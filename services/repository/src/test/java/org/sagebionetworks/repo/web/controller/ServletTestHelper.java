@@ -1294,6 +1294,84 @@ public class ServletTestHelper {
 		return (StackStatus) objectMapper.readValue(response.getContentAsString(), StackStatus.class);
 	}
 
+	/**
+	 * Get the latency histograms of the repository
+	 * 
+	 * @param dispatchServlet
+	 * @param userId
+	 * @return
+	 * @throws ServletException
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static JSONObject getLatencies(HttpServlet dispatchServlet,
+			String userId) throws ServletException, IOException, JSONException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setMethod("GET");
+		request.addHeader("Accept", "application/json");
+		request.setRequestURI(UrlHelpers.LATENCY);
+		request.setParameter(AuthorizationConstants.USER_ID_PARAM, userId);
+		dispatchServlet.service(request, response);
+		log.debug("Results: " + response.getContentAsString());
+		if (response.getStatus() != HttpStatus.OK.value()) {
+			throw new ServletTestHelperException(response);
+		}
+		return new JSONObject(response.getContentAsString());
+	}
+
+	/**
+	 * Get the statistics of the presigned URL cache of the repository
+	 * 
+	 * @param dispatchServlet
+	 * @param userId
+	 * @return
+	 * @throws ServletException
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static JSONObject getPresignedUrlCacheStatistics(HttpServlet dispatchServlet,
+			String userId) throws ServletException, IOException, JSONException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setMethod("GET");
+		request.addHeader("Accept", "application/json");
+		request.setRequestURI(UrlHelpers.PRESIGNED_URL_CACHE);
+		request.setParameter(AuthorizationConstants.USER_ID_PARAM, userId);
+		dispatchServlet.service(request, response);
+		log.debug("Results: " + response.getContentAsString());
+		if (response.getStatus() != HttpStatus.OK.value()) {
+			throw new ServletTestHelperException(response);
+		}
+		return new JSONObject(response.getContentAsString());
+	}
+
+	/**
+	 * Get the SQL statistics and slow queries of the repository
+	 * 
+	 * @param dispatchServlet
+	 * @param userId
+	 * @return
+	 * @throws ServletException
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static JSONObject getSqlStatistics(HttpServlet dispatchServlet,
+			String userId) throws ServletException, IOException, JSONException {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		request.setMethod("GET");
+		request.addHeader("Accept", "application/json");
+		request.setRequestURI(UrlHelpers.SQL_STATISTICS);
+		request.setParameter(AuthorizationConstants.USER_ID_PARAM, userId);
+		dispatchServlet.service(request, response);
+		log.debug("Results: " + response.getContentAsString());
+		if (response.getStatus() != HttpStatus.OK.value()) {
+			throw new ServletTestHelperException(response);
+		}
+		return new JSONObject(response.getContentAsString());
+	}
+
 	/**
 	 * Start a system restore daemon
 	 * 
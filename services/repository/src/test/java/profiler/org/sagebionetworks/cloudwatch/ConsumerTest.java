@@ -22,6 +22,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.repo.model.profile.LatencyHistogram;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -141,21 +142,45 @@ public class ConsumerTest {
 	}
 
 	/**
-	 * Verifies addProfileData adds a profile data item to consumer's
-	 * synchronized list. This will also test the getter for the synchronized
-	 * list of ProfileData.
+	 * Verifies addProfileData adds a profile data item to the histogram of
+	 * its method. This will also test the getter for the latency snapshots.
 	 */
 	@Test
-	public void testAddProfileDataAndGetList() throws Exception {
-		List<ProfileData> listOfResults = testConsumer.getListProfileData();
-		assertNotNull(listOfResults);
-		assertEquals(0, listOfResults.size());
+	public void testAddProfileDataAndGetSnapshots() throws Exception {
+		Map<String, Map<String, LatencyHistogram.Snapshot>> results = testConsumer.getLatencySnapshots();
+		assertNotNull(results);
+		assertEquals(0, results.size());
 
 		testConsumer.addProfileData(testProfileDataOne);
 		testConsumer.addProfileData(testProfileDataTwo);
 		testConsumer.addProfileData(testProfileDataThree);
-		listOfResults = testConsumer.getListProfileData();
-		assertEquals(3, listOfResults.size());
+		testConsumer.addProfileData(testProfileDataOne);
+		results = testConsumer.getLatencySnapshots();
+		assertEquals(1, results.size());
+		assertEquals(3, results.get("namespaceOne").size());
+		assertEquals(2, results.get("namespaceOne").get("nameOne").getSampleCount());
+	}
+
+	/**
+	 * Verifies a put sends one StatisticSet per method and resets the
+	 * histograms.
+	 */
+	@Test
+	public void testExecuteCloudWatchPutSendsStatisticSets() throws Exception {
+		AmazonCloudWatchClient mockCW = mock(AmazonCloudWatchClient.class);
+		Consumer consumerWithMockedCW = new Consumer(mockCW);
+		for (int i = 0; i < 100; i++) {
+			consumerWithMockedCW.addLatency("namespaceOne", "nameOne", i);
+		}
+		Map<String, List<MetricDatum>> results = consumerWithMockedCW.drainLatencies();
+		MetricDatum datum = results.get("namespaceOne").get(0);
+		assertEquals(1, results.get("namespaceOne").size());
+		assertEquals(100.0, datum.getStatisticValues().getSampleCount(), 0.0);
+		assertEquals(4950.0, datum.getStatisticValues().getSum(), 0.0);
+		assertEquals(0.0, datum.getStatisticValues().getMinimum(), 0.0);
+		assertEquals(99.0, datum.getStatisticValues().getMaximum(), 0.0);
+		// Nothing is left to send
+		assertEquals(0, consumerWithMockedCW.drainLatencies().size());
 	}
 
 	/**
@@ -164,12 +189,8 @@ public class ConsumerTest {
 	 */
 	@Test(expected = IllegalArgumentException.class)
 	public void testAddBadProfileData() throws IllegalArgumentException {
-		List<ProfileData> listOfResults = testConsumer.getListProfileData();
 		ProfileData nullProfileData = null;
-		int sizeOfListBeforeAdd = listOfResults.size();
 		testConsumer.addProfileData(nullProfileData);
-		listOfResults = testConsumer.getListProfileData();
-		assertEquals(sizeOfListBeforeAdd, listOfResults.size());
 	}
 
 	/**
@@ -472,14 +493,13 @@ public class ConsumerTest {
 	}
 	
 	/**
-	 * Test executeCloudWatchPut when the synchronized list of ProdileData is empty. 
+	 * Test executeCloudWatchPut when no latencies have been added. 
 	 * Want to verify no exception is thrown and the return value is an empty list 
 	 * of strings
 	 */
 	@Test
 	public void testExectueCloudWatchWhenListOfProfileDataIsEmpty() throws Exception {
-		List<ProfileData> testList = testConsumer.getListProfileData();
-		assertEquals(0, testList.size());
+		assertEquals(0, testConsumer.getLatencySnapshots().size());
 		
 		List<String> results = testConsumer.executeCloudWatchPut();
 		assertNotNull(results);